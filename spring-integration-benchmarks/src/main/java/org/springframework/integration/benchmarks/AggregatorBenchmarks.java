@@ -0,0 +1,106 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.aggregator.AbstractCorrelatingMessageHandler;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.channel.NullChannel;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * Aggregation of complete sequences through an {@link AggregatingMessageHandler}
+ * backed by a {@link SimpleMessageStore}, i.e. the {@link AbstractCorrelatingMessageHandler}
+ * hot path: correlation, locking, group storage, release check and group
+ * processing. One operation is one complete group of <code>groupSize</code>
+ * messages. Each benchmark thread uses its own correlation key so that
+ * running with <code>-t</code> measures contention on the shared handler.
+ *
+ * @since 2.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AggregatorBenchmarks {
+
+	@State(Scope.Benchmark)
+	public static class AggregatorState {
+
+		final AtomicInteger correlationKeys = new AtomicInteger();
+
+		final AggregatingMessageHandler handler = new AggregatingMessageHandler(
+				new DefaultAggregatingMessageGroupProcessor(), new SimpleMessageStore());
+
+		@Setup
+		public void setup() {
+			this.handler.setOutputChannel(new NullChannel());
+			this.handler.setExpireGroupsUponCompletion(true);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class SequenceState {
+
+		@Param({ "10", "100", "1000" })
+		int groupSize;
+
+		final List<Message<?>> sequence = new ArrayList<Message<?>>();
+
+		@Setup
+		public void setup(AggregatorState aggregator) {
+			// groups are removed upon completion, so the same sequence can be replayed
+			Object correlationKey = "group-" + aggregator.correlationKeys.incrementAndGet();
+			for (int i = 1; i <= this.groupSize; i++) {
+				this.sequence.add(MessageBuilder.withPayload(i)
+						.setCorrelationId(correlationKey)
+						.setSequenceNumber(i)
+						.setSequenceSize(this.groupSize)
+						.build());
+			}
+		}
+	}
+
+
+	@Benchmark
+	public void aggregateGroup(AggregatorState aggregator, SequenceState state) {
+		for (Message<?> message : state.sequence) {
+			aggregator.handler.handleMessage(message);
+		}
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.channel.RingBufferChannel;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Throughput of the core channel implementations. The same pre-built
+ * {@link Message} is sent on every invocation so that the numbers reflect
+ * the cost of the channel itself (interceptors, dispatcher, queue) rather
+ * than that of message creation. Run with <code>-prof gc</code> to obtain
+ * the allocation rate per message.
+ *
+ * @since 2.1
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ChannelBenchmarks {
+
+	@State(Scope.Benchmark)
+	public static class DirectChannelState {
+
+		final DirectChannel channel = new DirectChannel();
+
+		final Message<String> message = new GenericMessage<String>("test");
+
+		@Setup
+		public void setup() {
+			this.channel.subscribe(new NoOpHandler());
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class QueueChannelState {
+
+		final QueueChannel channel = new QueueChannel();
+
+		final Message<String> message = new GenericMessage<String>("test");
+	}
+
+	@State(Scope.Benchmark)
+	public static class RingBufferChannelState {
+
+		final QueueChannel channel = new RingBufferChannel(1024);
+
+		final Message<String> message = new GenericMessage<String>("test");
+	}
+
+	@State(Scope.Benchmark)
+	public static class ExecutorChannelState {
+
+		final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+
+		ExecutorChannel channel;
+
+		final Message<String> message = new GenericMessage<String>("test");
+
+		@Setup
+		public void setup() {
+			this.executor.setCorePoolSize(4);
+			this.executor.setMaxPoolSize(4);
+			// bounded queue + caller-runs keeps producers from outrunning the consumers
+			this.executor.setQueueCapacity(1024);
+			this.executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+			this.executor.afterPropertiesSet();
+			this.channel = new ExecutorChannel(this.executor);
+			this.channel.subscribe(new NoOpHandler());
+		}
+
+		@TearDown
+		public void tearDown() {
+			this.executor.shutdown();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class PublishSubscribeChannelState {
+
+		@Param({ "1", "4", "16" })
+		int subscribers;
+
+		final PublishSubscribeChannel channel = new PublishSubscribeChannel();
+
+		final Message<String> message = new GenericMessage<String>("test");
+
+		@Setup(Level.Trial)
+		public void setup() {
+			for (int i = 0; i < this.subscribers; i++) {
+				this.channel.subscribe(new NoOpHandler());
+			}
+		}
+	}
+
+
+	@Benchmark
+	public boolean directChannelSend(DirectChannelState state) {
+		return state.channel.send(state.message);
+	}
+
+	@Benchmark
+	public void queueChannelSendAndReceive(QueueChannelState state, Blackhole blackhole) {
+		state.channel.send(state.message);
+		blackhole.consume(state.channel.receive(0));
+	}
+
+	@Benchmark
+	public void ringBufferChannelSendAndReceive(RingBufferChannelState state, Blackhole blackhole) {
+		state.channel.send(state.message);
+		blackhole.consume(state.channel.receive(0));
+	}
+
+	@Benchmark
+	public boolean executorChannelSend(ExecutorChannelState state) {
+		return state.channel.send(state.message);
+	}
+
+	@Benchmark
+	public boolean publishSubscribeChannelSend(PublishSubscribeChannelState state) {
+		return state.channel.send(state.message);
+	}
+
+
+	private static class NoOpHandler implements MessageHandler {
+
+		@SuppressWarnings("unused")
+		private volatile Object lastPayload;
+
+		public void handleMessage(Message<?> message) throws MessagingException {
+			this.lastPayload = message.getPayload();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * Cost of creating messages through {@link MessageBuilder}, both from scratch
+ * and by deriving a new message from an existing one that carries a
+ * configurable number of headers. Run with <code>-prof gc</code> to obtain
+ * the allocation per message.
+ *
+ * @since 2.1
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageBuilderBenchmarks {
+
+	@Param({ "0", "5", "20" })
+	int headerCount;
+
+	Message<String> original;
+
+
+	@Setup
+	public void setup() {
+		MessageBuilder<String> builder = MessageBuilder.withPayload("test");
+		for (int i = 0; i < this.headerCount; i++) {
+			builder.setHeader("header" + i, "value" + i);
+		}
+		this.original = builder.build();
+	}
+
+
+	@Benchmark
+	public Message<String> withPayload() {
+		return MessageBuilder.withPayload("test").build();
+	}
+
+	@Benchmark
+	public Message<String> withPayloadAndHeaders() {
+		return MessageBuilder.withPayload("test")
+				.setCorrelationId("correlation")
+				.setSequenceNumber(1)
+				.setSequenceSize(1)
+				.build();
+	}
+
+	@Benchmark
+	public Message<String> fromMessageWithOneChangedHeader() {
+		return MessageBuilder.fromMessage(this.original).setHeader("changed", "value").build();
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.message.GenericMessage;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SimpleMessageStore;
+
+/**
+ * Group operations of the {@link SimpleMessageStore} for groups of various
+ * sizes: building and removing a whole group, reading a populated group, and
+ * adding/removing a single message to/from a populated group.
+ *
+ * @since 2.1
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class MessageStoreBenchmarks {
+
+	private static final String POPULATED_GROUP = "populated";
+
+	private static final String TRANSIENT_GROUP = "transient";
+
+	@Param({ "10", "100", "1000" })
+	int groupSize;
+
+	final SimpleMessageStore store = new SimpleMessageStore();
+
+	final List<Message<?>> messages = new ArrayList<Message<?>>();
+
+	final Message<String> extra = new GenericMessage<String>("extra");
+
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < this.groupSize; i++) {
+			Message<Integer> message = new GenericMessage<Integer>(i);
+			this.messages.add(message);
+			this.store.addMessageToGroup(POPULATED_GROUP, message);
+		}
+	}
+
+
+	@Benchmark
+	public void addAndRemoveGroup() {
+		for (Message<?> message : this.messages) {
+			this.store.addMessageToGroup(TRANSIENT_GROUP, message);
+		}
+		this.store.removeMessageGroup(TRANSIENT_GROUP);
+	}
+
+	@Benchmark
+	public MessageGroup getMessageGroup() {
+		return this.store.getMessageGroup(POPULATED_GROUP);
+	}
+
+	@Benchmark
+	public MessageGroup addAndRemoveMessage() {
+		this.store.addMessageToGroup(POPULATED_GROUP, this.extra);
+		return this.store.removeMessageFromGroup(POPULATED_GROUP, this.extra);
+	}
+
+}
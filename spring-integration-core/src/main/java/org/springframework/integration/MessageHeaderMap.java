@@ -0,0 +1,582 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import org.springframework.integration.MessageHeaders.IdGenerator;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * Compact storage for the headers of a {@link MessageHeaders} instance.
+ * <p>
+ * The {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP} entries are not stored
+ * in the table: the id is only generated the first time it is accessed (atomically, so that
+ * every reader observes the same value) and the timestamp is captured as a primitive and only
+ * boxed on access. All other headers are kept in a single open-addressed table of alternating
+ * keys and values using linear probing, with well-known header names replaced by their
+ * {@link MessageHeaders} constants so that lookups by constant are resolved by identity.
+ * <p>
+ * A map created for a message derived from another message shares the entries of the
+ * parent map instead of copying them, and only stores the changed entries (a removed entry
+ * is recorded with a marker value). Once a chain of derived maps reaches {@link #MAX_DEPTH},
+ * or when most entries change anyway, the new map is flattened into a full copy instead. This
+ * bounds both the cost of lookups and the retention of values removed from, or replaced in,
+ * parent maps.
+ * <p>
+ * Mutating operations are supported for the benefit of components that need to restore
+ * or adjust the headers of a message they have just created; they are not thread-safe and
+ * must not be used once the map may have been shared with a derived map.
+ *
+ * @since 2.1
+ */
+final class MessageHeaderMap extends AbstractMap<String, Object> {
+
+	static final int MAX_DEPTH = 8;
+
+	private static final Object REMOVED = new Object();
+
+	private static final Object NULL_VALUE = new Object();
+
+	private static final String[] WELL_KNOWN_KEYS = new String[] {
+			MessageHeaders.CORRELATION_ID, MessageHeaders.REPLY_CHANNEL, MessageHeaders.ERROR_CHANNEL,
+			MessageHeaders.EXPIRATION_DATE, MessageHeaders.PRIORITY, MessageHeaders.SEQUENCE_NUMBER,
+			MessageHeaders.SEQUENCE_SIZE, MessageHeaders.SEQUENCE_DETAILS };
+
+	private static final int MINIMUM_CAPACITY = 4;
+
+	private static final AtomicReferenceFieldUpdater<MessageHeaderMap, UUID> idUpdater =
+			AtomicReferenceFieldUpdater.newUpdater(MessageHeaderMap.class, UUID.class, "id");
+
+
+	private final IdGenerator idGenerator;
+
+	private volatile UUID id;
+
+	private long timestamp;
+
+	private Long boxedTimestamp;
+
+	private final MessageHeaderMap parent;
+
+	private final int depth;
+
+	/**
+	 * Keys at even indices, values at the following odd index.
+	 */
+	private Object[] table;
+
+	/**
+	 * Number of occupied table entries, including removal markers.
+	 */
+	private int tableCount;
+
+	/**
+	 * Number of visible entries, excluding ID and TIMESTAMP.
+	 */
+	private int size;
+
+	private Set<Map.Entry<String, Object>> entrySet;
+
+
+	/**
+	 * Create a map holding all entries of the provided headers other than
+	 * {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP}, which are
+	 * always generated for the new instance.
+	 */
+	MessageHeaderMap(Map<String, ?> headers, IdGenerator idGenerator) {
+		this.idGenerator = idGenerator;
+		this.timestamp = System.currentTimeMillis();
+		this.parent = null;
+		this.depth = 0;
+		this.table = new Object[tableLength((headers != null) ? headers.size() : 0)];
+		if (headers != null) {
+			for (Map.Entry<String, ?> entry : headers.entrySet()) {
+				this.putEntry(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Create a map sharing the entries of the provided parent, with the provided
+	 * changes applied on top of them: a <code>null</code> value removes the entry.
+	 * Changes to {@link MessageHeaders#ID} and {@link MessageHeaders#TIMESTAMP} are
+	 * ignored since both are always generated for the new instance.
+	 */
+	MessageHeaderMap(MessageHeaderMap parent, Map<String, ?> changes, IdGenerator idGenerator) {
+		Assert.notNull(parent, "parent must not be null");
+		this.idGenerator = idGenerator;
+		this.timestamp = System.currentTimeMillis();
+		int changeCount = (changes != null) ? changes.size() : 0;
+		// a parent without changes of its own adds nothing but a level of indirection
+		while (parent.parent != null && parent.tableCount == 0) {
+			parent = parent.parent;
+		}
+		if (parent.depth + 1 >= MAX_DEPTH || changeCount >= parent.size) {
+			this.parent = null;
+			this.depth = 0;
+			this.table = new Object[tableLength(parent.size + changeCount)];
+			for (Iterator<Map.Entry<String, Object>> it = parent.new EntryIterator(false); it.hasNext();) {
+				Map.Entry<String, Object> entry = it.next();
+				this.putEntry(entry.getKey(), entry.getValue());
+			}
+		}
+		else {
+			this.parent = parent;
+			this.depth = parent.depth + 1;
+			this.size = parent.size;
+			this.table = new Object[tableLength(changeCount)];
+		}
+		if (changes != null) {
+			for (Map.Entry<String, ?> entry : changes.entrySet()) {
+				if (entry.getValue() != null) {
+					this.putEntry(entry.getKey(), entry.getValue());
+				}
+				else {
+					this.removeEntry(entry.getKey());
+				}
+			}
+		}
+	}
+
+
+	public UUID getId() {
+		UUID id = this.id;
+		if (id == null) {
+			UUID generated = (this.idGenerator != null) ? this.idGenerator.generateId() : UUID.randomUUID();
+			if (!idUpdater.compareAndSet(this, null, generated)) {
+				return this.id;
+			}
+			id = generated;
+		}
+		return id;
+	}
+
+	public Long getTimestamp() {
+		Long boxed = this.boxedTimestamp;
+		if (boxed == null) {
+			boxed = Long.valueOf(this.timestamp);
+			this.boxedTimestamp = boxed;
+		}
+		return boxed;
+	}
+
+	@Override
+	public int size() {
+		return this.size + 2;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return false;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		if (MessageHeaders.ID.equals(key) || MessageHeaders.TIMESTAMP.equals(key)) {
+			return true;
+		}
+		Object value = this.lookup(key);
+		return value != null && value != REMOVED;
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (MessageHeaders.ID.equals(key)) {
+			return this.getId();
+		}
+		if (MessageHeaders.TIMESTAMP.equals(key)) {
+			return this.getTimestamp();
+		}
+		return unmask(this.lookup(key));
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (MessageHeaders.ID.equals(key)) {
+			Assert.isInstanceOf(UUID.class, value, "The '" + key + "' header value must be a UUID.");
+			UUID previous = this.id;
+			this.id = (UUID) value;
+			return previous;
+		}
+		if (MessageHeaders.TIMESTAMP.equals(key)) {
+			Assert.isInstanceOf(Long.class, value, "The '" + key + "' header value must be a Long.");
+			Long previous = this.getTimestamp();
+			this.timestamp = (Long) value;
+			this.boxedTimestamp = (Long) value;
+			return previous;
+		}
+		return this.putEntry(key, value);
+	}
+
+	@Override
+	public Object remove(Object key) {
+		Assert.isTrue(!MessageHeaders.ID.equals(key) && !MessageHeaders.TIMESTAMP.equals(key),
+				"The '" + key + "' header can not be removed.");
+		return this.removeEntry(key);
+	}
+
+	@Override
+	public void clear() {
+		throw new UnsupportedOperationException("The '" + MessageHeaders.ID + "' and '"
+				+ MessageHeaders.TIMESTAMP + "' headers can not be removed.");
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+
+	/**
+	 * Find the raw value for the key in this map or the closest parent having an entry
+	 * for it: <code>null</code> if none does, {@link #REMOVED} if it has been removed.
+	 */
+	private Object lookup(Object key) {
+		if (key == null) {
+			return null;
+		}
+		for (MessageHeaderMap map = this; map != null; map = map.parent) {
+			int index = map.indexOf(key);
+			if (index >= 0) {
+				return map.table[index + 1];
+			}
+		}
+		return null;
+	}
+
+	private Object lookupInParent(Object key) {
+		return (this.parent != null) ? this.parent.lookup(key) : null;
+	}
+
+	/**
+	 * Add or replace the entry, ignoring ID and TIMESTAMP.
+	 * @return the previous value, if any
+	 */
+	private Object putEntry(String key, Object value) {
+		if (MessageHeaders.ID.equals(key) || MessageHeaders.TIMESTAMP.equals(key)) {
+			return null;
+		}
+		Assert.notNull(key, "header name must not be null");
+		Object newValue = (value != null) ? value : NULL_VALUE;
+		int index = this.indexOf(key);
+		if (index >= 0) {
+			Object previous = this.table[index + 1];
+			this.table[index + 1] = newValue;
+			if (previous == REMOVED) {
+				this.size++;
+				return null;
+			}
+			return unmask(previous);
+		}
+		Object previous = this.lookupInParent(key);
+		if (previous == null || previous == REMOVED) {
+			this.size++;
+		}
+		this.insert(key, newValue);
+		return unmask(previous);
+	}
+
+	/**
+	 * Remove the entry, ignoring ID and TIMESTAMP.
+	 * @return the previous value, if any
+	 */
+	private Object removeEntry(Object key) {
+		if (MessageHeaders.ID.equals(key) || MessageHeaders.TIMESTAMP.equals(key)) {
+			return null;
+		}
+		Object inParent = this.lookupInParent(key);
+		boolean visibleInParent = (inParent != null && inParent != REMOVED);
+		int index = this.indexOf(key);
+		if (index >= 0) {
+			Object previous = this.table[index + 1];
+			if (previous == REMOVED) {
+				return null;
+			}
+			if (visibleInParent) {
+				this.table[index + 1] = REMOVED;
+			}
+			else {
+				this.delete(index);
+			}
+			this.size--;
+			return unmask(previous);
+		}
+		if (visibleInParent) {
+			this.insert((String) key, REMOVED);
+			this.size--;
+			return unmask(inParent);
+		}
+		return null;
+	}
+
+	private int indexOf(Object key) {
+		if (key == null) {
+			return -1;
+		}
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		int index = slot(key, mask);
+		while (true) {
+			Object candidate = table[index];
+			if (candidate == null) {
+				return -1;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				return index;
+			}
+			index = (index + 2) & mask;
+		}
+	}
+
+	/**
+	 * Insert or replace the raw table entry, growing the table if necessary.
+	 */
+	private void insert(String key, Object value) {
+		if (this.tableCount + 1 > (this.table.length >> 2)) {
+			this.resize(tableLength(this.tableCount + 1));
+		}
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		int index = slot(key, mask);
+		while (true) {
+			Object candidate = table[index];
+			if (candidate == null) {
+				table[index] = intern(key);
+				table[index + 1] = value;
+				this.tableCount++;
+				return;
+			}
+			if (candidate == key || candidate.equals(key)) {
+				table[index + 1] = value;
+				return;
+			}
+			index = (index + 2) & mask;
+		}
+	}
+
+	/**
+	 * Backward-shift deletion, which keeps every remaining probe sequence intact.
+	 */
+	private void delete(int index) {
+		Object[] table = this.table;
+		int mask = table.length - 1;
+		int hole = index;
+		int next = index;
+		while (true) {
+			next = (next + 2) & mask;
+			Object nextKey = table[next];
+			if (nextKey == null) {
+				break;
+			}
+			int home = slot(nextKey, mask);
+			boolean reachable = (hole <= next) ? (hole < home && home <= next) : (hole < home || home <= next);
+			if (!reachable) {
+				table[hole] = nextKey;
+				table[hole + 1] = table[next + 1];
+				hole = next;
+			}
+		}
+		table[hole] = null;
+		table[hole + 1] = null;
+		this.tableCount--;
+	}
+
+	private void resize(int newLength) {
+		Object[] oldTable = this.table;
+		this.table = new Object[newLength];
+		this.tableCount = 0;
+		for (int i = 0; i < oldTable.length; i += 2) {
+			if (oldTable[i] != null) {
+				this.insert((String) oldTable[i], oldTable[i + 1]);
+			}
+		}
+	}
+
+	private static Object unmask(Object value) {
+		return (value != REMOVED && value != NULL_VALUE) ? value : null;
+	}
+
+	/**
+	 * Table length (two slots per entry) keeping the load factor at or below 0.5.
+	 */
+	private static int tableLength(int expectedSize) {
+		int capacity = MINIMUM_CAPACITY;
+		while (capacity < expectedSize * 2) {
+			capacity <<= 1;
+		}
+		return capacity * 2;
+	}
+
+	private static int slot(Object key, int mask) {
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash << 1) & mask;
+	}
+
+	private static String intern(String key) {
+		int hash = key.hashCode();
+		for (String wellKnownKey : WELL_KNOWN_KEYS) {
+			if (wellKnownKey.hashCode() == hash && wellKnownKey.equals(key)) {
+				return wellKnownKey;
+			}
+		}
+		return key;
+	}
+
+
+	private class EntrySet extends AbstractSet<Map.Entry<String, Object>> {
+
+		@Override
+		public Iterator<Map.Entry<String, Object>> iterator() {
+			return new EntryIterator(true);
+		}
+
+		@Override
+		public int size() {
+			return MessageHeaderMap.this.size();
+		}
+	}
+
+
+	/**
+	 * Iterates over ID and TIMESTAMP (optionally), then over the visible entries of each
+	 * map in the chain, skipping entries shadowed by a map closer to the head of the chain.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, Object>> {
+
+		private MessageHeaderMap current = MessageHeaderMap.this;
+
+		// -2: id, -1: timestamp, then even table indices of the current map
+		private int index;
+
+		private Map.Entry<String, Object> next;
+
+		EntryIterator(boolean includeIdAndTimestamp) {
+			this.index = includeIdAndTimestamp ? -2 : 0;
+			this.next = this.advance();
+		}
+
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		public Map.Entry<String, Object> next() {
+			Map.Entry<String, Object> entry = this.next;
+			if (entry == null) {
+				throw new NoSuchElementException();
+			}
+			this.next = this.advance();
+			return entry;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private Map.Entry<String, Object> advance() {
+			if (this.index == -2) {
+				this.index = -1;
+				return new HeaderEntry(MessageHeaders.ID, MessageHeaderMap.this.getId());
+			}
+			if (this.index == -1) {
+				this.index = 0;
+				return new HeaderEntry(MessageHeaders.TIMESTAMP, MessageHeaderMap.this.getTimestamp());
+			}
+			while (this.current != null) {
+				Object[] table = this.current.table;
+				while (this.index < table.length) {
+					int i = this.index;
+					this.index += 2;
+					Object key = table[i];
+					if (key != null && table[i + 1] != REMOVED && !this.isShadowed(key)) {
+						return new HeaderEntry((String) key, unmask(table[i + 1]));
+					}
+				}
+				this.current = this.current.parent;
+				this.index = 0;
+			}
+			return null;
+		}
+
+		private boolean isShadowed(Object key) {
+			for (MessageHeaderMap map = MessageHeaderMap.this; map != this.current; map = map.parent) {
+				if (map.indexOf(key) >= 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+
+	private static class HeaderEntry implements Map.Entry<String, Object> {
+
+		private final String key;
+
+		private final Object value;
+
+		HeaderEntry(String key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		public String getKey() {
+			return this.key;
+		}
+
+		public Object getValue() {
+			return this.value;
+		}
+
+		public Object setValue(Object value) {
+			throw new UnsupportedOperationException("MessageHeaders is immutable.");
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Map.Entry<?, ?>)) {
+				return false;
+			}
+			Map.Entry<?, ?> other = (Map.Entry<?, ?>) obj;
+			return ObjectUtils.nullSafeEquals(this.key, other.getKey())
+					&& ObjectUtils.nullSafeEquals(this.value, other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return ObjectUtils.nullSafeHashCode(this.key) ^ ObjectUtils.nullSafeHashCode(this.value);
+		}
+
+		@Override
+		public String toString() {
+			return this.key + "=" + this.value;
+		}
+	}
+
+}
@@ -20,11 +20,9 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -32,6 +30,8 @@ import java.util.UUID;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import org.springframework.util.Assert;
+
 /**
  * The headers for a {@link Message}.<br>
  * IMPORTANT: MessageHeaders are immutable. Any mutating operation (e.g., put(..), putAll(..) etc.) 
@@ -90,23 +90,70 @@ public final class MessageHeaders implements Map<String, Object>, Serializable {
 	private final Map<String, Object> headers;
 
 
+	/**
+	 * Create headers holding the provided entries. The {@link #ID} and
+	 * {@link #TIMESTAMP} headers are always generated for the new instance; the
+	 * ID is generated lazily, upon first access, by the {@link IdGenerator} in
+	 * effect at construction time (or {@link UUID#randomUUID()} if none is set).
+	 * <p>
+	 * If the provided map is itself a MessageHeaders instance, its entries are
+	 * shared rather than copied.
+	 */
 	public MessageHeaders(Map<String, Object> headers) {
-		this.headers = (headers != null) ? new HashMap<String, Object>(headers) : new HashMap<String, Object>();
-		if (MessageHeaders.idGenerator == null){
-			this.headers.put(ID, UUID.randomUUID());
+		if (headers instanceof MessageHeaders) {
+			this.headers = derive((MessageHeaders) headers, null);
 		}
 		else {
-			this.headers.put(ID, MessageHeaders.idGenerator.generateId());
+			this.headers = new MessageHeaderMap(headers, MessageHeaders.idGenerator);
 		}
-		
-		this.headers.put(TIMESTAMP, new Long(System.currentTimeMillis()));
+	}
+
+	/**
+	 * Create headers for a message derived from a message with the provided
+	 * headers. The entries of the parent headers are shared rather than copied,
+	 * and the provided changes are applied on top of them, a <code>null</code>
+	 * value removing the corresponding header. As with {@link #MessageHeaders(Map)},
+	 * the {@link #ID} and {@link #TIMESTAMP} headers are generated for the new
+	 * instance.
+	 * @param parentHeaders the headers to derive from
+	 * @param headerChanges the headers to add, replace or (with a null value) remove; may be null
+	 * @since 2.1
+	 */
+	public MessageHeaders(MessageHeaders parentHeaders, Map<String, Object> headerChanges) {
+		Assert.notNull(parentHeaders, "parentHeaders must not be null");
+		this.headers = derive(parentHeaders, headerChanges);
+	}
+
+	private static Map<String, Object> derive(MessageHeaders parentHeaders, Map<String, Object> headerChanges) {
+		if (parentHeaders.headers instanceof MessageHeaderMap) {
+			return new MessageHeaderMap((MessageHeaderMap) parentHeaders.headers, headerChanges, MessageHeaders.idGenerator);
+		}
+		// a deserialized instance holds a plain map
+		Map<String, Object> headers = new HashMap<String, Object>(parentHeaders.headers);
+		if (headerChanges != null) {
+			for (Map.Entry<String, Object> entry : headerChanges.entrySet()) {
+				if (entry.getValue() != null) {
+					headers.put(entry.getKey(), entry.getValue());
+				}
+				else {
+					headers.remove(entry.getKey());
+				}
+			}
+		}
+		return new MessageHeaderMap(headers, MessageHeaders.idGenerator);
 	}
 
 	public UUID getId() {
+		if (this.headers instanceof MessageHeaderMap) {
+			return ((MessageHeaderMap) this.headers).getId();
+		}
 		return this.get(ID, UUID.class);
 	}
 
 	public Long getTimestamp() {
+		if (this.headers instanceof MessageHeaderMap) {
+			return ((MessageHeaderMap) this.headers).getTimestamp();
+		}
 		return this.get(TIMESTAMP, Long.class);
 	}
 
@@ -240,26 +287,38 @@ public final class MessageHeaders implements Map<String, Object>, Serializable {
 	 * Serialization methods
 	 */
 
+	/**
+	 * Writes the serializable headers as a plain HashMap, so the serialized form
+	 * does not depend on the internal header storage. Deserialized instances keep
+	 * that HashMap, including the original ID and TIMESTAMP values.
+	 */
 	private void writeObject(ObjectOutputStream out) throws IOException {
-		List<String> keysToRemove = new ArrayList<String>();
+		Map<String, Object> serializableHeaders = new HashMap<String, Object>(this.headers.size());
 		for (Map.Entry<String, Object> entry : this.headers.entrySet()) {
-			if (!(entry.getValue() instanceof Serializable)) {
-				keysToRemove.add(entry.getKey());
+			if (entry.getValue() instanceof Serializable) {
+				serializableHeaders.put(entry.getKey(), entry.getValue());
 			}
-		}
-		for (String key : keysToRemove) {
-			if (logger.isInfoEnabled()) {
-				logger.info("removing non-serializable header: " + key);
+			else if (logger.isInfoEnabled()) {
+				logger.info("removing non-serializable header: " + entry.getKey());
 			}
-			this.headers.remove(key);
 		}
-		out.defaultWriteObject();
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("headers", serializableHeaders);
+		out.writeFields();
 	}
 
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
 	}
 
+	/**
+	 * Strategy for generating the {@link MessageHeaders#ID} of new messages. A single
+	 * implementation may be registered as a bean in the application context, in which
+	 * case it replaces the default {@link UUID#randomUUID()} based generation.
+	 * Implementations must be thread-safe.
+	 *
+	 * @see org.springframework.integration.support.IncrementingIdGenerator
+	 */
 	public static interface IdGenerator {
 		UUID generateId();
 	}
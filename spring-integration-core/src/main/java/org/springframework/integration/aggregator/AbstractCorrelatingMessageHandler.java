@@ -16,13 +16,18 @@ package org.springframework.integration.aggregator;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.expression.Expression;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHeaders;
@@ -31,11 +36,21 @@ import org.springframework.integration.channel.NullChannel;
 import org.springframework.integration.core.MessageProducer;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.handler.AbstractMessageHandler;
+import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.ChannelMessageStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupCallback;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.integration.util.DefaultLockRegistry;
+import org.springframework.integration.util.LockRegistry;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.jmx.support.MetricType;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.util.Assert;
 import org.springframework.util.CollectionUtils;
 
@@ -53,13 +68,28 @@ import org.springframework.util.CollectionUtils;
  * <p/>
  * By default the {@link CorrelationStrategy} will be a
  * {@link HeaderAttributeCorrelationStrategy} and the {@link ReleaseStrategy} will be a
- * {@link SequenceSizeReleaseStrategy}.
+ * {@link SequenceSizeReleaseStrategy}. A release strategy that is an {@link IncrementalReleaseStrategy}
+ * is told which message has just been added to the group.
+ * <p/>
+ * Messages of the same group are handled under a lock obtained from a
+ * {@link LockRegistry} (by default a {@link DefaultLockRegistry}), so that
+ * messages of different groups are handled concurrently. The number of times a
+ * thread had to wait for such a lock is exposed as a JMX metric.
+ * <p/>
+ * If a group timeout is configured (see {@link #setGroupTimeout(long)} and
+ * {@link #setGroupTimeoutExpression(Expression)}), a task is scheduled with the
+ * {@link TaskScheduler} when the first message of a group arrives, and cancelled
+ * when the group is released; a group that still holds messages after a partial
+ * release (as a resequencer does) keeps its timeout. If it fires first, the group is force completed
+ * just as if it had been expired by a {@link MessageGroupStoreReaper}, without
+ * the reaper having to scan the whole store.
  *
  * @author Iwein Fuld
  * @author Dave Syer
  * @author Oleg Zhurakousky
  * @since 2.0
  */
+@ManagedResource
 public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageHandler implements MessageProducer {
 
 	private static final Log logger = LogFactory.getLog(AbstractCorrelatingMessageHandler.class);
@@ -81,10 +111,17 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 	private volatile MessageChannel discardChannel = new NullChannel();
 
 	private boolean sendPartialResultOnExpiry = false;
-	
-	private final Object correlationLocksMonitor = new Object();
 
-	private final ConcurrentMap<Object, Object> locks = new ConcurrentHashMap<Object, Object>();
+	private volatile LockRegistry lockRegistry = new DefaultLockRegistry();
+
+	private final AtomicLong lockContentionCount = new AtomicLong();
+
+	private volatile long groupTimeout = -1;
+
+	private volatile ExpressionEvaluatingMessageProcessor<Long> groupTimeoutProcessor;
+
+	private final ConcurrentMap<Object, GroupTimeoutTask> groupTimeoutTasks =
+			new ConcurrentHashMap<Object, GroupTimeoutTask>();
 
 	public AbstractCorrelatingMessageHandler(MessageGroupProcessor processor, MessageGroupStore store,
 									 CorrelationStrategy correlationStrategy, ReleaseStrategy releaseStrategy) {
@@ -108,6 +145,8 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 
 
 	public void setMessageStore(MessageGroupStore store) {
+		Assert.isTrue(!(store instanceof ChannelMessageStore), "The MessageGroupStore [" + store
+				+ "] only supports backing channels and cannot be used by an aggregator or a resequencer");
 		this.messageStore = store;
 		store.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
 			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
@@ -116,6 +155,11 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		});
 	}
 
+	public void setLockRegistry(LockRegistry lockRegistry) {
+		Assert.notNull(lockRegistry, "'lockRegistry' must not be null");
+		this.lockRegistry = lockRegistry;
+	}
+
 	public void setCorrelationStrategy(CorrelationStrategy correlationStrategy) {
 		Assert.notNull(correlationStrategy);
 		this.correlationStrategy = correlationStrategy;
@@ -137,6 +181,13 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		BeanFactory beanFactory = this.getBeanFactory();
 		if (beanFactory != null) {
 			this.messagingTemplate.setBeanFactory(beanFactory);
+			if (this.groupTimeoutProcessor != null) {
+				this.groupTimeoutProcessor.setBeanFactory(beanFactory);
+			}
+		}
+		if (this.groupTimeout >= 0 || this.groupTimeoutProcessor != null) {
+			Assert.state(this.getTaskScheduler() != null,
+					"a TaskScheduler is required when a group timeout is configured");
 		}
 	}
 
@@ -152,6 +203,26 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		this.sendPartialResultOnExpiry = sendPartialResultOnExpiry;
 	}
 
+	/**
+	 * Set the time in milliseconds after which a group is force completed,
+	 * counted from the arrival of its first message. A negative value (the
+	 * default) means that groups are not timed out by this handler.
+	 */
+	public void setGroupTimeout(long groupTimeout) {
+		this.groupTimeout = groupTimeout;
+	}
+
+	/**
+	 * Set an expression evaluated against the first message of a group to
+	 * determine the timeout of that group, e.g. <code>headers['timeout']</code>.
+	 * A <code>null</code> result falls back to the group timeout, a negative
+	 * one means that the group is not timed out.
+	 */
+	public void setGroupTimeoutExpression(Expression groupTimeoutExpression) {
+		this.groupTimeoutProcessor = (groupTimeoutExpression == null) ? null
+				: new ExpressionEvaluatingMessageProcessor<Long>(groupTimeoutExpression, Long.class);
+	}
+
 	public void setReleasePartialSequences(boolean releasePartialSequences){
 		Assert.isInstanceOf(SequenceSizeReleaseStrategy.class, this.releaseStrategy,
 				"Release strategy of type [" + this.releaseStrategy.getClass().getSimpleName()
@@ -177,10 +248,8 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 			logger.debug("Handling message with correlationKey [" + correlationKey + "]: " + message);
 		}
 
-		// TODO: INT-1117 - make the lock global?
-		Object lock = getLock(correlationKey);
-
-		synchronized (lock) {
+		Lock lock = this.lock(correlationKey);
+		try {
 			MessageGroup messageGroup = messageStore.getMessageGroup(correlationKey);
 			if (!messageGroup.isComplete() && messageGroup.canAdd(message)) {
 				if (logger.isTraceEnabled()) {
@@ -188,7 +257,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 				}
 				messageGroup = store(correlationKey, message);
 				
-				if (releaseStrategy.canRelease(messageGroup)) {
+				if (this.canRelease(messageGroup, message)) {
 					Collection<Message<?>> completedMessages = null;
 					try {
 						completedMessages = completeGroup(message, correlationKey, messageGroup);
@@ -197,17 +266,28 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 						// Always clean up even if there was an exception
 						// processing messages						
 						this.afterRelease(messageGroup, completedMessages);
-		
-						synchronized(correlationLocksMonitor){
-							locks.remove(messageGroup.getGroupId());
+						if (this.groupTimeout >= 0 || this.groupTimeoutProcessor != null) {
+							// a partial release (e.g. by a resequencer) leaves the rest of the group waiting
+							if (this.messageGroupSize(correlationKey) > 0) {
+								this.scheduleGroupTimeoutIfNecessary(correlationKey, message);
+							}
+							else {
+								this.cancelGroupTimeout(correlationKey);
+							}
 						}
 					}
-				} 				
+				}
+				else {
+					this.scheduleGroupTimeoutIfNecessary(correlationKey, message);
+				}
 			} 
 			else {
 				discardChannel.send(message);
 			}
 		}
+		finally {
+			lock.unlock();
+		}
 	}
 
 	/**
@@ -220,39 +300,148 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 	private final boolean forceComplete(MessageGroup group) {
 
 		Object correlationKey = group.getGroupId();
-		Object lock = getLock(correlationKey);
-		synchronized (lock) {
-
-			if (group.size() > 0) {
-				try {
-					if (releaseStrategy.canRelease(group)) {
-						this.completeGroup(correlationKey, group);
-					} 
-					else {
-						this.expireGroup(correlationKey, group);
-					}
-				}
-				finally {
-					this.remove(group);
+		Lock lock = this.lockUninterruptedly(correlationKey);
+		try {
+			return this.doForceComplete(group);
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Complete or expire the given group; the caller must hold its lock.
+	 */
+	private boolean doForceComplete(MessageGroup group) {
+		Object correlationKey = group.getGroupId();
+		this.cancelGroupTimeout(correlationKey);
+		if (group.size() > 0) {
+			try {
+				if (releaseStrategy.canRelease(group)) {
+					this.completeGroup(correlationKey, group);
+				} 
+				else {
+					this.expireGroup(correlationKey, group);
 				}
-				return true;
 			}
-			return false;
+			finally {
+				this.remove(group);
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Schedule the timeout of the given group unless it is already scheduled or
+	 * no timeout applies; the caller must hold the lock of the group.
+	 */
+	private void scheduleGroupTimeoutIfNecessary(Object correlationKey, Message<?> message) {
+		if ((this.groupTimeout < 0 && this.groupTimeoutProcessor == null)
+				|| this.groupTimeoutTasks.containsKey(correlationKey)) {
+			return;
+		}
+		long timeout = this.groupTimeout;
+		if (this.groupTimeoutProcessor != null) {
+			Long evaluated = this.groupTimeoutProcessor.processMessage(message);
+			if (evaluated != null) {
+				timeout = evaluated;
+			}
+		}
+		if (timeout < 0) {
+			return;
+		}
+		GroupTimeoutTask task = new GroupTimeoutTask(correlationKey);
+		this.groupTimeoutTasks.put(correlationKey, task);
+		task.future = this.getTaskScheduler().schedule(task, new Date(System.currentTimeMillis() + timeout));
+		if (logger.isDebugEnabled()) {
+			logger.debug("Scheduled timeout of group with correlationKey [" + correlationKey + "] in " + timeout + " ms");
 		}
 	}
 
-	private Object getLock(Object correlationKey) {
-		synchronized(correlationLocksMonitor){
-			locks.putIfAbsent(correlationKey, new Object());
-			return locks.get(correlationKey);
+	private void cancelGroupTimeout(Object correlationKey) {
+		GroupTimeoutTask task = this.groupTimeoutTasks.remove(correlationKey);
+		if (task != null && task.future != null) {
+			task.future.cancel(false);
 		}
 	}
 
+	private boolean canRelease(MessageGroup group, Message<?> addedMessage) {
+		ReleaseStrategy releaseStrategy = this.releaseStrategy;
+		if (releaseStrategy instanceof IncrementalReleaseStrategy) {
+			return ((IncrementalReleaseStrategy) releaseStrategy).canRelease(group, addedMessage);
+		}
+		return releaseStrategy.canRelease(group);
+	}
+
+	/**
+	 * Acquire the lock of the given group, counting the acquisitions that had to wait.
+	 */
+	private Lock lock(Object correlationKey) throws InterruptedException {
+		Lock lock = this.lockRegistry.obtain(correlationKey);
+		if (!lock.tryLock()) {
+			this.lockContentionCount.incrementAndGet();
+			lock.lockInterruptibly();
+		}
+		return lock;
+	}
+
+	private Lock lockUninterruptedly(Object correlationKey) {
+		try {
+			return this.lock(correlationKey);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while waiting for the lock of group [" + correlationKey + "]", e);
+		}
+	}
+
+	/**
+	 * Return the number of times a thread had to wait for the lock of a group
+	 * because another thread was handling a message of the same group (or of a
+	 * group sharing the same lock).
+	 */
+	@ManagedMetric(metricType = MetricType.COUNTER, displayName = "Correlation Lock Contention Count")
+	public long getLockContentionCount() {
+		return this.lockContentionCount.get();
+	}
+
+	@ManagedOperation
+	public void resetLockContentionCount() {
+		this.lockContentionCount.set(0);
+	}
+
+	/**
+	 * Return the number of groups whose timeout is currently scheduled.
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Scheduled Group Timeout Count")
+	public int getScheduledGroupTimeoutCount() {
+		return this.groupTimeoutTasks.size();
+	}
+
 	void remove(MessageGroup group) {
 		Object correlationKey = group.getGroupId();
 		messageStore.removeMessageGroup(correlationKey);
 	}
 
+	void removeMessages(Object groupId, Collection<Message<?>> messages) {
+		if (messageStore instanceof AbstractMessageGroupStore) {
+			((AbstractMessageGroupStore) messageStore).removeMessagesFromGroup(groupId, messages);
+		}
+		else {
+			for (Message<?> message : messages) {
+				messageStore.removeMessageFromGroup(groupId, message);
+			}
+		}
+	}
+
+	private int messageGroupSize(Object groupId) {
+		if (messageStore instanceof AbstractMessageGroupStore) {
+			return ((AbstractMessageGroupStore) messageStore).messageGroupSize(groupId);
+		}
+		return messageStore.getMessageGroup(groupId).size();
+	}
+
 	protected int findLastReleasedSequenceNumber(Object groupId, Collection<Message<?>> partialSequence){
 		List<Message<?>> sorted = new ArrayList<Message<?>>((Collection<? extends Message<?>>)partialSequence);
 		Collections.sort(sorted, new SequenceNumberComparator());
@@ -363,4 +552,38 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageH
 		return false;
 	}
 
+
+	/**
+	 * Force completes its group unless the timeout was cancelled or replaced
+	 * while this task was waiting for the lock of the group.
+	 */
+	private class GroupTimeoutTask implements Runnable {
+
+		private final Object correlationKey;
+
+		private volatile ScheduledFuture<?> future;
+
+		GroupTimeoutTask(Object correlationKey) {
+			this.correlationKey = correlationKey;
+		}
+
+		public void run() {
+			Lock lock = lockUninterruptedly(this.correlationKey);
+			try {
+				if (groupTimeoutTasks.remove(this.correlationKey, this)) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Group with correlationKey [" + this.correlationKey + "] timed out");
+					}
+					doForceComplete(messageStore.getMessageGroup(this.correlationKey));
+				}
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to force complete group with correlationKey [" + this.correlationKey + "]", e);
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
 }
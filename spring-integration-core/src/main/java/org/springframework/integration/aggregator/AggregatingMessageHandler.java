@@ -13,6 +13,7 @@
 
 package org.springframework.integration.aggregator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 
@@ -70,9 +71,8 @@ public class AggregatingMessageHandler extends AbstractCorrelatingMessageHandler
 			remove(messageGroup);
 		}
 		else {
-			for (Message<?> message : messageGroup.getMessages()) {
-				this.messageStore.removeMessageFromGroup(messageGroup.getGroupId(), message);
-			}
+			this.removeMessages(messageGroup.getGroupId(),
+					new ArrayList<Message<?>>(messageGroup.getMessages()));
 		}	
 	}
 
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.store.MessageGroup;
+
+/**
+ * A {@link ReleaseStrategy} that is notified of each message added to a group, so
+ * that it can decide whether the group can be released from the message just added
+ * and from running state of the group (such as its size) rather than by inspecting
+ * every message of the group again. This keeps the cost of correlating a group of N
+ * messages linear in N.
+ * <p/>
+ * The {@link AbstractCorrelatingMessageHandler} calls
+ * {@link #canRelease(MessageGroup, Message)} after each message it adds to a group,
+ * and falls back to {@link #canRelease(MessageGroup)} when there is no such message,
+ * for example when a group expires.
+ *
+ * @since 2.1
+ */
+public interface IncrementalReleaseStrategy extends ReleaseStrategy {
+
+	/**
+	 * Decide whether the group can be released now that the given message has been added to it.
+	 * @param group the group, already containing the added message
+	 * @param addedMessage the message that has just been added to the group
+	 * @return true if the group can be released
+	 */
+	boolean canRelease(MessageGroup group, Message<?> addedMessage);
+
+}
@@ -13,6 +13,7 @@
 
 package org.springframework.integration.aggregator;
 
+import org.springframework.integration.Message;
 import org.springframework.integration.store.MessageGroup;
 
 /**
@@ -22,7 +23,7 @@ import org.springframework.integration.store.MessageGroup;
  * @author Oleg Zhurakousky
  * 
  */
-public class MessageCountReleaseStrategy implements ReleaseStrategy {
+public class MessageCountReleaseStrategy implements IncrementalReleaseStrategy {
 
 	private final int threshold;
 
@@ -50,4 +51,8 @@ public class MessageCountReleaseStrategy implements ReleaseStrategy {
 		return group.size() >= threshold;
 	}
 
+	public boolean canRelease(MessageGroup group, Message<?> addedMessage) {
+		return this.canRelease(group);
+	}
+
 }
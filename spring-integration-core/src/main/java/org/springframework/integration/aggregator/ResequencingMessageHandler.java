@@ -62,9 +62,7 @@ public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandle
 			if (completedMessages != null){ 
 				int lastReleasedSequenceNumber = this.findLastReleasedSequenceNumber(messageGroup.getGroupId(), completedMessages);
 				messageStore.setLastReleasedSequenceNumberForGroup(messageGroup.getGroupId(), lastReleasedSequenceNumber);
-				for (Message<?> msg : completedMessages) {
-					this.messageStore.removeMessageFromGroup(messageGroup.getGroupId(), msg);
-				}
+				this.removeMessages(messageGroup.getGroupId(), completedMessages);
 			}
 		}
 	}
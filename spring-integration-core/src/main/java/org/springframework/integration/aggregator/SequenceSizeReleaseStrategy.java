@@ -26,10 +26,14 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SimpleMessageGroup;
 
 /**
  * An implementation of {@link ReleaseStrategy} that simply compares the current size of the message list to the
  * expected 'sequenceSize'.
+ * <p/>
+ * For a {@link SimpleMessageGroup} the check for a partial sequence uses the sequence number index of the group
+ * instead of sorting its messages, so that the cost of the check does not grow with the size of the group.
  * 
  * @author Mark Fisher
  * @author Marius Bogoevici
@@ -37,7 +41,7 @@ import org.springframework.integration.store.MessageGroup;
  * @author Iwein Fuld
  * @author Oleg Zhurakousky
  */
-public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
+public class SequenceSizeReleaseStrategy implements IncrementalReleaseStrategy {
 
 	private static final Log logger = LogFactory.getLog(SequenceSizeReleaseStrategy.class);
 
@@ -63,6 +67,15 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 		this.releasePartialSequences = releasePartialSequences;
 	}
 
+	public boolean canRelease(MessageGroup messageGroup, Message<?> addedMessage) {
+		int sequenceNumber = addedMessage.getHeaders().getSequenceNumber();
+		if (releasePartialSequences || sequenceNumber <= 0) {
+			return this.canRelease(messageGroup);
+		}
+		// the group only accepts sequenced messages of the same sequence size
+		return messageGroup.size() == addedMessage.getHeaders().getSequenceSize();
+	}
+
 	public boolean canRelease(MessageGroup messageGroup) {
 
 		boolean canRelease = false;
@@ -74,6 +87,11 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 			if (logger.isTraceEnabled()) {
 				logger.trace("Considering partial release of group [" + messageGroup + "]");
 			}
+			if (messageGroup instanceof SimpleMessageGroup
+					&& ((SimpleMessageGroup) messageGroup).getUnsequencedMessageCount() == 0) {
+				int nextSequenceNumber = ((SimpleMessageGroup) messageGroup).getLowestSequenceNumber();
+				return nextSequenceNumber - messageGroup.getLastReleasedMessageSequenceNumber() == 1;
+			}
 			List<Message<?>> sorted = new ArrayList<Message<?>>(messages);
 			Collections.sort(sorted, comparator);
 			
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,20 @@
 
 package org.springframework.integration.channel;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
 import org.springframework.integration.Message;
-import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.core.BatchPollableChannel;
+import org.springframework.util.Assert;
 
 /**
  * Base class for all pollable channels.
  * 
  * @author Mark Fisher
  */
-public abstract class AbstractPollableChannel extends AbstractMessageChannel implements PollableChannel {
+public abstract class AbstractPollableChannel extends AbstractMessageChannel implements BatchPollableChannel {
 
 	/**
 	 * Receive the first available message from this channel. If the channel
@@ -59,6 +64,44 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel imp
 		return message;
 	}
 
+	/**
+	 * Receive up to <code>maxMessages</code> messages from this channel. The
+	 * timeout applies to the first message as in {@link #receive(long)}; the
+	 * messages that are immediately available after it are added without
+	 * waiting. Interceptors are invoked once per batch for preReceive, and
+	 * once per message for postReceive.
+	 *
+	 * @return the received messages; an empty list if no message is available
+	 * within the allotted time or the receiving thread is interrupted.
+	 */
+	public final List<Message<?>> receiveBatch(int maxMessages, long timeout) {
+		Assert.isTrue(maxMessages > 0, "'maxMessages' must be a positive number");
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		if (!this.getInterceptors().preReceive(this)) {
+			return messages;
+		}
+		Message<?> message = this.doReceive(timeout);
+		if (message == null) {
+			this.getInterceptors().postReceive(null, this);
+			return messages;
+		}
+		messages.add(message);
+		if (maxMessages > 1) {
+			this.doReceive(messages, maxMessages - 1);
+		}
+		ListIterator<Message<?>> iterator = messages.listIterator();
+		while (iterator.hasNext()) {
+			message = this.getInterceptors().postReceive(iterator.next(), this);
+			if (message != null) {
+				iterator.set(message);
+			}
+			else {
+				iterator.remove();
+			}
+		}
+		return messages;
+	}
+
 	/**
 	 * Subclasses must implement this method. A non-negative timeout indicates
 	 * how long to wait if the channel is empty (if the value is 0, it must
@@ -68,4 +111,20 @@ public abstract class AbstractPollableChannel extends AbstractMessageChannel imp
 	 */
 	protected abstract Message<?> doReceive(long timeout);
 
+	/**
+	 * Add up to <code>maxMessages</code> messages that are immediately available
+	 * to the given list, without waiting. The default implementation invokes
+	 * {@link #doReceive(long)} with a zero timeout for each message; subclasses
+	 * may remove the messages from their underlying store in bulk instead.
+	 */
+	protected void doReceive(List<Message<?>> messages, int maxMessages) {
+		for (int i = 0; i < maxMessages; i++) {
+			Message<?> message = this.doReceive(0);
+			if (message == null) {
+				return;
+			}
+			messages.add(message);
+		}
+	}
+
 }
@@ -16,14 +16,15 @@
 
 package org.springframework.integration.channel;
 
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Map;
+import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.util.UpperBound;
 
 /**
@@ -36,10 +37,10 @@ import org.springframework.integration.util.UpperBound;
 public class PriorityChannel extends QueueChannel {
 
 	private final UpperBound upperBound;
-	
+
+	private final PriorityBlockingQueue<Message<?>> queue;
+
 	private final AtomicLong sequenceCounter = new AtomicLong();
-	
-	private static final String SEQUENCE_HEADER_NAME = "__priorityChannelSequence__";
 
 
 	/**
@@ -50,8 +51,7 @@ public class PriorityChannel extends QueueChannel {
 	 * {@link MessageHeaders#getPriority()}.
 	 */
 	public PriorityChannel(int capacity, Comparator<Message<?>> comparator) {
-		super(new PriorityBlockingQueue<Message<?>>(11, new SequenceFallbackComparator(comparator)));
-		this.upperBound = new UpperBound(capacity);
+		this(new PriorityBlockingQueue<Message<?>>(11, new SequenceFallbackComparator(comparator)), capacity);
 	}
 
 	/**
@@ -80,57 +80,129 @@ public class PriorityChannel extends QueueChannel {
 		this(0, null);
 	}
 
+	private PriorityChannel(PriorityBlockingQueue<Message<?>> queue, int capacity) {
+		super(queue);
+		this.queue = queue;
+		this.upperBound = new UpperBound(capacity);
+	}
+
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	protected boolean doSend(Message<?> message, long timeout) {
 		if (!upperBound.tryAcquire(timeout)) {
 			return false;
 		}
-		Map innerMap = (Map) new DirectFieldAccessor(message.getHeaders()).getPropertyValue("headers");
-		innerMap.put(SEQUENCE_HEADER_NAME, sequenceCounter.incrementAndGet());
-		return super.doSend(message, 0);
+		// the sequence is kept outside of the (possibly shared) message headers
+		return super.doSend(new SequencedMessage(message, sequenceCounter.incrementAndGet()), 0);
 	}
 
-	@SuppressWarnings({ "rawtypes"})
 	@Override
 	protected Message<?> doReceive(long timeout) {
 		Message<?> message = super.doReceive(timeout);
-
 		if (message != null) {
-			Map innerMap = (Map) new DirectFieldAccessor(message.getHeaders()).getPropertyValue("headers");
-			innerMap.remove(SEQUENCE_HEADER_NAME);
 			upperBound.release();
+			return ((SequencedMessage) message).message;
+		}
+		return null;
+	}
+
+	@Override
+	protected void doReceive(List<Message<?>> messages, int maxMessages) {
+		List<Message<?>> sequencedMessages = new ArrayList<Message<?>>(maxMessages);
+		super.doReceive(sequencedMessages, maxMessages);
+		for (Message<?> sequencedMessage : sequencedMessages) {
+			upperBound.release();
+			messages.add(((SequencedMessage) sequencedMessage).message);
 		}
-		return message;
 	}
-	
+
+	@Override
+	public List<Message<?>> clear() {
+		return unwrap(super.clear());
+	}
+
+	@Override
+	public List<Message<?>> purge(MessageSelector selector) {
+		if (selector == null) {
+			return this.clear();
+		}
+		List<Message<?>> purgedMessages = new ArrayList<Message<?>>();
+		for (Object o : this.queue.toArray()) {
+			SequencedMessage sequencedMessage = (SequencedMessage) o;
+			if (!selector.accept(sequencedMessage.message) && this.queue.remove(sequencedMessage)) {
+				purgedMessages.add(sequencedMessage.message);
+			}
+		}
+		return purgedMessages;
+	}
+
+	private static List<Message<?>> unwrap(List<Message<?>> sequencedMessages) {
+		List<Message<?>> messages = new ArrayList<Message<?>>(sequencedMessages.size());
+		for (Message<?> sequencedMessage : sequencedMessages) {
+			messages.add(((SequencedMessage) sequencedMessage).message);
+		}
+		return messages;
+	}
+
+
+	/**
+	 * Holds a queued message along with its send sequence, used to preserve
+	 * FIFO ordering among messages of equal priority.
+	 */
+	private static class SequencedMessage implements Message<Object> {
+
+		private final Message<?> message;
+
+		private final long sequence;
+
+		SequencedMessage(Message<?> message, long sequence) {
+			this.message = message;
+			this.sequence = sequence;
+		}
+
+		public Object getPayload() {
+			return this.message.getPayload();
+		}
+
+		public MessageHeaders getHeaders() {
+			return this.message.getHeaders();
+		}
+
+		@Override
+		public String toString() {
+			return this.message.toString();
+		}
+	}
+
+
 	private static class SequenceFallbackComparator implements Comparator<Message<?>> {
-		
+
 		private final Comparator<Message<?>> targetComparator;
-		
-		public SequenceFallbackComparator(Comparator<Message<?>> targetComparator){
+
+		public SequenceFallbackComparator(Comparator<Message<?>> targetComparator) {
 			this.targetComparator = targetComparator;
 		}
 
-		public int compare(Message<?> message1, Message<?> message2) {
+		public int compare(Message<?> sequenced1, Message<?> sequenced2) {
+			Message<?> message1 = ((SequencedMessage) sequenced1).message;
+			Message<?> message2 = ((SequencedMessage) sequenced2).message;
 			int compareResult = 0;
-			if (this.targetComparator != null){
+			if (this.targetComparator != null) {
 				compareResult = this.targetComparator.compare(message1, message2);
 			}
 			else {
 				Integer priority1 = message1.getHeaders().getPriority();
 				Integer priority2 = message2.getHeaders().getPriority();
-				
+
 				priority1 = priority1 != null ? priority1 : 0;
 				priority2 = priority2 != null ? priority2 : 0;
 				compareResult = priority2.compareTo(priority1);
 			}
-		
-			if (compareResult == 0){
-				Long sequence1 = (Long) message1.getHeaders().get(SEQUENCE_HEADER_NAME);
-				Long sequence2 = (Long) message2.getHeaders().get(SEQUENCE_HEADER_NAME);
-				compareResult = sequence1.compareTo(sequence2);
+
+			if (compareResult == 0) {
+				long sequence1 = ((SequencedMessage) sequenced1).sequence;
+				long sequence2 = ((SequencedMessage) sequenced2).sequence;
+				compareResult = (sequence1 < sequence2) ? -1 : ((sequence1 == sequence2) ? 0 : 1);
 			}
 			return compareResult;
 		}
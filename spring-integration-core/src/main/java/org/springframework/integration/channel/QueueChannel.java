@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -101,6 +101,11 @@ public class QueueChannel extends AbstractPollableChannel {
 		}
 	}
 
+	@Override
+	protected void doReceive(List<Message<?>> messages, int maxMessages) {
+		this.queue.drainTo(messages, maxMessages);
+	}
+
 	/**
 	 * Remove all {@link Message Messages} from this channel.
 	 */
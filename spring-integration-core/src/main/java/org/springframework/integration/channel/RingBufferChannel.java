@@ -0,0 +1,115 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.integration.util.RingBufferBlockingQueue;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+
+/**
+ * A {@link QueueChannel} backed by a bounded, lock-free {@link RingBufferBlockingQueue}
+ * rather than a {@link java.util.concurrent.LinkedBlockingQueue}. It avoids the per-message
+ * allocation and the lock contention of the latter when many threads send to (or receive
+ * from) the channel concurrently.
+ * <p>
+ * Since the queue only supports removal from its head, {@link #purge(MessageSelector)}
+ * drains the channel and sends back the messages accepted by the selector; their relative
+ * order is preserved, but messages sent concurrently with the purge may be interleaved.
+ * If concurrent senders have filled the channel in the meantime, the purge blocks until
+ * the accepted messages can be sent back.
+ *
+ * @since 2.1
+ */
+public class RingBufferChannel extends QueueChannel {
+
+	private final RingBufferBlockingQueue<Message<?>> queue;
+
+
+	/**
+	 * Create a channel with the specified capacity, whose waiting senders and
+	 * receivers are parked.
+	 */
+	public RingBufferChannel(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	/**
+	 * Create a channel with the specified capacity, whose waiting senders and
+	 * receivers wait according to the given strategy.
+	 */
+	public RingBufferChannel(int capacity, WaitStrategy waitStrategy) {
+		this(new RingBufferBlockingQueue<Message<?>>(capacity, waitStrategy));
+	}
+
+	/**
+	 * Create a channel with the specified capacity, whose waiting senders and
+	 * receivers wait according to the strategy of the given (case insensitive)
+	 * name, e.g. "yield". Intended for configuration use.
+	 */
+	public RingBufferChannel(int capacity, String waitStrategy) {
+		this(capacity, WaitStrategy.valueOf(waitStrategy.trim().toUpperCase()));
+	}
+
+	private RingBufferChannel(RingBufferBlockingQueue<Message<?>> queue) {
+		super(queue);
+		this.queue = queue;
+	}
+
+
+	public WaitStrategy getWaitStrategy() {
+		return this.queue.getWaitStrategy();
+	}
+
+	@Override
+	public List<Message<?>> purge(MessageSelector selector) {
+		if (selector == null) {
+			return this.clear();
+		}
+		List<Message<?>> drainedMessages = this.clear();
+		List<Message<?>> purgedMessages = new ArrayList<Message<?>>();
+		List<Message<?>> lostMessages = null;
+		for (Message<?> message : drainedMessages) {
+			if (!selector.accept(message)) {
+				purgedMessages.add(message);
+			}
+			else if (lostMessages != null) {
+				lostMessages.add(message);
+			}
+			else if (!this.queue.offer(message)) {
+				// only possible if senders refilled the channel in the meantime
+				try {
+					this.queue.put(message);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					lostMessages = new ArrayList<Message<?>>();
+					lostMessages.add(message);
+				}
+			}
+		}
+		if (lostMessages != null) {
+			logger.error("Interrupted while purging channel '" + this.getComponentName() + "'; "
+					+ lostMessages.size() + " messages accepted by the selector were lost: " + lostMessages);
+		}
+		return purgedMessages;
+	}
+
+}
@@ -17,6 +17,7 @@ import org.springframework.beans.factory.config.RuntimeBeanReference;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
 import org.springframework.beans.factory.xml.ParserContext;
 import org.springframework.integration.aggregator.AbstractCorrelatingMessageHandler;
+import org.springframework.integration.config.ExpressionFactoryBean;
 import org.springframework.util.StringUtils;
 import org.w3c.dom.Element;
 
@@ -39,6 +40,8 @@ public abstract class AbstractCorrelatingMessageHandlerParser extends AbstractCo
 
 	private static final String MESSAGE_STORE_ATTRIBUTE = "message-store";
 
+	private static final String LOCK_REGISTRY_ATTRIBUTE = "lock-registry";
+
 	private static final String DISCARD_CHANNEL_ATTRIBUTE = "discard-channel";
 
 	private static final String SEND_TIMEOUT_ATTRIBUTE = "send-timeout";
@@ -47,15 +50,27 @@ public abstract class AbstractCorrelatingMessageHandlerParser extends AbstractCo
 
 	private static final String KEEP_RELEASED_MESSAGES = "keep-released-messages";
 
+	private static final String GROUP_TIMEOUT_ATTRIBUTE = "group-timeout";
+
+	private static final String GROUP_TIMEOUT_EXPRESSION_ATTRIBUTE = "group-timeout-expression";
+
 	protected void doParse(BeanDefinitionBuilder builder, Element element, BeanMetadataElement processor, ParserContext parserContext){
 		this.injectPropertyWithAdapter(CORRELATION_STRATEGY_REF_ATTRIBUTE, CORRELATION_STRATEGY_METHOD_ATTRIBUTE,
 				CORRELATION_STRATEGY_EXPRESSION_ATTRIBUTE, CORRELATION_STRATEGY_PROPERTY, "CorrelationStrategy",
 				element, builder, processor, parserContext);
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, MESSAGE_STORE_ATTRIBUTE);
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, LOCK_REGISTRY_ATTRIBUTE);
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, DISCARD_CHANNEL_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, SEND_TIMEOUT_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, SEND_PARTIAL_RESULT_ON_EXPIRY_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, KEEP_RELEASED_MESSAGES);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, GROUP_TIMEOUT_ATTRIBUTE);
+		String groupTimeoutExpression = element.getAttribute(GROUP_TIMEOUT_EXPRESSION_ATTRIBUTE);
+		if (StringUtils.hasText(groupTimeoutExpression)) {
+			BeanDefinitionBuilder expressionBuilder = BeanDefinitionBuilder.genericBeanDefinition(ExpressionFactoryBean.class);
+			expressionBuilder.addConstructorArgValue(groupTimeoutExpression);
+			builder.addPropertyValue("groupTimeoutExpression", expressionBuilder.getBeanDefinition());
+		}
 	}
 
 	protected void injectPropertyWithAdapter(String beanRefAttribute, String methodRefAttribute,
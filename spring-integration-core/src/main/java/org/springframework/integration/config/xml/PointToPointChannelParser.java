@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2009 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,9 @@
 
 package org.springframework.integration.config.xml;
 
+import java.util.Arrays;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -39,6 +42,8 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 
 	private static final String STORE_PACKAGE = IntegrationNamespaceUtils.BASE_PACKAGE + ".store";
 
+	private static final List<String> WAIT_STRATEGIES = Arrays.asList("park", "yield", "spin");
+
 	private final Log logger = LogFactory.getLog(this.getClass());
 
 	@Override
@@ -47,8 +52,35 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 		Element queueElement = null;
 
 		// configure a queue-based channel if any queue sub-element is defined
-		if ((queueElement = DomUtils.getChildElementByTagName(element, "queue")) != null) {
+		if ((queueElement = DomUtils.getChildElementByTagName(element, "queue")) != null
+				&& "ring-buffer".equals(queueElement.getAttribute("type"))) {
+			builder = BeanDefinitionBuilder.genericBeanDefinition(CHANNEL_PACKAGE + ".RingBufferChannel");
+			if (StringUtils.hasText(queueElement.getAttribute("ref"))
+					|| StringUtils.hasText(queueElement.getAttribute("message-store"))) {
+				parserContext.getReaderContext().error("The 'ref' and 'message-store' attributes are not allowed"
+						+ " for a queue of type 'ring-buffer'.", element);
+			}
+			if (!this.parseQueueCapacity(builder, queueElement)) {
+				parserContext.getReaderContext().error(
+						"The 'capacity' attribute is required for a queue of type 'ring-buffer'.", element);
+			}
+			String waitStrategy = queueElement.getAttribute("wait-strategy");
+			if (StringUtils.hasText(waitStrategy)) {
+				if (!isPlaceholder(waitStrategy) && !WAIT_STRATEGIES.contains(waitStrategy.toLowerCase())) {
+					parserContext.getReaderContext().error("The 'wait-strategy' attribute must be one of "
+							+ WAIT_STRATEGIES + ", but was '" + waitStrategy + "'.", element);
+				}
+				// resolved and converted by the channel, so that placeholders are supported
+				builder.getRawBeanDefinition().getConstructorArgumentValues()
+						.addIndexedArgumentValue(1, waitStrategy, String.class.getName());
+			}
+		}
+		else if (queueElement != null) {
 			builder = BeanDefinitionBuilder.genericBeanDefinition(CHANNEL_PACKAGE + ".QueueChannel");
+			if (StringUtils.hasText(queueElement.getAttribute("wait-strategy"))) {
+				parserContext.getReaderContext().error(
+						"The 'wait-strategy' attribute is only allowed for a queue of type 'ring-buffer'.", element);
+			}
 			boolean hasStoreRef = this.parseStoreRef(builder, queueElement, element.getAttribute(ID_ATTRIBUTE));
 			boolean hasQueueRef = this.parseQueueRef(builder, queueElement);
 			if (!hasStoreRef) {
@@ -141,6 +173,10 @@ public class PointToPointChannelParser extends AbstractChannelParser {
 		return builder;
 	}
 
+	private static boolean isPlaceholder(String value) {
+		return value.contains("${") || value.contains("#{");
+	}
+
 	private boolean parseQueueCapacity(BeanDefinitionBuilder builder, Element queueElement) {
 		String capacity = queueElement.getAttribute("capacity");
 		if (StringUtils.hasText(capacity)) {
@@ -90,6 +90,7 @@ public class PollerParser extends AbstractBeanDefinitionParser {
 		configureTrigger(element, metadataBuilder, parserContext);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(metadataBuilder, element, "max-messages-per-poll");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(metadataBuilder, element, "receive-timeout");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(metadataBuilder, element, "batch-size");
 
 		Element txElement = DomUtils.getChildElementByTagName(element, "transactional");
 		Element adviceChainElement = DomUtils.getChildElementByTagName(element, "advice-chain");
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.core;
+
+import java.util.List;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+
+/**
+ * A {@link MessageHandler} that can also handle a batch of Messages in one
+ * call, e.g. to write them with a single JDBC batch or to send them within a
+ * single transaction. A polling consumer configured with a batch size passes
+ * each poll's Messages to {@link #handleMessages(List)}; handlers that do not
+ * implement this interface receive the Messages one at a time through a
+ * {@link org.springframework.integration.handler.BatchMessageHandlerAdapter}.
+ *
+ * @since 2.1
+ */
+public interface BatchMessageHandler extends MessageHandler {
+
+	/**
+	 * Handles the given Messages, in order. Exceptions are as for
+	 * {@link #handleMessage(Message)}. Implementations that handle the Messages
+	 * one at a time should handle all of them even if some fail, and then throw a
+	 * {@link org.springframework.integration.handler.BatchMessageHandlingException}
+	 * listing the failures, since the caller has already received the whole batch.
+	 * An implementation that needs all-or-nothing semantics should run within a
+	 * transaction.
+	 *
+	 * @param messages the (non-empty) Messages to be handled
+	 */
+	void handleMessages(List<Message<?>> messages) throws MessagingException;
+
+}
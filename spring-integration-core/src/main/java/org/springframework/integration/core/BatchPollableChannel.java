@@ -0,0 +1,47 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.core;
+
+import java.util.List;
+
+import org.springframework.integration.Message;
+
+/**
+ * A {@link PollableChannel} that can hand out several Messages in a single
+ * receive call, so that polling consumers pay the per-receive overhead
+ * (interceptors' preReceive, advice chain, transaction) once per batch
+ * rather than once per Message.
+ *
+ * @since 2.1
+ */
+public interface BatchPollableChannel extends PollableChannel {
+
+	/**
+	 * Receive up to <code>maxMessages</code> Messages from this channel. The call
+	 * waits for the first Message as {@link #receive(long)} does, then adds the
+	 * Messages that are immediately available, without waiting any further.
+	 *
+	 * @param maxMessages the maximum number of Messages to return; must be positive
+	 * @param timeout the timeout in milliseconds for the first Message; a negative
+	 * value means to wait indefinitely
+	 *
+	 * @return the received Messages, in receive order; an empty list if no Message
+	 * is available within the allotted time or the receiving thread is interrupted
+	 */
+	List<Message<?>> receiveBatch(int maxMessages, long timeout);
+
+}
@@ -141,9 +141,9 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	@SuppressWarnings("unchecked")
 	private Runnable createPoller() throws Exception {
 		
-		Callable<Boolean> pollingTask = new Callable<Boolean>() {
-			public Boolean call() throws Exception {
-				return doPoll();
+		Callable<Integer> pollingTask = new Callable<Integer>() {
+			public Integer call() throws Exception {
+				return doPollMessages();
 			}
 		};
 		
@@ -155,7 +155,7 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 					proxyFactory.addAdvice(advice);
 				}
 			}
-			pollingTask = (Callable<Boolean>) proxyFactory.getProxy(this.beanClassLoader);
+			pollingTask = (Callable<Integer>) proxyFactory.getProxy(this.beanClassLoader);
 		}
 		return new Poller(pollingTask);
 	}
@@ -185,16 +185,28 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	
 	protected abstract boolean doPoll();
 
+	/**
+	 * Poll once and return the number of messages that were handled, 0 meaning
+	 * that no message was available. This is the unit of work wrapped by the
+	 * advice chain, and 'maxMessagesPerPoll' is compared to the sum of the values
+	 * returned within a poll. The default implementation delegates to
+	 * {@link #doPoll()}; subclasses that handle several messages at once
+	 * override it.
+	 */
+	protected int doPollMessages() {
+		return this.doPoll() ? 1 : 0;
+	}
+
 
 	/**
 	 * Default Poller implementation
 	 */
 	private class Poller implements Runnable {
 
-		private final Callable<Boolean> pollingTask;
+		private final Callable<Integer> pollingTask;
 
 
-		public Poller(Callable<Boolean> pollingTask) {
+		public Poller(Callable<Integer> pollingTask) {
 			this.pollingTask = pollingTask;
 		}
 
@@ -204,10 +216,11 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 					int count = 0;
 					while (initialized && (maxMessagesPerPoll <= 0 || count < maxMessagesPerPoll)) {
 						try {
-							if (!pollingTask.call()) {
+							int handled = pollingTask.call();
+							if (handled <= 0) {
 								break;
 							}
-							count++;
+							count += handled;
 						} 
 						catch (Exception e) {
 							if (e instanceof RuntimeException) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,17 +16,28 @@
 
 package org.springframework.integration.endpoint;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.integration.Message;
+import org.springframework.integration.core.BatchMessageHandler;
+import org.springframework.integration.core.BatchPollableChannel;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.handler.BatchMessageHandlerAdapter;
 import org.springframework.util.Assert;
 
 /**
  * Message Endpoint that connects any {@link MessageHandler} implementation
  * to a {@link PollableChannel}.
+ * <p>
+ * With a batch size greater than 1, each poll receives up to that many Messages
+ * at once (in a single call if the channel is a {@link BatchPollableChannel})
+ * and passes them to the handler together if it is a {@link BatchMessageHandler},
+ * so that the advice chain, e.g. a transaction, is applied once per batch.
  * 
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -39,13 +50,19 @@ public class PollingConsumer extends AbstractPollingEndpoint {
 
 	private final MessageHandler handler;
 
+	private final BatchMessageHandler batchHandler;
+
 	private volatile long receiveTimeout = 1000;
-	
+
+	private volatile int batchSize = 1;
+
 	public PollingConsumer(PollableChannel inputChannel, MessageHandler handler) {
 		Assert.notNull(inputChannel, "inputChannel must not be null");
 		Assert.notNull(handler, "handler must not be null");
 		this.inputChannel = inputChannel;
 		this.handler = handler;
+		this.batchHandler = (handler instanceof BatchMessageHandler)
+				? (BatchMessageHandler) handler : new BatchMessageHandlerAdapter(handler);
 	}
 
 
@@ -53,6 +70,47 @@ public class PollingConsumer extends AbstractPollingEndpoint {
 		this.receiveTimeout = receiveTimeout;
 	}
 
+	/**
+	 * Set the maximum number of Messages to receive and handle in each poll
+	 * (default 1). As 'maxMessagesPerPoll' is checked between batches, a poll
+	 * may handle up to <code>batchSize - 1</code> Messages more than that limit.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be a positive number");
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	protected int doPollMessages() {
+		if (this.batchSize == 1) {
+			return super.doPollMessages();
+		}
+		List<Message<?>> messages = this.receiveBatch();
+		if (this.logger.isDebugEnabled()){
+			this.logger.debug("Poll resulted in " + messages.size() + " Messages");
+		}
+		if (messages.isEmpty()) {
+			return 0;
+		}
+		this.batchHandler.handleMessages(messages);
+		return messages.size();
+	}
+
+	private List<Message<?>> receiveBatch() {
+		if (this.inputChannel instanceof BatchPollableChannel) {
+			return ((BatchPollableChannel) this.inputChannel).receiveBatch(this.batchSize, this.receiveTimeout);
+		}
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		Message<?> message = (this.receiveTimeout >= 0)
+				? this.inputChannel.receive(this.receiveTimeout)
+				: this.inputChannel.receive();
+		while (message != null) {
+			messages.add(message);
+			message = (messages.size() < this.batchSize) ? this.inputChannel.receive(0) : null;
+		}
+		return messages;
+	}
+
 	@Override
 	protected boolean doPoll() {
 		Message<?> message = (this.receiveTimeout >= 0)
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, thread-safe cache of parsed {@link Expression}s keyed by their
+ * expression String. Parsing is far more expensive than evaluating a parsed
+ * expression, so components that only have the expression String at hand when
+ * processing a message should obtain the {@link Expression} from here rather
+ * than from an {@link ExpressionParser}.
+ * <p>
+ * Parsed expressions keep evaluation state (such as the property accessor
+ * last used by a node), so a cache should not be shared by components that
+ * evaluate the same expression String against unrelated root objects or
+ * evaluation contexts; each component holds its own instance instead.
+ * <p>
+ * When the cache is full, an entry that has not been used since the last
+ * eviction (a "second chance", or clock, approximation of least recently used)
+ * is evicted to make room for a newly parsed expression. A lookup only marks
+ * the entry as used if it is not marked already, so that lookups of the same
+ * expression on many threads do not contend.
+ * <p>
+ * When {@link ExpressionCacheStatistics#isEnabled() statistics are enabled},
+ * hits and misses are counted per cache and are also added to the JVM-wide
+ * {@link ExpressionCacheStatistics}, so that an undersized cache (or a component
+ * building a distinct expression String per message) can be detected through
+ * JMX. They are disabled by default, keeping the counters off the lookup path.
+ *
+ * @since 2.1
+ */
+@ManagedResource
+public class ExpressionCache {
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private final ExpressionParser parser;
+
+	private final ConcurrentMap<String, CachedExpression> expressions = new ConcurrentHashMap<String, CachedExpression>();
+
+	private final int capacity;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+
+	/**
+	 * Create a cache holding up to {@link #DEFAULT_CAPACITY} expressions
+	 * parsed by a default {@link SpelExpressionParser}.
+	 */
+	public ExpressionCache() {
+		this(new SpelExpressionParser(), DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a cache holding up to the given number of expressions parsed by
+	 * the provided parser.
+	 */
+	public ExpressionCache(ExpressionParser parser, int capacity) {
+		Assert.notNull(parser, "parser must not be null");
+		Assert.isTrue(capacity > 0, "capacity must be positive");
+		this.parser = parser;
+		this.capacity = capacity;
+	}
+
+
+	/**
+	 * Return the parsed form of the given expression String, parsing it only
+	 * if it is not already cached.
+	 * @throws ParseException if the expression cannot be parsed
+	 */
+	public Expression getExpression(String expressionString) throws ParseException {
+		Assert.notNull(expressionString, "expressionString must not be null");
+		ExpressionCacheStatistics statistics = ExpressionCacheStatistics.getInstance();
+		CachedExpression cached = this.expressions.get(expressionString);
+		if (cached != null) {
+			if (!cached.used) {
+				cached.used = true;
+			}
+			if (statistics.isEnabled()) {
+				this.hitCount.incrementAndGet();
+				statistics.recordHit();
+			}
+			return cached.expression;
+		}
+		if (statistics.isEnabled()) {
+			this.missCount.incrementAndGet();
+			statistics.recordMiss();
+		}
+		cached = new CachedExpression(this.parser.parseExpression(expressionString));
+		if (this.expressions.size() >= this.capacity) {
+			this.evictOne();
+		}
+		CachedExpression existing = this.expressions.putIfAbsent(expressionString, cached);
+		return (existing != null) ? existing.expression : cached.expression;
+	}
+
+	/**
+	 * Evict the first entry not used since the previous sweep, clearing the
+	 * used mark of the entries passed over; if all are marked, the first one
+	 * is evicted on the second pass.
+	 */
+	private void evictOne() {
+		for (int pass = 0; pass < 2; pass++) {
+			Iterator<CachedExpression> iterator = this.expressions.values().iterator();
+			while (iterator.hasNext()) {
+				CachedExpression cached = iterator.next();
+				if (!cached.used) {
+					iterator.remove();
+					return;
+				}
+				cached.used = false;
+			}
+		}
+	}
+
+	@ManagedAttribute
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@ManagedAttribute
+	public int getSize() {
+		return this.expressions.size();
+	}
+
+	@ManagedAttribute
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	@ManagedAttribute
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Remove all cached expressions and reset the hit and miss counts.
+	 */
+	@ManagedOperation
+	public void clear() {
+		this.expressions.clear();
+		this.hitCount.set(0);
+		this.missCount.set(0);
+	}
+
+
+	private static class CachedExpression {
+
+		private final Expression expression;
+
+		private volatile boolean used;
+
+		CachedExpression(Expression expression) {
+			this.expression = expression;
+		}
+	}
+
+}
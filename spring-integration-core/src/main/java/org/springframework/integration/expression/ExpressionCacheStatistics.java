@@ -0,0 +1,95 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Hit and miss counts aggregated over all {@link ExpressionCache} instances
+ * in the JVM. The single instance is exposed by the
+ * <code>IntegrationMBeanExporter</code>, which enables it; until then,
+ * caches count nothing, so that the shared counters add no contention
+ * to expression lookups.
+ *
+ * @since 2.1
+ */
+@ManagedResource
+public final class ExpressionCacheStatistics {
+
+	private static final ExpressionCacheStatistics instance = new ExpressionCacheStatistics();
+
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private volatile boolean enabled;
+
+
+	private ExpressionCacheStatistics() {
+	}
+
+
+	public static ExpressionCacheStatistics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Whether {@link ExpressionCache}s count hits and misses. Default false.
+	 */
+	@ManagedAttribute
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	@ManagedAttribute
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	void recordHit() {
+		this.hitCount.incrementAndGet();
+	}
+
+	void recordMiss() {
+		this.missCount.incrementAndGet();
+	}
+
+	@ManagedAttribute
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * The number of lookups that required an expression to be parsed.
+	 */
+	@ManagedAttribute
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	@ManagedOperation
+	public void reset() {
+		this.hitCount.set(0);
+		this.missCount.set(0);
+	}
+
+}
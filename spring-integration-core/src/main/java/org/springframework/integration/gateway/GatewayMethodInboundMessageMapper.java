@@ -39,6 +39,7 @@ import org.springframework.integration.MessagingException;
 import org.springframework.integration.annotation.Header;
 import org.springframework.integration.annotation.Headers;
 import org.springframework.integration.annotation.Payload;
+import org.springframework.integration.expression.ExpressionCache;
 import org.springframework.integration.mapping.InboundMessageMapper;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.util.Assert;
@@ -81,7 +82,7 @@ class GatewayMethodInboundMessageMapper implements InboundMessageMapper<Object[]
 
 	private volatile Expression payloadExpression;
 
-	private final Map<String, Expression> parameterPayloadExpressions = new HashMap<String, Expression>();
+	private final ExpressionCache parameterPayloadExpressions = new ExpressionCache(PARSER, ExpressionCache.DEFAULT_CAPACITY);
 
 	private final StandardEvaluationContext staticEvaluationContext = new StandardEvaluationContext();
 
@@ -213,11 +214,7 @@ class GatewayMethodInboundMessageMapper implements InboundMessageMapper<Object[]
 	}
 
 	private Object evaluatePayloadExpression(String expressionString, Object argumentValue) {
-		Expression expression = this.parameterPayloadExpressions.get(expressionString);
-		if (expression == null) {
-			expression = PARSER.parseExpression(expressionString);
-			this.parameterPayloadExpressions.put(expressionString, expression);
-		}
+		Expression expression = this.parameterPayloadExpressions.getExpression(expressionString);
 		return expression.getValue(this.staticEvaluationContext, argumentValue);
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,9 @@
 
 package org.springframework.integration.handler;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
@@ -85,6 +88,60 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 		}
 	}
 
+	/**
+	 * Handles a batch of Messages, for subclasses that implement
+	 * {@link org.springframework.integration.core.BatchMessageHandler}. Each Message
+	 * is validated and tracked as by {@link #handleMessage(Message)} before the batch
+	 * is passed to {@link #handleMessagesInternal(List)}.
+	 */
+	public void handleMessages(List<Message<?>> messages) {
+		Assert.notEmpty(messages, "Messages must not be empty");
+		List<Message<?>> trackedMessages = new ArrayList<Message<?>>(messages.size());
+		for (Message<?> message : messages) {
+			Assert.notNull(message, "Message must not be null");
+			Assert.notNull(message.getPayload(), "Message payload must not be null");
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug(this + " received message: " + message);
+			}
+			trackedMessages.add(this.shouldTrack ? MessageHistory.write(message, this) : message);
+		}
+		try {
+			this.handleMessagesInternal(trackedMessages);
+		}
+		catch (Exception e) {
+			if (e instanceof MessagingException) {
+				throw (MessagingException) e;
+			}
+			throw new MessageHandlingException(trackedMessages.get(0), "error occurred in message handler [" + this
+					+ "] while handling a batch of " + trackedMessages.size() + " messages", e);
+		}
+	}
+
 	protected abstract void handleMessageInternal(Message<?> message) throws Exception;
 
+	/**
+	 * Handles the Messages of a batch one at a time. A Message that fails does not stop
+	 * the others from being handled; once all have been handled, the failures are thrown
+	 * in a {@link BatchMessageHandlingException}. Subclasses may override this method to
+	 * handle the batch as a whole.
+	 */
+	protected void handleMessagesInternal(List<Message<?>> messages) throws Exception {
+		List<MessagingException> failures = null;
+		for (Message<?> message : messages) {
+			try {
+				this.handleMessageInternal(message);
+			}
+			catch (MessagingException e) {
+				failures = BatchMessageHandlerAdapter.addFailure(failures, e);
+			}
+			catch (Exception e) {
+				failures = BatchMessageHandlerAdapter.addFailure(failures, new MessageHandlingException(message,
+						"error occurred in message handler [" + this + "]", e));
+			}
+		}
+		if (failures != null) {
+			throw new BatchMessageHandlingException(failures, messages.size());
+		}
+	}
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.core.BatchMessageHandler;
+import org.springframework.integration.core.MessageHandler;
+import org.springframework.util.Assert;
+
+/**
+ * Adapts a {@link MessageHandler} to the {@link BatchMessageHandler} contract
+ * by passing the Messages of a batch to the target one at a time. A Message
+ * that fails does not stop the others from being handled; once all have been
+ * handled, the failures are thrown in a {@link BatchMessageHandlingException}.
+ *
+ * @since 2.1
+ */
+public class BatchMessageHandlerAdapter implements BatchMessageHandler {
+
+	private final MessageHandler target;
+
+
+	public BatchMessageHandlerAdapter(MessageHandler target) {
+		Assert.notNull(target, "target must not be null");
+		this.target = target;
+	}
+
+
+	public void handleMessage(Message<?> message) throws MessagingException {
+		this.target.handleMessage(message);
+	}
+
+	public void handleMessages(List<Message<?>> messages) throws MessagingException {
+		List<MessagingException> failures = null;
+		for (Message<?> message : messages) {
+			try {
+				this.target.handleMessage(message);
+			}
+			catch (MessagingException e) {
+				failures = addFailure(failures, e);
+			}
+			catch (RuntimeException e) {
+				failures = addFailure(failures, new MessageHandlingException(message,
+						"error occurred in message handler [" + this.target + "]", e));
+			}
+		}
+		if (failures != null) {
+			throw new BatchMessageHandlingException(failures, messages.size());
+		}
+	}
+
+	static List<MessagingException> addFailure(List<MessagingException> failures, MessagingException failure) {
+		if (failures == null) {
+			failures = new ArrayList<MessagingException>();
+		}
+		failures.add(failure);
+		return failures;
+	}
+
+	@Override
+	public String toString() {
+		return this.target.toString();
+	}
+
+}
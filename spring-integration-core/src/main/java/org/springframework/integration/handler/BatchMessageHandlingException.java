@@ -0,0 +1,54 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.MessagingException;
+
+/**
+ * Exception thrown when one or more Messages of a batch could not be handled,
+ * after all the other Messages of the batch were handled. The failed Message
+ * and cause are those of the first failure; all the failures, in the order of
+ * the batch, are available from {@link #getFailures()}.
+ *
+ * @since 2.1
+ */
+@SuppressWarnings("serial")
+public class BatchMessageHandlingException extends MessageHandlingException {
+
+	private final List<MessagingException> failures;
+
+
+	public BatchMessageHandlingException(List<MessagingException> failures, int batchSize) {
+		super(failures.get(0).getFailedMessage(), failures.size() + " of the " + batchSize
+				+ " Messages of the batch could not be handled", failures.get(0));
+		this.failures = Collections.unmodifiableList(new ArrayList<MessagingException>(failures));
+	}
+
+
+	/**
+	 * Return the exception thrown for each Message that could not be handled.
+	 */
+	public List<MessagingException> getFailures() {
+		return this.failures;
+	}
+
+}
@@ -18,6 +18,8 @@ package org.springframework.integration.message;
 
 import java.util.Map;
 
+import org.springframework.integration.MessageHeaders;
+
 /**
  * A message implementation that accepts a {@link Throwable} payload.
  * Once created this object is immutable.
@@ -37,4 +39,8 @@ public class ErrorMessage extends GenericMessage<Throwable> {
 		super(payload, headers);
 	}
 
+	public ErrorMessage(Throwable payload, MessageHeaders parentHeaders, Map<String, Object> headerChanges) {
+		super(payload, parentHeaders, headerChanges);
+	}
+
 }
@@ -17,7 +17,6 @@
 package org.springframework.integration.message;
 
 import java.io.Serializable;
-import java.util.HashMap;
 import java.util.Map;
 
 import org.springframework.integration.Message;
@@ -59,16 +58,27 @@ public class GenericMessage<T> implements Message<T>, Serializable {
 	 */
 	public GenericMessage(T payload, Map<String, Object> headers) {
 		Assert.notNull(payload, "payload must not be null");
-		if (headers == null) {
-			headers = new HashMap<String, Object>();
-		}
-		else {
-			headers = new HashMap<String, Object>(headers);
-		}
+		// MessageHeaders copies the provided map
 		this.headers = new MessageHeaders(headers);
 		this.payload = payload;
 	}
 
+	/**
+	 * Create a new message with the given payload, deriving its headers from the
+	 * provided parent headers with the provided changes applied. The entries of
+	 * the parent headers are shared rather than copied.
+	 * 
+	 * @param payload the message payload
+	 * @param parentHeaders the headers to derive from
+	 * @param headerChanges the headers to add, replace or (with a null value) remove
+	 * @see MessageHeaders#MessageHeaders(MessageHeaders, Map)
+	 */
+	public GenericMessage(T payload, MessageHeaders parentHeaders, Map<String, Object> headerChanges) {
+		Assert.notNull(payload, "payload must not be null");
+		this.headers = new MessageHeaders(parentHeaders, headerChanges);
+		this.payload = payload;
+	}
+
 
 	public MessageHeaders getHeaders() {
 		return this.headers;
@@ -18,7 +18,9 @@ package org.springframework.integration.store;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -31,6 +33,13 @@ import org.springframework.util.Assert;
 
 /**
  * Base class for implementations of Key/Value style {@link MessageGroupStore} and {@link MessageStore}
+ * <p>
+ * Each message is stored under its own key and each group is represented by its {@link MessageGroupMetadata}, so
+ * adding a message to a group or removing one from it never reads the other messages of the group. Those are only
+ * read from the store when the messages of a group returned by {@link #getMessageGroup(Object)} are requested, e.g.
+ * when the group is released. By default the metadata is read, modified and written back as a whole; subclasses for
+ * stores with native list or set operations can override the <code>do*GroupMetadata</code> methods to update it in
+ * place.
  * 
  * @author Oleg Zhurakousky
  * @since 2.1
@@ -41,6 +50,9 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	protected static final String MESSAGE_GROUP_KEY_PREFIX = "MESSAGE_GROUP_";
 	
+	/**
+	 * Header that earlier versions added to the stored messages; it is removed when such a message is read.
+	 */
 	protected static final String CREATED_DATE = "CREATED_DATE";
 	
 	// MessageStore methods
@@ -76,81 +88,93 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	@ManagedAttribute
 	public long getMessageCount() {
 		Collection<?> messageIds = this.doListKeys(MESSAGE_KEY_PREFIX + "*");
-		return (messageIds != null) ? messageIds.size() : 0;
+		if (messageIds == null) {
+			return 0;
+		}
+		// the group keys share the message key prefix
+		long count = 0;
+		for (Object messageId : messageIds) {
+			if (!messageId.toString().startsWith(MESSAGE_GROUP_KEY_PREFIX)) {
+				count++;
+			}
+		}
+		return count;
 	}
 
 
 	// MessageGroupStore methods
 
 	/**
-	 * Will create a new instance of SimpleMessageGroup if necessary.
+	 * Will create a new instance of SimpleMessageGroup if necessary. The messages of an existing group are read
+	 * from the store the first time they are requested.
 	 */
 	public MessageGroup getMessageGroup(Object groupId) {
-		return this.buildMessageGroup(groupId, false);
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
+			return new MetadataMessageGroup(messageGroupMetadata);
+		}
+		return new SimpleMessageGroup(groupId);
 	}
-	
 
 	/**
 	 * Add a Message to the group with the provided group ID. 
 	 */
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
-		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(message, "'message' must not be null");
-		
-		// add message as is to the MG accessible by the caller
-		SimpleMessageGroup messageGroup = this.getSimpleMessageGroup(this.getMessageGroup(groupId));	
-		
-		messageGroup.add(message);	
-		
-		// enrich Message with additional headers and add it to MS
-		Message<?> enrichedMessage = this.enrichMessage(message);
-		
-		this.addMessage(enrichedMessage);
-
-		// build raw MessageGroup and add enriched Message to it
-		SimpleMessageGroup rawGroup = this.buildMessageGroup(groupId, true);
-		
-		rawGroup.add(enrichedMessage);
-		
-		// store MessageGroupMetadata built from enriched MG
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(rawGroup));		
-		
-		// return clean MG
-		return messageGroup;
+		return this.addMessagesToGroup(groupId, Collections.singletonList(message));
+	}
+
+	@Override
+	public MessageGroup addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(messages, "'messages' must not be null");
+		for (Message<?> message : messages) {
+			Assert.notNull(message, "'message' must not be null");
+			this.doStore(MESSAGE_KEY_PREFIX + message.getHeaders().getId(), message);
+		}
+		this.doAddToGroupMetadata(groupId, messages);
+		return this.getMessageGroup(groupId);
 	}
 
 	/**
 	 * Remove a Message from the group with the provided group ID. 
 	 */
 	public MessageGroup removeMessageFromGroup(Object groupId, Message<?> messageToRemove) {
-		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messageToRemove, "'messageToRemove' must not be null");
-			
-		// build raw MG
-		SimpleMessageGroup rawGroup = this.buildMessageGroup(groupId, true);
-		
-		// create a clean instance of 
-		SimpleMessageGroup messageGroup = this.normalizeSimpleMessageGroup(rawGroup);
-		
-		for (Message<?> message : rawGroup.getMessages()) {
-			if (message.getHeaders().getId().equals(messageToRemove.getHeaders().getId())){
-				rawGroup.remove(message);
-			}
+		return this.removeMessagesFromGroup(groupId, Collections.singletonList(messageToRemove));
+	}
+
+	@Override
+	public MessageGroup removeMessagesFromGroup(Object groupId, Collection<? extends Message<?>> messagesToRemove) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		Assert.notNull(messagesToRemove, "'messagesToRemove' must not be null");
+		List<UUID> messageIds = new ArrayList<UUID>(messagesToRemove.size());
+		for (Message<?> message : messagesToRemove) {
+			Assert.notNull(message, "'messageToRemove' must not be null");
+			messageIds.add(message.getHeaders().getId());
 		}
-		this.removeMessage(messageToRemove.getHeaders().getId());
+		this.doRemoveFromGroupMetadata(groupId, messageIds);
+		for (UUID messageId : messageIds) {
+			this.doRemove(MESSAGE_KEY_PREFIX + messageId);
+		}
+		return this.getMessageGroup(groupId);
+	}
 
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(rawGroup));
-		messageGroup = this.getSimpleMessageGroup(this.getMessageGroup(groupId));
-		
-		return messageGroup;
+	@Override
+	public int messageGroupSize(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		return this.doGetMessageGroupSize(groupId);
 	}
-	
 
 	public void completeGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		SimpleMessageGroup messageGroup = this.buildMessageGroup(groupId, true);
-		messageGroup.complete();
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(messageGroup));
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata == null) {
+			messageGroupMetadata = new MessageGroupMetadata(groupId);
+		}
+		messageGroupMetadata.complete();
+		this.doStoreGroupMetadata(groupId, messageGroupMetadata);
 	}
 
 	/**
@@ -158,39 +182,31 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	 */
 	public void removeMessageGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		Object mgm = this.doRemove(MESSAGE_GROUP_KEY_PREFIX + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-		
+		MessageGroupMetadata messageGroupMetadata = this.doRemoveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
 			Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
 			while (messageIds.hasNext()){
-				this.removeMessage(messageIds.next());
+				this.doRemove(MESSAGE_KEY_PREFIX + messageIds.next());
 			}
 		}
 	}
 
 	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		SimpleMessageGroup messageGroup = this.buildMessageGroup(groupId, true);
-		messageGroup.setLastReleasedMessageSequenceNumber(sequenceNumber);
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(messageGroup));
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata == null) {
+			messageGroupMetadata = new MessageGroupMetadata(groupId);
+		}
+		messageGroupMetadata.setLastReleasedMessageSequenceNumber(sequenceNumber);
+		this.doStoreGroupMetadata(groupId, messageGroupMetadata);
 	}
 	
 	public Message<?> pollMessageFromGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-			
-			UUID firstId = messageGroupMetadata.firstId();
-			if (firstId != null){
-				Message<?> message = this.removeMessage(firstId);
-				
-				messageGroupMetadata.remove(message.getHeaders().getId());
-				this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, messageGroupMetadata);
-				
+		UUID messageId = null;
+		while ((messageId = this.doPollFromGroupMetadata(groupId)) != null) {
+			Message<?> message = this.removeMessage(messageId);
+			if (message != null) {
 				return message;
 			}
 		}
@@ -209,74 +225,114 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	protected abstract Object doRemove(Object id);  
 
 	protected abstract Collection<?> doListKeys(String keyPattern);
-	
-	@SuppressWarnings({ "rawtypes", "unchecked" })
-	private Message<?> normalizeMessage(Message<?> message){
-		Message<?> normalizedMessage = MessageBuilder.fromMessage(message).removeHeader("CREATED_DATE").build();
-		Map innerMap = (Map) new DirectFieldAccessor(normalizedMessage.getHeaders()).getPropertyValue("headers");
-		innerMap.put(MessageHeaders.ID, message.getHeaders().getId());
-		innerMap.put(MessageHeaders.TIMESTAMP, message.getHeaders().getTimestamp());
-		return normalizedMessage;
-	}
-	
+
 	/**
-	 * Will enrich Message with additional meta headers
-	 * @param message
-	 * @return
+	 * Read the objects stored under the given keys. The default implementation calls {@link #doRetrieve(Object)}
+	 * for each key; stores able to read several keys in one round trip should override it.
+	 * @return the objects in the order of the keys, with null for a key that has no value
 	 */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
-	private Message<?> enrichMessage(Message<?> message){
-    	Message<?> enrichedMessage = MessageBuilder.fromMessage(message).setHeader(CREATED_DATE, System.currentTimeMillis()).build();
-		Map innerMap = (Map) new DirectFieldAccessor(enrichedMessage.getHeaders()).getPropertyValue("headers");
-		innerMap.put(MessageHeaders.ID, message.getHeaders().getId());
-		innerMap.put(MessageHeaders.TIMESTAMP, message.getHeaders().getTimestamp());
-		return enrichedMessage;
+	protected List<?> doRetrieveAll(List<?> ids) {
+		List<Object> objects = new ArrayList<Object>(ids.size());
+		for (Object id : ids) {
+			objects.add(this.doRetrieve(id));
+		}
+		return objects;
 	}
-	
-	private SimpleMessageGroup buildMessageGroup(Object groupId, boolean raw){
-		Assert.notNull(groupId, "'groupId' must not be null");
+
+	/**
+	 * Read the metadata of a group.
+	 * @return the metadata, or null if there is no such group
+	 */
+	protected MessageGroupMetadata doRetrieveGroupMetadata(Object groupId) {
 		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
 		if (mgm != null) {
 			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-			ArrayList<Message<?>> messages = new ArrayList<Message<?>>();
-			
-			Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
-			while (messageIds.hasNext()){
-				if (raw){
-					messages.add(this.getRawMessage(messageIds.next()));
-				}
-				else {
-					messages.add(this.getMessage(messageIds.next()));
-				}
-			}
-			
-			SimpleMessageGroup messageGroup = new SimpleMessageGroup(messages, 
-						groupId, messageGroupMetadata.getTimestamp(), messageGroupMetadata.isComplete());
-			messageGroup.setLastReleasedMessageSequenceNumber(messageGroupMetadata.getLastReleasedMessageSequenceNumber());
-			return messageGroup;
 		}
-		else {
-			return new SimpleMessageGroup(groupId);
+		return (MessageGroupMetadata) mgm;
+	}
+
+	/**
+	 * Write the complete metadata of a group, replacing any existing metadata.
+	 */
+	protected void doStoreGroupMetadata(Object groupId, MessageGroupMetadata messageGroupMetadata) {
+		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, messageGroupMetadata);
+	}
+
+	/**
+	 * Remove the metadata of a group.
+	 * @return the metadata that was removed, or null if there was no such group
+	 */
+	protected MessageGroupMetadata doRemoveGroupMetadata(Object groupId) {
+		Object mgm = this.doRemove(MESSAGE_GROUP_KEY_PREFIX + groupId);
+		if (mgm != null) {
+			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
+		}
+		return (MessageGroupMetadata) mgm;
+	}
+
+	/**
+	 * Append the ids and sequence numbers of the messages, which have already been stored, to the metadata of a
+	 * group, creating the group if necessary.
+	 */
+	protected void doAddToGroupMetadata(Object groupId, Collection<? extends Message<?>> messages) {
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata == null) {
+			messageGroupMetadata = new MessageGroupMetadata(groupId);
+		}
+		for (Message<?> message : messages) {
+			messageGroupMetadata.add(message);
 		}
+		this.doStoreGroupMetadata(groupId, messageGroupMetadata);
 	}
 
-	private SimpleMessageGroup getSimpleMessageGroup(MessageGroup messageGroup){
-		if (messageGroup instanceof SimpleMessageGroup){
-			return (SimpleMessageGroup) messageGroup;
+	/**
+	 * Remove the message ids from the metadata of a group; the messages themselves are removed by the caller.
+	 */
+	protected void doRemoveFromGroupMetadata(Object groupId, Collection<UUID> messageIds) {
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
+			for (UUID messageId : messageIds) {
+				messageGroupMetadata.remove(messageId);
+			}
+			this.doStoreGroupMetadata(groupId, messageGroupMetadata);
 		}
-		else {
-			return new SimpleMessageGroup(messageGroup);
+	}
+
+	/**
+	 * Remove the id of the oldest message from the metadata of a group.
+	 * @return the id, or null if the group is empty or does not exist
+	 */
+	protected UUID doPollFromGroupMetadata(Object groupId) {
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
+			UUID firstId = messageGroupMetadata.firstId();
+			if (firstId != null) {
+				messageGroupMetadata.remove(firstId);
+				this.doStoreGroupMetadata(groupId, messageGroupMetadata);
+			}
+			return firstId;
 		}
+		return null;
+	}
+
+	/**
+	 * @return the number of messages in a group, or 0 if there is no such group
+	 */
+	protected int doGetMessageGroupSize(Object groupId) {
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		return (messageGroupMetadata != null) ? messageGroupMetadata.size() : 0;
 	}
 	
-	private SimpleMessageGroup normalizeSimpleMessageGroup(SimpleMessageGroup messageGroup){
-		SimpleMessageGroup normalizedGroup = new SimpleMessageGroup(messageGroup.getGroupId());
-		for (Message<?> message : messageGroup.getMessages()) {
-			Message<?> normailizedMessage = this.normalizeMessage(message);
-			normalizedGroup.add(normailizedMessage);
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Message<?> normalizeMessage(Message<?> message){
+		if (!message.getHeaders().containsKey(CREATED_DATE)) {
+			return message;
 		}
-		return normalizedGroup;
+		Message<?> normalizedMessage = MessageBuilder.fromMessage(message).removeHeader(CREATED_DATE).build();
+		Map innerMap = (Map) new DirectFieldAccessor(normalizedMessage.getHeaders()).getPropertyValue("headers");
+		innerMap.put(MessageHeaders.ID, message.getHeaders().getId());
+		innerMap.put(MessageHeaders.TIMESTAMP, message.getHeaders().getTimestamp());
+		return normalizedMessage;
 	}
 	
 	private Message<?> getRawMessage(UUID id) {
@@ -285,6 +341,122 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		return (Message<?>) message;
 	}
 
+
+	/**
+	 * A {@link MessageGroup} backed by the {@link MessageGroupMetadata} of a stored group. Its size and state come
+	 * from the metadata; its messages are read from the store the first time they are needed.
+	 */
+	private class MetadataMessageGroup implements MessageGroup {
+
+		private final MessageGroupMetadata metadata;
+
+		private volatile boolean complete;
+
+		private volatile Message<?> one;
+
+		private volatile Collection<Message<?>> messages;
+
+		private MetadataMessageGroup(MessageGroupMetadata metadata) {
+			this.metadata = metadata;
+			this.complete = metadata.isComplete();
+		}
+
+		public boolean canAdd(Message<?> message) {
+			return !this.isMember(message);
+		}
+
+		public Collection<Message<?>> getMessages() {
+			if (this.messages == null) {
+				List<String> messageKeys = new ArrayList<String>(this.metadata.size());
+				for (UUID messageId : this.metadata.getMessageIds()) {
+					messageKeys.add(MESSAGE_KEY_PREFIX + messageId);
+				}
+				List<Message<?>> messages = new ArrayList<Message<?>>(messageKeys.size());
+				for (Object message : doRetrieveAll(messageKeys)) {
+					if (message != null) {
+						Assert.isInstanceOf(Message.class, message);
+						messages.add(normalizeMessage((Message<?>) message));
+					}
+				}
+				this.messages = Collections.unmodifiableList(messages);
+			}
+			return this.messages;
+		}
+
+		public Object getGroupId() {
+			return this.metadata.getGroupId();
+		}
+
+		public int getLastReleasedMessageSequenceNumber() {
+			return this.metadata.getLastReleasedMessageSequenceNumber();
+		}
+
+		public boolean isComplete() {
+			return this.complete;
+		}
+
+		public void complete() {
+			this.complete = true;
+		}
+
+		public int getSequenceSize() {
+			Message<?> one = this.getOne();
+			if (one == null) {
+				return 0;
+			}
+			return one.getHeaders().getSequenceSize();
+		}
+
+		public int size() {
+			return this.metadata.size();
+		}
+
+		public Message<?> getOne() {
+			if (this.messages != null) {
+				return this.messages.isEmpty() ? null : this.messages.iterator().next();
+			}
+			if (this.one == null) {
+				UUID firstId = this.metadata.firstId();
+				if (firstId != null) {
+					this.one = getMessage(firstId);
+				}
+			}
+			return this.one;
+		}
+
+		public long getTimestamp() {
+			return this.metadata.getTimestamp();
+		}
+
+		/**
+		 * Same rules as {@link SimpleMessageGroup}, but checking the sequence numbers in the metadata rather than
+		 * those of the messages.
+		 */
+		private boolean isMember(Message<?> message) {
+			if (this.size() == 0) {
+				return false;
+			}
+			Integer messageSequenceNumber = message.getHeaders().getSequenceNumber();
+			if (messageSequenceNumber != null && messageSequenceNumber > 0) {
+				Integer messageSequenceSize = message.getHeaders().getSequenceSize();
+				if (!messageSequenceSize.equals(this.getSequenceSize())) {
+					return true;
+				}
+				else {
+					return this.metadata.containsSequenceNumber(messageSequenceNumber);
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return "MessageGroup{groupId=" + this.getGroupId() + ", size=" + this.size() + ", complete="
+					+ this.complete + ", lastReleasedMessageSequenceNumber="
+					+ this.getLastReleasedMessageSequenceNumber() + "}";
+		}
+	}
+
 	private class MessageGroupIterator implements Iterator<MessageGroup> {
 
 		private final Iterator<?> idIterator;
@@ -299,6 +471,9 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 		public MessageGroup next() {
 			Object messageGroupId = idIterator.next();
+			if (messageGroupId instanceof String && ((String) messageGroupId).startsWith(MESSAGE_GROUP_KEY_PREFIX)) {
+				messageGroupId = ((String) messageGroupId).substring(MESSAGE_GROUP_KEY_PREFIX.length());
+			}
 			return getMessageGroup(messageGroupId);
 		}
 
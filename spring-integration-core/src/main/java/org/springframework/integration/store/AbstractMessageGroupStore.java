@@ -13,11 +13,14 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashSet;
+import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.integration.Message;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 
 /**
@@ -59,13 +62,78 @@ public abstract class AbstractMessageGroupStore implements MessageGroupStore, It
 	public int expireMessageGroups(long timeout) {
 		int count = 0;
 		long threshold = System.currentTimeMillis() - timeout;
+		for (MessageGroup group : this.findGroupsOlderThan(threshold)) {
+			count++;
+			expire(group);
+		}
+		return count;
+	}
+
+	/**
+	 * Return the groups whose timestamp is less than or equal to the threshold. The default implementation iterates
+	 * over all the groups of the store; subclasses able to look groups up by timestamp should override this method so
+	 * that expiring groups only touches the expired ones.
+	 */
+	protected Collection<MessageGroup> findGroupsOlderThan(long threshold) {
+		List<MessageGroup> groups = new ArrayList<MessageGroup>();
 		for (MessageGroup group : this) {
 			if (group.getTimestamp() <= threshold) {
-				count++;
-				expire(group);
+				groups.add(group);
 			}
 		}
-		return count;
+		return groups;
+	}
+
+	/**
+	 * Add the messages one by one through {@link #addMessageToGroup(Object, Message)}. Subclasses able to store
+	 * several messages at once should override this method.
+	 * @since 2.1
+	 */
+	public MessageGroup addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+		MessageGroup group = null;
+		for (Message<?> message : messages) {
+			group = this.addMessageToGroup(groupId, message);
+		}
+		return (group != null) ? group : this.getMessageGroup(groupId);
+	}
+
+	/**
+	 * Remove the messages one by one through {@link #removeMessageFromGroup(Object, Message)}. Subclasses able to
+	 * remove several messages at once should override this method.
+	 * @since 2.1
+	 */
+	public MessageGroup removeMessagesFromGroup(Object key, Collection<? extends Message<?>> messagesToRemove) {
+		MessageGroup group = null;
+		for (Message<?> message : messagesToRemove) {
+			group = this.removeMessageFromGroup(key, message);
+		}
+		return (group != null) ? group : this.getMessageGroup(key);
+	}
+
+	/**
+	 * Return the size of the group returned by {@link #getMessageGroup(Object)}. Subclasses able to count the messages
+	 * of a group without loading them should override this method.
+	 * @since 2.1
+	 */
+	public int messageGroupSize(Object groupId) {
+		return this.getMessageGroup(groupId).size();
+	}
+
+	/**
+	 * Poll the messages one by one through {@link #pollMessageFromGroup(Object)}. Subclasses able to poll several
+	 * messages at once should override this method.
+	 * @since 2.1
+	 */
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		while (messages.size() < maxMessages) {
+			Message<?> message = this.pollMessageFromGroup(groupId);
+			if (message == null) {
+				break;
+			}
+			messages.add(message);
+		}
+		return messages;
 	}
 
 	@ManagedAttribute
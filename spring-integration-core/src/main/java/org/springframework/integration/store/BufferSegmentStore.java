@@ -0,0 +1,250 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.integration.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * Stores byte arrays outside of the heap, appending them to fixed size segments that are either direct buffers or,
+ * when a directory is provided, memory-mapped temporary files. A segment is released once all the records written
+ * to it have been removed, and its file, if any, is deleted then or, at the latest, by {@link #clear()}. Not thread
+ * safe; callers must synchronize.
+ *
+ * @since 2.1
+ */
+class BufferSegmentStore {
+
+	private final int segmentSize;
+
+	private final File directory;
+
+	private final Map<Object, Record> records = new HashMap<Object, Record>();
+
+	private final List<Segment> segments = new ArrayList<Segment>();
+
+	private Segment current;
+
+	private Segment spare;
+
+	/**
+	 * The files of released segments that could not be deleted yet, e.g. because they were still mapped.
+	 */
+	private final List<File> undeletedFiles = new ArrayList<File>();
+
+	private long size;
+
+	/**
+	 * @param segmentSize the size of a segment in bytes; larger records get a segment of their own
+	 * @param directory the directory of the memory-mapped segment files, or null to use direct buffers
+	 */
+	BufferSegmentStore(int segmentSize, File directory) {
+		Assert.isTrue(segmentSize > 0, "'segmentSize' must be greater than 0");
+		Assert.isTrue(directory == null || directory.isDirectory(), "'directory' must be an existing directory");
+		this.segmentSize = segmentSize;
+		this.directory = directory;
+	}
+
+	void put(Object key, byte[] bytes) {
+		this.remove(key);
+		Segment segment = this.current;
+		if (segment == null || segment.buffer.remaining() < bytes.length) {
+			segment = this.allocate(bytes.length);
+			if (bytes.length <= this.segmentSize) {
+				this.current = segment;
+			}
+		}
+		int offset = segment.buffer.position();
+		segment.buffer.put(bytes);
+		segment.liveRecords++;
+		this.records.put(key, new Record(segment, offset, bytes.length));
+		this.size += bytes.length;
+	}
+
+	byte[] get(Object key) {
+		Record record = this.records.get(key);
+		return (record != null) ? record.read() : null;
+	}
+
+	byte[] remove(Object key) {
+		Record record = this.records.remove(key);
+		if (record == null) {
+			return null;
+		}
+		byte[] bytes = record.read();
+		this.size -= record.length;
+		if (--record.segment.liveRecords == 0) {
+			this.release(record.segment);
+		}
+		return bytes;
+	}
+
+	boolean containsKey(Object key) {
+		return this.records.containsKey(key);
+	}
+
+	Set<Object> keys() {
+		return new HashSet<Object>(this.records.keySet());
+	}
+
+	int getCount() {
+		return this.records.size();
+	}
+
+	/**
+	 * Return the number of bytes of the records currently held.
+	 */
+	long getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Return the number of segments currently allocated.
+	 */
+	int getSegmentCount() {
+		return this.segments.size() + (this.spare != null ? 1 : 0);
+	}
+
+	void clear() {
+		this.records.clear();
+		for (Segment segment : this.segments) {
+			this.close(segment);
+		}
+		this.segments.clear();
+		if (this.spare != null) {
+			this.close(this.spare);
+			this.spare = null;
+		}
+		this.current = null;
+		this.size = 0;
+	}
+
+	private Segment allocate(int length) {
+		Segment segment = null;
+		if (length <= this.segmentSize && this.spare != null) {
+			segment = this.spare;
+			this.spare = null;
+			segment.buffer.clear();
+		}
+		else {
+			segment = this.createSegment(Math.max(length, this.segmentSize));
+		}
+		this.segments.add(segment);
+		return segment;
+	}
+
+	private void release(Segment segment) {
+		this.segments.remove(segment);
+		if (segment == this.current) {
+			this.current = null;
+		}
+		// keep one segment of the regular size around to absorb a burst that is spilled and reloaded repeatedly
+		if (this.spare == null && segment.buffer.capacity() == this.segmentSize) {
+			this.spare = segment;
+		}
+		else {
+			this.close(segment);
+		}
+	}
+
+	/**
+	 * Delete the file of the segment, and retry the files that could not be deleted before.
+	 */
+	private void close(Segment segment) {
+		if (segment.file != null) {
+			this.undeletedFiles.add(segment.file);
+		}
+		for (Iterator<File> files = this.undeletedFiles.iterator(); files.hasNext();) {
+			File file = files.next();
+			// may fail while the buffer is still mapped on some platforms
+			if (file.delete() || !file.exists()) {
+				files.remove();
+			}
+		}
+	}
+
+	private Segment createSegment(int capacity) {
+		if (this.directory == null) {
+			return new Segment(ByteBuffer.allocateDirect(capacity), null);
+		}
+		try {
+			File file = File.createTempFile("overflow-", ".segment", this.directory);
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+			try {
+				ByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+				return new Segment(buffer, file);
+			}
+			finally {
+				// the mapping remains valid after the channel is closed
+				randomAccessFile.close();
+			}
+		}
+		catch (IOException e) {
+			throw new MessagingException("Failed to map an overflow segment in [" + this.directory + "]", e);
+		}
+	}
+
+
+	private static class Segment {
+
+		private final ByteBuffer buffer;
+
+		private final File file;
+
+		private int liveRecords;
+
+		private Segment(ByteBuffer buffer, File file) {
+			this.buffer = buffer;
+			this.file = file;
+		}
+	}
+
+
+	private static class Record {
+
+		private final Segment segment;
+
+		private final int offset;
+
+		private final int length;
+
+		private Record(Segment segment, int offset, int length) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		private byte[] read() {
+			byte[] bytes = new byte[this.length];
+			ByteBuffer view = this.segment.buffer.duplicate();
+			view.position(this.offset);
+			view.get(bytes);
+			return bytes;
+		}
+	}
+
+}
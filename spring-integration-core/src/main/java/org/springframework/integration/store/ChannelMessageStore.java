@@ -0,0 +1,26 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.integration.store;
+
+/**
+ * Marker interface for a {@link MessageGroupStore} that is only meant to back a {@link MessageGroupQueue}: the state of
+ * its groups is limited to their messages, so {@link #completeGroup(Object)} and
+ * {@link #setLastReleasedSequenceNumberForGroup(Object, int)} are not supported and the store cannot be used by an
+ * aggregator or a resequencer.
+ *
+ * @since 2.1
+ *
+ */
+public interface ChannelMessageStore extends MessageGroupStore {
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * In-memory {@link MessageStore} and {@link MessageGroupStore} that keeps the approximate size of the messages it
+ * holds on the heap within a budget. When the budget is exceeded, the least recently used messages are serialized
+ * to an overflow area outside of the heap - direct buffers, or memory-mapped files if a directory is provided - and
+ * they are transparently read back, and moved back to the heap, when they are accessed again. A burst of messages
+ * therefore degrades into serialization costs rather than causing long garbage collections or capacity failures.
+ * <p/>
+ * The metadata of the groups always stays on the heap. Messages that cannot be serialized without loss, e.g.
+ * because of a non-serializable header such as a reply channel, stay on the heap as well, so the budget may be
+ * exceeded by such messages. The size of a message is estimated by {@link #estimateSize(Message)}.
+ *
+ * @since 2.1
+ */
+@ManagedResource
+public class MemoryBoundedMessageStore extends AbstractKeyValueMessageStore implements DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(MemoryBoundedMessageStore.class);
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+	private final long heapBudget;
+
+	// the values that may overflow, access ordered so that the eldest entry is the least recently used one;
+	// guarded by lock
+	private final LinkedHashMap<Object, Object> heap = new LinkedHashMap<Object, Object>(16, 0.75f, true);
+
+	// the values that never overflow (group metadata and messages that cannot be serialized), kept apart so that
+	// evictions do not scan them again; guarded by lock
+	private final Map<Object, Object> pinned = new HashMap<Object, Object>();
+
+	private final Map<Object, Long> heapSizes = new HashMap<Object, Long>();
+
+	private volatile BufferSegmentStore overflow;
+
+	private volatile Serializer<Object> serializer = new DefaultSerializer();
+
+	private volatile Deserializer<Object> deserializer = new DefaultDeserializer();
+
+	private volatile int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	private volatile File directory;
+
+	private long heapSize;
+
+	private final Object lock = new Object();
+
+	/**
+	 * Create a store that keeps up to approximately the given number of bytes of messages on the heap.
+	 */
+	public MemoryBoundedMessageStore(long heapBudget) {
+		Assert.isTrue(heapBudget >= 0, "'heapBudget' must not be negative");
+		this.heapBudget = heapBudget;
+	}
+
+	public void setSerializer(Serializer<Object> serializer) {
+		Assert.notNull(serializer, "'serializer' must not be null");
+		this.serializer = serializer;
+	}
+
+	public void setDeserializer(Deserializer<Object> deserializer) {
+		Assert.notNull(deserializer, "'deserializer' must not be null");
+		this.deserializer = deserializer;
+	}
+
+	/**
+	 * Set the size of the overflow segments in bytes (default 1MB). A message larger than a segment is written to a
+	 * segment of its own.
+	 */
+	public void setSegmentSize(int segmentSize) {
+		Assert.state(this.overflow == null, "'segmentSize' cannot be changed once messages have overflowed");
+		Assert.isTrue(segmentSize > 0, "'segmentSize' must be greater than 0");
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Set the directory in which the overflow segments are created as memory-mapped files. By default they are
+	 * direct buffers, which count against the maximum direct memory of the JVM. The files are deleted when their
+	 * segment is released and when the store is destroyed.
+	 */
+	public void setDirectory(File directory) {
+		Assert.state(this.overflow == null, "'directory' cannot be changed once messages have overflowed");
+		this.directory = directory;
+	}
+
+	/**
+	 * Return the estimated number of bytes of the messages held on the heap.
+	 */
+	@ManagedAttribute
+	public long getHeapSize() {
+		synchronized (this.lock) {
+			return this.heapSize;
+		}
+	}
+
+	/**
+	 * Return the number of bytes of the serialized messages held in the overflow area.
+	 */
+	@ManagedAttribute
+	public long getOverflowSize() {
+		synchronized (this.lock) {
+			return (this.overflow != null) ? this.overflow.getSize() : 0;
+		}
+	}
+
+	@ManagedAttribute
+	public int getOverflowMessageCount() {
+		synchronized (this.lock) {
+			return (this.overflow != null) ? this.overflow.getCount() : 0;
+		}
+	}
+
+	public void destroy() {
+		synchronized (this.lock) {
+			if (this.overflow != null) {
+				this.overflow.clear();
+			}
+		}
+	}
+
+	@Override
+	protected Object doRetrieve(Object id) {
+		synchronized (this.lock) {
+			Object value = this.heap.get(id);
+			if (value == null) {
+				value = this.pinned.get(id);
+			}
+			if (value == null && this.overflow != null && this.overflow.containsKey(id)) {
+				value = this.deserialize(id, this.overflow.remove(id));
+				this.putOnHeap(id, value);
+				this.evictIfNecessary(id);
+			}
+			return value;
+		}
+	}
+
+	@Override
+	protected void doStore(Object id, Object objectToStore) {
+		synchronized (this.lock) {
+			if (this.overflow != null) {
+				this.overflow.remove(id);
+			}
+			this.removeFromHeap(id);
+			this.putOnHeap(id, objectToStore);
+			this.evictIfNecessary(id);
+		}
+	}
+
+	@Override
+	protected Object doRemove(Object id) {
+		synchronized (this.lock) {
+			if (this.heap.containsKey(id) || this.pinned.containsKey(id)) {
+				return this.removeFromHeap(id);
+			}
+			if (this.overflow != null && this.overflow.containsKey(id)) {
+				return this.deserialize(id, this.overflow.remove(id));
+			}
+			return null;
+		}
+	}
+
+	@Override
+	protected Collection<?> doListKeys(String keyPattern) {
+		List<Object> keys = new ArrayList<Object>();
+		synchronized (this.lock) {
+			Set<Object> candidates = new HashSet<Object>(this.heap.keySet());
+			candidates.addAll(this.pinned.keySet());
+			if (this.overflow != null) {
+				candidates.addAll(this.overflow.keys());
+			}
+			for (Object key : candidates) {
+				if (PatternMatchUtils.simpleMatch(keyPattern, key.toString())) {
+					keys.add(key);
+				}
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Estimate the number of bytes a message occupies on the heap. The default implementation counts the length
+	 * of byte array and String payloads, a fixed size for other payloads, and a fixed size per header; subclasses
+	 * can provide a better estimate for the payloads they handle.
+	 */
+	protected long estimateSize(Message<?> message) {
+		Object payload = message.getPayload();
+		long size = 64 + 64 * message.getHeaders().size();
+		if (payload instanceof byte[]) {
+			size += ((byte[]) payload).length;
+		}
+		else if (payload instanceof String) {
+			size += 2 * ((String) payload).length();
+		}
+		else {
+			size += 256;
+		}
+		return size;
+	}
+
+	private void putOnHeap(Object id, Object value) {
+		if (value instanceof Message<?>) {
+			this.heap.put(id, value);
+			long size = this.estimateSize((Message<?>) value);
+			this.heapSizes.put(id, size);
+			this.heapSize += size;
+		}
+		else {
+			this.pinned.put(id, value);
+		}
+	}
+
+	private Object removeFromHeap(Object id) {
+		Object value = this.heap.remove(id);
+		if (value == null) {
+			value = this.pinned.remove(id);
+		}
+		Long size = this.heapSizes.remove(id);
+		if (size != null) {
+			this.heapSize -= size;
+		}
+		return value;
+	}
+
+	/**
+	 * Move the least recently used messages, other than the one with the given key, to the overflow area until
+	 * the messages on the heap fit in the budget again.
+	 */
+	private void evictIfNecessary(Object keep) {
+		if (this.heapSize <= this.heapBudget) {
+			return;
+		}
+		Iterator<Map.Entry<Object, Object>> entries = this.heap.entrySet().iterator();
+		while (this.heapSize > this.heapBudget && entries.hasNext()) {
+			Map.Entry<Object, Object> entry = entries.next();
+			Object key = entry.getKey();
+			if (key.equals(keep)) {
+				continue;
+			}
+			Object value = entry.getValue();
+			byte[] bytes = this.serialize(key, value);
+			entries.remove();
+			if (bytes == null) {
+				// still counted in the heap size
+				this.pinned.put(key, value);
+				continue;
+			}
+			this.getOverflow().put(key, bytes);
+			this.heapSize -= this.heapSizes.remove(key);
+		}
+	}
+
+	private BufferSegmentStore getOverflow() {
+		if (this.overflow == null) {
+			this.overflow = new BufferSegmentStore(this.segmentSize, this.directory);
+		}
+		return this.overflow;
+	}
+
+	private byte[] serialize(Object key, Object value) {
+		for (Object header : ((Message<?>) value).getHeaders().values()) {
+			if (!(header instanceof Serializable)) {
+				// it would be silently dropped by the serialization of the headers
+				return null;
+			}
+		}
+		try {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			this.serializer.serialize(value, stream);
+			return stream.toByteArray();
+		}
+		catch (Exception e) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Keeping [" + key + "] on the heap, it cannot be serialized: " + e.getMessage());
+			}
+			return null;
+		}
+	}
+
+	private Object deserialize(Object key, byte[] bytes) {
+		try {
+			return this.deserializer.deserialize(new ByteArrayInputStream(bytes));
+		}
+		catch (Exception e) {
+			throw new MessagingException("Failed to deserialize [" + key + "] from the overflow area", e);
+		}
+	}
+
+}
@@ -16,17 +16,27 @@
 
 package org.springframework.integration.store;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.springframework.integration.Message;
 import org.springframework.util.Assert;
 
 /**
- * Immutable Value Object holding metadata about a MessageGroup.
+ * Value Object holding metadata about a MessageGroup: the ids of its messages in the order they were added, their
+ * sequence numbers and the state of the group. A key/value store keeps this metadata instead of the group itself so
+ * that the group can be updated without reading its messages.
+ * <p/>
+ * Metadata serialized by earlier versions, which kept the message ids keyed by their creation date, can still be
+ * read; the sequence numbers of those messages were not recorded, so they are read as 0.
  * 
  * @author Oleg Zhurakousky
  * @since 2.1
@@ -34,66 +44,127 @@ import org.springframework.util.Assert;
 public class MessageGroupMetadata implements Serializable{
 
 	private static final long serialVersionUID = 1L;
-	
-	private final static String CREATED_DATE = "CREATED_DATE";
 
-	private final Object groupId;
+	/**
+	 * The field holding the message ids in the serialized form of earlier versions.
+	 */
+	private static final String LEGACY_MAPPINGS_FIELD = "messageCreationDateToIdMappings";
 
-	private final TreeMap<Long, UUID> messageCreationDateToIdMappings;
+	private Object groupId;
 
-	private final boolean complete;
+	private LinkedHashMap<UUID, Integer> messageIdToSequenceNumberMappings;
 
-	private final long timestamp;
+	private volatile boolean complete;
 
-	private final int lastReleasedMessageSequenceNumber;
+	private long timestamp;
+
+	private volatile int lastReleasedMessageSequenceNumber;
+
+	/**
+	 * The sequence numbers (greater than 0) of the messages, so that {@link #containsSequenceNumber(int)}
+	 * does not scan the mappings. Rebuilt when deserialized.
+	 */
+	private transient BitSet sequenceNumbers = new BitSet();
+
+	/**
+	 * How many messages share their sequence number with another message.
+	 */
+	private transient int duplicateSequenceNumberCount;
+
+	public MessageGroupMetadata(Object groupId) {
+		this(groupId, System.currentTimeMillis());
+	}
+
+	public MessageGroupMetadata(Object groupId, long timestamp) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.groupId = groupId;
+		this.messageIdToSequenceNumberMappings = new LinkedHashMap<UUID, Integer>();
+		this.timestamp = timestamp;
+	}
 
 	public MessageGroupMetadata(MessageGroup messageGroup) {
-		
 		Assert.notNull(messageGroup, "'messageGroup' must not be null");
 		this.groupId = messageGroup.getGroupId();
-		this.messageCreationDateToIdMappings = new TreeMap<Long, UUID>();
-
+		this.messageIdToSequenceNumberMappings = new LinkedHashMap<UUID, Integer>();
 		for (Message<?> message : messageGroup.getMessages()) {
-			Long createdDate = (Long) message.getHeaders().get(CREATED_DATE);
-			Assert.notNull(createdDate > 0,  CREATED_DATE  + " must not be null");
-			this.messageCreationDateToIdMappings.put(createdDate, message.getHeaders().getId());
+			this.add(message);
 		}
 		this.complete = messageGroup.isComplete();
 		this.timestamp = messageGroup.getTimestamp();
 		this.lastReleasedMessageSequenceNumber = messageGroup.getLastReleasedMessageSequenceNumber();
 	}
 
-	public void remove(UUID messageId){
-		long currentTimestamp = 0;
-		for (Entry<Long, UUID> entry : messageCreationDateToIdMappings.entrySet()) {
-			if (entry.getValue().equals(messageId)){
-				currentTimestamp = entry.getKey();
-				break;
-			}
+	public synchronized void add(Message<?> message) {
+		Assert.notNull(message, "'message' must not be null");
+		Integer sequenceNumber = message.getHeaders().getSequenceNumber();
+		this.add(message.getHeaders().getId(), (sequenceNumber != null) ? sequenceNumber : 0);
+	}
+
+	public synchronized void add(UUID messageId, int sequenceNumber) {
+		Assert.notNull(messageId, "'messageId' must not be null");
+		Integer previous = this.messageIdToSequenceNumberMappings.put(messageId, sequenceNumber);
+		if (previous != null) {
+			this.unindex(previous);
+		}
+		this.index(sequenceNumber);
+	}
+
+	public synchronized void remove(UUID messageId){
+		Integer sequenceNumber = this.messageIdToSequenceNumberMappings.remove(messageId);
+		if (sequenceNumber != null) {
+			this.unindex(sequenceNumber);
 		}
-		this.messageCreationDateToIdMappings.remove(currentTimestamp);
 	}
 
 	public Object getGroupId() {
 		return this.groupId;
 	}
-	
+
+	/**
+	 * @return a snapshot of the message ids, in the order the messages were added
+	 */
+	public synchronized List<UUID> getMessageIds() {
+		return new ArrayList<UUID>(this.messageIdToSequenceNumberMappings.keySet());
+	}
+
 	public Iterator<UUID> messageIdIterator(){
-		return this.messageCreationDateToIdMappings.values().iterator();
+		return this.getMessageIds().iterator();
+	}
+
+	public synchronized UUID firstId(){
+		if (this.messageIdToSequenceNumberMappings.isEmpty()) {
+			return null;
+		}
+		return this.messageIdToSequenceNumberMappings.keySet().iterator().next();
+	}
+
+	/**
+	 * @return the sequence number of the message, or 0 if it has none or is not in the group
+	 */
+	public synchronized int getSequenceNumber(UUID messageId) {
+		Integer sequenceNumber = this.messageIdToSequenceNumberMappings.get(messageId);
+		return (sequenceNumber != null) ? sequenceNumber : 0;
 	}
-	
-	public UUID firstId(){
-		Entry<Long, UUID> firstEntry = messageCreationDateToIdMappings.firstEntry();
-		if (firstEntry != null){
-			return firstEntry.getValue();
+
+	public synchronized boolean containsSequenceNumber(int sequenceNumber) {
+		if (sequenceNumber <= 0) {
+			return this.messageIdToSequenceNumberMappings.containsValue(sequenceNumber);
 		}
-		return null;
+		return this.sequenceNumbers.get(sequenceNumber);
+	}
+
+	public synchronized int size() {
+		return this.messageIdToSequenceNumberMappings.size();
 	}
 
 	public boolean isComplete() {
 		return this.complete;
 	}
 
+	public void complete() {
+		this.complete = true;
+	}
+
 	public long getTimestamp() {
 		return this.timestamp;
 	}
@@ -102,4 +173,61 @@ public class MessageGroupMetadata implements Serializable{
 		return this.lastReleasedMessageSequenceNumber;
 	}
 
+	public void setLastReleasedMessageSequenceNumber(int lastReleasedMessageSequenceNumber) {
+		this.lastReleasedMessageSequenceNumber = lastReleasedMessageSequenceNumber;
+	}
+
+	private void index(int sequenceNumber) {
+		if (sequenceNumber <= 0) {
+			return;
+		}
+		if (this.sequenceNumbers.get(sequenceNumber)) {
+			this.duplicateSequenceNumberCount++;
+		}
+		else {
+			this.sequenceNumbers.set(sequenceNumber);
+		}
+	}
+
+	private void unindex(int sequenceNumber) {
+		if (sequenceNumber <= 0) {
+			return;
+		}
+		if (this.duplicateSequenceNumberCount > 0
+				&& this.messageIdToSequenceNumberMappings.containsValue(sequenceNumber)) {
+			// another message still carries this sequence number
+			this.duplicateSequenceNumberCount--;
+		}
+		else {
+			this.sequenceNumbers.clear(sequenceNumber);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		this.groupId = fields.get("groupId", null);
+		this.complete = fields.get("complete", false);
+		this.timestamp = fields.get("timestamp", 0L);
+		this.lastReleasedMessageSequenceNumber = fields.get("lastReleasedMessageSequenceNumber", 0);
+		this.messageIdToSequenceNumberMappings = (LinkedHashMap<UUID, Integer>) fields.get(
+				"messageIdToSequenceNumberMappings", null);
+		if (this.messageIdToSequenceNumberMappings == null) {
+			this.messageIdToSequenceNumberMappings = new LinkedHashMap<UUID, Integer>();
+			if (fields.getObjectStreamClass().getField(LEGACY_MAPPINGS_FIELD) != null) {
+				// ids keyed by creation date, iterated in that order
+				Map<Long, UUID> legacyMappings = (Map<Long, UUID>) fields.get(LEGACY_MAPPINGS_FIELD, null);
+				if (legacyMappings != null) {
+					for (UUID messageId : legacyMappings.values()) {
+						this.messageIdToSequenceNumberMappings.put(messageId, 0);
+					}
+				}
+			}
+		}
+		this.sequenceNumbers = new BitSet();
+		for (Integer sequenceNumber : this.messageIdToSequenceNumberMappings.values()) {
+			this.index(sequenceNumber);
+		}
+	}
+
 }
@@ -19,6 +19,7 @@ import java.util.AbstractQueue;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
@@ -75,12 +76,12 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 	}
 
 	public int size() {
-		return this.messageGroupStore.getMessageGroup(groupId).size();
+		return this.messageGroupSize();
 	}
 
 	public boolean offer(Message<?> e) {
 		synchronized (storeLock) {
-			if (capacity>0 && messageGroupStore.getMessageGroup(groupId).size() >= capacity) {
+			if (capacity>0 && this.messageGroupSize() >= capacity) {
 				return false;
 			}
 			messageGroupStore.addMessageToGroup(groupId, e);
@@ -111,25 +112,13 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 	}
 
 	public int drainTo(Collection<? super Message<?>> c) {
-		synchronized (storeLock) {
-			for (Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId); message != null;) {
-				c.add(message);	
-			}
-		}
-		synchronized (writeLock) {
-			writeLock.notifyAll();
-		}
-		return this.messageGroupStore.getMessageGroup(groupId).size();
+		return this.drainTo(c, Integer.MAX_VALUE);
 	}
 
 	public int drainTo(Collection<? super Message<?>> c, int maxElements) {
-		ArrayList<Message<?>> list = new ArrayList<Message<?>>();
+		List<Message<?>> list = null;
 		synchronized (storeLock) {
-			Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
-			for (int i = 0; i < maxElements && message != null; i++) {
-				list.add(message);	
-				message = this.messageGroupStore.pollMessageFromGroup(groupId);
-			}
+			list = this.pollMessages(maxElements);
 		}
 		synchronized (writeLock) {
 			writeLock.notifyAll();
@@ -174,7 +163,7 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 	}
 
 	public int remainingCapacity() {
-		return (capacity>0 ? capacity : Integer.MAX_VALUE) - messageGroupStore.getMessageGroup(groupId).size();
+		return (capacity>0 ? capacity : Integer.MAX_VALUE) - this.messageGroupSize();
 	}
 
 	public Message<?> take() throws InterruptedException {
@@ -188,6 +177,28 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		return message;
 	}
 
+	private int messageGroupSize() {
+		if (this.messageGroupStore instanceof AbstractMessageGroupStore) {
+			return ((AbstractMessageGroupStore) this.messageGroupStore).messageGroupSize(groupId);
+		}
+		return this.messageGroupStore.getMessageGroup(groupId).size();
+	}
+
+	private List<Message<?>> pollMessages(int maxMessages) {
+		if (this.messageGroupStore instanceof AbstractMessageGroupStore) {
+			return ((AbstractMessageGroupStore) this.messageGroupStore).pollMessagesFromGroup(groupId, maxMessages);
+		}
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		while (messages.size() < maxMessages) {
+			Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
+			if (message == null) {
+				break;
+			}
+			messages.add(message);
+		}
+		return messages;
+	}
+
 	private Collection<Message<?>> getMessages(){
 		return messageGroupStore.getMessageGroup(groupId).getMessages();
 	}
@@ -13,6 +13,7 @@
 
 package org.springframework.integration.store;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.concurrent.BlockingQueue;
@@ -23,6 +24,10 @@ import org.springframework.integration.Message;
 /**
  * Represents a mutable group of correlated messages that is bound to a certain {@link MessageStore} and group id. The
  * group will grow during its lifetime, when messages are <code>add</code>ed to it. This MessageGroup is thread safe.
+ * <p/>
+ * The sequence numbers of the messages are indexed as they are added, so that checking whether a message with a given
+ * sequence number is already a member (see {@link #canAdd(Message)}) takes constant time regardless of the size of
+ * the group.
  * 
  * @author Iwein Fuld
  * @author Oleg Zhurakousky
@@ -33,6 +38,14 @@ public class SimpleMessageGroup implements MessageGroup {
 
 	private final Object groupId;
 	
+	/**
+	 * The member messages.
+	 * @deprecated as of 2.1, use {@link #getMessages()}, {@link #add(Message)} and
+	 * {@link #remove(Message)} instead: messages added to or removed from this queue
+	 * directly are not reflected in the index of sequence numbers that
+	 * {@link #canAdd(Message)} and {@link #containsSequenceNumber(int)} rely on.
+	 */
+	@Deprecated
 	public final BlockingQueue<Message<?>> messages = new LinkedBlockingQueue<Message<?>>();
 	
 	private volatile int lastReleasedMessageSequence;
@@ -41,6 +54,22 @@ public class SimpleMessageGroup implements MessageGroup {
 	
 	private volatile boolean complete;
 
+	/**
+	 * The sequence numbers (greater than 0) of the member messages. Guarded by itself, as are
+	 * the counters below and the additions to and removals from the messages.
+	 */
+	private final BitSet sequenceNumbers = new BitSet();
+
+	/**
+	 * How many member messages share their sequence number with another member.
+	 */
+	private int duplicateSequenceNumberCount;
+
+	/**
+	 * How many member messages have no sequence number (or a sequence number of 0).
+	 */
+	private int unsequencedMessageCount;
+
 	public SimpleMessageGroup(Object groupId) {
 		this(Collections.<Message<?>> emptyList(), groupId, System.currentTimeMillis(), false);
 	}
@@ -75,7 +104,24 @@ public class SimpleMessageGroup implements MessageGroup {
 	}
 
 	public void remove(Message<?> message) {
-		messages.remove(message);
+		synchronized (this.sequenceNumbers) {
+			if (this.messages.remove(message)) {
+				this.unindex(message);
+			}
+		}
+	}
+
+	/**
+	 * Remove and return the oldest message of the group, or null if the group is empty.
+	 */
+	public Message<?> poll() {
+		synchronized (this.sequenceNumbers) {
+			Message<?> message = this.messages.poll();
+			if (message != null) {
+				this.unindex(message);
+			}
+			return message;
+		}
 	}
 	
 	public int getLastReleasedMessageSequenceNumber() {
@@ -83,7 +129,13 @@ public class SimpleMessageGroup implements MessageGroup {
 	}
 
 	private boolean addMessage(Message<?> message) {
-		return this.messages.offer(message);
+		synchronized (this.sequenceNumbers) {
+			if (this.messages.offer(message)) {
+				this.index(message);
+				return true;
+			}
+			return false;
+		}
 	}
 
 	public Collection<Message<?>> getMessages() {
@@ -123,7 +175,72 @@ public class SimpleMessageGroup implements MessageGroup {
 	}
 	
 	public void clear(){
-		this.messages.clear();
+		synchronized (this.sequenceNumbers) {
+			this.messages.clear();
+			this.sequenceNumbers.clear();
+			this.duplicateSequenceNumberCount = 0;
+			this.unsequencedMessageCount = 0;
+		}
+	}
+
+	/**
+	 * Whether a message with the given sequence number is a member of this group.
+	 */
+	public boolean containsSequenceNumber(int sequenceNumber) {
+		if (sequenceNumber <= 0) {
+			return false;
+		}
+		synchronized (this.sequenceNumbers) {
+			return this.sequenceNumbers.get(sequenceNumber);
+		}
+	}
+
+	/**
+	 * Return the lowest sequence number of the messages in this group, or 0 if the group
+	 * contains no message with a sequence number greater than 0.
+	 */
+	public int getLowestSequenceNumber() {
+		synchronized (this.sequenceNumbers) {
+			int lowest = this.sequenceNumbers.nextSetBit(1);
+			return (lowest > 0) ? lowest : 0;
+		}
+	}
+
+	/**
+	 * Return the number of messages in this group without a sequence number (or with a
+	 * sequence number of 0).
+	 */
+	public int getUnsequencedMessageCount() {
+		synchronized (this.sequenceNumbers) {
+			return this.unsequencedMessageCount;
+		}
+	}
+
+	private void index(Message<?> message) {
+		int sequenceNumber = message.getHeaders().getSequenceNumber();
+		if (sequenceNumber <= 0) {
+			this.unsequencedMessageCount++;
+		}
+		else if (this.sequenceNumbers.get(sequenceNumber)) {
+			this.duplicateSequenceNumberCount++;
+		}
+		else {
+			this.sequenceNumbers.set(sequenceNumber);
+		}
+	}
+
+	private void unindex(Message<?> message) {
+		int sequenceNumber = message.getHeaders().getSequenceNumber();
+		if (sequenceNumber <= 0) {
+			this.unsequencedMessageCount--;
+		}
+		else if (this.duplicateSequenceNumberCount > 0 && this.isSequenceNumberOfAnyMember(sequenceNumber)) {
+			// another member still carries this sequence number (only possible with add() bypassing canAdd())
+			this.duplicateSequenceNumberCount--;
+		}
+		else {
+			this.sequenceNumbers.clear(sequenceNumber);
+		}
 	}
 
 	/**
@@ -142,16 +259,15 @@ public class SimpleMessageGroup implements MessageGroup {
 				return true;
 			}
 			else {
-				return this.containsSequenceNumber(messages, messageSequenceNumber);
+				return this.containsSequenceNumber(messageSequenceNumber);
 			}
 		}
 		return false;
 	}
 
-	private boolean containsSequenceNumber(Collection<Message<?>> messages, Integer messageSequenceNumber) {
-		for (Message<?> member : messages) {
-			Integer memberSequenceNumber = member.getHeaders().getSequenceNumber();
-			if (messageSequenceNumber.equals(memberSequenceNumber)) {
+	private boolean isSequenceNumberOfAnyMember(int sequenceNumber) {
+		for (Message<?> member : this.messages) {
+			if (member.getHeaders().getSequenceNumber() == sequenceNumber) {
 				return true;
 			}
 		}
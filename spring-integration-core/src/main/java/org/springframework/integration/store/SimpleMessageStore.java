@@ -13,9 +13,14 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -26,11 +31,16 @@ import org.springframework.integration.util.UpperBound;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.util.Assert;
-import org.springframework.util.CollectionUtils;
 
 /**
  * Map-based in-memory implementation of {@link MessageStore} and {@link MessageGroupStore}. Enforces a maximum capacity for the
  * store.
+ * <p/>
+ * The groups returned by this store are the live, thread safe groups it holds rather than copies, so they reflect
+ * the messages added to or removed from the group after they have been obtained.
+ * <p/>
+ * The group ids are also indexed by the timestamp of their group, so that expiring groups only visits the expired
+ * ones.
  * 
  * @author Iwein Fuld
  * @author Mark Fisher
@@ -45,6 +55,9 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 	private final ConcurrentMap<UUID, Message<?>> idToMessage;
 
 	private final ConcurrentMap<Object, SimpleMessageGroup> groupIdToMessageGroup;
+
+	// guarded by lock
+	private final SortedMap<Long, Set<Object>> timestampToGroupIds = new TreeMap<Long, Set<Object>>();
 	
 	private final UpperBound individualUpperBound;
 
@@ -113,7 +126,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 		if (group == null) {
 			return new SimpleMessageGroup(groupId);
 		}
-		return new SimpleMessageGroup(group);
+		return group;
 	}
 
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
@@ -131,8 +144,15 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 			if (!groupIdToMessageGroup.containsKey(groupId)) {
 				return;
 			}
-			groupUpperBound.release(groupIdToMessageGroup.get(groupId).size());
-			groupIdToMessageGroup.remove(groupId);
+			SimpleMessageGroup group = groupIdToMessageGroup.remove(groupId);
+			groupUpperBound.release(group.size());
+			Set<Object> groupIds = timestampToGroupIds.get(group.getTimestamp());
+			if (groupIds != null) {
+				groupIds.remove(groupId);
+				if (groupIds.isEmpty()) {
+					timestampToGroupIds.remove(group.getTimestamp());
+				}
+			}
 		}
 	}
 
@@ -157,22 +177,52 @@ public class SimpleMessageStore extends AbstractMessageGroupStore implements Mes
 	}
 
 	public Message<?> pollMessageFromGroup(Object groupId) {
-		Collection<Message<?>> messageList = this.getMessageGroup(groupId).getMessages();
-		Message<?> message = null;
-		if (!CollectionUtils.isEmpty(messageList)){
-			message = messageList.iterator().next();
-			if (message != null){
-				this.removeMessageFromGroup(groupId, message);
+		SimpleMessageGroup group = groupIdToMessageGroup.get(groupId);
+		if (group == null) {
+			return null;
+		}
+		return group.poll();
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		SimpleMessageGroup group = groupIdToMessageGroup.get(groupId);
+		return (group != null) ? group.size() : 0;
+	}
+	
+	@Override
+	protected Collection<MessageGroup> findGroupsOlderThan(long threshold) {
+		List<MessageGroup> groups = new ArrayList<MessageGroup>();
+		synchronized (lock) {
+			SortedMap<Long, Set<Object>> expired = (threshold < Long.MAX_VALUE) ? timestampToGroupIds
+					.headMap(threshold + 1) : timestampToGroupIds;
+			for (Set<Object> groupIds : expired.values()) {
+				for (Object groupId : groupIds) {
+					groups.add(groupIdToMessageGroup.get(groupId));
+				}
 			}
-		}	
-		return message;
+		}
+		return groups;
 	}
 	
 	private SimpleMessageGroup getMessageGroupInternal(Object groupId) {
-		if (!groupIdToMessageGroup.containsKey(groupId)) {
-			groupIdToMessageGroup.putIfAbsent(groupId, new SimpleMessageGroup(groupId));
+		SimpleMessageGroup group = groupIdToMessageGroup.get(groupId);
+		if (group == null) {
+			synchronized (lock) {
+				group = groupIdToMessageGroup.get(groupId);
+				if (group == null) {
+					group = new SimpleMessageGroup(groupId);
+					groupIdToMessageGroup.put(groupId, group);
+					Set<Object> groupIds = timestampToGroupIds.get(group.getTimestamp());
+					if (groupIds == null) {
+						groupIds = new HashSet<Object>();
+						timestampToGroupIds.put(group.getTimestamp(), groupIds);
+					}
+					groupIds.add(groupId);
+				}
+			}
 		}
-		return groupIdToMessageGroup.get(groupId);
+		return group;
 	}
 
 }
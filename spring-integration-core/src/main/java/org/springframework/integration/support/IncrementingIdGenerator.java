@@ -0,0 +1,70 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.integration.MessageHeaders.IdGenerator;
+
+/**
+ * An {@link IdGenerator} that avoids the {@link SecureRandom} access (and its
+ * synchronization) performed by {@link UUID#randomUUID()} for every message.
+ * <p>
+ * The most significant 64 bits of each generated UUID are chosen randomly, once,
+ * when the generator is created; the least significant 64 bits are taken from an
+ * atomically incremented counter. Generated IDs are therefore unique within the
+ * lifetime of a generator instance and, with very high probability, across
+ * instances and JVMs. Generation is lock-free and does not allocate beyond the
+ * returned UUID.
+ * <p>
+ * Note that, unlike {@link UUID#randomUUID()}, the generated IDs are predictable
+ * and must not be used where unguessable identifiers are required.
+ * <p>
+ * To use it, define it as a bean in the application context:
+ * <pre>
+ * &lt;bean class="org.springframework.integration.support.IncrementingIdGenerator"/&gt;
+ * </pre>
+ *
+ * @since 2.1
+ */
+public class IncrementingIdGenerator implements IdGenerator {
+
+	private final long mostSignificantBits;
+
+	private final AtomicLong counter = new AtomicLong();
+
+
+	public IncrementingIdGenerator() {
+		this(new SecureRandom().nextLong());
+	}
+
+	/**
+	 * Create a generator using the provided value for the most significant
+	 * 64 bits of all generated IDs.
+	 */
+	public IncrementingIdGenerator(long mostSignificantBits) {
+		this.mostSignificantBits = mostSignificantBits;
+	}
+
+
+	public UUID generateId() {
+		return new UUID(this.mostSignificantBits, this.counter.incrementAndGet());
+	}
+
+}
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,10 +46,16 @@ public final class MessageBuilder<T> {
 
 	private final T payload;
 
+	/**
+	 * All headers when building a new message, or only the changes to the original
+	 * message's headers (a null value marking a removed header) when deriving one.
+	 */
 	private final Map<String, Object> headers = new HashMap<String, Object>();
 
 	private final Message<T> originalMessage;
 
+	private final MessageHeaders originalHeaders;
+
 	private volatile boolean modified;
 
 	/**
@@ -59,9 +66,12 @@ public final class MessageBuilder<T> {
 		this.payload = payload;
 		this.originalMessage = originalMessage;
 		if (originalMessage != null) {
-			this.copyHeaders(originalMessage.getHeaders());
+			this.originalHeaders = originalMessage.getHeaders();
 			this.modified = (!this.payload.equals(originalMessage.getPayload()));
 		}
+		else {
+			this.originalHeaders = null;
+		}
 	}
 
 	/**
@@ -95,13 +105,13 @@ public final class MessageBuilder<T> {
 				&& !headerName.equals(MessageHeaders.TIMESTAMP)) {
 			this.verifyType(headerName, headerValue);
 			if (headerValue == null) {
-				Object removedValue = this.headers.remove(headerName);
+				Object removedValue = this.doRemoveHeader(headerName);
 				if (removedValue != null) {
 					this.modified = true;
 				}
 			}
 			else {
-				Object replacedValue = this.headers.put(headerName, headerValue);
+				Object replacedValue = this.doSetHeader(headerName, headerValue);
 				if (!headerValue.equals(replacedValue)) {
 					this.modified = true;
 				}
@@ -114,7 +124,7 @@ public final class MessageBuilder<T> {
 	 * Set the value for the given header name only if the header name is not already associated with a value.
 	 */
 	public MessageBuilder<T> setHeaderIfAbsent(String headerName, Object headerValue) {
-		if (this.headers.get(headerName) == null) {
+		if (this.getHeader(headerName) == null) {
 			this.setHeader(headerName, headerValue);
 		}
 		return this;
@@ -132,7 +142,7 @@ public final class MessageBuilder<T> {
 		for (String pattern : headerPatterns) {		
 			if (StringUtils.hasLength(pattern)){
 				if (pattern.contains("*")){
-					for (String headerName : this.headers.keySet()) {
+					for (String headerName : this.getHeaderNames()) {
 						if (PatternMatchUtils.simpleMatch(pattern, headerName)){
 							headersToRemove.add(headerName);
 						}
@@ -154,7 +164,7 @@ public final class MessageBuilder<T> {
 	public MessageBuilder<T> removeHeader(String headerName) {
 		if (StringUtils.hasLength(headerName) && !headerName.equals(MessageHeaders.ID)
 				&& !headerName.equals(MessageHeaders.TIMESTAMP)) {
-			Object removedValue = this.headers.remove(headerName);
+			Object removedValue = this.doRemoveHeader(headerName);
 			if (removedValue != null) {
 				this.modified = true;
 			}
@@ -211,9 +221,9 @@ public final class MessageBuilder<T> {
 	}
 
 	public MessageBuilder<T> pushSequenceDetails(Object correlationId, int sequenceNumber, int sequenceSize) {
-		Object incomingCorrelationId = headers.get(MessageHeaders.CORRELATION_ID);
+		Object incomingCorrelationId = this.getHeader(MessageHeaders.CORRELATION_ID);
 		@SuppressWarnings("unchecked")
-		List<List<Object>> incomingSequenceDetails = (List<List<Object>>) headers.get(MessageHeaders.SEQUENCE_DETAILS);
+		List<List<Object>> incomingSequenceDetails = (List<List<Object>>) this.getHeader(MessageHeaders.SEQUENCE_DETAILS);
 		if (incomingCorrelationId != null) {
 			if (incomingSequenceDetails == null) {
 				incomingSequenceDetails = new ArrayList<List<Object>>();
@@ -222,7 +232,7 @@ public final class MessageBuilder<T> {
 				incomingSequenceDetails = new ArrayList<List<Object>>(incomingSequenceDetails);
 			}
 			incomingSequenceDetails.add(Arrays.asList(incomingCorrelationId,
-					headers.get(MessageHeaders.SEQUENCE_NUMBER), headers.get(MessageHeaders.SEQUENCE_SIZE)));
+					this.getHeader(MessageHeaders.SEQUENCE_NUMBER), this.getHeader(MessageHeaders.SEQUENCE_SIZE)));
 			incomingSequenceDetails = Collections.unmodifiableList(incomingSequenceDetails);
 		}
 		if (incomingSequenceDetails != null) {
@@ -233,11 +243,11 @@ public final class MessageBuilder<T> {
 
 	public MessageBuilder<T> popSequenceDetails() {
 		String key = MessageHeaders.SEQUENCE_DETAILS;
-		if (!headers.containsKey(key)) {
+		if (this.getHeader(key) == null) {
 			return this;
 		}
 		@SuppressWarnings("unchecked")
-		List<List<Object>> incomingSequenceDetails = new ArrayList<List<Object>>((List<List<Object>>) headers.get(key));
+		List<List<Object>> incomingSequenceDetails = new ArrayList<List<Object>>((List<List<Object>>) this.getHeader(key));
 		List<Object> sequenceDetails = incomingSequenceDetails.remove(incomingSequenceDetails.size() - 1);
 		Assert.state(sequenceDetails.size() == 3, "Wrong sequence details (not created by MessageBuilder?): "
 				+ sequenceDetails);
@@ -251,10 +261,10 @@ public final class MessageBuilder<T> {
 			setSequenceSize(sequenceSize);
 		}
 		if (!incomingSequenceDetails.isEmpty()) {
-			headers.put(MessageHeaders.SEQUENCE_DETAILS, incomingSequenceDetails);
+			this.doSetHeader(MessageHeaders.SEQUENCE_DETAILS, incomingSequenceDetails);
 		}
 		else {
-			headers.remove(MessageHeaders.SEQUENCE_DETAILS);
+			this.doRemoveHeader(MessageHeaders.SEQUENCE_DETAILS);
 		}
 		return this;
 	}
@@ -292,12 +302,59 @@ public final class MessageBuilder<T> {
 		if (!this.modified && this.originalMessage != null) {
 			return this.originalMessage;
 		}
+		if (this.originalHeaders != null) {
+			// share the original headers rather than copying them
+			if (this.payload instanceof Throwable) {
+				return (Message<T>) new ErrorMessage((Throwable) this.payload, this.originalHeaders, this.headers);
+			}
+			return new GenericMessage<T>(this.payload, this.originalHeaders, this.headers);
+		}
 		if (this.payload instanceof Throwable) {
 			return (Message<T>) new ErrorMessage((Throwable) this.payload, this.headers);
 		}
 		return new GenericMessage<T>(this.payload, this.headers);
 	}
 
+	private Object getHeader(String headerName) {
+		if (this.headers.containsKey(headerName)) {
+			return this.headers.get(headerName);
+		}
+		return (this.originalHeaders != null) ? this.originalHeaders.get(headerName) : null;
+	}
+
+	private Set<String> getHeaderNames() {
+		Set<String> headerNames = new HashSet<String>();
+		if (this.originalHeaders != null) {
+			headerNames.addAll(this.originalHeaders.keySet());
+		}
+		for (Map.Entry<String, Object> entry : this.headers.entrySet()) {
+			if (entry.getValue() != null) {
+				headerNames.add(entry.getKey());
+			}
+			else {
+				headerNames.remove(entry.getKey());
+			}
+		}
+		return headerNames;
+	}
+
+	private Object doSetHeader(String headerName, Object headerValue) {
+		Object previousValue = this.getHeader(headerName);
+		this.headers.put(headerName, headerValue);
+		return previousValue;
+	}
+
+	private Object doRemoveHeader(String headerName) {
+		Object previousValue = this.getHeader(headerName);
+		if (this.originalHeaders != null && this.originalHeaders.containsKey(headerName)) {
+			this.headers.put(headerName, null);
+		}
+		else {
+			this.headers.remove(headerName);
+		}
+		return previousValue;
+	}
+
 	private boolean isReadOnly(String headerName) {
 		return MessageHeaders.ID.equals(headerName) || MessageHeaders.TIMESTAMP.equals(headerName);
 	}
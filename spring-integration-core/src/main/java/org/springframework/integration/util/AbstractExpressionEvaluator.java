@@ -24,11 +24,10 @@ import org.springframework.core.convert.ConversionService;
 import org.springframework.expression.BeanResolver;
 import org.springframework.expression.EvaluationException;
 import org.springframework.expression.Expression;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHandlingException;
+import org.springframework.integration.expression.ExpressionCache;
 
 /**
  * @author Mark Fisher
@@ -43,7 +42,7 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware {
 
 	private final StandardEvaluationContext evaluationContext = new StandardEvaluationContext();
 
-	private final ExpressionParser expressionParser = new SpelExpressionParser();
+	private final ExpressionCache expressionCache = new ExpressionCache();
 
 	private final BeanFactoryTypeConverter typeConverter = new BeanFactoryTypeConverter();
 
@@ -107,7 +106,7 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware {
 	}
 
 	protected <T> T evaluateExpression(String expression, Object input, Class<T> expectedType) {
-		return this.expressionParser.parseExpression(expression).getValue(this.evaluationContext, input, expectedType);
+		return this.expressionCache.getExpression(expression).getValue(this.evaluationContext, input, expectedType);
 	}
 
 	protected Object evaluateExpression(Expression expression, Object input) {
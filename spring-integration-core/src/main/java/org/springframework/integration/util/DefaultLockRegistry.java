@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.util.Assert;
+
+/**
+ * A {@link LockRegistry} backed by a fixed array of {@link ReentrantLock}s: a key
+ * is mapped to a lock by its hash code. No lock is created or removed per key, so
+ * obtaining a lock needs no synchronization; unrelated keys share a lock only when
+ * their hash codes collide under the mask, which bounds the false contention to
+ * about one in <code>mask + 1</code>.
+ *
+ * @since 2.1
+ */
+public final class DefaultLockRegistry implements LockRegistry {
+
+	public static final int DEFAULT_MASK = 0xFF;
+
+	private final Lock[] locks;
+
+	private final int mask;
+
+
+	/**
+	 * Create a registry of 256 locks.
+	 */
+	public DefaultLockRegistry() {
+		this(DEFAULT_MASK);
+	}
+
+	/**
+	 * Create a registry of <code>mask + 1</code> locks. The mask must be one less
+	 * than a power of two, e.g. 0x3FF for 1024 locks.
+	 */
+	public DefaultLockRegistry(int mask) {
+		Assert.isTrue(mask >= 0 && Integer.bitCount(mask + 1) == 1,
+				"'mask' must be one less than a power of two, e.g. 0xFF");
+		this.mask = mask;
+		this.locks = new Lock[mask + 1];
+		for (int i = 0; i < this.locks.length; i++) {
+			this.locks[i] = new ReentrantLock();
+		}
+	}
+
+
+	public Lock obtain(Object lockKey) {
+		Assert.notNull(lockKey, "'lockKey' must not be null");
+		int hash = lockKey.hashCode();
+		// spread the high bits, as keys often differ in those only (e.g. UUIDs, Longs)
+		hash ^= (hash >>> 16);
+		return this.locks[hash & this.mask];
+	}
+
+	public int getLockCount() {
+		return this.locks.length;
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Strategy for maintaining a set of locks keyed by arbitrary objects, e.g. a
+ * correlation key. Implementations may map several keys to the same lock, but
+ * must always return the same lock for equal keys.
+ *
+ * @since 2.1
+ */
+public interface LockRegistry {
+
+	/**
+	 * Obtain the lock associated with the given key; the caller is responsible
+	 * for locking and unlocking it.
+	 */
+	Lock obtain(Object lockKey);
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -32,6 +33,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
@@ -68,6 +71,11 @@ import org.springframework.util.StringUtils;
  * is provided, and more than one declared method has that name, the method-selection will be dynamic, based on the
  * underlying SpEL method resolution. Alternatively, an annotation type may be provided so that the candidates for
  * SpEL's method resolution are determined by the presence of that annotation rather than the method name.
+ * <p>
+ * Unless {@link #setUseSpelInvoker(boolean) disabled}, a handler method whose arguments can all be resolved
+ * statically (payload, headers, header values, message or messages) is invoked directly by reflection rather than
+ * through its SpEL expression. Methods whose arguments involve expressions (e.g. <code>@Payload("foo.bar")</code>)
+ * are always invoked through SpEL.
  * 
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -84,12 +92,25 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 	private volatile boolean requiresReply;
 
+	private static final int MAX_CACHED_PAYLOAD_TYPES = 1024;
+
 	private final Map<Class<?>, HandlerMethod> handlerMethods;
 
+	/**
+	 * The candidates resolved for each payload type: either the closest matching method or, if there is none,
+	 * all methods (cached as well, so that types without a match are not resolved again).
+	 */
+	private final ConcurrentMap<Class<?>, List<HandlerMethod>> handlerMethodsByPayloadType =
+			new ConcurrentHashMap<Class<?>, List<HandlerMethod>>();
+
+	private volatile List<HandlerMethod> allHandlerMethods;
+
 	private final Class<?> expectedType;
 
 	private final boolean canProcessMessageList;
 
+	private volatile boolean useSpelInvoker;
+
 
 	public MessagingMethodInvokerHelper(Object targetObject, Method method, Class<?> expectedType,
 			boolean canProcessMessageList) {
@@ -120,6 +141,14 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 	}
 
 
+	/**
+	 * Specify whether handler methods should always be invoked by evaluating their SpEL expression, even when
+	 * they could be invoked directly. Default is false.
+	 */
+	public void setUseSpelInvoker(boolean useSpelInvoker) {
+		this.useSpelInvoker = useSpelInvoker;
+	}
+
 	public T process(Message<?> message) throws Exception {
 		ParametersWrapper parameters = new ParametersWrapper(message);
 		return processInternal(parameters);
@@ -213,22 +242,33 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		return false;
 	}
 
+	@SuppressWarnings("unchecked")
 	private T processInternal(ParametersWrapper parameters) throws Exception {
 		Throwable evaluationException = null;
 		List<HandlerMethod> candidates = this.findHandlerMethodsForParameters(parameters);
 		Assert.state(!candidates.isEmpty(), "No candidate methods found for messages.");
 		for (HandlerMethod candidate : candidates) {
 			try {
-				Expression expression = candidate.getExpression();
 				Class<?> expectedType = this.expectedType != null ? this.expectedType : candidate.method.getReturnType();
-				@SuppressWarnings("unchecked")
-				T result = (T) this.evaluateExpression(expression, parameters, expectedType);
+				T result = null;
+				if (!this.useSpelInvoker && candidate.canInvokeDirectly(this.targetObject)) {
+					result = this.invokeDirectly(candidate, parameters, expectedType);
+				}
+				else {
+					Expression expression = candidate.getExpression();
+					result = (T) this.evaluateExpression(expression, parameters, expectedType);
+				}
 				if (this.requiresReply) {
 					Assert.notNull(result,
 							"Expression evaluation result was null, but this processor requires a reply.");
 				}
 				return result;
 			}
+			catch (InvocationTargetException e) {
+				if (evaluationException == null) {
+					evaluationException = e.getTargetException();
+				}
+			}
 			// keep the first exception
 			catch (EvaluationException e) {
 				if (evaluationException == null) {
@@ -263,6 +303,17 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	private T invokeDirectly(HandlerMethod candidate, ParametersWrapper parameters, Class<?> expectedType)
+			throws Exception {
+		TypeConverter typeConverter = this.getEvaluationContext().getTypeConverter();
+		Object result = candidate.invoke(this.targetObject, parameters, typeConverter);
+		if (result != null && expectedType != null && !org.springframework.util.ClassUtils.isAssignableValue(expectedType, result)) {
+			result = typeConverter.convertValue(result, TypeDescriptor.forObject(result), TypeDescriptor.valueOf(expectedType));
+		}
+		return (T) result;
+	}
+
 	private Map<Class<?>, HandlerMethod> findHandlerMethodsForTarget(final Object targetObject,
 			final Class<? extends Annotation> annotationType, final String methodName, final boolean requiresReply) {
 
@@ -370,11 +421,25 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 	private List<HandlerMethod> findHandlerMethodsForParameters(ParametersWrapper parameters) {
 		final Class<?> payloadType = parameters.getFirstParameterType();
+		List<HandlerMethod> candidates = this.handlerMethodsByPayloadType.get(payloadType);
+		if (candidates != null) {
+			return candidates;
+		}
 		HandlerMethod closestMatch = this.findClosestMatch(payloadType);
 		if (closestMatch != null) {
-			return Collections.singletonList(closestMatch);
+			candidates = Collections.singletonList(closestMatch);
+		}
+		else {
+			if (this.allHandlerMethods == null) {
+				this.allHandlerMethods = Collections.unmodifiableList(new ArrayList<HandlerMethod>(this.handlerMethods.values()));
+			}
+			candidates = this.allHandlerMethods;
 		}
-		return new ArrayList<HandlerMethod>(this.handlerMethods.values());
+		// guard against an unbounded number of (e.g. generated) payload types
+		if (this.handlerMethodsByPayloadType.size() < MAX_CACHED_PAYLOAD_TYPES) {
+			this.handlerMethodsByPayloadType.put(payloadType, candidates);
+		}
+		return candidates;
 	}
 
 	private HandlerMethod findClosestMatch(Class<?> payloadType) {
@@ -430,11 +495,25 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 		private final boolean canProcessMessageList;
 
+		private final TypeDescriptor[] parameterTypeDescriptors;
+
+		/**
+		 * Resolvers for the method arguments, or null if at least one argument requires SpEL evaluation.
+		 */
+		private volatile ArgumentResolver[] argumentResolvers;
+
 
 		HandlerMethod(Method method, boolean canProcessMessageList) {
 			this.method = method;
 			this.canProcessMessageList = canProcessMessageList;
+			this.parameterTypeDescriptors = new TypeDescriptor[method.getParameterTypes().length];
+			if (!method.isVarArgs()) {
+				this.argumentResolvers = new ArgumentResolver[this.parameterTypeDescriptors.length];
+			}
 			this.expression = this.generateExpression(method);
+			if (this.argumentResolvers != null) {
+				ReflectionUtils.makeAccessible(method);
+			}
 		}
 
 
@@ -442,6 +521,25 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			return this.expression;
 		}
 
+		boolean canInvokeDirectly(Object targetObject) {
+			// a JDK proxy does not implement methods of the target class
+			return this.argumentResolvers != null && this.method.getDeclaringClass().isInstance(targetObject);
+		}
+
+		Object invoke(Object targetObject, ParametersWrapper parameters, TypeConverter typeConverter)
+				throws Exception {
+			Object[] arguments = new Object[this.argumentResolvers.length];
+			for (int i = 0; i < arguments.length; i++) {
+				Object argument = this.argumentResolvers[i].resolve(parameters);
+				TypeDescriptor parameterType = this.parameterTypeDescriptors[i];
+				if (argument != null && !org.springframework.util.ClassUtils.isAssignableValue(parameterType.getType(), argument)) {
+					argument = typeConverter.convertValue(argument, TypeDescriptor.forObject(argument), parameterType);
+				}
+				arguments[i] = argument;
+			}
+			return this.method.invoke(targetObject, arguments);
+		}
+
 		TypeDescriptor getTargetParameterType() {
 			return this.targetParameterType;
 		}
@@ -461,6 +559,7 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 					sb.append(", ");
 				}
 				TypeDescriptor parameterTypeDescriptor = new TypeDescriptor(new MethodParameter(method, i));
+				this.parameterTypeDescriptors[i] = parameterTypeDescriptor;
 				defaultParameterTypeDescriptor = parameterTypeDescriptor;
 				Class<?> parameterType = parameterTypeDescriptor.getObjectType();
 				Annotation mappingAnnotation = findMappingAnnotation(parameterAnnotations[i]);
@@ -471,9 +570,11 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 						String qualifierExpression = ((Payload) mappingAnnotation).value();
 						if (StringUtils.hasText(qualifierExpression)) {
 							sb.append("." + qualifierExpression);
+							this.setArgumentResolver(i, null);
 						}
 						if (!StringUtils.hasText(qualifierExpression)) {
 							this.setExclusiveTargetParameterType(parameterTypeDescriptor);
+							this.setArgumentResolver(i, PAYLOAD_RESOLVER);
 						}
 					}
 					if (annotationType.equals(Payloads.class)) {
@@ -481,39 +582,46 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 						String qualifierExpression = ((Payloads) mappingAnnotation).value();
 						if (StringUtils.hasText(qualifierExpression)) {
 							sb.append("." + qualifierExpression);
+							this.setArgumentResolver(i, null);
 						}
 						sb.append("]");
 						if (!StringUtils.hasText(qualifierExpression)) {
 							this.setExclusiveTargetParameterType(parameterTypeDescriptor);
+							this.setArgumentResolver(i, PAYLOADS_RESOLVER);
 						}
 					}
 					else if (annotationType.equals(Headers.class)) {
 						Assert.isTrue(Map.class.isAssignableFrom(parameterType),
 								"The @Headers annotation can only be applied to a Map-typed parameter.");
 						sb.append("headers");
+						this.setArgumentResolver(i, HEADERS_RESOLVER);
 					}
 					else if (annotationType.equals(Header.class)) {
 						Header headerAnnotation = (Header) mappingAnnotation;
-						sb.append(this.determineHeaderExpression(headerAnnotation, new MethodParameter(method, i)));
+						sb.append(this.determineHeaderExpression(headerAnnotation, new MethodParameter(method, i), i));
 					}
 				}
 				else if (parameterTypeDescriptor != null
 						&& parameterTypeDescriptor.isAssignableTo(messageTypeDescriptor)) {
 					sb.append("message");
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor);
+					this.setArgumentResolver(i, MESSAGE_RESOLVER);
 				}
 				else if (parameterTypeDescriptor != null
 						&& (parameterTypeDescriptor.isAssignableTo(messageListTypeDescriptor) || parameterTypeDescriptor
 								.isAssignableTo(messageArrayTypeDescriptor))) {
 					sb.append("messages");
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor);
+					this.setArgumentResolver(i, MESSAGES_RESOLVER);
 				}
 				else if (Collection.class.isAssignableFrom(parameterType) || parameterType.isArray()) {
 					if (canProcessMessageList) {
 						sb.append("messages.![payload]");
+						this.setArgumentResolver(i, PAYLOADS_RESOLVER);
 					}
 					else {
 						sb.append("payload");
+						this.setArgumentResolver(i, PAYLOAD_RESOLVER);
 					}
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor);
 				}
@@ -537,15 +645,18 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 					else {
 						sb.append("payload.iterator()");
 					}
+					this.setArgumentResolver(i, null);
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor);
 				}
 				else if (Map.class.isAssignableFrom(parameterType)) {
 					if (Properties.class.isAssignableFrom(parameterType)) {
 						sb.append("payload instanceof T(java.util.Map) or "
 								+ "(payload instanceof T(String) and payload.contains('=')) ? payload : headers");
+						this.setArgumentResolver(i, null);
 					}
 					else {
 						sb.append("(payload instanceof T(java.util.Map) ? payload : headers)");
+						this.setArgumentResolver(i, PAYLOAD_OR_HEADERS_RESOLVER);
 					}
 					Assert.isTrue(!hasUnqualifiedMapParameter,
 							"Found more than one Map typed parameter without any qualification. "
@@ -555,6 +666,7 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 				else {
 					sb.append("payload");
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor);
+					this.setArgumentResolver(i, PAYLOAD_RESOLVER);
 				}
 			}
 			if (hasUnqualifiedMapParameter) {
@@ -591,7 +703,7 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			return match;
 		}
 
-		private String determineHeaderExpression(Header headerAnnotation, MethodParameter methodParameter) {
+		private String determineHeaderExpression(Header headerAnnotation, MethodParameter methodParameter, int parameterIndex) {
 			methodParameter.initParameterNameDiscovery(PARAMETER_NAME_DISCOVERER);
 			String headerName = null;
 			String relativeExpression = "";
@@ -611,6 +723,12 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			}
 			Assert.notNull(headerName, "Cannot determine header name. Possible reasons: -debug is "
 					+ "disabled or header name is not explicitly provided via @Header annotation.");
+			if (relativeExpression.length() == 0) {
+				this.setArgumentResolver(parameterIndex, new HeaderResolver(headerName, headerAnnotation.required()));
+			}
+			else {
+				this.setArgumentResolver(parameterIndex, null);
+			}
 			String headerRetrievalExpression = "headers['" + headerName + "']";
 			String fullHeaderExpression = headerRetrievalExpression + relativeExpression;
 			String fallbackExpression = (headerAnnotation.required())
@@ -619,6 +737,22 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			return headerRetrievalExpression + " != null ? " + fullHeaderExpression + " : " + fallbackExpression;
 		}
 
+		/**
+		 * Record how the argument at the given index is resolved when invoking the method directly;
+		 * a null resolver means the argument requires SpEL evaluation.
+		 */
+		private void setArgumentResolver(int parameterIndex, ArgumentResolver argumentResolver) {
+			if (this.argumentResolvers == null) {
+				return;
+			}
+			if (argumentResolver == null) {
+				this.argumentResolvers = null;
+			}
+			else if (this.argumentResolvers[parameterIndex] == null) {
+				this.argumentResolvers[parameterIndex] = argumentResolver;
+			}
+		}
+
 		private synchronized void setExclusiveTargetParameterType(TypeDescriptor targetParameterType) {
 			Assert.isNull(this.targetParameterType, "Found more than one parameter type candidate: ["
 					+ this.targetParameterType + "] and [" + targetParameterType + "]");
@@ -626,6 +760,78 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		}
 	}
 
+	/**
+	 * Resolves a handler method argument without SpEL; each implementation mirrors the
+	 * expression generated for the same parameter by {@link HandlerMethod}.
+	 */
+	private static abstract class ArgumentResolver {
+
+		abstract Object resolve(ParametersWrapper parameters);
+	}
+
+	private static final ArgumentResolver PAYLOAD_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			return parameters.getPayload();
+		}
+	};
+
+	private static final ArgumentResolver PAYLOADS_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			Collection<Message<?>> messages = parameters.getMessages();
+			List<Object> payloads = new ArrayList<Object>(messages.size());
+			for (Message<?> message : messages) {
+				payloads.add(message.getPayload());
+			}
+			return payloads;
+		}
+	};
+
+	private static final ArgumentResolver HEADERS_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			return parameters.getHeaders();
+		}
+	};
+
+	private static final ArgumentResolver MESSAGE_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			return parameters.getMessage();
+		}
+	};
+
+	private static final ArgumentResolver MESSAGES_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			return parameters.getMessages();
+		}
+	};
+
+	private static final ArgumentResolver PAYLOAD_OR_HEADERS_RESOLVER = new ArgumentResolver() {
+		Object resolve(ParametersWrapper parameters) {
+			Object payload = parameters.getPayload();
+			return (payload instanceof Map) ? payload : parameters.getHeaders();
+		}
+	};
+
+	private static class HeaderResolver extends ArgumentResolver {
+
+		private final String headerName;
+
+		private final boolean required;
+
+		HeaderResolver(String headerName, boolean required) {
+			this.headerName = headerName;
+			this.required = required;
+		}
+
+		Object resolve(ParametersWrapper parameters) {
+			Object value = parameters.getHeaders().get(this.headerName);
+			if (value == null && this.required) {
+				throw new IllegalArgumentException("required header not available:  " + this.headerName);
+			}
+			return value;
+		}
+	}
+
+
 	@SuppressWarnings("unused")
 	private static class ParametersWrapper {
 
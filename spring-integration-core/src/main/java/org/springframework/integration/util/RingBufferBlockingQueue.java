@@ -0,0 +1,421 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.util.Assert;
+
+/**
+ * A bounded, lock-free, multi-producer/multi-consumer {@link BlockingQueue} backed by
+ * a pre-allocated ring buffer. Unlike a {@link java.util.concurrent.LinkedBlockingQueue}
+ * it allocates nothing per element and never blocks on a lock: producers and consumers
+ * claim slots with a single compare-and-set on their respective position counters, and
+ * each slot carries a sequence number that tells whether it is ready to be written or read.
+ * <p>
+ * Threads that have to wait (a producer when the queue is full, a consumer when it is empty)
+ * do so according to the configured {@link WaitStrategy}.
+ * <p>
+ * {@link #drainTo(Collection, int)} claims a whole run of available elements with a single
+ * compare-and-set, and releases all of its slots before adding the elements to the target collection.
+ * The queue does not support removal of arbitrary elements: {@link #remove(Object)}
+ * and {@link Iterator#remove()} throw {@link UnsupportedOperationException}. Iteration is
+ * weakly consistent.
+ *
+ * @since 2.1
+ */
+public class RingBufferBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+	/**
+	 * How a thread waits for a slot or an element to become available.
+	 */
+	public static enum WaitStrategy {
+
+		/**
+		 * Retry in a busy loop: lowest latency, but keeps a CPU busy for as long as the thread waits.
+		 */
+		SPIN,
+
+		/**
+		 * Retry after {@link Thread#yield() yielding} to other threads.
+		 */
+		YIELD,
+
+		/**
+		 * Park the thread until the other side signals progress.
+		 */
+		PARK
+	}
+
+
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+	private final int capacity;
+
+	private final AtomicReferenceArray<E> elements;
+
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong enqueuePosition = new AtomicLong();
+
+	private final AtomicLong dequeuePosition = new AtomicLong();
+
+	private final WaitStrategy waitStrategy;
+
+	private final WaitingThreads waitingProducers = new WaitingThreads();
+
+	private final WaitingThreads waitingConsumers = new WaitingThreads();
+
+
+	/**
+	 * Create a queue with the given capacity using the {@link WaitStrategy#PARK} wait strategy.
+	 */
+	public RingBufferBlockingQueue(int capacity) {
+		this(capacity, WaitStrategy.PARK);
+	}
+
+	public RingBufferBlockingQueue(int capacity, WaitStrategy waitStrategy) {
+		Assert.isTrue(capacity > 0, "capacity must be positive");
+		Assert.notNull(waitStrategy, "waitStrategy must not be null");
+		this.capacity = capacity;
+		this.waitStrategy = waitStrategy;
+		this.elements = new AtomicReferenceArray<E>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			this.sequences.set(i, writable(i));
+		}
+	}
+
+
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	public boolean offer(E element) {
+		Assert.notNull(element, "element must not be null");
+		long position = this.enqueuePosition.get();
+		int index;
+		while (true) {
+			index = this.index(position);
+			long difference = this.sequences.get(index) - writable(position);
+			if (difference == 0) {
+				if (this.enqueuePosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = this.enqueuePosition.get();
+			}
+			else if (difference < 0) {
+				// the slot still holds the element written one lap ago
+				return false;
+			}
+			else {
+				position = this.enqueuePosition.get();
+			}
+		}
+		this.elements.set(index, element);
+		this.sequences.set(index, readable(position));
+		this.waitingConsumers.signal();
+		return true;
+	}
+
+	public E poll() {
+		long position = this.dequeuePosition.get();
+		int index;
+		while (true) {
+			index = this.index(position);
+			long difference = this.sequences.get(index) - readable(position);
+			if (difference == 0) {
+				if (this.dequeuePosition.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = this.dequeuePosition.get();
+			}
+			else if (difference < 0) {
+				// nothing has been published at this position yet
+				return null;
+			}
+			else {
+				position = this.dequeuePosition.get();
+			}
+		}
+		E element = this.take(index, position);
+		this.waitingProducers.signal();
+		return element;
+	}
+
+	public E peek() {
+		while (true) {
+			long position = this.dequeuePosition.get();
+			int index = this.index(position);
+			if (this.sequences.get(index) != readable(position)) {
+				if (position == this.dequeuePosition.get()) {
+					return null;
+				}
+				continue;
+			}
+			E element = this.elements.get(index);
+			if (element != null && position == this.dequeuePosition.get()) {
+				return element;
+			}
+		}
+	}
+
+	public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!this.offer(element)) {
+			if (!this.await(false, deadline, true)) {
+				return this.offer(element);
+			}
+		}
+		return true;
+	}
+
+	public void put(E element) throws InterruptedException {
+		while (!this.offer(element)) {
+			this.await(false, 0, false);
+		}
+	}
+
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		E element = null;
+		while ((element = this.poll()) == null) {
+			if (!this.await(true, deadline, true)) {
+				return this.poll();
+			}
+		}
+		return element;
+	}
+
+	public E take() throws InterruptedException {
+		E element = null;
+		while ((element = this.poll()) == null) {
+			this.await(true, 0, false);
+		}
+		return element;
+	}
+
+	public int drainTo(Collection<? super E> collection) {
+		return this.drainTo(collection, Integer.MAX_VALUE);
+	}
+
+	public int drainTo(Collection<? super E> collection, int maxElements) {
+		Assert.notNull(collection, "collection must not be null");
+		Assert.isTrue(collection != this, "cannot drain a queue to itself");
+		int drained = 0;
+		while (drained < maxElements) {
+			long position = this.dequeuePosition.get();
+			int available = 0;
+			int limit = Math.min(maxElements - drained, this.capacity);
+			while (available < limit
+					&& this.sequences.get(this.index(position + available)) == readable(position + available)) {
+				available++;
+			}
+			if (available == 0) {
+				if (position == this.dequeuePosition.get()) {
+					break;
+				}
+				continue;
+			}
+			// claim the whole run at once
+			if (this.dequeuePosition.compareAndSet(position, position + available)) {
+				// release every claimed slot before handing the elements over, so that a
+				// failing collection cannot leave slots that producers would wait on forever
+				Object[] run = new Object[available];
+				for (int i = 0; i < available; i++) {
+					run[i] = this.take(this.index(position + i), position + i);
+				}
+				this.waitingProducers.signalAll();
+				for (int i = 0; i < available; i++) {
+					@SuppressWarnings("unchecked")
+					E element = (E) run[i];
+					collection.add(element);
+				}
+				drained += available;
+			}
+		}
+		return drained;
+	}
+
+	/**
+	 * Return the number of elements in the queue. As producers and consumers may be
+	 * active concurrently, the value is an estimate.
+	 */
+	@Override
+	public int size() {
+		while (true) {
+			long dequeued = this.dequeuePosition.get();
+			long enqueued = this.enqueuePosition.get();
+			if (dequeued == this.dequeuePosition.get()) {
+				long size = enqueued - dequeued;
+				return (int) Math.max(0, Math.min(size, this.capacity));
+			}
+		}
+	}
+
+	public int remainingCapacity() {
+		return this.capacity - this.size();
+	}
+
+	/**
+	 * Not supported: elements can only be removed from the head of the queue.
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException("RingBufferBlockingQueue does not support removal of arbitrary elements");
+	}
+
+	/**
+	 * Return a weakly consistent iterator over the elements present in the queue when
+	 * this method is called. The iterator does not support {@link Iterator#remove()}.
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		List<E> snapshot = new ArrayList<E>();
+		long position = this.dequeuePosition.get();
+		long end = this.enqueuePosition.get();
+		for (; position < end; position++) {
+			int index = this.index(position);
+			E element = this.elements.get(index);
+			if (element != null && this.sequences.get(index) == readable(position)) {
+				snapshot.add(element);
+			}
+		}
+		final Iterator<E> iterator = snapshot.iterator();
+		return new Iterator<E>() {
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+			public E next() {
+				return iterator.next();
+			}
+			public void remove() {
+				throw new UnsupportedOperationException("RingBufferBlockingQueue does not support removal of arbitrary elements");
+			}
+		};
+	}
+
+	private int index(long position) {
+		return (int) (position % this.capacity);
+	}
+
+	/**
+	 * The sequence of a slot that can be written for the given position. Writable and
+	 * readable sequences are kept distinct (even and odd) so that a full slot is never
+	 * mistaken for a writable one, even when the capacity is 1.
+	 */
+	private static long writable(long position) {
+		return position << 1;
+	}
+
+	/**
+	 * The sequence of a slot holding the element written for the given position.
+	 */
+	private static long readable(long position) {
+		return (position << 1) + 1;
+	}
+
+	/**
+	 * Read and release the slot at the given index, which the caller has claimed for the given position.
+	 */
+	private E take(int index, long position) {
+		E element = this.elements.get(index);
+		this.elements.set(index, null);
+		// the slot can be written again one lap later
+		this.sequences.set(index, writable(position + this.capacity));
+		return element;
+	}
+
+	/**
+	 * Whether an element can be read (consumer) or a slot can be written (producer).
+	 */
+	private boolean isReady(boolean consumer) {
+		if (consumer) {
+			long position = this.dequeuePosition.get();
+			return this.sequences.get(this.index(position)) == readable(position);
+		}
+		long position = this.enqueuePosition.get();
+		return this.sequences.get(this.index(position)) == writable(position);
+	}
+
+	/**
+	 * Wait according to the wait strategy. Returns false if the deadline has passed.
+	 */
+	private boolean await(boolean consumer, long deadline, boolean timed) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		long remaining = timed ? deadline - System.nanoTime() : MAX_PARK_NANOS;
+		if (remaining <= 0) {
+			return false;
+		}
+		switch (this.waitStrategy) {
+			case SPIN:
+				break;
+			case YIELD:
+				Thread.yield();
+				break;
+			case PARK:
+				WaitingThreads waiters = consumer ? this.waitingConsumers : this.waitingProducers;
+				Thread currentThread = Thread.currentThread();
+				waiters.add(currentThread);
+				// re-check after registering so that a signal sent in between is not missed
+				if (!this.isReady(consumer)) {
+					LockSupport.parkNanos(this, Math.min(remaining, MAX_PARK_NANOS));
+				}
+				waiters.remove(currentThread);
+				break;
+		}
+		return true;
+	}
+
+
+	/**
+	 * The threads parked waiting for the other side.
+	 */
+	@SuppressWarnings("serial")
+	private static class WaitingThreads extends ConcurrentLinkedQueue<Thread> {
+
+		void signal() {
+			if (!this.isEmpty()) {
+				Thread thread = this.poll();
+				if (thread != null) {
+					LockSupport.unpark(thread);
+				}
+			}
+		}
+
+		void signalAll() {
+			Thread thread = null;
+			while ((thread = this.poll()) != null) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+}
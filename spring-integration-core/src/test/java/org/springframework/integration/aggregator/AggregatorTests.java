@@ -22,18 +22,24 @@ import static org.junit.Assert.assertThat;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 /**
  * @author Mark Fisher
@@ -47,11 +53,21 @@ public class AggregatorTests {
 	private SimpleMessageStore store = new SimpleMessageStore(50);
 
 
+	private ThreadPoolTaskScheduler taskScheduler;
+
+
 	@Before
 	public void configureAggregator() {
 		this.aggregator = new AggregatingMessageHandler(new MultiplyingProcessor(), store);
 	}
 
+	@After
+	public void shutdownTaskScheduler() {
+		if (this.taskScheduler != null) {
+			this.taskScheduler.destroy();
+		}
+	}
+
 
 	@Test
 	public void testCompleteGroupWithinTimeout() throws InterruptedException {
@@ -98,6 +114,64 @@ public class AggregatorTests {
 		assertEquals(15, reply.getPayload());
 	}
 
+	@Test
+	public void testGroupTimeoutSendsPartialResult() throws InterruptedException {
+		this.aggregator.setSendPartialResultOnExpiry(true);
+		this.aggregator.setGroupTimeout(100);
+		this.aggregator.setBeanFactory(this.createBeanFactoryWithTaskScheduler());
+		this.aggregator.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		this.aggregator.handleMessage(createMessage(3, "ABC", 3, 1, replyChannel, null));
+		this.aggregator.handleMessage(createMessage(5, "ABC", 3, 2, replyChannel, null));
+		assertEquals(1, this.aggregator.getScheduledGroupTimeoutCount());
+		Message<?> reply = replyChannel.receive(2000);
+		assertNotNull("A reply message should have been received", reply);
+		assertEquals(15, reply.getPayload());
+		// a late message starts a new group with a timeout of its own
+		this.aggregator.handleMessage(createMessage(7, "ABC", 3, 3, replyChannel, null));
+		assertEquals(1, this.store.getMessageGroup("ABC").size());
+		assertEquals(1, this.aggregator.getScheduledGroupTimeoutCount());
+	}
+
+	@Test
+	public void testGroupTimeoutCancelledOnRelease() throws InterruptedException {
+		QueueChannel discardChannel = new QueueChannel();
+		this.aggregator.setDiscardChannel(discardChannel);
+		this.aggregator.setGroupTimeout(100);
+		this.aggregator.setBeanFactory(this.createBeanFactoryWithTaskScheduler());
+		this.aggregator.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		this.aggregator.handleMessage(createMessage(3, "ABC", 2, 1, replyChannel, null));
+		this.aggregator.handleMessage(createMessage(5, "ABC", 2, 2, replyChannel, null));
+		assertEquals(0, this.aggregator.getScheduledGroupTimeoutCount());
+		assertEquals(15, replyChannel.receive(0).getPayload());
+		assertNull(discardChannel.receive(300));
+	}
+
+	@Test
+	public void testGroupTimeoutExpression() throws InterruptedException {
+		QueueChannel discardChannel = new QueueChannel();
+		this.aggregator.setDiscardChannel(discardChannel);
+		this.aggregator.setGroupTimeoutExpression(new SpelExpressionParser().parseExpression("headers['timeout']"));
+		this.aggregator.setBeanFactory(this.createBeanFactoryWithTaskScheduler());
+		this.aggregator.afterPropertiesSet();
+		QueueChannel replyChannel = new QueueChannel();
+		this.aggregator.handleMessage(MessageBuilder.fromMessage(createMessage(3, "ABC", 2, 1, replyChannel, null))
+				.setHeader("timeout", 100).build());
+		this.aggregator.handleMessage(createMessage(5, "XYZ", 2, 1, replyChannel, null));
+		Message<?> discarded = discardChannel.receive(2000);
+		assertNotNull("The timed out message should have been discarded", discarded);
+		assertEquals(3, discarded.getPayload());
+		// the timed out group is removed right after its messages are discarded
+		int n = 0;
+		while (this.store.getMessageGroupCount() > 1 && n++ < 100) {
+			Thread.sleep(10);
+		}
+		// no timeout header, so the other group does not time out
+		assertEquals(1, this.store.getMessageGroupCount());
+		assertEquals(0, this.aggregator.getScheduledGroupTimeoutCount());
+	}
+
 	@Test
 	public void testMultipleGroupsSimultaneously() throws InterruptedException {
 		QueueChannel replyChannel1 = new QueueChannel();
@@ -224,6 +298,14 @@ public class AggregatorTests {
 	}
 
 
+	private BeanFactory createBeanFactoryWithTaskScheduler() {
+		this.taskScheduler = new ThreadPoolTaskScheduler();
+		this.taskScheduler.afterPropertiesSet();
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, this.taskScheduler);
+		return beanFactory;
+	}
+
 	private static Message<?> createMessage(Object payload, Object correlationId, int sequenceSize, int sequenceNumber,
 			MessageChannel replyChannel, String predefinedId) {
 		MessageBuilder<Object> builder = MessageBuilder.withPayload(payload).setCorrelationId(correlationId)
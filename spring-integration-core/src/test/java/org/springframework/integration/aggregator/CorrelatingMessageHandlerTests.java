@@ -18,9 +18,10 @@ package org.springframework.integration.aggregator;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -35,9 +36,10 @@ import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
-import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.integration.util.LockRegistry;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 
 import static org.mockito.Matchers.isA;
@@ -84,18 +86,56 @@ public class CorrelatingMessageHandlerTests {
 		when(correlationStrategy.getCorrelationKey(isA(Message.class))).thenReturn(correlationKey);
 
 		handler.handleMessage(message1);
-		verifyLocks(handler, 1);
-
 		handler.handleMessage(message2);
-		verifyLocks(handler, 0); // lock is removed when group is complete
 
 		verify(correlationStrategy).getCorrelationKey(message1);
 		verify(correlationStrategy).getCorrelationKey(message2);
 		verify(processor).processMessageGroup(isA(SimpleMessageGroup.class));
 	}
 
-	private void verifyLocks(AggregatingMessageHandler handler, int lockCount) {
-		assertEquals(lockCount, ((Map<?, ?>) ReflectionTestUtils.getField(handler, "locks")).size());
+	@Test
+	public void groupsAreLockedThroughTheLockRegistry() throws Exception {
+		final List<Object> lockKeys = new ArrayList<Object>();
+		final ReentrantLock lock = new ReentrantLock();
+		handler.setLockRegistry(new LockRegistry() {
+			public Lock obtain(Object lockKey) {
+				lockKeys.add(lockKey);
+				return lock;
+			}
+		});
+		when(correlationStrategy.getCorrelationKey(isA(Message.class))).thenReturn("key");
+		handler.handleMessage(testMessage("key", 1, 2));
+		assertEquals(1, lockKeys.size());
+		assertEquals("key", lockKeys.get(0));
+		assertFalse(lock.isLocked());
+		assertEquals(0, handler.getLockContentionCount());
+	}
+
+	@Test
+	public void lockContentionIsCounted() throws Exception {
+		final ReentrantLock lock = new ReentrantLock();
+		handler.setLockRegistry(new LockRegistry() {
+			public Lock obtain(Object lockKey) {
+				return lock;
+			}
+		});
+		when(correlationStrategy.getCorrelationKey(isA(Message.class))).thenReturn("key");
+		lock.lock();
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				handler.handleMessage(testMessage("key", 1, 2));
+			}
+		});
+		thread.start();
+		while (!lock.hasQueuedThreads()) {
+			Thread.sleep(10);
+		}
+		lock.unlock();
+		thread.join(10000);
+		assertEquals(1, handler.getLockContentionCount());
+		assertEquals(1, store.getMessageGroup("key").size());
+		handler.resetLockContentionCount();
+		assertEquals(0, handler.getLockContentionCount());
 	}
 
 	@Test
@@ -21,14 +21,18 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.SimpleMessageStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
 import static org.hamcrest.Matchers.is;
 
@@ -52,11 +56,20 @@ public class ResequencerTests {
 
 	private MessageGroupStore store = new SimpleMessageStore();
 
+	private ThreadPoolTaskScheduler taskScheduler;
+
 	@Before
 	public void configureResequencer() {
 		this.resequencer = new ResequencingMessageHandler(processor, store, null, null);
 	}
 
+	@After
+	public void shutdownTaskScheduler() {
+		if (this.taskScheduler != null) {
+			this.taskScheduler.destroy();
+		}
+	}
+
 	@Test
 	public void testBasicResequencing() throws InterruptedException {
 		QueueChannel replyChannel = new QueueChannel();
@@ -335,6 +348,32 @@ public class ResequencerTests {
 		assertEquals(new Integer(4), reply4.getHeaders().getSequenceNumber());
 	}
 
+	@Test
+	public void testGroupTimeoutKeptAfterPartialRelease() throws InterruptedException {
+		QueueChannel replyChannel = new QueueChannel();
+		QueueChannel discardChannel = new QueueChannel();
+		this.resequencer.setReleasePartialSequences(true);
+		this.resequencer.setDiscardChannel(discardChannel);
+		this.resequencer.setGroupTimeout(100);
+		this.taskScheduler = new ThreadPoolTaskScheduler();
+		this.taskScheduler.afterPropertiesSet();
+		StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+		beanFactory.addBean(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, this.taskScheduler);
+		this.resequencer.setBeanFactory(beanFactory);
+		this.resequencer.afterPropertiesSet();
+		this.resequencer.handleMessage(createMessage("789", "ABC", 3, 3, replyChannel));
+		this.resequencer.handleMessage(createMessage("123", "ABC", 3, 1, replyChannel));
+		Message<?> reply1 = replyChannel.receive(0);
+		assertNotNull(reply1);
+		assertEquals(new Integer(1), reply1.getHeaders().getSequenceNumber());
+		// the message still waiting for its predecessor keeps the timeout of the group
+		assertEquals(1, store.getMessageGroup("ABC").size());
+		assertEquals(1, this.resequencer.getScheduledGroupTimeoutCount());
+		Message<?> discarded = discardChannel.receive(2000);
+		assertNotNull("The waiting message should have timed out", discarded);
+		assertEquals(new Integer(3), discarded.getHeaders().getSequenceNumber());
+	}
+
 	@Test
 	public void testRemovalOfBarrierWhenLastMessageOfSequenceArrives() {
 		QueueChannel replyChannel = new QueueChannel();
@@ -133,4 +133,30 @@ public class SequenceSizeReleaseStrategyTests {
 		assertTrue(releaseStrategy.canRelease(messages));
 	}
 
+
+	@Test
+	public void shouldReleaseWhenLastMessageAdded() {
+		SequenceSizeReleaseStrategy releaseStrategy = new SequenceSizeReleaseStrategy();
+		SimpleMessageGroup messages = new SimpleMessageGroup("FOO");
+		Message<String> message1 = MessageBuilder.withPayload("test1").setSequenceSize(2).setSequenceNumber(2).build();
+		Message<String> message2 = MessageBuilder.withPayload("test2").setSequenceSize(2).setSequenceNumber(1).build();
+		messages.add(message1);
+		assertFalse(releaseStrategy.canRelease(messages, message1));
+		messages.add(message2);
+		assertTrue(releaseStrategy.canRelease(messages, message2));
+	}
+
+	@Test
+	public void shouldPartiallyReleaseAfterLastReleasedSequenceNumber() {
+		SequenceSizeReleaseStrategy releaseStrategy = new SequenceSizeReleaseStrategy(true);
+		SimpleMessageGroup messages = new SimpleMessageGroup("FOO");
+		Message<String> message2 = MessageBuilder.withPayload("test2").setSequenceSize(3).setSequenceNumber(2).build();
+		Message<String> message3 = MessageBuilder.withPayload("test3").setSequenceSize(3).setSequenceNumber(3).build();
+		messages.setLastReleasedMessageSequenceNumber(1);
+		messages.add(message3);
+		assertFalse(releaseStrategy.canRelease(messages, message3));
+		messages.add(message2);
+		assertTrue(releaseStrategy.canRelease(messages, message2));
+	}
+
 }
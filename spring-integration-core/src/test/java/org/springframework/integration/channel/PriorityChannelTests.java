@@ -20,9 +20,11 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -32,6 +34,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 
 import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageSelector;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 
@@ -282,6 +285,38 @@ public class PriorityChannelTests {
 		assertEquals("test-2", message2.getPayload());
 	}
 
+	@Test
+	public void testClearAndPurgeReturnSentMessages() {
+		PriorityChannel channel = new PriorityChannel();
+		Message<String> message1 = createPriorityMessage(1);
+		Message<String> message2 = createPriorityMessage(2);
+		Message<String> message3 = createPriorityMessage(3);
+		channel.send(message1);
+		channel.send(message2);
+		channel.send(message3);
+		List<Message<?>> purged = channel.purge(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return !message.getPayload().equals("test:2");
+			}
+		});
+		assertEquals(1, purged.size());
+		assertSame(message2, purged.get(0));
+		List<Message<?>> cleared = channel.clear();
+		assertEquals(2, cleared.size());
+		assertSame(message3, cleared.get(0));
+		assertSame(message1, cleared.get(1));
+	}
+
+	@Test
+	public void testHeadersNotModified() {
+		PriorityChannel channel = new PriorityChannel();
+		Message<String> message = createPriorityMessage(1);
+		int headerCount = message.getHeaders().size();
+		channel.send(message);
+		assertEquals(headerCount, message.getHeaders().size());
+		assertSame(message, channel.receive(0));
+	}
+
 
 	private static Message<String> createPriorityMessage(int priority) {
 		return MessageBuilder.withPayload("test:" + priority).setPriority(priority).build(); 
@@ -307,4 +342,19 @@ public class PriorityChannelTests {
 		}	
 	}
 
+	@Test
+	public void testReceiveBatchReleasesCapacity() {
+		PriorityChannel channel = new PriorityChannel(3);
+		channel.send(MessageBuilder.withPayload("low").setPriority(1).build());
+		channel.send(MessageBuilder.withPayload("high").setPriority(9).build());
+		channel.send(MessageBuilder.withPayload("normal").build());
+		assertFalse(channel.send(new GenericMessage<String>("full"), 0));
+		List<Message<?>> batch = channel.receiveBatch(3, 0);
+		assertEquals(3, batch.size());
+		assertEquals("high", batch.get(0).getPayload());
+		assertEquals("low", batch.get(1).getPayload());
+		assertEquals("normal", batch.get(2).getPayload());
+		assertTrue(channel.send(new GenericMessage<String>("room"), 0));
+	}
+
 }
@@ -31,6 +31,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageChannel;
+import org.springframework.integration.channel.interceptor.ChannelInterceptorAdapter;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.selector.UnexpiredMessageSelector;
 import org.springframework.integration.support.MessageBuilder;
@@ -237,4 +239,38 @@ public class QueueChannelTests {
 		assertTrue(channel.send(new GenericMessage<String>("roomAvailable"), 0));
 	}
 
+	@Test
+	public void testReceiveBatch() {
+		QueueChannel channel = new QueueChannel();
+		for (int i = 0; i < 5; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> batch = channel.receiveBatch(3, 0);
+		assertEquals(3, batch.size());
+		assertEquals(0, batch.get(0).getPayload());
+		assertEquals(2, batch.get(2).getPayload());
+		assertEquals(2, channel.receiveBatch(3, 0).size());
+		assertTrue(channel.receiveBatch(3, 0).isEmpty());
+	}
+
+	@Test
+	public void testReceiveBatchAppliesInterceptorsPerMessage() {
+		QueueChannel channel = new QueueChannel();
+		channel.addInterceptor(new ChannelInterceptorAdapter() {
+			@Override
+			public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+				// drop odd payloads
+				return (message != null && ((Integer) message.getPayload()) % 2 == 0) ? message : null;
+			}
+		});
+		for (int i = 0; i < 4; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> batch = channel.receiveBatch(10, 0);
+		assertEquals(2, batch.size());
+		assertEquals(0, batch.get(0).getPayload());
+		assertEquals(2, batch.get(1).getPayload());
+		assertEquals(0, channel.getQueueSize());
+	}
+
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.integration.message.GenericMessage;
+
+/**
+ * @since 2.1
+ */
+public class RingBufferChannelTests {
+
+	@Test
+	public void sendAndReceive() {
+		RingBufferChannel channel = new RingBufferChannel(2);
+		channel.send(new GenericMessage<String>("a"));
+		channel.send(new GenericMessage<String>("b"));
+		assertFalse(channel.send(new GenericMessage<String>("c"), 0));
+		assertEquals(2, channel.getQueueSize());
+		assertEquals(0, channel.getRemainingCapacity());
+		assertEquals("a", channel.receive(0).getPayload());
+		assertEquals("b", channel.receive(0).getPayload());
+		assertNull(channel.receive(0));
+	}
+
+	@Test
+	public void purgeKeepsAcceptedMessagesInOrder() {
+		RingBufferChannel channel = new RingBufferChannel(10);
+		for (int i = 0; i < 6; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> purged = channel.purge(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				return ((Integer) message.getPayload()) % 2 == 0;
+			}
+		});
+		assertEquals(3, purged.size());
+		assertEquals(1, purged.get(0).getPayload());
+		assertEquals(3, channel.getQueueSize());
+		assertEquals(0, channel.receive(0).getPayload());
+		assertEquals(2, channel.receive(0).getPayload());
+		assertEquals(4, channel.receive(0).getPayload());
+	}
+
+	@Test
+	public void purgeWaitsForRoomToSendBackAcceptedMessages() throws Exception {
+		final RingBufferChannel channel = new RingBufferChannel(2);
+		channel.send(new GenericMessage<String>("a"));
+		channel.send(new GenericMessage<String>("b"));
+		final AtomicReference<Message<?>> received = new AtomicReference<Message<?>>();
+		List<Message<?>> purged = channel.purge(new MessageSelector() {
+			public boolean accept(Message<?> message) {
+				if ("a".equals(message.getPayload())) {
+					// concurrent senders refill the drained channel
+					channel.send(new GenericMessage<String>("x"));
+					channel.send(new GenericMessage<String>("y"));
+					Executors.newSingleThreadExecutor().execute(new Runnable() {
+						public void run() {
+							try {
+								Thread.sleep(100);
+							}
+							catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+							received.set(channel.receive(10000));
+						}
+					});
+					return true;
+				}
+				return false;
+			}
+		});
+		assertEquals(1, purged.size());
+		assertEquals("b", purged.get(0).getPayload());
+		assertEquals("x", received.get().getPayload());
+		assertEquals("y", channel.receive(0).getPayload());
+		assertEquals("a", channel.receive(0).getPayload());
+		assertNull(channel.receive(0));
+	}
+
+	@Test
+	public void clear() {
+		RingBufferChannel channel = new RingBufferChannel(10);
+		channel.send(new GenericMessage<String>("a"));
+		channel.send(new GenericMessage<String>("b"));
+		assertEquals(2, channel.clear().size());
+		assertEquals(0, channel.getQueueSize());
+		assertEquals(10, channel.getRemainingCapacity());
+	}
+
+}
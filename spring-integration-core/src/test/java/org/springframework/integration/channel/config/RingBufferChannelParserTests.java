@@ -0,0 +1,142 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.Properties;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.BeanDefinitionStoreException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.PropertyPlaceholderConfigurer;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.channel.RingBufferChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * @since 2.1
+ */
+@ContextConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class RingBufferChannelParserTests {
+
+	@Autowired @Qualifier("defaultStrategyChannel")
+	private QueueChannel defaultStrategyChannel;
+
+	@Autowired @Qualifier("yieldingChannel")
+	private QueueChannel yieldingChannel;
+
+	@Autowired @Qualifier("linkedChannel")
+	private QueueChannel linkedChannel;
+
+
+	@Test
+	public void ringBufferWithDefaultWaitStrategy() {
+		assertTrue(defaultStrategyChannel instanceof RingBufferChannel);
+		assertEquals(WaitStrategy.PARK, ((RingBufferChannel) defaultStrategyChannel).getWaitStrategy());
+		assertEquals(10, defaultStrategyChannel.getRemainingCapacity());
+		defaultStrategyChannel.send(MessageBuilder.withPayload("test").build());
+		assertEquals(1, defaultStrategyChannel.getQueueSize());
+		assertEquals(9, defaultStrategyChannel.getRemainingCapacity());
+		assertEquals("test", defaultStrategyChannel.receive(0).getPayload());
+	}
+
+	@Test
+	public void ringBufferWithWaitStrategy() {
+		assertTrue(yieldingChannel instanceof RingBufferChannel);
+		assertEquals(WaitStrategy.YIELD, ((RingBufferChannel) yieldingChannel).getWaitStrategy());
+		assertEquals(5, yieldingChannel.getRemainingCapacity());
+	}
+
+	@Test
+	public void linkedQueue() {
+		assertFalse(linkedChannel instanceof RingBufferChannel);
+		assertEquals(5, linkedChannel.getRemainingCapacity());
+	}
+
+	@Test(expected = BeanDefinitionStoreException.class)
+	public void ringBufferRequiresCapacity() {
+		loadChannel("<queue type=\"ring-buffer\"/>");
+	}
+
+	@Test(expected = BeanDefinitionStoreException.class)
+	public void ringBufferWithQueueRefNotAllowed() {
+		loadChannel("<queue type=\"ring-buffer\" capacity=\"5\" ref=\"queue\"/>");
+	}
+
+	@Test(expected = BeanDefinitionStoreException.class)
+	public void unknownQueueTypeNotAllowed() {
+		loadChannel("<queue type=\"ring-bufer\" capacity=\"5\"/>");
+	}
+
+	@Test(expected = BeanDefinitionStoreException.class)
+	public void unknownWaitStrategyNotAllowed() {
+		loadChannel("<queue type=\"ring-buffer\" capacity=\"5\" wait-strategy=\"sleep\"/>");
+	}
+
+	@Test(expected = BeanDefinitionStoreException.class)
+	public void waitStrategyRequiresRingBuffer() {
+		loadChannel("<queue capacity=\"5\" wait-strategy=\"spin\"/>");
+	}
+
+	@Test
+	public void waitStrategyPlaceholder() {
+		GenericApplicationContext context = loadChannel(
+				"<queue type=\"ring-buffer\" capacity=\"5\" wait-strategy=\"${waitStrategy}\"/>");
+		Properties properties = new Properties();
+		properties.setProperty("waitStrategy", "spin");
+		PropertyPlaceholderConfigurer configurer = new PropertyPlaceholderConfigurer();
+		configurer.setProperties(properties);
+		context.addBeanFactoryPostProcessor(configurer);
+		context.refresh();
+		RingBufferChannel channel = context.getBean("channel", RingBufferChannel.class);
+		assertEquals(WaitStrategy.SPIN, channel.getWaitStrategy());
+		context.close();
+	}
+
+
+	private static GenericApplicationContext loadChannel(String queueElement) {
+		String xml = "<beans:beans xmlns=\"http://www.springframework.org/schema/integration\""
+				+ " xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+				+ " xmlns:beans=\"http://www.springframework.org/schema/beans\""
+				+ " xsi:schemaLocation=\"http://www.springframework.org/schema/beans"
+				+ " http://www.springframework.org/schema/beans/spring-beans.xsd"
+				+ " http://www.springframework.org/schema/integration"
+				+ " http://www.springframework.org/schema/integration/spring-integration.xsd\">"
+				+ "<channel id=\"channel\">" + queueElement + "</channel>"
+				+ "</beans:beans>";
+		GenericApplicationContext context = new GenericApplicationContext();
+		XmlBeanDefinitionReader reader = new XmlBeanDefinitionReader(context);
+		reader.setValidationMode(XmlBeanDefinitionReader.VALIDATION_XSD);
+		reader.loadBeanDefinitions(new InputStreamResource(new ByteArrayInputStream(xml.getBytes())));
+		return context;
+	}
+
+}
@@ -135,6 +135,13 @@ public class AggregatorParserTests {
 		Assert.assertEquals(
 				"The AggregatorEndpoint is not configured with the appropriate 'send partial results on timeout' flag",
 				true, accessor.getPropertyValue("sendPartialResultOnExpiry"));
+		Assert.assertEquals("The AggregatorEndpoint is not injected with the appropriate LockRegistry",
+				context.getBean("lockRegistry"), accessor.getPropertyValue("lockRegistry"));
+		Assert.assertEquals("The AggregatorEndpoint is not configured with the appropriate group timeout",
+				5000L, accessor.getPropertyValue("groupTimeout"));
+		Assert.assertEquals("The AggregatorEndpoint is not configured with the appropriate group timeout expression",
+				"headers['groupTimeout']",
+				TestUtils.getPropertyValue(consumer, "groupTimeoutProcessor.expression.expression"));
 	}
 
 	@Test
@@ -97,6 +97,15 @@ public class PollerParserTests {
 		assertEquals(TimeUnit.SECONDS.toString(), TestUtils.getPropertyValue(trigger, "timeUnit").toString());
 	}
 
+	@Test
+	public void pollerWithBatchSize() {
+		ApplicationContext context = new ClassPathXmlApplicationContext(
+				"pollerWithBatchSize.xml", PollerParserTests.class);
+		PollerMetadata metadata = context.getBean("poller", PollerMetadata.class);
+		assertEquals(100, metadata.getMaxMessagesPerPoll());
+		assertEquals(10, metadata.getBatchSize());
+	}
+
     @Test
 	public void pollerWithTriggerReference() {
 		ApplicationContext context = new ClassPathXmlApplicationContext(
@@ -23,9 +23,14 @@ import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.reset;
 import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -38,8 +43,11 @@ import org.junit.Test;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.core.BatchMessageHandler;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.PollableChannel;
+import org.springframework.integration.handler.BatchMessageHandlingException;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.scheduling.PollerMetadata;
 import org.springframework.scheduling.Trigger;
@@ -218,6 +226,90 @@ public class PollingConsumerEndpointTests {
 	}
 
 
+	@Test
+	public void batchFromPlainPollableChannel() {
+		expect(channelMock.receive()).andReturn(message);
+		expect(channelMock.receive(0)).andReturn(message).times(2);
+		replay(channelMock);
+		endpoint.setBatchSize(3);
+		endpoint.setMaxMessagesPerPoll(3);
+		endpoint.start();
+		trigger.await();
+		endpoint.stop();
+		assertEquals(3, consumer.counter.get());
+		verify(channelMock);
+	}
+
+	@Test
+	public void batchFromQueueChannel() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		for (int i = 0; i < 7; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		TestBatchConsumer batchConsumer = new TestBatchConsumer();
+		endpoint = new PollingConsumer(channel, batchConsumer);
+		endpoint.setTaskScheduler(taskScheduler);
+		endpoint.setTrigger(trigger);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setReceiveTimeout(0);
+		endpoint.setBatchSize(3);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+		trigger.await();
+		endpoint.stop();
+		assertEquals(3, batchConsumer.batchSizes.size());
+		assertEquals(Integer.valueOf(3), batchConsumer.batchSizes.get(0));
+		assertEquals(Integer.valueOf(3), batchConsumer.batchSizes.get(1));
+		assertEquals(Integer.valueOf(1), batchConsumer.batchSizes.get(2));
+		assertEquals(0, channel.getQueueSize());
+	}
+
+	@Test
+	public void batchContinuesPastFailedMessage() throws Throwable {
+		QueueChannel channel = new QueueChannel();
+		channel.send(message);
+		channel.send(badMessage);
+		channel.send(message);
+		endpoint = new PollingConsumer(channel, consumer);
+		endpoint.setErrorHandler(errorHandler);
+		endpoint.setTaskScheduler(taskScheduler);
+		endpoint.setTrigger(trigger);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setReceiveTimeout(0);
+		endpoint.setBatchSize(3);
+		endpoint.setMaxMessagesPerPoll(3);
+		endpoint.afterPropertiesSet();
+		endpoint.start();
+		trigger.await();
+		endpoint.stop();
+		assertEquals(3, consumer.counter.get());
+		assertEquals(0, channel.getQueueSize());
+		try {
+			errorHandler.throwLastErrorIfAvailable();
+			fail("Expected BatchMessageHandlingException");
+		}
+		catch (BatchMessageHandlingException e) {
+			assertEquals(1, e.getFailures().size());
+			assertTrue(e.getFailures().get(0) instanceof MessageRejectedException);
+			assertSame(badMessage, e.getFailedMessage());
+		}
+	}
+
+
+	private static class TestBatchConsumer implements BatchMessageHandler {
+
+		private final List<Integer> batchSizes = new ArrayList<Integer>();
+
+		public void handleMessage(Message<?> message) {
+			this.batchSizes.add(1);
+		}
+
+		public void handleMessages(List<Message<?>> messages) {
+			this.batchSizes.add(messages.size());
+		}
+	}
+
+
 	private static class TestConsumer implements MessageHandler {
 
 		private volatile AtomicInteger counter = new AtomicInteger();
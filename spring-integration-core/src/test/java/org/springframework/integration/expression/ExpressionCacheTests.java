@@ -0,0 +1,131 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+/**
+ * @since 2.1
+ */
+public class ExpressionCacheTests {
+
+	private boolean statisticsEnabled;
+
+	@Before
+	public void enableStatistics() {
+		this.statisticsEnabled = ExpressionCacheStatistics.getInstance().isEnabled();
+		ExpressionCacheStatistics.getInstance().setEnabled(true);
+	}
+
+	@After
+	public void restoreStatistics() {
+		ExpressionCacheStatistics.getInstance().setEnabled(this.statisticsEnabled);
+	}
+
+	@Test
+	public void parsedOnce() {
+		ExpressionCache cache = new ExpressionCache();
+		Expression expression = cache.getExpression("payload.toUpperCase()");
+		assertSame(expression, cache.getExpression("payload.toUpperCase()"));
+		assertEquals("payload.toUpperCase()", expression.getExpressionString());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void statisticsAggregated() {
+		ExpressionCacheStatistics statistics = ExpressionCacheStatistics.getInstance();
+		long hits = statistics.getHitCount();
+		long misses = statistics.getMissCount();
+		ExpressionCache cache = new ExpressionCache();
+		cache.getExpression("'foo'");
+		cache.getExpression("'foo'");
+		cache.getExpression("'foo'");
+		assertTrue(statistics.getHitCount() >= hits + 2);
+		assertTrue(statistics.getMissCount() >= misses + 1);
+	}
+
+	@Test
+	public void capacityEnforced() {
+		ExpressionCache cache = new ExpressionCache(new SpelExpressionParser(), 3);
+		for (int i = 0; i < 10; i++) {
+			cache.getExpression("'" + i + "'");
+		}
+		assertEquals(3, cache.getSize());
+		assertEquals(10, cache.getMissCount());
+		assertEquals("9", cache.getExpression("'9'").getValue());
+	}
+
+	@Test
+	public void statisticsDisabled() {
+		ExpressionCacheStatistics.getInstance().setEnabled(false);
+		ExpressionCache cache = new ExpressionCache();
+		cache.getExpression("'foo'");
+		cache.getExpression("'foo'");
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+		assertEquals(1, cache.getSize());
+	}
+
+	@Test
+	public void recentlyUsedNotEvicted() {
+		ExpressionCache cache = new ExpressionCache(new SpelExpressionParser(), 3);
+		Expression hot = cache.getExpression("'hot'");
+		for (int i = 0; i < 10; i++) {
+			cache.getExpression("'" + i + "'");
+			assertSame(hot, cache.getExpression("'hot'"));
+		}
+		assertEquals(3, cache.getSize());
+		assertEquals(11, cache.getMissCount());
+	}
+
+	@Test
+	public void clear() {
+		ExpressionCache cache = new ExpressionCache();
+		Expression expression = cache.getExpression("1 + 1");
+		cache.getExpression("1 + 1");
+		cache.clear();
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getHitCount());
+		assertEquals(0, cache.getMissCount());
+		assertNotSame(expression, cache.getExpression("1 + 1"));
+	}
+
+	@Test(expected = ParseException.class)
+	public void invalidExpressionNotCached() {
+		ExpressionCache cache = new ExpressionCache();
+		try {
+			cache.getExpression("payload.");
+		}
+		finally {
+			assertEquals(0, cache.getSize());
+		}
+	}
+
+}
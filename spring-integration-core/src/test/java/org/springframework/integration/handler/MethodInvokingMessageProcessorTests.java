@@ -17,11 +17,14 @@
 package org.springframework.integration.handler;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.lang.reflect.Method;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
@@ -33,12 +36,15 @@ import org.junit.Test;
 import org.junit.internal.matchers.TypeSafeMatcher;
 import org.junit.rules.ExpectedException;
 
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.annotation.Header;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.MessagingMethodInvokerHelper;
 
 /**
  * @author Mark Fisher
@@ -359,6 +365,113 @@ public class MethodInvokingMessageProcessorTests {
 		assertEquals("true", bean.lastArg);
 	}
 
+	@Test
+	public void directAndSpelInvocationGiveSameResult() throws Exception {
+		AnnotatedTestService service = new AnnotatedTestService();
+		Method method = service.getClass().getMethod("twoHeaders", String.class, Integer.class);
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("prop", "bar").setHeader("number", "42")
+				.build();
+		MessagingMethodInvokerHelper<Object> helper = new MessagingMethodInvokerHelper<Object>(service, method, false);
+		assertEquals("bar-42", helper.process(message));
+		helper.setUseSpelInvoker(true);
+		assertEquals("bar-42", helper.process(message));
+	}
+
+	@Test
+	public void requiredHeaderMissingWithDirectInvocation() throws Exception {
+		AnnotatedTestService service = new AnnotatedTestService();
+		Method method = service.getClass().getMethod("twoHeaders", String.class, Integer.class);
+		MessagingMethodInvokerHelper<Object> helper = new MessagingMethodInvokerHelper<Object>(service, method, false);
+		try {
+			helper.process(MessageBuilder.withPayload("foo").setHeader("prop", "bar").build());
+			fail("Expected IllegalArgumentException");
+		}
+		catch (IllegalArgumentException e) {
+			assertEquals("required header not available:  number", e.getMessage());
+		}
+	}
+
+	@Test
+	public void jdkProxyTargetInvokedThroughSpel() throws Exception {
+		ProxyFactory proxyFactory = new ProxyFactory(new GreetingServiceImpl());
+		proxyFactory.addInterface(GreetingService.class);
+		Object proxy = proxyFactory.getProxy();
+		MethodInvokingMessageProcessor processor = new MethodInvokingMessageProcessor(proxy, "greet");
+		assertEquals("hello foo", processor.processMessage(new GenericMessage<String>("foo")));
+	}
+
+	@Test
+	public void payloadTypeDispatchIsStableAcrossInvocations() {
+		MethodInvokingMessageProcessor processor = new MethodInvokingMessageProcessor(new PolymorphicBean(), "handle");
+		for (int i = 0; i < 2; i++) {
+			assertEquals("number:1", processor.processMessage(new GenericMessage<Integer>(1)));
+			assertEquals("number:2", processor.processMessage(new GenericMessage<Long>(2L)));
+			assertEquals("chars:foo", processor.processMessage(new GenericMessage<String>("foo")));
+			assertEquals("chars:bar", processor.processMessage(new GenericMessage<StringBuilder>(new StringBuilder("bar"))));
+		}
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void payloadTypeDispatchIsCached() {
+		MethodInvokingMessageProcessor processor = new MethodInvokingMessageProcessor(new PolymorphicBean(), "handle");
+		Object helper = new DirectFieldAccessor(processor).getPropertyValue("delegate");
+		Map<Object, List<?>> cache = (Map<Object, List<?>>) new DirectFieldAccessor(helper)
+				.getPropertyValue("handlerMethodsByPayloadType");
+		assertEquals("number:1", processor.processMessage(new GenericMessage<Integer>(1)));
+		List<?> candidates = cache.get(Integer.class);
+		assertEquals(1, candidates.size());
+		assertEquals("number:2", processor.processMessage(new GenericMessage<Integer>(2)));
+		assertSame(candidates, cache.get(Integer.class));
+		assertEquals(1, cache.size());
+
+		// a payload type without a matching method is cached as a miss: all methods are candidates
+		processUnmatched(processor);
+		List<?> missCandidates = cache.get(Boolean.class);
+		assertEquals(2, missCandidates.size());
+		processUnmatched(processor);
+		assertSame(missCandidates, cache.get(Boolean.class));
+		assertEquals(2, cache.size());
+
+		// the cache stops growing at 1024 payload types, but dispatch still works
+		for (int i = cache.size(); i < 1024; i++) {
+			cache.put("type" + i, candidates);
+		}
+		assertEquals("chars:foo", processor.processMessage(new GenericMessage<String>("foo")));
+		assertFalse(cache.containsKey(String.class));
+		assertEquals(1024, cache.size());
+	}
+
+	private static void processUnmatched(MethodInvokingMessageProcessor processor) {
+		try {
+			processor.processMessage(new GenericMessage<Boolean>(true));
+		}
+		catch (MessageHandlingException e) {
+			// whether a method can take the converted payload does not matter here
+		}
+	}
+
+	public static class PolymorphicBean {
+
+		public String handle(Number number) {
+			return "number:" + number;
+		}
+
+		public String handle(CharSequence chars) {
+			return "chars:" + chars;
+		}
+	}
+
+	public interface GreetingService {
+		String greet(String name);
+	}
+
+	public static class GreetingServiceImpl implements GreetingService {
+		public String greet(String name) {
+			return "hello " + name;
+		}
+	}
+
 	private static class ExceptionCauseMatcher extends TypeSafeMatcher<Exception> {
 		private Throwable cause;
 
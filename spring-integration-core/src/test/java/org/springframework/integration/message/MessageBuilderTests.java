@@ -240,4 +240,65 @@ public class MessageBuilderTests {
 		assertEquals(original, result);
 	}
 
+	@Test
+	public void testDerivedMessageHeaders() {
+		Message<String> original = MessageBuilder.withPayload("foo")
+				.setHeader("a", 1).setHeader("b", 2).setHeader("c", 3).build();
+		Message<String> result = MessageBuilder.fromMessage(original)
+				.setHeader("a", 10).removeHeader("b").setHeader("d", 4).build();
+		MessageHeaders headers = result.getHeaders();
+		assertEquals(10, headers.get("a"));
+		assertFalse(headers.containsKey("b"));
+		assertEquals(3, headers.get("c"));
+		assertEquals(4, headers.get("d"));
+		assertFalse(original.getHeaders().getId().equals(headers.getId()));
+		Map<String, Object> expected = new HashMap<String, Object>();
+		expected.put("a", 10);
+		expected.put("c", 3);
+		expected.put("d", 4);
+		expected.put(MessageHeaders.ID, headers.getId());
+		expected.put(MessageHeaders.TIMESTAMP, headers.getTimestamp());
+		assertEquals(expected, new HashMap<String, Object>(headers));
+		assertEquals(expected.size(), headers.size());
+		assertEquals(1, original.getHeaders().get("a"));
+		assertEquals(2, original.getHeaders().get("b"));
+		assertFalse(original.getHeaders().containsKey("d"));
+	}
+
+	@Test
+	public void testRemovedHeaderRestored() {
+		Message<String> original = MessageBuilder.withPayload("foo").setHeader("a", 1).build();
+		Message<String> result = MessageBuilder.fromMessage(original)
+				.removeHeader("a").setHeader("a", 2).build();
+		assertEquals(2, result.getHeaders().get("a"));
+		result = MessageBuilder.fromMessage(original).removeHeader("a").setHeader("a", 1).build();
+		assertEquals(1, result.getHeaders().get("a"));
+		assertEquals(3, result.getHeaders().size());
+	}
+
+	@Test
+	public void testRepeatedDerivation() {
+		Message<?> message = MessageBuilder.withPayload(0).setHeader("fixed", "x").build();
+		for (int i = 1; i <= 50; i++) {
+			message = MessageBuilder.fromMessage(message).setHeader("h" + i, i).removeHeader("h" + (i - 2)).build();
+		}
+		MessageHeaders headers = message.getHeaders();
+		assertEquals("x", headers.get("fixed"));
+		assertEquals(49, headers.get("h49"));
+		assertEquals(50, headers.get("h50"));
+		assertFalse(headers.containsKey("h48"));
+		assertEquals(5, headers.size());
+		assertEquals(5, headers.keySet().size());
+	}
+
+	@Test
+	public void testRemoveHeadersPatternOnDerivedMessage() {
+		Message<String> original = MessageBuilder.withPayload("foo")
+				.setHeader("foo1", 1).setHeader("foo2", 2).setHeader("bar", 3).build();
+		Message<String> result = MessageBuilder.fromMessage(original).removeHeaders("foo*").build();
+		assertFalse(result.getHeaders().containsKey("foo1"));
+		assertFalse(result.getHeaders().containsKey("foo2"));
+		assertEquals(3, result.getHeaders().get("bar"));
+	}
+
 }
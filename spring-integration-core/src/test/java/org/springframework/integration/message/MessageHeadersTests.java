@@ -17,9 +17,11 @@
 package org.springframework.integration.message;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -29,10 +31,13 @@ import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import org.junit.Test;
 
+import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.integration.MessageHeaders;
+import org.springframework.integration.support.IncrementingIdGenerator;
 
 /**
  * @author Mark Fisher
@@ -141,6 +146,88 @@ public class MessageHeadersTests {
 		assertNull(output.get("address"));
 	}
 
+	@Test
+	public void serializedFormPreservesIdAndTimestamp() throws Exception {
+		Map<String, Object> map = new HashMap<String, Object>();
+		map.put("name", "joe");
+		MessageHeaders input = new MessageHeaders(map);
+		MessageHeaders output = (MessageHeaders) serializeAndDeserialize(input);
+		assertEquals(input.getId(), output.getId());
+		assertEquals(input.getTimestamp(), output.getTimestamp());
+		assertEquals(input, output);
+		assertEquals(input.hashCode(), output.hashCode());
+	}
+
+	@Test
+	public void idIsStableAcrossAccesses() {
+		MessageHeaders headers = new MessageHeaders(null);
+		UUID id = headers.getId();
+		assertSame(id, headers.get(MessageHeaders.ID));
+		assertSame(id, headers.getId());
+		assertEquals(2, headers.size());
+	}
+
+	@Test
+	public void equalToHashMapWithSameEntries() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < 50; i++) {
+			map.put("key" + i, i);
+		}
+		map.put(MessageHeaders.CORRELATION_ID, "foo");
+		MessageHeaders headers = new MessageHeaders(map);
+		Map<String, Object> expected = new HashMap<String, Object>(map);
+		expected.put(MessageHeaders.ID, headers.getId());
+		expected.put(MessageHeaders.TIMESTAMP, headers.getTimestamp());
+		assertEquals(expected, new HashMap<String, Object>(headers));
+		assertEquals(expected.hashCode(), headers.hashCode());
+		assertEquals(53, headers.size());
+		assertEquals(expected.keySet(), headers.keySet());
+		assertEquals("foo", headers.getCorrelationId());
+		assertFalse(headers.containsKey("key50"));
+	}
+
+	@Test
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void internalMapSupportsRestoringHeaders() {
+		Map<String, Object> map = new HashMap<String, Object>();
+		for (int i = 0; i < 20; i++) {
+			map.put("key" + i, i);
+		}
+		MessageHeaders headers = new MessageHeaders(map);
+		Map innerMap = (Map) new DirectFieldAccessor(headers).getPropertyValue("headers");
+		UUID id = UUID.randomUUID();
+		innerMap.put(MessageHeaders.ID, id);
+		innerMap.put(MessageHeaders.TIMESTAMP, 123L);
+		for (int i = 20; i < 40; i++) {
+			innerMap.put("key" + i, i);
+		}
+		for (int i = 0; i < 40; i += 3) {
+			assertEquals(i, innerMap.remove("key" + i));
+		}
+		assertEquals(id, headers.getId());
+		assertEquals(new Long(123), headers.getTimestamp());
+		for (int i = 0; i < 40; i++) {
+			if (i % 3 == 0) {
+				assertFalse(headers.containsKey("key" + i));
+			}
+			else {
+				assertEquals(i, headers.get("key" + i));
+			}
+		}
+		assertEquals(40 - 14 + 2, headers.size());
+		assertEquals(headers.size(), headers.entrySet().size());
+	}
+
+	@Test
+	public void incrementingIdGenerator() {
+		IncrementingIdGenerator generator = new IncrementingIdGenerator(42L);
+		UUID first = generator.generateId();
+		UUID second = generator.generateId();
+		assertEquals(42L, first.getMostSignificantBits());
+		assertEquals(first.getLeastSignificantBits() + 1, second.getLeastSignificantBits());
+		assertFalse(new IncrementingIdGenerator().generateId().equals(new IncrementingIdGenerator().generateId()));
+	}
+
 
 	private static Object serializeAndDeserialize(Object object) throws Exception {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.integration.Message;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * @since 2.1
+ */
+public class AbstractKeyValueMessageStoreTests {
+
+	private final MapMessageStore store = new MapMessageStore();
+
+	@Test
+	public void addingToGroupDoesNotReadMessages() {
+		for (int i = 1; i <= 10; i++) {
+			MessageGroup group = store.addMessageToGroup("foo", MessageBuilder.withPayload("foo" + i).build());
+			assertEquals(i, group.size());
+		}
+		assertEquals(0, store.messageReads.get());
+		assertEquals(10, store.messageGroupSize("foo"));
+		MessageGroup group = store.getMessageGroup("foo");
+		Iterator<Message<?>> messages = group.getMessages().iterator();
+		for (int i = 1; i <= 10; i++) {
+			assertEquals("foo" + i, messages.next().getPayload());
+		}
+		assertEquals(10, store.messageReads.get());
+	}
+
+	@Test
+	public void canAddUsesSequenceNumbersFromMetadata() {
+		store.addMessageToGroup("foo", MessageBuilder.withPayload("foo").setSequenceNumber(1).setSequenceSize(3).build());
+		store.addMessageToGroup("foo", MessageBuilder.withPayload("bar").setSequenceNumber(2).setSequenceSize(3).build());
+		MessageGroup group = store.getMessageGroup("foo");
+		assertFalse(group.canAdd(MessageBuilder.withPayload("baz").setSequenceNumber(2).setSequenceSize(3).build()));
+		assertFalse(group.canAdd(MessageBuilder.withPayload("baz").setSequenceNumber(3).setSequenceSize(4).build()));
+		assertTrue(group.canAdd(MessageBuilder.withPayload("baz").setSequenceNumber(3).setSequenceSize(3).build()));
+		// only the first message is read, for its sequence size
+		assertEquals(1, store.messageReads.get());
+	}
+
+	@Test
+	public void messagesAddedInSameMillisecondKeepTheirOrder() {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 100; i++) {
+			messages.add(MessageBuilder.withPayload(i).build());
+		}
+		store.addMessagesToGroup("foo", messages);
+		assertEquals(100, store.getMessageGroup("foo").size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, store.pollMessageFromGroup("foo").getPayload());
+		}
+		assertNull(store.pollMessageFromGroup("foo"));
+		assertEquals(0, store.getMessageCount());
+	}
+
+	@Test
+	public void removeMessagesAndGroup() {
+		Message<String> message1 = MessageBuilder.withPayload("foo").build();
+		Message<String> message2 = MessageBuilder.withPayload("bar").build();
+		store.addMessagesToGroup("foo", Arrays.asList(message1, message2));
+		MessageGroup group = store.removeMessageFromGroup("foo", message1);
+		assertEquals(1, group.size());
+		assertEquals("bar", group.getOne().getPayload());
+		assertEquals(1, store.getMessageCount());
+		store.completeGroup("foo");
+		store.setLastReleasedSequenceNumberForGroup("foo", 5);
+		group = store.getMessageGroup("foo");
+		assertTrue(group.isComplete());
+		assertEquals(5, group.getLastReleasedMessageSequenceNumber());
+		assertEquals(1, store.getMessageGroupCount());
+		store.removeMessageGroup("foo");
+		assertEquals(0, store.getMessageCount());
+		assertEquals(0, store.getMessageGroup("foo").size());
+	}
+
+
+	private static class MapMessageStore extends AbstractKeyValueMessageStore {
+
+		private final Map<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+
+		private final AtomicInteger messageReads = new AtomicInteger();
+
+		@Override
+		protected Object doRetrieve(Object id) {
+			if (!id.toString().startsWith(MESSAGE_GROUP_KEY_PREFIX)) {
+				messageReads.incrementAndGet();
+			}
+			return map.get(id);
+		}
+
+		@Override
+		protected void doStore(Object id, Object objectToStore) {
+			map.put(id, objectToStore);
+		}
+
+		@Override
+		protected Object doRemove(Object id) {
+			return map.remove(id);
+		}
+
+		@Override
+		protected Collection<?> doListKeys(String keyPattern) {
+			List<Object> keys = new ArrayList<Object>();
+			for (Object key : map.keySet()) {
+				if (PatternMatchUtils.simpleMatch(keyPattern, key.toString())) {
+					keys.add(key);
+				}
+			}
+			return keys;
+		}
+	}
+
+}
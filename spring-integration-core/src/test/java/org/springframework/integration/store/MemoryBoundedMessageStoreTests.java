@@ -0,0 +1,144 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 2.1
+ */
+public class MemoryBoundedMessageStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MemoryBoundedMessageStore store;
+
+	@After
+	public void destroyStore() {
+		if (this.store != null) {
+			this.store.destroy();
+		}
+	}
+
+	@Test
+	public void leastRecentlyUsedMessagesOverflowAndAreReloaded() {
+		this.store = new MemoryBoundedMessageStore(3000);
+		List<Message<byte[]>> messages = this.addMessages(10);
+		assertTrue(this.store.getHeapSize() <= 3000);
+		assertTrue(this.store.getOverflowMessageCount() > 0);
+		assertEquals(10, this.store.getMessageCount());
+		Message<?> first = this.store.getMessage(messages.get(0).getHeaders().getId());
+		assertEquals(messages.get(0).getHeaders().getId(), first.getHeaders().getId());
+		assertArrayEquals(messages.get(0).getPayload(), (byte[]) first.getPayload());
+		// the reloaded message is back on the heap
+		assertSame(first, this.store.getMessage(messages.get(0).getHeaders().getId()));
+		for (Message<byte[]> message : messages) {
+			assertArrayEquals(message.getPayload(), (byte[]) this.store.removeMessage(message.getHeaders().getId())
+					.getPayload());
+		}
+		assertEquals(0, this.store.getMessageCount());
+		assertEquals(0, this.store.getHeapSize());
+		assertEquals(0, this.store.getOverflowSize());
+	}
+
+	@Test
+	public void groupMessagesOverflowToMappedFiles() throws Exception {
+		this.store = new MemoryBoundedMessageStore(3000);
+		this.store.setDirectory(this.folder.getRoot());
+		this.store.setSegmentSize(4096);
+		for (int i = 0; i < 10; i++) {
+			this.store.addMessageToGroup("foo", MessageBuilder.withPayload(new byte[1000]).setSequenceNumber(i + 1)
+					.build());
+		}
+		assertTrue(this.store.getOverflowMessageCount() > 0);
+		assertTrue(this.folder.getRoot().list().length > 0);
+		MessageGroup group = this.store.getMessageGroup("foo");
+		assertEquals(10, group.size());
+		Iterator<Message<?>> iterator = group.getMessages().iterator();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i + 1), iterator.next().getHeaders().getSequenceNumber());
+		}
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.valueOf(i + 1), this.store.pollMessageFromGroup("foo").getHeaders()
+					.getSequenceNumber());
+		}
+		assertNull(this.store.pollMessageFromGroup("foo"));
+		assertEquals(0, this.store.getOverflowSize());
+	}
+
+	@Test
+	public void segmentFilesAreDeletedWhenReleasedAndOnDestroy() throws Exception {
+		this.store = new MemoryBoundedMessageStore(0);
+		this.store.setDirectory(this.folder.getRoot());
+		this.store.setSegmentSize(4096);
+		List<Message<byte[]>> messages = this.addMessages(10);
+		assertTrue(this.folder.getRoot().list().length > 1);
+		for (Message<byte[]> message : messages) {
+			this.store.removeMessage(message.getHeaders().getId());
+		}
+		// only the spare segment is kept
+		assertEquals(1, this.folder.getRoot().list().length);
+		this.store.destroy();
+		assertEquals(0, this.folder.getRoot().list().length);
+	}
+
+	@Test
+	public void messagesWithNonSerializableHeadersStayOnHeap() {
+		this.store = new MemoryBoundedMessageStore(0);
+		Message<String> message = MessageBuilder.withPayload("foo").setReplyChannel(new QueueChannel()).build();
+		this.store.addMessage(message);
+		this.store.addMessage(MessageBuilder.withPayload("bar").build());
+		this.store.addMessage(MessageBuilder.withPayload("baz").build());
+		// the most recently stored message is kept on the heap even though it exceeds the budget
+		assertEquals(1, this.store.getOverflowMessageCount());
+		assertSame(message, this.store.getMessage(message.getHeaders().getId()));
+		this.store.addMessage(MessageBuilder.withPayload("qux").build());
+		assertEquals(2, this.store.getOverflowMessageCount());
+		assertEquals(4, this.store.getMessageCount());
+		assertSame(message, this.store.removeMessage(message.getHeaders().getId()));
+		assertEquals(3, this.store.getMessageCount());
+	}
+
+	private List<Message<byte[]>> addMessages(int count) {
+		List<Message<byte[]>> messages = new ArrayList<Message<byte[]>>();
+		for (int i = 0; i < count; i++) {
+			byte[] payload = new byte[1000];
+			payload[0] = (byte) i;
+			messages.add(this.store.addMessage(MessageBuilder.withPayload(payload).build()));
+		}
+		return messages;
+	}
+
+}
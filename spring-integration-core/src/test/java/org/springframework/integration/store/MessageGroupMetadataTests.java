@@ -0,0 +1,172 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * @since 2.1
+ */
+public class MessageGroupMetadataTests {
+
+	@Test
+	public void sequenceNumberOfRemainingDuplicateIsKept() {
+		MessageGroupMetadata metadata = new MessageGroupMetadata("foo");
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		metadata.add(first, 1);
+		metadata.add(second, 1);
+		metadata.add(UUID.randomUUID(), 2);
+		metadata.remove(first);
+		assertTrue(metadata.containsSequenceNumber(1));
+		metadata.remove(second);
+		assertFalse(metadata.containsSequenceNumber(1));
+		assertTrue(metadata.containsSequenceNumber(2));
+	}
+
+	@Test
+	public void sequenceNumbersAreIndexedAfterDeserialization() throws Exception {
+		MessageGroupMetadata metadata = new MessageGroupMetadata("foo", 42L);
+		UUID first = UUID.randomUUID();
+		metadata.add(first, 1);
+		metadata.add(UUID.randomUUID(), 3);
+		metadata.complete();
+		MessageGroupMetadata copy = (MessageGroupMetadata) deserialize(serialize(metadata));
+		assertEquals("foo", copy.getGroupId());
+		assertEquals(42L, copy.getTimestamp());
+		assertTrue(copy.isComplete());
+		assertEquals(metadata.getMessageIds(), copy.getMessageIds());
+		assertTrue(copy.containsSequenceNumber(1));
+		assertFalse(copy.containsSequenceNumber(2));
+		assertTrue(copy.containsSequenceNumber(3));
+		copy.remove(first);
+		assertFalse(copy.containsSequenceNumber(1));
+	}
+
+	@Test
+	public void metadataOfEarlierVersionsIsMigrated() throws Exception {
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		LegacyMetadata legacy = new LegacyMetadata();
+		legacy.groupId = "foo";
+		legacy.messageCreationDateToIdMappings.put(2L, second);
+		legacy.messageCreationDateToIdMappings.put(1L, first);
+		legacy.complete = true;
+		legacy.timestamp = 42L;
+		legacy.lastReleasedMessageSequenceNumber = 5;
+		byte[] bytes = renameClass(serialize(legacy), LegacyMetadata.class.getName(),
+				MessageGroupMetadata.class.getName());
+		MessageGroupMetadata metadata = (MessageGroupMetadata) deserialize(bytes);
+		assertEquals("foo", metadata.getGroupId());
+		assertEquals(Arrays.asList(first, second), metadata.getMessageIds());
+		assertEquals(first, metadata.firstId());
+		assertTrue(metadata.isComplete());
+		assertEquals(42L, metadata.getTimestamp());
+		assertEquals(5, metadata.getLastReleasedMessageSequenceNumber());
+		metadata.add(UUID.randomUUID(), 1);
+		assertTrue(metadata.containsSequenceNumber(1));
+		assertEquals(3, metadata.size());
+	}
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Replace the (length prefixed) class name in a serialized stream.
+	 */
+	private static byte[] renameClass(byte[] bytes, String from, String to) throws Exception {
+		byte[] fromBytes = prefixed(from);
+		byte[] toBytes = prefixed(to);
+		for (int i = 0; i <= bytes.length - fromBytes.length; i++) {
+			if (startsWith(bytes, i, fromBytes)) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				out.write(bytes, 0, i);
+				out.write(toBytes);
+				out.write(bytes, i + fromBytes.length, bytes.length - i - fromBytes.length);
+				return out.toByteArray();
+			}
+		}
+		throw new IllegalStateException("class name not found in the stream: " + from);
+	}
+
+	private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++) {
+			if (bytes[offset + i] != prefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static byte[] prefixed(String name) throws Exception {
+		byte[] utf = name.getBytes("UTF-8");
+		byte[] prefixed = new byte[utf.length + 2];
+		prefixed[0] = (byte) (utf.length >> 8);
+		prefixed[1] = (byte) utf.length;
+		System.arraycopy(utf, 0, prefixed, 2, utf.length);
+		return prefixed;
+	}
+
+
+	/**
+	 * The serialized form of MessageGroupMetadata in earlier versions.
+	 */
+	@SuppressWarnings("unused")
+	private static class LegacyMetadata implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private Object groupId;
+
+		private TreeMap<Long, UUID> messageCreationDateToIdMappings = new TreeMap<Long, UUID>();
+
+		private boolean complete;
+
+		private long timestamp;
+
+		private int lastReleasedMessageSequenceNumber;
+	}
+
+}
@@ -1,6 +1,8 @@
 package org.springframework.integration.store;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 import java.util.Collections;
@@ -39,4 +41,69 @@ public class SimpleMessageGroupTests {
 		group.add(message2);
 		assertThat(group.canAdd(message1), is(true));
 	}
+
+	@Test
+	public void shouldAcceptSequenceNumberAgainAfterRemoval() {
+		final Message<?> message1 = MessageBuilder.withPayload("test").setSequenceNumber(1).setSequenceSize(2).build();
+		final Message<?> message2 = MessageBuilder.withPayload("test").setSequenceNumber(2).setSequenceSize(2).build();
+		group.add(message1);
+		group.add(message2);
+		assertThat(group.canAdd(message1), is(false));
+		group.remove(message1);
+		assertThat(group.canAdd(message1), is(true));
+		assertThat(group.canAdd(message2), is(false));
+	}
+
+	@Test
+	public void shouldKeepSequenceNumberOfRemainingDuplicate() {
+		final Message<?> message1 = MessageBuilder.withPayload("test").setSequenceNumber(1).build();
+		final Message<?> message2 = MessageBuilder.withPayload("test").setSequenceNumber(1).build();
+		group.add(message1);
+		group.add(message2);
+		group.remove(message1);
+		assertThat(group.containsSequenceNumber(1), is(true));
+		group.remove(message2);
+		assertThat(group.containsSequenceNumber(1), is(false));
+	}
+
+	@Test
+	public void shouldTrackLowestSequenceNumber() {
+		assertEquals(0, group.getLowestSequenceNumber());
+		final Message<?> message3 = MessageBuilder.withPayload("test").setSequenceNumber(3).build();
+		final Message<?> message2 = MessageBuilder.withPayload("test").setSequenceNumber(2).build();
+		group.add(message3);
+		group.add(message2);
+		group.add(MessageBuilder.withPayload("test").build());
+		assertEquals(2, group.getLowestSequenceNumber());
+		assertEquals(1, group.getUnsequencedMessageCount());
+		group.remove(message2);
+		assertEquals(3, group.getLowestSequenceNumber());
+	}
+
+	@Test
+	public void shouldUnindexPolledMessage() {
+		final Message<?> message1 = MessageBuilder.withPayload("test").setSequenceNumber(1).build();
+		final Message<?> message2 = MessageBuilder.withPayload("test").setSequenceNumber(2).build();
+		group.add(message1);
+		group.add(message2);
+		assertEquals(message1, group.poll());
+		assertThat(group.containsSequenceNumber(1), is(false));
+		assertEquals(2, group.getLowestSequenceNumber());
+		assertEquals(message2, group.poll());
+		assertNull(group.poll());
+		assertEquals(0, group.size());
+	}
+
+	@Test
+	public void shouldCheckMembershipOfLargeGroupQuickly() {
+		int size = 20000;
+		for (int i = 1; i <= size; i++) {
+			Message<?> message = MessageBuilder.withPayload(i).setSequenceNumber(i).setSequenceSize(size).build();
+			assertThat(group.canAdd(message), is(true));
+			group.add(message);
+		}
+		assertEquals(size, group.size());
+		assertThat(group.canAdd(MessageBuilder.withPayload(0).setSequenceNumber(size / 2).setSequenceSize(size).build()), is(false));
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,8 @@ package org.springframework.integration.store;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
@@ -93,6 +94,31 @@ public class SimpleMessageStoreTests {
 		assertEquals(0, store.getMessageGroup("bar").size());
 	}
 
+	@Test
+	public void shouldAddAndRemoveSeveralMessages() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		Message<String> testMessage1 = MessageBuilder.withPayload("foo").build();
+		Message<String> testMessage2 = MessageBuilder.withPayload("bar").build();
+		MessageGroup group = store.addMessagesToGroup("bar", Arrays.asList(testMessage1, testMessage2));
+		assertEquals(2, group.size());
+		assertEquals(testMessage1, group.getOne());
+		group = store.removeMessagesFromGroup("bar", Arrays.asList(testMessage1, testMessage2));
+		assertEquals(0, group.size());
+	}
+
+	@Test
+	public void shouldPollSeveralMessages() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		Message<String> testMessage1 = MessageBuilder.withPayload("foo").build();
+		Message<String> testMessage2 = MessageBuilder.withPayload("bar").build();
+		store.addMessagesToGroup("bar", Arrays.asList(testMessage1, testMessage2));
+		assertEquals(2, store.messageGroupSize("bar"));
+		List<Message<?>> polled = store.pollMessagesFromGroup("bar", 5);
+		assertEquals(2, polled.size());
+		assertEquals(testMessage1, polled.get(0));
+		assertEquals(0, store.messageGroupSize("bar"));
+	}
+
 	@Test
 	public void testRepeatedAddAndRemoveGroup() throws Exception {
 		SimpleMessageStore store = new SimpleMessageStore(10, 10);
@@ -106,11 +132,28 @@ public class SimpleMessageStoreTests {
 	}
 
 	@Test
-	public void shouldCopyMessageGroup() throws Exception {
+	public void shouldNotCopyMessageGroup() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		Message<String> testMessage1 = MessageBuilder.withPayload("foo").build();
+		store.addMessageToGroup("bar", testMessage1);
+		MessageGroup group = store.getMessageGroup("bar");
+		assertSame(group, store.getMessageGroup("bar"));
+		store.addMessageToGroup("bar", MessageBuilder.withPayload("baz").build());
+		assertEquals(2, group.size());
+	}
+
+	@Test
+	public void shouldPollAndCountStoredGroup() throws Exception {
 		SimpleMessageStore store = new SimpleMessageStore();
+		assertEquals(0, store.messageGroupSize("bar"));
+		assertNull(store.pollMessageFromGroup("bar"));
+		assertEquals(0, store.getMessageGroupCount());
 		Message<String> testMessage1 = MessageBuilder.withPayload("foo").build();
 		store.addMessageToGroup("bar", testMessage1);
-		assertNotSame(store.getMessageGroup("bar"), store.getMessageGroup("bar"));
+		store.addMessageToGroup("bar", MessageBuilder.withPayload("baz").build());
+		assertEquals(2, store.messageGroupSize("bar"));
+		assertEquals(testMessage1, store.pollMessageFromGroup("bar"));
+		assertEquals(1, store.messageGroupSize("bar"));
 	}
 
 	@Test
@@ -145,4 +188,24 @@ public class SimpleMessageStoreTests {
 
 	}
 
+	@Test
+	public void shouldExpireOnlyOlderGroups() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		final List<Object> expired = new ArrayList<Object>();
+		store.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.add(group.getGroupId());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+		});
+		long timestamp = store.addMessageToGroup("foo", MessageBuilder.withPayload("foo").build()).getTimestamp();
+		Thread.sleep(50);
+		store.addMessageToGroup("bar", MessageBuilder.withPayload("bar").build());
+		assertEquals(1, store.expireMessageGroups(System.currentTimeMillis() - timestamp));
+		assertEquals("[foo]", expired.toString());
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.expireMessageGroups(-10000));
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
 }
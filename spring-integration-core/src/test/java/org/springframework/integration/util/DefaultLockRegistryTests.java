@@ -0,0 +1,64 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Test;
+
+/**
+ * @since 2.1
+ */
+public class DefaultLockRegistryTests {
+
+	@Test
+	public void sameKeySameLock() {
+		DefaultLockRegistry registry = new DefaultLockRegistry();
+		assertEquals(256, registry.getLockCount());
+		assertSame(registry.obtain("foo"), registry.obtain(new String("foo")));
+	}
+
+	@Test
+	public void keysSpreadOverLocks() {
+		DefaultLockRegistry registry = new DefaultLockRegistry(0x0F);
+		Set<Lock> locks = new HashSet<Lock>();
+		for (int i = 0; i < 1000; i++) {
+			locks.add(registry.obtain(UUID.randomUUID()));
+		}
+		assertEquals(16, locks.size());
+		assertNotSame(registry.obtain(0), registry.obtain(1));
+	}
+
+	@Test
+	public void singleLock() {
+		DefaultLockRegistry registry = new DefaultLockRegistry(0);
+		assertSame(registry.obtain("foo"), registry.obtain("bar"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void maskMustBeOneLessThanPowerOfTwo() {
+		new DefaultLockRegistry(0xFE);
+	}
+
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.integration.util.RingBufferBlockingQueue.WaitStrategy;
+
+/**
+ * @since 2.1
+ */
+public class RingBufferBlockingQueueTests {
+
+	@Test
+	public void fifoAcrossLaps() {
+		RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<Integer>(3);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(queue.offer(i));
+			assertTrue(queue.offer(i + 100));
+			assertEquals(Integer.valueOf(i), queue.peek());
+			assertEquals(Integer.valueOf(i), queue.poll());
+			assertEquals(Integer.valueOf(i + 100), queue.poll());
+			assertNull(queue.poll());
+		}
+	}
+
+	@Test
+	public void capacity() {
+		RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<String>(2);
+		assertEquals(2, queue.remainingCapacity());
+		assertTrue(queue.offer("a"));
+		assertTrue(queue.offer("b"));
+		assertFalse(queue.offer("c"));
+		assertEquals(2, queue.size());
+		assertEquals(0, queue.remainingCapacity());
+		assertEquals("a", queue.poll());
+		assertEquals(1, queue.remainingCapacity());
+		assertTrue(queue.offer("c"));
+	}
+
+	@Test
+	public void drainTo() {
+		RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<Integer>(5);
+		for (int i = 0; i < 5; i++) {
+			queue.offer(i);
+		}
+		List<Integer> drained = new ArrayList<Integer>();
+		assertEquals(2, queue.drainTo(drained, 2));
+		assertEquals(3, queue.drainTo(drained));
+		assertEquals(0, queue.drainTo(drained));
+		assertEquals(5, drained.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(Integer.valueOf(i), drained.get(i));
+		}
+		assertEquals(0, queue.size());
+		assertEquals(5, queue.remainingCapacity());
+	}
+
+	@Test
+	public void failingDrainReleasesClaimedSlots() {
+		RingBufferBlockingQueue<Integer> queue = new RingBufferBlockingQueue<Integer>(3);
+		for (int i = 0; i < 3; i++) {
+			queue.offer(i);
+		}
+		@SuppressWarnings("serial")
+		List<Integer> drained = new ArrayList<Integer>() {
+			@Override
+			public boolean add(Integer element) {
+				if (this.size() == 1) {
+					throw new IllegalStateException("full");
+				}
+				return super.add(element);
+			}
+		};
+		try {
+			queue.drainTo(drained);
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(1, drained.size());
+		for (int i = 0; i < 3; i++) {
+			assertTrue(queue.offer(i + 10));
+		}
+		assertEquals(Integer.valueOf(10), queue.poll());
+	}
+
+	@Test
+	public void iteratorSnapshot() {
+		RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<String>(3);
+		queue.offer("a");
+		queue.offer("b");
+		Iterator<String> iterator = queue.iterator();
+		queue.poll();
+		assertEquals("a", iterator.next());
+		assertEquals("b", iterator.next());
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void removeNotSupported() {
+		RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<String>(3);
+		queue.offer("a");
+		queue.remove("a");
+	}
+
+	@Test
+	public void timeouts() throws Exception {
+		for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+			RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<String>(1, waitStrategy);
+			assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+			assertTrue(queue.offer("a", 10, TimeUnit.MILLISECONDS));
+			assertFalse(queue.offer("b", 10, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	@Test
+	public void takeWaitsForProducer() throws Exception {
+		final RingBufferBlockingQueue<String> queue = new RingBufferBlockingQueue<String>(1);
+		final CountDownLatch taken = new CountDownLatch(1);
+		new Thread(new Runnable() {
+			public void run() {
+				try {
+					if ("a".equals(queue.take())) {
+						taken.countDown();
+					}
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}).start();
+		Thread.sleep(20);
+		queue.put("a");
+		assertTrue(taken.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void concurrentProducersAndConsumers() throws Exception {
+		this.exchange(new RingBufferBlockingQueue<Long>(16, WaitStrategy.PARK), 4);
+		this.exchange(new RingBufferBlockingQueue<Long>(16, WaitStrategy.YIELD), 4);
+		// busy spinning threads may starve each other when outnumbering the processors
+		this.exchange(new RingBufferBlockingQueue<Long>(16, WaitStrategy.SPIN), 1);
+	}
+
+
+	private void exchange(final RingBufferBlockingQueue<Long> queue, int threads) throws Exception {
+		final int perProducer = 10000;
+		final AtomicLong sum = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(threads * 2);
+		ExecutorService executor = Executors.newFixedThreadPool(threads * 2);
+		for (int t = 0; t < threads; t++) {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						for (long i = 1; i <= perProducer; i++) {
+							queue.put(i);
+						}
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					done.countDown();
+				}
+			});
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						for (int i = 0; i < perProducer; i++) {
+							sum.addAndGet(queue.take());
+						}
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					done.countDown();
+				}
+			});
+		}
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertEquals(threads * ((long) perProducer * (perProducer + 1) / 2), sum.get());
+		assertEquals(0, queue.size());
+	}
+
+}
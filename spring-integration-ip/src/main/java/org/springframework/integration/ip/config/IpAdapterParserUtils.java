@@ -69,6 +69,8 @@ public abstract class IpAdapterParserUtils {
 
 	static final String USING_DIRECT_BUFFERS = "using-direct-buffers";
 
+	static final String SELECTOR_COUNT = "selector-count";
+
 	static final String MESSAGE_FORMAT = "message-format";
 
 	static final String SO_LINGER = "so-linger";
@@ -113,6 +115,12 @@ public abstract class IpAdapterParserUtils {
 
 	public static final String SCHEDULER = "scheduler";
 
+	public static final String PIPELINED = "pipelined";
+
+	public static final String MAX_PENDING_REQUESTS = "max-pending-requests";
+
+	public static final String CORRELATION_STRATEGY = "correlation-strategy";
+
 	private IpAdapterParserUtils() {}
 
 	/**
@@ -87,6 +87,8 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 
 	private volatile boolean usingDirectBuffers;
 
+	private volatile int selectorCount = 1;
+
 	private volatile String beanName;
 
 	private volatile boolean applySequence;
@@ -105,6 +107,7 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 				this.setCommonAttributes(connectionFactory);
 				this.setServerAttributes(connectionFactory);
 				connectionFactory.setUsingDirectBuffers(this.usingDirectBuffers);
+				connectionFactory.setSelectorCount(this.selectorCount);
 				this.connectionFactory = connectionFactory;
 			} else {
 				TcpNioClientConnectionFactory connectionFactory = new TcpNioClientConnectionFactory(
@@ -253,6 +256,14 @@ public class TcpConnectionFactoryFactoryBean extends AbstractFactoryBean<Abstrac
 		this.usingDirectBuffers = usingDirectBuffers;
 	}
 
+	/**
+	 * @param selectorCount
+	 * @see org.springframework.integration.ip.tcp.connection.TcpNioServerConnectionFactory#setSelectorCount(int)
+	 */
+	public void setSelectorCount(int selectorCount) {
+		this.selectorCount = selectorCount;
+	}
+
 	/**
 	 * @param taskExecutor
 	 * @see org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory#setTaskExecutor(java.util.concurrent.Executor)
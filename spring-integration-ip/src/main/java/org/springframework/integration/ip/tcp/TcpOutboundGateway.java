@@ -17,7 +17,10 @@
 package org.springframework.integration.ip.tcp;
 
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
@@ -27,6 +30,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.MessageTimeoutException;
 import org.springframework.integration.MessagingException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
 import org.springframework.integration.ip.IpHeaders;
 import org.springframework.integration.ip.tcp.connection.AbstractClientConnectionFactory;
@@ -38,10 +42,21 @@ import org.springframework.util.Assert;
 
 /**
  * TCP outbound gateway that uses a client connection factory. If the factory is configured
- * for single-use connections, each request is sent on a new connection; if the factory does not use
+ * for single-use connections, each request is sent on a new connection (or, with a
+ * {@link org.springframework.integration.ip.tcp.connection.PoolingClientConnectionFactory},
+ * on a connection borrowed from the pool); if the factory does not use
  * single use connections, each request is blocked until the previous response is received
- * (or times out). Asynchronous requests/responses over the same connection are not
- * supported - use a pair of outbound/inbound adapters for that use case.
+ * (or times out), unless the gateway is pipelined.
+ * <p/>
+ * A pipelined gateway sends requests over a shared connection without waiting for
+ * the replies to the previous ones, up to a maximum number of pending requests. The
+ * replies are correlated with the requests either by the order in which they are
+ * received on each connection, which requires the server to reply in the order of the
+ * requests, or, if a {@link CorrelationStrategy} is provided, by the correlation keys
+ * it returns for the request and for the reply, e.g. an id carried in the payload.
+ * When the replies are correlated by their order, a reply timeout closes the connection
+ * and fails the other requests pending on it, since a reply that never comes would
+ * otherwise shift every later reply on the connection to the wrong request.
  * <p/>
  * {@link SmartLifecycle} methods delegate to the underlying {@link AbstractConnectionFactory}
  *
@@ -55,7 +70,18 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 	private Map<String, AsyncReply> pendingReplies = new ConcurrentHashMap<String, AsyncReply>();
 
-	private Semaphore semaphore = new Semaphore(1, true);
+	private volatile Semaphore semaphore = new Semaphore(1, true);
+
+	private volatile boolean pipelined;
+
+	private volatile int maxPendingRequests = 1000;
+
+	private volatile CorrelationStrategy correlationStrategy;
+
+	private final ConcurrentMap<String, Queue<AsyncReply>> pipelinedReplies =
+			new ConcurrentHashMap<String, Queue<AsyncReply>>();
+
+	private final ConcurrentMap<Object, AsyncReply> correlatedReplies = new ConcurrentHashMap<Object, AsyncReply>();
 
 	private volatile long replyTimeout = 10000;
 
@@ -79,13 +105,49 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		this.replyTimeout = replyTimeout;
 	}
 
+	/**
+	 * If true, requests are sent without waiting for the replies to the previous
+	 * requests; requires a connection factory that does not use single-use connections.
+	 * Default false.
+	 * @param pipelined the pipelined to set
+	 */
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+		this.semaphore = new Semaphore(pipelined ? this.maxPendingRequests : 1, true);
+	}
+
+	/**
+	 * The maximum number of requests of a pipelined gateway waiting for their reply;
+	 * further requests wait up to the request timeout. Default 1000.
+	 * @param maxPendingRequests the maxPendingRequests to set
+	 */
+	public void setMaxPendingRequests(int maxPendingRequests) {
+		Assert.isTrue(maxPendingRequests > 0, "'maxPendingRequests' must be greater than 0");
+		this.maxPendingRequests = maxPendingRequests;
+		this.semaphore = new Semaphore(this.pipelined ? maxPendingRequests : 1, true);
+	}
+
+	/**
+	 * The strategy returning the key correlating a reply with its request, applied
+	 * to both messages, when the gateway is pipelined. If not set, the replies on
+	 * a connection are correlated with the requests in the order they were sent.
+	 * @param correlationStrategy the correlationStrategy to set
+	 */
+	public void setCorrelationStrategy(CorrelationStrategy correlationStrategy) {
+		this.correlationStrategy = correlationStrategy;
+	}
+
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
 		Assert.notNull(connectionFactory, this.getClass().getName() +
 				" requires a client connection factory");
+		if (this.pipelined) {
+			return this.handlePipelinedRequestMessage(requestMessage);
+		}
 		boolean haveSemaphore = false;
+		boolean singleUseConnection = this.connectionFactory.isSingleUse();
+		TcpConnection connection = null;
 		try {
-			boolean singleUseConnection = this.connectionFactory.isSingleUse();
 			if (!singleUseConnection) {
 				logger.debug("trying semaphore");
 				if (!this.semaphore.tryAcquire(this.requestTimeout, TimeUnit.MILLISECONDS)) {
@@ -96,8 +158,8 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 					logger.debug("got semaphore");
 				}
 			}
-			TcpConnection connection = this.connectionFactory.getConnection();
-			AsyncReply reply = new AsyncReply();
+			connection = this.connectionFactory.getConnection();
+			AsyncReply reply = new AsyncReply(connection.getConnectionId());
 			pendingReplies.put(connection.getConnectionId(), reply);
 			if (logger.isDebugEnabled()) {
 				logger.debug("Added " + connection.getConnectionId());
@@ -120,6 +182,10 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 			throw new MessagingException("Failed to send or receive", e);
 		}
 		finally {
+			if (singleUseConnection && connection != null) {
+				// returns a pooled connection to its pool
+				connection.close();
+			}
 			if (haveSemaphore) {
 				this.semaphore.release();
 				if (logger.isDebugEnabled()) {
@@ -129,12 +195,111 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		}
 	}
 
+	private Object handlePipelinedRequestMessage(Message<?> requestMessage) {
+		Assert.state(!this.connectionFactory.isSingleUse(),
+				"A pipelined gateway requires a connection factory that does not use single-use connections");
+		boolean haveSemaphore = false;
+		Object correlationKey = null;
+		AsyncReply reply = null;
+		try {
+			if (!this.semaphore.tryAcquire(this.requestTimeout, TimeUnit.MILLISECONDS)) {
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for a pending request slot");
+			}
+			haveSemaphore = true;
+			TcpConnection connection = this.connectionFactory.getConnection();
+			reply = new AsyncReply(connection.getConnectionId());
+			if (this.correlationStrategy != null) {
+				correlationKey = this.correlationStrategy.getCorrelationKey(requestMessage);
+				Assert.state(correlationKey != null, "Null correlation key for request " + requestMessage);
+				if (this.correlatedReplies.putIfAbsent(correlationKey, reply) != null) {
+					correlationKey = null;
+					throw new MessagingException(requestMessage, "A request with the same correlation key is pending");
+				}
+				connection.send(requestMessage);
+			}
+			else {
+				Queue<AsyncReply> replies = this.getPipelinedReplies(connection.getConnectionId());
+				// the replies are expected in the order the requests are written
+				synchronized (replies) {
+					replies.add(reply);
+					try {
+						connection.send(requestMessage);
+					}
+					catch (Exception e) {
+						replies.remove(reply);
+						throw e;
+					}
+				}
+			}
+			Message<?> replyMessage = reply.getReply();
+			if (replyMessage == null) {
+				if (reply.isConnectionClosed()) {
+					throw new MessagingException(requestMessage, "Connection closed before the reply was received");
+				}
+				if (this.correlationStrategy == null) {
+					// the reply may never come: don't let the next one be taken for it
+					connection.close();
+				}
+				throw new MessageTimeoutException(requestMessage, "Timed out waiting for response");
+			}
+			return replyMessage;
+		}
+		catch (Exception e) {
+			if (e instanceof MessagingException) {
+				throw (MessagingException) e;
+			}
+			logger.error("Tcp Gateway exception", e);
+			throw new MessagingException("Failed to send or receive", e);
+		}
+		finally {
+			if (correlationKey != null) {
+				this.correlatedReplies.remove(correlationKey, reply);
+			}
+			if (haveSemaphore) {
+				this.semaphore.release();
+			}
+		}
+	}
+
+	private Queue<AsyncReply> getPipelinedReplies(String connectionId) {
+		Queue<AsyncReply> replies = this.pipelinedReplies.get(connectionId);
+		if (replies == null) {
+			replies = new ConcurrentLinkedQueue<AsyncReply>();
+			Queue<AsyncReply> existing = this.pipelinedReplies.putIfAbsent(connectionId, replies);
+			if (existing != null) {
+				replies = existing;
+			}
+		}
+		return replies;
+	}
+
+	private boolean onPipelinedReply(Message<?> message, String connectionId) {
+		AsyncReply reply = null;
+		if (this.correlationStrategy != null) {
+			Object correlationKey = this.correlationStrategy.getCorrelationKey(message);
+			reply = (correlationKey != null) ? this.correlatedReplies.get(correlationKey) : null;
+		}
+		else {
+			Queue<AsyncReply> replies = this.pipelinedReplies.get(connectionId);
+			reply = (replies != null) ? replies.poll() : null;
+		}
+		if (reply == null) {
+			logger.error("Cannot correlate response - no pending reply");
+			return false;
+		}
+		reply.setReply(message);
+		return false;
+	}
+
 	public boolean onMessage(Message<?> message) {
 		String connectionId = (String) message.getHeaders().get(IpHeaders.CONNECTION_ID);
 		if (connectionId == null) {
 			logger.error("Cannot correlate response - no connection id");
 			return false;
 		}
+		if (this.pipelined) {
+			return this.onPipelinedReply(message, connectionId);
+		}
 		AsyncReply reply = pendingReplies.get(connectionId);
 		if (reply == null) {
 			logger.error("Cannot correlate response - no pending reply");
@@ -156,8 +321,23 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 		// do nothing - no asynchronous multiplexing supported
 	}
 
+	/**
+	 * Fails the pending requests of a pipelined gateway that were sent on the connection.
+	 */
 	public void removeDeadConnection(TcpConnection connection) {
-		// do nothing - no asynchronous multiplexing supported
+		String connectionId = connection.getConnectionId();
+		Queue<AsyncReply> replies = this.pipelinedReplies.remove(connectionId);
+		if (replies != null) {
+			AsyncReply reply;
+			while ((reply = replies.poll()) != null) {
+				reply.connectionClosed();
+			}
+		}
+		for (AsyncReply reply : this.correlatedReplies.values()) {
+			if (connectionId.equals(reply.connectionId)) {
+				reply.connectionClosed();
+			}
+		}
 	}
 
 	/**
@@ -220,10 +400,15 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 
 		private final CountDownLatch latch;
 
+		private final String connectionId;
+
 		private volatile Message<?> reply;
 
-		public AsyncReply() {
+		private volatile boolean connectionClosed;
+
+		public AsyncReply(String connectionId) {
 			this.latch = new CountDownLatch(1);
+			this.connectionId = connectionId;
 		}
 
 		/**
@@ -247,6 +432,15 @@ public class TcpOutboundGateway extends AbstractReplyProducingMessageHandler imp
 			this.reply = reply;
 			this.latch.countDown();
 		}
+
+		public void connectionClosed() {
+			this.connectionClosed = true;
+			this.latch.countDown();
+		}
+
+		public boolean isConnectionClosed() {
+			return this.connectionClosed;
+		}
 	}
 
 }
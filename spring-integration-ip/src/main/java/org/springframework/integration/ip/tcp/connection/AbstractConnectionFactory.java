@@ -98,6 +98,8 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 
 	private volatile List<TcpConnection> connections = new LinkedList<TcpConnection>();
 
+	private volatile long lastHarvest;
+
 	protected final Object lifecycleMonitor = new Object();
 
 	public AbstractConnectionFactory(int port) {
@@ -498,27 +500,44 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 	 */
 	protected void processNioSelections(int selectionCount, final Selector selector, ServerSocketChannel server,
 			Map<SocketChannel, TcpNioConnection> connections) throws IOException {
+		this.processNioSelections(selectionCount, selector, server, connections, null);
+	}
+
+	/**
+	 * Times out any expired connections, examining only the channels of the wheel that
+	 * are due if a wheel is provided, or all the connections otherwise, then, if
+	 * selectionCount > 0, processes the selected keys.
+	 */
+	void processNioSelections(int selectionCount, final Selector selector, ServerSocketChannel server,
+			Map<SocketChannel, TcpNioConnection> connections, ConnectionTimeoutWheel timeoutWheel) throws IOException {
 		long now = 0;
 		if (this.soTimeout > 0) {
-			Iterator<SocketChannel> it = connections.keySet().iterator();
 			now = System.currentTimeMillis();
-			while (it.hasNext()) {
-				SocketChannel channel = it.next();
-				if (!channel.isOpen()) {
-					logger.debug("Removing closed channel");
-					it.remove();
-				} else {
-					TcpNioConnection connection = connections.get(channel);
-					if (now - connection.getLastRead() > this.soTimeout) {
-						logger.warn("Timing out TcpNioConnection " +
-									this.port + " : " +
-								    connection.getConnectionId());
-						connection.timeout();
+			if (timeoutWheel != null) {
+				this.timeoutDueConnections(now, connections, timeoutWheel);
+			}
+			else {
+				Iterator<SocketChannel> it = connections.keySet().iterator();
+				while (it.hasNext()) {
+					SocketChannel channel = it.next();
+					if (!channel.isOpen()) {
+						logger.debug("Removing closed channel");
+						it.remove();
+					} else {
+						TcpNioConnection connection = connections.get(channel);
+						if (now - connection.getLastRead() > this.soTimeout) {
+							this.timeoutConnection(connection);
+						}
 					}
 				}
 			}
 		}
-		this.harvestClosedConnections();
+		if (timeoutWheel == null) {
+			this.harvestClosedConnections();
+		}
+		else {
+			this.harvestClosedConnectionsPeriodically();
+		}
 		if (logger.isTraceEnabled()) {
 			if (host == null) {
 				logger.trace("Port " + this.port + " SelectionCount: " + selectionCount);
@@ -582,6 +601,50 @@ public abstract class AbstractConnectionFactory extends IntegrationObjectSupport
 		}
 	}
 
+	private void timeoutDueConnections(long now, Map<SocketChannel, TcpNioConnection> connections,
+			ConnectionTimeoutWheel timeoutWheel) {
+		List<SocketChannel> dueChannels = timeoutWheel.expire(now);
+		if (dueChannels == null) {
+			return;
+		}
+		for (SocketChannel channel : dueChannels) {
+			TcpNioConnection connection = connections.get(channel);
+			if (connection == null) {
+				continue;
+			}
+			if (!channel.isOpen()) {
+				logger.debug("Removing closed channel");
+				connections.remove(channel);
+			}
+			else if (now - connection.getLastRead() > this.soTimeout) {
+				this.timeoutConnection(connection);
+				connections.remove(channel);
+			}
+			else {
+				timeoutWheel.add(channel, connection.getLastRead());
+			}
+		}
+	}
+
+	private void timeoutConnection(TcpNioConnection connection) {
+		logger.warn("Timing out TcpNioConnection " +
+					this.port + " : " +
+				    connection.getConnectionId());
+		connection.timeout();
+	}
+
+	/**
+	 * Harvests the closed connections at most once a second, rather than each
+	 * time a selector wakes up.
+	 */
+	private void harvestClosedConnectionsPeriodically() {
+		long now = System.currentTimeMillis();
+		if (now - this.lastHarvest >= 1000) {
+			this.lastHarvest = now;
+			this.harvestClosedConnections();
+		}
+	}
+
 	/**
 	 * @param selector
 	 * @param now
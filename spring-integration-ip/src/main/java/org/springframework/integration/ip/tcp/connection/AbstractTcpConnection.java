@@ -28,6 +28,7 @@ import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.util.Assert;
 
 /**
@@ -46,6 +47,8 @@ public abstract class AbstractTcpConnection implements TcpConnection {
 	@SuppressWarnings("rawtypes")
 	private volatile Deserializer deserializer;
 
+	private volatile ByteBufferDeserializer<?> byteBufferDeserializer;
+
 	@SuppressWarnings("rawtypes")
 	private volatile Serializer serializer;
 
@@ -161,6 +164,19 @@ public abstract class AbstractTcpConnection implements TcpConnection {
 	 */
 	public void setDeserializer(Deserializer<?> deserializer) {
 		this.deserializer = deserializer;
+		this.byteBufferDeserializer = (deserializer instanceof ByteBufferDeserializer
+				&& ((ByteBufferDeserializer<?>) deserializer).supportsByteBufferDecoding())
+				? (ByteBufferDeserializer<?>) deserializer : null;
+	}
+
+	/**
+	 * Return the deserializer if it is a {@link ByteBufferDeserializer}
+	 * that {@link ByteBufferDeserializer#supportsByteBufferDecoding()
+	 * supports decoding from a buffer}, null otherwise.
+	 * @return the deserializer, to decode messages from a ByteBuffer.
+	 */
+	protected ByteBufferDeserializer<?> getByteBufferDeserializer() {
+		return this.byteBufferDeserializer;
 	}
 
 	/**
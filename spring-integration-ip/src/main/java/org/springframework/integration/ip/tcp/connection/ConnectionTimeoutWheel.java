@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A timer wheel of the channels whose connections may time out, so that a selector
+ * loop only examines the channels whose timeout may have expired, rather than all
+ * of its channels, each time it wakes up. A channel is placed in the slot of the
+ * time its connection expires if nothing is read; as reads do not move the channel,
+ * the caller checks the time of the last read of each due channel and adds it again
+ * if it has not expired. Timeouts are detected up to one slot (1/32 of the timeout)
+ * late. Not thread safe; used by a single selector thread.
+ *
+ * @since 2.1
+ */
+class ConnectionTimeoutWheel {
+
+	private static final int WHEEL_SIZE = 64;
+
+	private final long timeout;
+
+	private final long tickDuration;
+
+	private final List<List<SocketChannel>> slots = new ArrayList<List<SocketChannel>>(WHEEL_SIZE);
+
+	private long currentTick;
+
+	ConnectionTimeoutWheel(long timeout, long now) {
+		this.timeout = timeout;
+		// the wheel spans twice the timeout, so that a deadline never wraps around it
+		this.tickDuration = Math.max(1, timeout / (WHEEL_SIZE / 2));
+		this.currentTick = now / this.tickDuration;
+		for (int i = 0; i < WHEEL_SIZE; i++) {
+			this.slots.add(new ArrayList<SocketChannel>());
+		}
+	}
+
+	/**
+	 * Add a channel that expires at lastRead + timeout.
+	 */
+	void add(SocketChannel channel, long lastRead) {
+		long tick = (lastRead + this.timeout + this.tickDuration - 1) / this.tickDuration;
+		if (tick <= this.currentTick) {
+			tick = this.currentTick + 1;
+		}
+		this.slots.get((int) (tick % WHEEL_SIZE)).add(channel);
+	}
+
+	/**
+	 * Remove and return the channels of the slots that have elapsed.
+	 */
+	List<SocketChannel> expire(long now) {
+		long tick = now / this.tickDuration;
+		if (tick - this.currentTick > WHEEL_SIZE) {
+			this.currentTick = tick - WHEEL_SIZE;
+		}
+		List<SocketChannel> due = null;
+		while (this.currentTick < tick) {
+			this.currentTick++;
+			List<SocketChannel> slot = this.slots.get((int) (this.currentTick % WHEEL_SIZE));
+			if (!slot.isEmpty()) {
+				if (due == null) {
+					due = new ArrayList<SocketChannel>();
+				}
+				due.addAll(slot);
+				slot.clear();
+			}
+		}
+		return due;
+	}
+
+}
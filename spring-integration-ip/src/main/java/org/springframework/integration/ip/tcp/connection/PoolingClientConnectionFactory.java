@@ -0,0 +1,622 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.ip.IpHeaders;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+
+/**
+ * A client connection factory that maintains a pool of connections created by
+ * another client connection factory, which must not be configured for single-use
+ * connections. Consumers see this factory as a single-use factory: each
+ * {@link #getConnection()} borrows a connection, waiting up to the borrow timeout
+ * when the maximum number of connections are in use, and the connection is returned
+ * to the pool, rather than closed, when it is closed, when a reply is received on it,
+ * or, if there is no listener, after a message has been sent on it. A connection that
+ * is closed while a reply is still expected, e.g. after a reply timeout, or on which
+ * a send failed, is closed rather than returned, so that a late reply cannot be
+ * received by the next borrower.
+ * <p/>
+ * Connections that are closed while in the pool, e.g. by the peer, are discarded, and
+ * an optional {@link TcpConnectionValidator} checks the others before they are lent.
+ * Connections that have been idle longer than the idle timeout are closed, keeping
+ * at least the minimum number of connections open. The socket timeout of the
+ * underlying factory should therefore be larger than the idle timeout, or 0, which
+ * it is set to if it is not set. The pool never keeps more than the maximum number
+ * of connections open.
+ * <p/>
+ * The (de)serializers, socket options, interceptors etc are those of the underlying
+ * factory.
+ *
+ * @since 2.1
+ */
+@ManagedResource
+public class PoolingClientConnectionFactory extends AbstractClientConnectionFactory {
+
+	private final AbstractClientConnectionFactory targetConnectionFactory;
+
+	private volatile int minSize;
+
+	private volatile int maxSize = 10;
+
+	private volatile long borrowTimeout = 10000;
+
+	private volatile long idleTimeout = 60000;
+
+	private volatile TcpConnectionValidator validator;
+
+	private volatile Semaphore permits;
+
+	// most recently used last; guarded by itself
+	private final LinkedList<IdleConnection> idleConnections = new LinkedList<IdleConnection>();
+
+	private final Map<String, PooledConnection> borrowedConnections = new ConcurrentHashMap<String, PooledConnection>();
+
+	// the ids of the connections opened by the pool and not closed yet; guarded by idleConnections
+	private final Set<String> openConnectionIds = new HashSet<String>();
+
+	// the connections being opened; guarded by idleConnections
+	private int openingCount;
+
+	private final Object statsMonitor = new Object();
+
+	private long borrowCount;
+
+	private long borrowWaitTime;
+
+	private long maxBorrowWaitTime;
+
+	public PoolingClientConnectionFactory(AbstractClientConnectionFactory targetConnectionFactory) {
+		super(targetConnectionFactory.getHost(), targetConnectionFactory.getPort());
+		this.targetConnectionFactory = targetConnectionFactory;
+	}
+
+	/**
+	 * The number of connections kept open, even when idle. Default 0.
+	 * @param minSize the minSize to set
+	 */
+	public void setMinSize(int minSize) {
+		Assert.isTrue(minSize >= 0, "'minSize' must not be negative");
+		this.minSize = minSize;
+	}
+
+	/**
+	 * The maximum number of connections. Default 10.
+	 * @param maxSize the maxSize to set
+	 */
+	public void setMaxSize(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be greater than 0");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * The time in milliseconds to wait for a connection when the maximum number
+	 * of connections are in use. Default 10000.
+	 * @param borrowTimeout the borrowTimeout to set
+	 */
+	public void setBorrowTimeout(long borrowTimeout) {
+		this.borrowTimeout = borrowTimeout;
+	}
+
+	/**
+	 * The time in milliseconds after which an idle connection is closed; 0 to
+	 * keep idle connections open. Default 60000.
+	 * @param idleTimeout the idleTimeout to set
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		Assert.isTrue(idleTimeout >= 0, "'idleTimeout' must not be negative");
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * A validator checking each idle connection before it is lent; a connection
+	 * it rejects is closed and another one is borrowed instead. By default
+	 * connections are only checked to be open.
+	 * @param validator the validator to set
+	 */
+	public void setValidator(TcpConnectionValidator validator) {
+		this.validator = validator;
+	}
+
+	/**
+	 * Connections of a pool are never shared by concurrent users.
+	 * @return true
+	 */
+	@Override
+	public boolean isSingleUse() {
+		return true;
+	}
+
+	@ManagedAttribute
+	public int getMinSize() {
+		return this.minSize;
+	}
+
+	@ManagedAttribute
+	public int getMaxSize() {
+		return this.maxSize;
+	}
+
+	/**
+	 * @return the number of connections currently borrowed.
+	 */
+	@ManagedAttribute
+	public int getActiveCount() {
+		return this.borrowedConnections.size();
+	}
+
+	/**
+	 * @return the number of open connections in the pool.
+	 */
+	@ManagedAttribute
+	public int getIdleCount() {
+		synchronized (this.idleConnections) {
+			return this.idleConnections.size();
+		}
+	}
+
+	@ManagedAttribute
+	public long getBorrowCount() {
+		synchronized (this.statsMonitor) {
+			return this.borrowCount;
+		}
+	}
+
+	/**
+	 * @return the mean time in milliseconds a borrower waited for a connection.
+	 */
+	@ManagedAttribute
+	public double getMeanBorrowWaitTime() {
+		synchronized (this.statsMonitor) {
+			return this.borrowCount == 0 ? 0 : (double) this.borrowWaitTime / this.borrowCount;
+		}
+	}
+
+	/**
+	 * @return the longest time in milliseconds a borrower waited for a connection.
+	 */
+	@ManagedAttribute
+	public long getMaxBorrowWaitTime() {
+		synchronized (this.statsMonitor) {
+			return this.maxBorrowWaitTime;
+		}
+	}
+
+	@Override
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.isActive()) {
+				return;
+			}
+			Assert.state(!this.targetConnectionFactory.isSingleUse(),
+					"The target connection factory must not use single-use connections");
+			Assert.state(this.minSize <= this.maxSize, "'minSize' must not be greater than 'maxSize'");
+			if (this.targetConnectionFactory.getSoTimeout() < 0) {
+				// rather than the default reply timeout, which would close idle connections
+				this.targetConnectionFactory.setSoTimeout(0);
+			}
+			if (this.targetConnectionFactory.getListener() == null) {
+				PoolListener poolListener = new PoolListener();
+				this.targetConnectionFactory.registerListener(poolListener);
+				this.targetConnectionFactory.registerSender(poolListener);
+			}
+			this.permits = new Semaphore(this.maxSize, true);
+			this.targetConnectionFactory.start();
+		}
+		super.start();
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		List<IdleConnection> idleConnections;
+		synchronized (this.idleConnections) {
+			// closing a connection removes it from the idle connections
+			idleConnections = new ArrayList<IdleConnection>(this.idleConnections);
+			this.idleConnections.clear();
+			this.openConnectionIds.clear();
+			this.openingCount = 0;
+		}
+		for (IdleConnection idleConnection : idleConnections) {
+			idleConnection.connection.close();
+		}
+		for (PooledConnection pooledConnection : this.borrowedConnections.values()) {
+			pooledConnection.getTheConnection().close();
+		}
+		this.targetConnectionFactory.stop();
+	}
+
+	/**
+	 * Borrows a connection from the pool, opening a new one if there is no idle
+	 * connection.
+	 */
+	@Override
+	protected TcpConnection getOrMakeConnection() throws Exception {
+		long start = System.currentTimeMillis();
+		if (!this.permits.tryAcquire(this.borrowTimeout, TimeUnit.MILLISECONDS)) {
+			throw new MessagingException("Timed out waiting for a pooled connection to " +
+					this.getHost() + ":" + this.getPort());
+		}
+		try {
+			TcpConnection connection = this.pollIdleConnection();
+			if (connection == null) {
+				connection = this.openConnection();
+			}
+			this.recordBorrow(System.currentTimeMillis() - start);
+			PooledConnection pooledConnection = new PooledConnection(connection);
+			this.borrowedConnections.put(connection.getConnectionId(), pooledConnection);
+			return pooledConnection;
+		}
+		catch (Exception e) {
+			this.permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Runs while the factory is active, closing the connections that have been idle
+	 * longer than the idle timeout and opening the minimum number of connections.
+	 */
+	public void run() {
+		while (this.isActive()) {
+			try {
+				this.evictIdleConnections();
+				this.ensureMinSize();
+				synchronized (this.idleConnections) {
+					this.idleConnections.wait(this.idleTimeout > 0 ? Math.max(10, Math.min(this.idleTimeout / 2, 1000))
+							: 1000);
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (Exception e) {
+				logger.error("Failed to open a pooled connection to " + this.getHost() + ":" + this.getPort(), e);
+			}
+		}
+	}
+
+	public void close() {
+		synchronized (this.idleConnections) {
+			this.idleConnections.notifyAll();
+		}
+	}
+
+	private TcpConnection pollIdleConnection() {
+		while (true) {
+			TcpConnection connection = null;
+			synchronized (this.idleConnections) {
+				if (this.idleConnections.isEmpty()) {
+					return null;
+				}
+				connection = this.idleConnections.removeLast().connection;
+			}
+			if (connection.isOpen() && this.isValid(connection)) {
+				return connection;
+			}
+			connection.close();
+		}
+	}
+
+	private boolean isValid(TcpConnection connection) {
+		TcpConnectionValidator validator = this.validator;
+		if (validator == null) {
+			return true;
+		}
+		try {
+			if (validator.isValid(connection)) {
+				return true;
+			}
+		}
+		catch (RuntimeException e) {
+			logger.warn("Failed to validate pooled connection " + connection.getConnectionId(), e);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Discarding invalid pooled connection " + connection.getConnectionId());
+		}
+		return false;
+	}
+
+	private void returnConnection(PooledConnection pooledConnection, boolean discard) {
+		TcpConnection connection = pooledConnection.getTheConnection();
+		if (connection.isOpen()) {
+			boolean pooled = false;
+			if (this.isActive() && !discard) {
+				synchronized (this.idleConnections) {
+					if (this.getOpenCount() <= this.maxSize) {
+						this.idleConnections.add(new IdleConnection(connection));
+						pooled = true;
+					}
+				}
+			}
+			if (!pooled) {
+				connection.close();
+			}
+		}
+		this.borrowedConnections.remove(connection.getConnectionId());
+		this.permits.release();
+	}
+
+	/**
+	 * Opens a connection with the target factory and counts it as open, from
+	 * before it is opened until it is closed.
+	 */
+	private TcpConnection openConnection() throws Exception {
+		synchronized (this.idleConnections) {
+			this.openingCount++;
+		}
+		TcpConnection connection = null;
+		try {
+			connection = this.targetConnectionFactory.getOrMakeConnection();
+		}
+		finally {
+			synchronized (this.idleConnections) {
+				this.openingCount--;
+				if (connection != null) {
+					this.openConnectionIds.add(connection.getConnectionId());
+				}
+			}
+		}
+		if (!connection.isOpen()) {
+			// closed before it was counted
+			this.connectionClosed(connection);
+		}
+		return connection;
+	}
+
+	/**
+	 * No longer counts the connection as open and discards it if it is idle,
+	 * e.g. when it has been closed by the peer.
+	 */
+	private void connectionClosed(TcpConnection connection) {
+		String connectionId = connection.getConnectionId();
+		synchronized (this.idleConnections) {
+			if (this.openConnectionIds.remove(connectionId)) {
+				// restore the minimum size
+				this.idleConnections.notifyAll();
+			}
+			for (Iterator<IdleConnection> iterator = this.idleConnections.iterator(); iterator.hasNext();) {
+				if (iterator.next().connection.getConnectionId().equals(connectionId)) {
+					iterator.remove();
+					return;
+				}
+			}
+		}
+	}
+
+	private void evictIdleConnections() {
+		long now = System.currentTimeMillis();
+		LinkedList<TcpConnection> evicted = new LinkedList<TcpConnection>();
+		synchronized (this.idleConnections) {
+			for (Iterator<IdleConnection> iterator = this.idleConnections.iterator(); iterator.hasNext();) {
+				if (!iterator.next().connection.isOpen()) {
+					iterator.remove();
+				}
+			}
+			int excess = this.getOpenCount() - this.minSize;
+			// least recently used first
+			Iterator<IdleConnection> iterator = this.idleConnections.iterator();
+			while (excess > 0 && iterator.hasNext()) {
+				IdleConnection idleConnection = iterator.next();
+				if (this.idleTimeout > 0 && now - idleConnection.since > this.idleTimeout) {
+					iterator.remove();
+					evicted.add(idleConnection.connection);
+					excess--;
+				}
+			}
+		}
+		for (TcpConnection connection : evicted) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Closing idle pooled connection " + connection.getConnectionId());
+			}
+			connection.close();
+		}
+	}
+
+	/**
+	 * The connections opened and being opened by the pool, and not closed yet.
+	 * Must be called while holding the idle connections' lock.
+	 */
+	private int getOpenCount() {
+		return this.openConnectionIds.size() + this.openingCount;
+	}
+
+	/**
+	 * Opens connections until the minimum size is reached, each one under a permit
+	 * so that it does not add to the connections opened by the borrowers beyond the
+	 * maximum size; gives up when all the permits are taken.
+	 */
+	private void ensureMinSize() throws Exception {
+		while (this.isActive()) {
+			if (!this.permits.tryAcquire()) {
+				return;
+			}
+			try {
+				synchronized (this.idleConnections) {
+					if (this.getOpenCount() >= this.minSize) {
+						return;
+					}
+				}
+				TcpConnection connection = this.openConnection();
+				synchronized (this.idleConnections) {
+					this.idleConnections.addFirst(new IdleConnection(connection));
+				}
+			}
+			finally {
+				this.permits.release();
+			}
+		}
+	}
+
+	private void recordBorrow(long waitTime) {
+		synchronized (this.statsMonitor) {
+			this.borrowCount++;
+			this.borrowWaitTime += waitTime;
+			if (waitTime > this.maxBorrowWaitTime) {
+				this.maxBorrowWaitTime = waitTime;
+			}
+		}
+	}
+
+	/**
+	 * @return the targetConnectionFactory
+	 */
+	protected AbstractClientConnectionFactory getTargetConnectionFactory() {
+		return this.targetConnectionFactory;
+	}
+
+
+	/**
+	 * A borrowed connection; closing it returns the connection to the pool.
+	 */
+	private class PooledConnection extends AbstractTcpConnectionInterceptor {
+
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		private volatile boolean replyPending;
+
+		public PooledConnection(TcpConnection connection) {
+			this.setTheConnection(connection);
+		}
+
+		@Override
+		public void close() {
+			this.release(this.replyPending);
+		}
+
+		private void release(boolean discard) {
+			if (this.released.compareAndSet(false, true)) {
+				returnConnection(this, discard);
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return !this.released.get() && super.isOpen();
+		}
+
+		@Override
+		public boolean isSingleUse() {
+			return true;
+		}
+
+		@Override
+		public void send(Message<?> message) throws Exception {
+			Assert.state(!this.released.get(), "The connection has been returned to the pool");
+			boolean expectReply = PoolingClientConnectionFactory.this.getListener() != null;
+			this.replyPending = expectReply;
+			try {
+				super.send(message);
+			}
+			catch (Exception e) {
+				this.release(true);
+				throw e;
+			}
+			if (!expectReply) {
+				this.close();
+			}
+		}
+
+		@Override
+		public boolean onMessage(Message<?> message) {
+			TcpListener listener = PoolingClientConnectionFactory.this.getListener();
+			// before the listener wakes up the borrower, who may close the connection
+			this.replyPending = false;
+			try {
+				if (listener == null) {
+					throw new NoListenerException("No listener registered for message reception");
+				}
+				return listener.onMessage(message);
+			}
+			finally {
+				this.close();
+			}
+		}
+
+		@Override
+		public TcpListener getListener() {
+			return PoolingClientConnectionFactory.this.getListener();
+		}
+	}
+
+
+	/**
+	 * Registered with the target factory to dispatch the messages received on
+	 * the pooled connections, and to discard the connections that are closed.
+	 */
+	private class PoolListener implements TcpListener, TcpSender {
+
+		public boolean onMessage(Message<?> message) {
+			String connectionId = (String) message.getHeaders().get(IpHeaders.CONNECTION_ID);
+			PooledConnection pooledConnection = (connectionId != null) ? borrowedConnections.get(connectionId) : null;
+			if (pooledConnection == null) {
+				logger.warn("Unexpected message on an idle pooled connection " + message);
+				return false;
+			}
+			return pooledConnection.onMessage(message);
+		}
+
+		public void addNewConnection(TcpConnection connection) {
+			TcpSender sender = PoolingClientConnectionFactory.this.getSender();
+			if (sender != null) {
+				sender.addNewConnection(connection);
+			}
+		}
+
+		public void removeDeadConnection(TcpConnection connection) {
+			PooledConnection pooledConnection = borrowedConnections.get(connection.getConnectionId());
+			if (pooledConnection != null) {
+				pooledConnection.close();
+			}
+			connectionClosed(connection);
+			TcpSender sender = PoolingClientConnectionFactory.this.getSender();
+			if (sender != null) {
+				sender.removeDeadConnection(connection);
+			}
+		}
+	}
+
+
+	private static class IdleConnection {
+
+		private final TcpConnection connection;
+
+		private final long since = System.currentTimeMillis();
+
+		private IdleConnection(TcpConnection connection) {
+			this.connection = connection;
+		}
+	}
+
+}
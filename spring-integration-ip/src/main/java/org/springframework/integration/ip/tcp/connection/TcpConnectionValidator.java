@@ -0,0 +1,36 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+/**
+ * Strategy to check that an open pooled connection can still be used before
+ * it is lent to a borrower; see
+ * {@link PoolingClientConnectionFactory#setValidator(TcpConnectionValidator)}.
+ *
+ * @since 2.1
+ */
+public interface TcpConnectionValidator {
+
+	/**
+	 * Called with an idle connection that is open. Messages received on the
+	 * connection while it is validated are not delivered to any listener.
+	 * @param connection the connection.
+	 * @return true if the connection can be used, false to close and discard it.
+	 */
+	boolean isValid(TcpConnection connection);
+
+}
@@ -16,16 +16,25 @@
 
 package org.springframework.integration.ip.tcp.connection;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
 
 import org.springframework.core.serializer.Serializer;
-import org.springframework.core.serializer.Deserializer;
 import org.springframework.integration.Message;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
 
 /**
  * A TcpConnection that uses and underlying {@link Socket}.
+ * <p/>
+ * If the deserializer is a {@link ByteBufferDeserializer} supporting it
+ * (see {@link #getByteBufferDeserializer()}), the data is read from the socket in blocks into a buffer kept for the life of the connection,
+ * and messages are decoded from that buffer; the bytes following a frame
+ * remain in the buffer for the next one. Otherwise the deserializer reads
+ * the messages from the socket's InputStream.
  * 
  * @author Gary Russell
  * @since 2.0
@@ -33,9 +42,17 @@ import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamExceptio
  */
 public class TcpNetConnection extends AbstractTcpConnection {
 
+	private static final int INITIAL_READ_BUFFER_SIZE = 8 * 1024;
+
 	private final Socket socket; 
 	
 	private boolean noReadErrorOnClose;
+
+	private volatile ByteBuffer readBuffer;
+
+	private volatile boolean endOfStream;
+
+	private volatile int examined;
 	
 	/**
 	 * Constructs a TcpNetConnection for the socket.
@@ -71,9 +88,58 @@ public class TcpNetConnection extends AbstractTcpConnection {
 	}
 
 	public Object getPayload() throws Exception {
+		ByteBufferDeserializer<?> byteBufferDeserializer = this.getByteBufferDeserializer();
+		if (byteBufferDeserializer != null) {
+			return this.readAndDecode(byteBufferDeserializer);
+		}
 		return this.getDeserializer().deserialize(this.socket.getInputStream());
 	}
 
+	/**
+	 * Decodes the next frame from the read buffer, reading from the socket
+	 * only when the buffer does not contain a complete frame. The buffer
+	 * grows when a frame does not fit, the deserializer limiting the size
+	 * of a frame.
+	 */
+	private Object readAndDecode(ByteBufferDeserializer<?> deserializer) throws IOException {
+		if (this.readBuffer == null) {
+			this.readBuffer = ByteBuffer.allocate(INITIAL_READ_BUFFER_SIZE);
+			this.readBuffer.flip();
+		}
+		InputStream inputStream = this.socket.getInputStream();
+		while (true) {
+			Object payload = deserializer.deserialize(this.readBuffer, this.examined, this.endOfStream);
+			if (payload != null) {
+				this.examined = 0;
+				return payload;
+			}
+			if (this.endOfStream) {
+				throw new SoftEndOfStreamException("Stream closed between payloads");
+			}
+			this.examined = this.readBuffer.remaining();
+			this.readBuffer.compact();
+			if (!this.readBuffer.hasRemaining()) {
+				ByteBuffer largerBuffer = ByteBuffer.allocate(this.readBuffer.capacity() * 2);
+				this.readBuffer.flip();
+				largerBuffer.put(this.readBuffer);
+				this.readBuffer = largerBuffer;
+			}
+			try {
+				int len = inputStream.read(this.readBuffer.array(), this.readBuffer.position(),
+						this.readBuffer.remaining());
+				if (len < 0) {
+					this.endOfStream = true;
+				}
+				else {
+					this.readBuffer.position(this.readBuffer.position() + len);
+				}
+			}
+			finally {
+				this.readBuffer.flip();
+			}
+		}
+	}
+
 	public int getPort() {
 		return this.socket.getPort();
 	}
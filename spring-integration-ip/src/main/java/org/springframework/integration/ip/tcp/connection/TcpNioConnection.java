@@ -32,10 +32,21 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.core.serializer.Serializer;
 import org.springframework.integration.Message;
+import org.springframework.integration.ip.tcp.serializer.ByteBufferDeserializer;
 import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
 
 /**
  * A TcpConnection that uses and underlying {@link SocketChannel}.
+ * <p/>
+ * If the deserializer is a {@link ByteBufferDeserializer} supporting it,
+ * messages are decoded directly from the buffer the data is read into, and
+ * sent to the listener by the thread that read the data. The factory only
+ * selects the connection for reading again once {@link #readPacket()}
+ * returns, so the data of a connection is read, and its messages are sent,
+ * one batch at a time: a slow listener delays the next read of that
+ * connection (but not of the others). Otherwise the data is written to a
+ * pipe from which a separate assembler task deserializes the messages, and
+ * reading continues while the listener handles them.
  * 
  * @author Gary Russell
  * @since 2.0
@@ -57,6 +68,12 @@ public class TcpNioConnection extends AbstractTcpConnection {
 
 	private volatile ByteBuffer rawBuffer;
 
+	private volatile ByteBuffer readBuffer;
+
+	private volatile Object decodedPayload;
+
+	private volatile int examined;
+
 	private volatile int maxMessageSize = 60 * 1024;
 
 	private volatile long lastRead;
@@ -109,6 +126,11 @@ public class TcpNioConnection extends AbstractTcpConnection {
 	}
 
 	public Object getPayload() throws Exception {
+		if (this.getByteBufferDeserializer() != null) {
+			Object payload = this.decodedPayload;
+			this.decodedPayload = null;
+			return payload;
+		}
 		return this.getDeserializer().deserialize(pipedInputStream);
 	}
 
@@ -256,6 +278,11 @@ public class TcpNioConnection extends AbstractTcpConnection {
 	}
 
 	private void doRead() throws Exception {
+		ByteBufferDeserializer<?> byteBufferDeserializer = this.getByteBufferDeserializer();
+		if (byteBufferDeserializer != null) {
+			this.doReadAndDecode(byteBufferDeserializer);
+			return;
+		}
 		if (this.rawBuffer == null) {
 			this.rawBuffer = allocate(maxMessageSize);
 		}
@@ -277,13 +304,71 @@ public class TcpNioConnection extends AbstractTcpConnection {
 			if (logger.isDebugEnabled()) {
 				logger.debug("Read " + rawBuffer.limit() + " into raw buffer");
 			}
-			this.pipedOutputStream.write(this.rawBuffer.array(), 0, this.rawBuffer.limit());
+			if (this.rawBuffer.hasArray()) {
+				this.pipedOutputStream.write(this.rawBuffer.array(), 0, this.rawBuffer.limit());
+			}
+			else {
+				byte[] bytes = new byte[this.rawBuffer.limit()];
+				this.rawBuffer.get(bytes);
+				this.pipedOutputStream.write(bytes);
+			}
 			this.pipedOutputStream.flush();
 		} finally {
 			this.writingToPipe = false;
 		}
 	}
 
+	/**
+	 * Reads the available data into the read buffer and sends the messages
+	 * of all the complete frames it contains to the listener; an incomplete
+	 * frame remains in the buffer until the rest of it is read, and is not
+	 * examined again. The buffer grows when a frame does not fit, the
+	 * deserializer limiting the size of a frame.
+	 */
+	private void doReadAndDecode(ByteBufferDeserializer<?> deserializer) throws Exception {
+		if (this.readBuffer == null) {
+			this.readBuffer = allocate(maxMessageSize);
+		}
+		int len = this.socketChannel.read(this.readBuffer);
+		boolean endOfStream = len < 0;
+		this.readBuffer.flip();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Read " + len + " bytes, " + this.readBuffer.remaining() + " in read buffer");
+		}
+		try {
+			Object payload;
+			while (this.isOpen()
+					&& (payload = deserializer.deserialize(this.readBuffer, this.examined, endOfStream)) != null) {
+				this.examined = 0;
+				this.decodedPayload = payload;
+				Message<?> message = this.getMapper().toMessage(this);
+				if (this.getListener() == null) {
+					if (this.isSingleUse()) {
+						this.closeConnection();
+					}
+					else if (logger.isDebugEnabled()) {
+						logger.debug("No listener, discarding message " + message);
+					}
+				}
+				else {
+					sendToChannel(message);
+				}
+			}
+			this.examined = this.readBuffer.remaining();
+		} finally {
+			this.readBuffer.compact();
+		}
+		if (endOfStream) {
+			this.closeConnection();
+		}
+		else if (!this.readBuffer.hasRemaining()) {
+			ByteBuffer largerBuffer = allocate(this.readBuffer.capacity() * 2);
+			this.readBuffer.flip();
+			largerBuffer.put(this.readBuffer);
+			this.readBuffer = largerBuffer;
+		}
+	}
+
 	private void checkForAssembler() {
 		synchronized(this.executionControl) {
 			if (this.executionControl.incrementAndGet() <= 1) {
@@ -307,6 +392,8 @@ public class TcpNioConnection extends AbstractTcpConnection {
 			doRead();
 		} catch (ClosedChannelException cce) {
 			this.closeConnection();
+		} catch (SoftEndOfStreamException e) {
+			this.closeConnection();
 		} catch (Exception e) {
 			logger.error("Exception on Read " + 
 					     this.getConnectionId() + " " + 
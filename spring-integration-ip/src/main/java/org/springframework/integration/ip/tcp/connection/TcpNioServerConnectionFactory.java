@@ -26,26 +26,55 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
 
 /**
 /**
  * Implements a server connection factory that produces {@link TcpNioConnection}s using
  * a {@link ServerSocketChannel}. Must have a {@link TcpListener} registered.
+ * <p/>
+ * By default, a single selector accepts the connections and detects the data to read
+ * on all of them. With a selector count greater than 1, the accepted connections are
+ * distributed across that number of read selectors, each running in a thread of the
+ * task executor, so the executor must have enough threads for the acceptor, the read
+ * selectors and the reads themselves.
  * @author Gary Russell
  * @since 2.0
  *
  */
+@ManagedResource
 public class TcpNioServerConnectionFactory extends AbstractServerConnectionFactory {
 
 	private ServerSocketChannel serverChannel;
 	
 	private boolean usingDirectBuffers;
 	
-	private Map<SocketChannel, TcpNioConnection> connections = new HashMap<SocketChannel, TcpNioConnection>();
+	private Map<SocketChannel, TcpNioConnection> connections = new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
+
+	private volatile Selector selector;
+
+	private volatile ConnectionTimeoutWheel timeoutWheel;
+
+	private volatile int selectorCount = 1;
+
+	private volatile ReadSelector[] readSelectors;
+
+	private final AtomicInteger nextReadSelector = new AtomicInteger();
+
+	private final AtomicLong selectorLoopCount = new AtomicLong();
+
+	private final AtomicLong selectorLoopTime = new AtomicLong();
 
-	private Selector selector;
+	private final AtomicLong maxSelectorLoopTime = new AtomicLong();
 	
 	/**
 	 * Listens for incoming connections on the port.
@@ -55,6 +84,65 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		super(port);
 	}
 
+	/**
+	 * The number of selectors detecting the data to read on the accepted connections,
+	 * in addition to the selector accepting them. Default 1, in which case the accepting
+	 * selector is also used for reading.
+	 * @param selectorCount the selectorCount to set
+	 */
+	public void setSelectorCount(int selectorCount) {
+		Assert.isTrue(selectorCount > 0, "'selectorCount' must be greater than 0");
+		this.selectorCount = selectorCount;
+	}
+
+	@ManagedAttribute
+	public int getSelectorCount() {
+		return this.selectorCount;
+	}
+
+	/**
+	 * @return the number of open connections registered with the selectors.
+	 */
+	@ManagedAttribute
+	public int getConnectionCount() {
+		int count = this.connections.size();
+		ReadSelector[] readSelectors = this.readSelectors;
+		if (readSelectors != null) {
+			for (ReadSelector readSelector : readSelectors) {
+				count += readSelector.connections.size();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of times the selectors have processed their selected keys
+	 * and timed out the idle connections.
+	 */
+	@ManagedAttribute
+	public long getSelectorLoopCount() {
+		return this.selectorLoopCount.get();
+	}
+
+	/**
+	 * @return the mean time in milliseconds the selectors spent processing their
+	 * selected keys and timing out the idle connections, when they woke up.
+	 */
+	@ManagedAttribute
+	public double getMeanSelectorLoopTime() {
+		long count = this.selectorLoopCount.get();
+		return count == 0 ? 0 : this.selectorLoopTime.get() / 1000000.0 / count;
+	}
+
+	/**
+	 * @return the longest time in milliseconds a selector spent processing its
+	 * selected keys and timing out the idle connections.
+	 */
+	@ManagedAttribute
+	public double getMaxSelectorLoopTime() {
+		return this.maxSelectorLoopTime.get() / 1000000.0;
+	}
+
 	/**
 	 * If no listener registers, exits.
 	 * Accepts incoming connections and creates TcpConnections for each new connection. 
@@ -82,8 +170,19 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 			}
 			final Selector selector = Selector.open();
 			this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+			if (this.selectorCount > 1) {
+				ReadSelector[] readSelectors = new ReadSelector[this.selectorCount];
+				for (int i = 0; i < readSelectors.length; i++) {
+					readSelectors[i] = new ReadSelector(Selector.open());
+				}
+				this.readSelectors = readSelectors;
+				for (ReadSelector readSelector : readSelectors) {
+					this.getTaskExecutor().execute(readSelector);
+				}
+			}
 			this.setListening(true);
 			this.selector = selector;
+			this.timeoutWheel = this.createTimeoutWheel();
 			doSelect(this.serverChannel, selector);
 
 		} catch (IOException e) {
@@ -115,7 +214,23 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		while (this.isActive()) {
 			int soTimeout = this.getSoTimeout();
 			int selectionCount = selector.select(soTimeout < 0 ? 0 : soTimeout);
-			this.processNioSelections(selectionCount, selector, server, this.connections);			
+			long start = System.nanoTime();
+			this.processNioSelections(selectionCount, selector, server, this.connections, this.timeoutWheel);
+			this.recordSelectorLoop(System.nanoTime() - start);
+		}
+	}
+
+	private ConnectionTimeoutWheel createTimeoutWheel() {
+		int soTimeout = this.getSoTimeout();
+		return soTimeout > 0 ? new ConnectionTimeoutWheel(soTimeout, System.currentTimeMillis()) : null;
+	}
+
+	private void recordSelectorLoop(long nanos) {
+		this.selectorLoopCount.incrementAndGet();
+		this.selectorLoopTime.addAndGet(nanos);
+		long max = this.maxSelectorLoopTime.get();
+		while (nanos > max && !this.maxSelectorLoopTime.compareAndSet(max, nanos)) {
+			max = this.maxSelectorLoopTime.get();
 		}
 	}
 
@@ -140,8 +255,17 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		}
 		connection.setTaskExecutor(this.getTaskExecutor());
 		connection.setLastRead(now);
+		ReadSelector[] readSelectors = this.readSelectors;
+		if (readSelectors != null) {
+			int next = (this.nextReadSelector.getAndIncrement() & Integer.MAX_VALUE) % readSelectors.length;
+			readSelectors[next].addConnection(channel, connection);
+			return;
+		}
 		connections.put(channel, connection);
 		channel.register(selector, SelectionKey.OP_READ, connection);
+		if (this.timeoutWheel != null) {
+			this.timeoutWheel.add(channel, now);
+		}
 	}
 
 	private TcpNioConnection createTcpNioConnection(SocketChannel socketChannel) {
@@ -161,6 +285,13 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 		if (this.selector != null) {
 			this.selector.wakeup();
 		}
+		ReadSelector[] readSelectors = this.readSelectors;
+		if (readSelectors != null) {
+			for (ReadSelector readSelector : readSelectors) {
+				readSelector.selector.wakeup();
+			}
+			this.readSelectors = null;
+		}
 		if (this.serverChannel == null) {
 			return;
 		}
@@ -194,6 +325,71 @@ public class TcpNioServerConnectionFactory extends AbstractServerConnectionFacto
 	protected Map<SocketChannel, TcpNioConnection> getConnections() {
 		return connections;
 	}
-	
+
+
+	/**
+	 * A selector detecting the data to read on a share of the accepted connections.
+	 */
+	private class ReadSelector implements Runnable {
+
+		private final Selector selector;
+
+		private final Map<SocketChannel, TcpNioConnection> connections =
+				new ConcurrentHashMap<SocketChannel, TcpNioConnection>();
+
+		private final BlockingQueue<SocketChannel> newChannels = new LinkedBlockingQueue<SocketChannel>();
+
+		public ReadSelector(Selector selector) {
+			this.selector = selector;
+		}
+
+		/**
+		 * Hands a connection over to this selector's thread, which registers it.
+		 */
+		public void addConnection(SocketChannel channel, TcpNioConnection connection) {
+			this.connections.put(channel, connection);
+			this.newChannels.add(channel);
+			this.selector.wakeup();
+		}
+
+		public void run() {
+			ConnectionTimeoutWheel timeoutWheel = createTimeoutWheel();
+			try {
+				while (isActive()) {
+					int soTimeout = getSoTimeout();
+					int selectionCount = this.selector.select(soTimeout < 0 ? 0 : soTimeout);
+					long start = System.nanoTime();
+					SocketChannel newChannel;
+					while ((newChannel = this.newChannels.poll()) != null) {
+						TcpNioConnection connection = this.connections.get(newChannel);
+						try {
+							newChannel.register(this.selector, SelectionKey.OP_READ, connection);
+							if (timeoutWheel != null) {
+								timeoutWheel.add(newChannel, connection.getLastRead());
+							}
+						}
+						catch (ClosedChannelException e) {
+							this.connections.remove(newChannel);
+						}
+					}
+					processNioSelections(selectionCount, this.selector, null, this.connections, timeoutWheel);
+					recordSelectorLoop(System.nanoTime() - start);
+				}
+			}
+			catch (IOException e) {
+				if (isActive()) {
+					logger.error("Error on read selector", e);
+					setActive(false);
+				}
+			}
+			finally {
+				try {
+					this.selector.close();
+				}
+				catch (IOException e) {}
+			}
+		}
+	}
+
 
 }
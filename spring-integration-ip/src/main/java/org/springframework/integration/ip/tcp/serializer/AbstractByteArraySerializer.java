@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,13 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
+import org.springframework.util.ReflectionUtils;
 
 /**
  * Base class for (de)serializers that provide a mechanism to 
@@ -64,4 +66,27 @@ public abstract class AbstractByteArraySerializer implements
 		}
 	}
 
+	/**
+	 * For {@link ByteBufferDeserializer} implementations; throws an
+	 * IOException if the stream ended while the buffer holds the
+	 * beginning of a frame.
+	 */
+	protected void checkClosure(ByteBuffer buffer, boolean endOfStream) throws IOException {
+		if (endOfStream && buffer.hasRemaining()) {
+			logger.debug("Socket closed during message assembly");
+			throw new IOException("Socket closed during message assembly");
+		}
+	}
+
+	/**
+	 * For {@link ByteBufferDeserializer} implementations; whether the class
+	 * of this instance overrides the given method of the declaring class,
+	 * e.g. to tell if a subclass changed how messages are read from an
+	 * InputStream.
+	 */
+	protected boolean isOverridden(Class<?> declaringClass, String methodName, Class<?>... parameterTypes) {
+		return ReflectionUtils.findMethod(this.getClass(), methodName, parameterTypes).getDeclaringClass()
+				!= declaringClass;
+	}
+
 }
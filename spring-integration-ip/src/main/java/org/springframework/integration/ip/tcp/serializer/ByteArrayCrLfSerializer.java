@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,16 +19,18 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Reads data in an InputStream to a byte[]; data must be terminated by \r\n
  * (not included in resulting byte[]). 
  * Writes a byte[] to an OutputStream and adds \r\n.
+ * Also decodes such data from a ByteBuffer.
  * 
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
+public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]> {
 
 	/**
 	 * Reads the data in the inputstream to a byte[]. Data must be terminated
@@ -64,6 +66,42 @@ public class ByteArrayCrLfSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * Decodes the data in the buffer up to the next CRLF (\r\n).
+	 * Returns null if the buffer does not contain a CRLF yet. The search
+	 * resumes after the bytes examined by the previous call.
+	 */
+	public byte[] deserialize(ByteBuffer buffer, int examined, boolean endOfStream) throws IOException {
+		int start = buffer.position();
+		int limit = buffer.limit();
+		for (int i = start + Math.max(1, examined); i < limit; i++) {
+			if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r') {
+				int length = i - 1 - start;
+				if (length + 1 >= this.maxMessageSize) {
+					break;
+				}
+				byte[] assembledData = new byte[length];
+				buffer.get(assembledData);
+				buffer.position(i + 1);
+				return assembledData;
+			}
+		}
+		if (limit - start >= this.maxMessageSize) {
+			throw new IOException("CRLF not found before max message length: "
+					+ this.maxMessageSize);
+		}
+		checkClosure(buffer, endOfStream);
+		return null;
+	}
+
+	/**
+	 * Returns false if a subclass overrides {@link #deserialize(InputStream)},
+	 * so that it keeps being given an InputStream.
+	 */
+	public boolean supportsByteBufferDecoding() {
+		return !this.isOverridden(ByteArrayCrLfSerializer.class, "deserialize", InputStream.class);
+	}
+
 	/**
 	 * Writes the byte[] to the stream and appends \r\n.
 	 */
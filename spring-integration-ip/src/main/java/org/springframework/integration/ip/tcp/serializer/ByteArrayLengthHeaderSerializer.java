@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -37,12 +37,16 @@ import org.apache.commons.logging.LogFactory;
  * Other options are an unsigned byte, and unsigned short.
  * 
  * For other header formats, override {@link #readHeader(InputStream)} and
- * {@link #writeHeader(OutputStream, int)}.
+ * {@link #writeHeader(OutputStream, int)}; and {@link #readHeader(ByteBuffer)}
+ * which is used when the data is decoded from a ByteBuffer, by both NIO and
+ * non-NIO connections. A subclass that only overrides {@link #readHeader(InputStream)}
+ * is given an InputStream (see {@link #supportsByteBufferDecoding()}).
  * 
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer {
+public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
+		implements ByteBufferDeserializer<byte[]> {
 	
 	
 	/**
@@ -107,6 +111,51 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		return messagePart;
 	}
 
+	/**
+	 * Decodes the header and the data that follows it from the buffer.
+	 * Returns null if the buffer does not contain all the data yet.
+	 */
+	public byte[] deserialize(ByteBuffer buffer, int examined, boolean endOfStream) throws IOException {
+		int start = buffer.position();
+		if (buffer.remaining() < this.headerSize) {
+			checkClosure(buffer, endOfStream);
+			return null;
+		}
+		int messageLength = this.readHeader(buffer);
+		if (messageLength > this.maxMessageSize) {
+			throw new IOException("Message length " + messageLength + 
+					" exceeds max message length: " + this.maxMessageSize);
+		}
+		if (buffer.remaining() < messageLength) {
+			buffer.position(start);
+			checkClosure(buffer, endOfStream);
+			return null;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Message length is " + messageLength);
+		}
+		byte[] messagePart = new byte[messageLength];
+		buffer.get(messagePart);
+		return messagePart;
+	}
+
+	/**
+	 * Returns false if a subclass overrides {@link #deserialize(InputStream)}
+	 * or {@link #read(InputStream, byte[], boolean)}, or overrides
+	 * {@link #readHeader(InputStream)} without overriding
+	 * {@link #readHeader(ByteBuffer)}, so that it keeps being given an
+	 * InputStream.
+	 */
+	public boolean supportsByteBufferDecoding() {
+		Class<?> declaringClass = ByteArrayLengthHeaderSerializer.class;
+		if (this.isOverridden(declaringClass, "deserialize", InputStream.class)
+				|| this.isOverridden(declaringClass, "read", InputStream.class, byte[].class, boolean.class)) {
+			return false;
+		}
+		return !this.isOverridden(declaringClass, "readHeader", InputStream.class)
+				|| this.isOverridden(declaringClass, "readHeader", ByteBuffer.class);
+	}
+
 	/**
 	 * Writes the byte[] to the output stream, preceded by a 4 byte
 	 * length in network byte order (big endian).
@@ -196,10 +245,21 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 		if (status < 0) {
 			throw new SoftEndOfStreamException("Stream closed between payloads");
 		}
+		return this.readHeader(ByteBuffer.wrap(lengthPart));
+	}
+
+	/**
+	 * Reads the header from the buffer, advancing its position past the
+	 * header, and returns the length of the data part. The buffer contains
+	 * at least the number of bytes of the header.
+	 * @param buffer
+	 * @return The length of the data part
+	 */
+	protected int readHeader(ByteBuffer buffer) {
 		int messageLength;
 		switch (this.headerSize) {
 		case HEADER_SIZE_INT:
-			messageLength = ByteBuffer.wrap(lengthPart).getInt();
+			messageLength = buffer.getInt();
 			if (messageLength < 0) {
 				throw new IllegalArgumentException("Length header:"
 						+ messageLength 
@@ -207,10 +267,10 @@ public class ByteArrayLengthHeaderSerializer extends AbstractByteArraySerializer
 			}
 			break;
 		case HEADER_SIZE_UNSIGNED_BYTE:
-			messageLength = ByteBuffer.wrap(lengthPart).get() & 0xff;
+			messageLength = buffer.get() & 0xff;
 			break;
 		case HEADER_SIZE_UNSIGNED_SHORT:
-			messageLength = ByteBuffer.wrap(lengthPart).getShort() & 0xffff;
+			messageLength = buffer.getShort() & 0xffff;
 			break;
 		default:
 			throw new IllegalArgumentException("Bad header size:" + headerSize);			
@@ -18,6 +18,7 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A byte array (de)serializer that does nothing with the payload; sends it raw.
@@ -32,7 +33,7 @@ import java.io.OutputStream;
  * @since 2.0.3
  *
  */
-public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
+public class ByteArrayRawSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]> {
 
 	public void serialize(byte[] bytes, OutputStream outputStream)
 			throws IOException {
@@ -66,4 +67,29 @@ public class ByteArrayRawSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * Returns all the data in the buffer once the stream has ended,
+	 * null until then.
+	 */
+	public byte[] deserialize(ByteBuffer buffer, int examined, boolean endOfStream) throws IOException {
+		if (buffer.remaining() >= this.maxMessageSize) {
+			throw new IOException("Socket was not closed before max message length: "
+					+ this.maxMessageSize);
+		}
+		if (!endOfStream || !buffer.hasRemaining()) {
+			return null;
+		}
+		byte[] assembledData = new byte[buffer.remaining()];
+		buffer.get(assembledData);
+		return assembledData;
+	}
+
+	/**
+	 * Returns false if a subclass overrides {@link #deserialize(InputStream)},
+	 * so that it keeps being given an InputStream.
+	 */
+	public boolean supportsByteBufferDecoding() {
+		return !this.isOverridden(ByteArrayRawSerializer.class, "deserialize", InputStream.class);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ package org.springframework.integration.ip.tcp.serializer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import org.springframework.integration.mapping.MessageMappingException;
 
@@ -26,11 +27,12 @@ import org.springframework.integration.mapping.MessageMappingException;
  * Reads data in an InputStream to a byte[]; data must be prefixed by &lt;stx&gt; and
  * terminated by &lt;etx&gt; (not included in resulting byte[]). 
  * Writes a byte[] to an OutputStream prefixed by &lt;stx&gt; terminated by &lt;etx&gt;
+ * Also decodes such data from a ByteBuffer.
  * 
  * @author Gary Russell
  * @since 2.0
  */
-public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
+public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer implements ByteBufferDeserializer<byte[]> {
 
 	public static final int STX = 0x02;
 	
@@ -67,6 +69,45 @@ public class ByteArrayStxEtxSerializer extends AbstractByteArraySerializer {
 		return assembledData;
 	}
 
+	/**
+	 * Decodes the data in the buffer between an STX and the next ETX.
+	 * Returns null if the buffer does not contain the ETX yet. The search
+	 * resumes after the bytes examined by the previous call.
+	 */
+	public byte[] deserialize(ByteBuffer buffer, int examined, boolean endOfStream) throws IOException {
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		int start = buffer.position();
+		if (buffer.get(start) != STX) {
+			throw new MessageMappingException("Expected STX to begin message");
+		}
+		int limit = buffer.limit();
+		for (int i = start + Math.max(1, examined); i < limit; i++) {
+			if (buffer.get(i) == ETX) {
+				byte[] assembledData = new byte[i - start - 1];
+				buffer.position(start + 1);
+				buffer.get(assembledData);
+				buffer.position(i + 1);
+				return assembledData;
+			}
+			if (i - start >= this.maxMessageSize) {
+				throw new IOException("ETX not found before max message length: "
+						+ this.maxMessageSize);
+			}
+		}
+		checkClosure(buffer, endOfStream);
+		return null;
+	}
+
+	/**
+	 * Returns false if a subclass overrides {@link #deserialize(InputStream)},
+	 * so that it keeps being given an InputStream.
+	 */
+	public boolean supportsByteBufferDecoding() {
+		return !this.isOverridden(ByteArrayStxEtxSerializer.class, "deserialize", InputStream.class);
+	}
+
 	/**
 	 * Writes the byte[] to the stream, prefixed by an ASCII STX character and
 	 * terminated with an ASCII ETX character.
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.serializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A deserializer that frames objects directly from a {@link ByteBuffer}
+ * holding the data read so far, rather than from an InputStream. NIO
+ * connections use it to decode messages in the thread that read the data,
+ * without copying the data to an intermediate stream.
+ * <p/>
+ * A connection only uses it when {@link #supportsByteBufferDecoding()}
+ * returns true. The standard deserializers return false when a subclass
+ * overrides how they read from an InputStream, so that such a subclass
+ * is still given an InputStream; a subclass can override that method to
+ * opt in or out explicitly.
+ *
+ * @since 2.1
+ */
+public interface ByteBufferDeserializer<T> {
+
+	/**
+	 * Decode the next object from the buffer, which is ready to be read
+	 * from its position to its limit, and may be a direct buffer.
+	 * If the buffer contains a complete frame, the position is advanced
+	 * past it and the object is returned; otherwise the position is left
+	 * unchanged and null is returned, to be called again when more data
+	 * has been read.
+	 * @param buffer The data read so far.
+	 * @param examined The number of bytes, from the position of the buffer,
+	 * that the previous call examined without finding a complete frame, 0 if
+	 * it returned an object; a deserializer searching for a delimiter may
+	 * resume its search after them.
+	 * @param endOfStream true if the connection was closed by the peer,
+	 * and no more data will follow.
+	 * @return The object, or null if the buffer does not contain a complete frame.
+	 * @throws IOException if the data is invalid, exceeds the maximum
+	 * message size, or if the stream ended in the middle of a frame.
+	 */
+	T deserialize(ByteBuffer buffer, int examined, boolean endOfStream) throws IOException;
+
+	/**
+	 * @return true if connections may decode the messages with
+	 * {@link #deserialize(ByteBuffer, int, boolean)}, false if they must
+	 * read them from an InputStream, as with other deserializers.
+	 */
+	boolean supportsByteBufferDecoding();
+
+}
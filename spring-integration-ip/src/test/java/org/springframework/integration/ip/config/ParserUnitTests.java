@@ -38,6 +38,7 @@ import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
 import org.springframework.core.task.TaskExecutor;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.DirectChannel;
 import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.endpoint.EventDrivenConsumer;
@@ -195,6 +196,9 @@ public class ParserUnitTests {
 	@Qualifier(value="org.springframework.integration.ip.tcp.TcpSendingMessageHandler#3")
 	TcpSendingMessageHandler tcpOutClientMode;
 
+	@Autowired
+	CorrelationStrategy correlationStrategy;
+
 	@Test
 	public void testInUdp() {
 		DirectFieldAccessor dfa = new DirectFieldAccessor(udpIn);
@@ -357,6 +361,9 @@ public class ParserUnitTests {
 		assertEquals(24, dfa.getPropertyValue("order"));
 		assertFalse(tcpOutboundGateway.isAutoStartup());
 		assertEquals(127, tcpOutboundGateway.getPhase());
+		assertEquals(Boolean.TRUE, dfa.getPropertyValue("pipelined"));
+		assertEquals(50, dfa.getPropertyValue("maxPendingRequests"));
+		assertSame(correlationStrategy, dfa.getPropertyValue("correlationStrategy"));
 	}
 
 	@Test
@@ -398,6 +405,7 @@ public class ParserUnitTests {
 		assertEquals(123, dfa.getPropertyValue("poolSize"));
 		assertEquals(true, dfa.getPropertyValue("usingDirectBuffers"));
 		assertNotNull(dfa.getPropertyValue("interceptorFactoryChain"));
+		assertEquals(2, dfa.getPropertyValue("selectorCount"));
 	}
 
 	@Test
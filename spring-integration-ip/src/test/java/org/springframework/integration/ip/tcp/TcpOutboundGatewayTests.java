@@ -16,19 +16,28 @@
 
 package org.springframework.integration.ip.tcp;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -42,9 +51,11 @@ import org.springframework.core.serializer.DefaultDeserializer;
 import org.springframework.core.serializer.DefaultSerializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageTimeoutException;
+import org.springframework.integration.aggregator.CorrelationStrategy;
 import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.ip.tcp.connection.AbstractConnectionFactory;
 import org.springframework.integration.ip.tcp.connection.TcpNetClientConnectionFactory;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
 import org.springframework.integration.ip.util.SocketTestUtils;
 import org.springframework.integration.support.MessageBuilder;
 
@@ -240,5 +251,191 @@ public class TcpOutboundGatewayTests {
 		done.set(true);
 	}
 
+	@Test
+	public void testPipelinedNetInOrder() throws Exception {
+		TcpOutboundGateway gateway = this.createPipelinedGateway(false, false);
+		gateway.setPipelined(true);
+		assertPipelinedReplies(gateway);
+	}
+
+	@Test
+	public void testPipelinedNetCorrelated() throws Exception {
+		TcpOutboundGateway gateway = this.createPipelinedGateway(true, false);
+		gateway.setPipelined(true);
+		gateway.setCorrelationStrategy(new CorrelationStrategy() {
+			public Object getCorrelationKey(Message<?> message) {
+				Object payload = message.getPayload();
+				String key = payload instanceof byte[] ? new String((byte[]) payload) : (String) payload;
+				return key.startsWith("Reply:") ? key.substring(6) : key;
+			}
+		});
+		assertPipelinedReplies(gateway);
+	}
+
+	@Test
+	public void testPipelinedNetServerClosesAfterReplies() throws Exception {
+		TcpOutboundGateway gateway = this.createPipelinedGateway(false, true);
+		gateway.setPipelined(true);
+		// the replies read before the end of the stream are not failed by removeDeadConnection()
+		assertPipelinedReplies(gateway);
+	}
+
+	@Test
+	public void testPipelinedNetCorrelatedServerClosesAfterReplies() throws Exception {
+		TcpOutboundGateway gateway = this.createPipelinedGateway(true, true);
+		gateway.setPipelined(true);
+		gateway.setCorrelationStrategy(new CorrelationStrategy() {
+			public Object getCorrelationKey(Message<?> message) {
+				Object payload = message.getPayload();
+				String key = payload instanceof byte[] ? new String((byte[]) payload) : (String) payload;
+				return key.startsWith("Reply:") ? key.substring(6) : key;
+			}
+		});
+		assertPipelinedReplies(gateway);
+	}
+
+	@Test
+	public void testPipelinedNetInOrderMissingReply() throws Exception {
+		// an ephemeral port, so that no client left over from another test can connect to it
+		final ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(0);
+		final AtomicBoolean done = new AtomicBoolean();
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						Socket socket = server.accept();
+						InputStream is = socket.getInputStream();
+						OutputStream os = socket.getOutputStream();
+						try {
+							while (true) {
+								String request = readCrLfLine(is);
+								// never reply to Test1
+								if (!"Test1".equals(request)) {
+									os.write(("Reply:" + request + "\r\n").getBytes());
+									os.flush();
+								}
+							}
+						}
+						catch (IOException e) {
+							// the client closed the connection
+							socket.close();
+						}
+					}
+				} catch (Exception e) {
+					if (!done.get()) {
+						e.printStackTrace();
+					}
+				}
+			}
+		});
+		AbstractConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", server.getLocalPort());
+		ccf.setSerializer(new ByteArrayCrLfSerializer());
+		ccf.setDeserializer(new ByteArrayCrLfSerializer());
+		ccf.setSoTimeout(10000);
+		ccf.setSingleUse(false);
+		ccf.start();
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setPipelined(true);
+		gateway.setReplyTimeout(1000);
+		for (int i = 0; i < 5; i++) {
+			try {
+				Message<?> reply = (Message<?>) gateway.handleRequestMessage(MessageBuilder.withPayload("Test" + i).build());
+				assertFalse("Unexpected reply " + reply, i == 1);
+				assertEquals("Reply:Test" + i, new String((byte[]) reply.getPayload()));
+			}
+			catch (MessageTimeoutException e) {
+				assertEquals(1, i);
+			}
+		}
+		done.set(true);
+		ccf.stop();
+		server.close();
+	}
+
+	/**
+	 * Creates a gateway to a server that reads 10 requests before sending the replies,
+	 * in the reverse order if requested, and then closes the connection right away
+	 * if requested, or when the client closes it.
+	 */
+	private TcpOutboundGateway createPipelinedGateway(final boolean reverse, final boolean closeAfterReplies)
+			throws Exception {
+		// an ephemeral port, so that no client left over from another test can connect to it
+		final ServerSocket server = ServerSocketFactory.getDefault().createServerSocket(0);
+		Executors.newSingleThreadExecutor().execute(new Runnable() {
+			public void run() {
+				try {
+					Socket socket = server.accept();
+					InputStream is = socket.getInputStream();
+					List<String> requests = new ArrayList<String>();
+					for (int i = 0; i < 10; i++) {
+						requests.add(readCrLfLine(is));
+					}
+					OutputStream os = socket.getOutputStream();
+					for (int i = 0; i < 10; i++) {
+						String request = requests.get(reverse ? 9 - i : i);
+						os.write(("Reply:" + request + "\r\n").getBytes());
+					}
+					os.flush();
+					if (!closeAfterReplies) {
+						// leave the connection open until the client closes it
+						while (is.read() >= 0) {
+						}
+					}
+					socket.close();
+					server.close();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		});
+		AbstractConnectionFactory ccf = new TcpNetClientConnectionFactory("localhost", server.getLocalPort());
+		ccf.setSerializer(new ByteArrayCrLfSerializer());
+		ccf.setDeserializer(new ByteArrayCrLfSerializer());
+		ccf.setSoTimeout(10000);
+		ccf.setSingleUse(false);
+		ccf.start();
+		TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(ccf);
+		gateway.setReplyTimeout(10000);
+		return gateway;
+	}
+
+	/**
+	 * Reads a line up to and including the \n that the client writes separately from
+	 * the \r, so that the line is not complete (and the server does not close the socket)
+	 * while the client is still writing it.
+	 */
+	private static String readCrLfLine(InputStream is) throws IOException {
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = is.read()) != '\n') {
+			if (c < 0) {
+				throw new EOFException();
+			}
+			if (c != '\r') {
+				line.append((char) c);
+			}
+		}
+		return line.toString();
+	}
+
+	private void assertPipelinedReplies(final TcpOutboundGateway gateway) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < 10; i++) {
+			final int j = i;
+			results.add(executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					return gateway.handleRequestMessage(MessageBuilder.withPayload("Test" + j).build());
+				}
+			}));
+		}
+		for (int i = 0; i < 10; i++) {
+			Message<?> reply = (Message<?>) results.get(i).get(20, TimeUnit.SECONDS);
+			assertEquals("Reply:Test" + i, new String((byte[]) reply.getPayload()));
+		}
+		executor.shutdown();
+	}
 
 }
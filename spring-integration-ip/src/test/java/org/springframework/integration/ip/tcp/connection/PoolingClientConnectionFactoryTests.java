@@ -0,0 +1,299 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ServerSocketFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.ip.tcp.TcpOutboundGateway;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 2.1
+ */
+public class PoolingClientConnectionFactoryTests {
+
+	private final AtomicInteger accepted = new AtomicInteger();
+
+	private final BlockingQueue<Socket> sockets = new LinkedBlockingQueue<Socket>();
+
+	private volatile ServerSocket server;
+
+	private volatile PoolingClientConnectionFactory pool;
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.pool != null) {
+			this.pool.stop();
+		}
+		if (this.server != null) {
+			this.server.close();
+		}
+	}
+
+	@Test
+	public void testGatewayReusesPooledConnections() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		this.pool.setMaxSize(2);
+		final TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(this.pool);
+		this.pool.start();
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < 20; i++) {
+			final int j = i;
+			results.add(executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					QueueChannel replyChannel = new QueueChannel();
+					gateway.handleMessage(MessageBuilder.withPayload("Test" + j).setReplyChannel(replyChannel).build());
+					return replyChannel.receive(0);
+				}
+			}));
+		}
+		for (int i = 0; i < 20; i++) {
+			Message<?> reply = (Message<?>) results.get(i).get(20, TimeUnit.SECONDS);
+			assertEquals("Reply:Test" + i, new String((byte[]) reply.getPayload()));
+		}
+		executor.shutdown();
+		assertTrue(this.accepted.get() <= 2);
+		assertEquals(0, this.pool.getActiveCount());
+		assertEquals(this.accepted.get(), this.pool.getIdleCount());
+		assertEquals(20, this.pool.getBorrowCount());
+	}
+
+	@Test
+	public void testBorrowTimeout() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		this.pool.setMaxSize(1);
+		this.pool.setBorrowTimeout(100);
+		this.pool.start();
+		TcpConnection connection = this.pool.getConnection();
+		assertEquals(1, this.pool.getActiveCount());
+		try {
+			this.pool.getConnection();
+			fail("Expected MessagingException");
+		}
+		catch (MessagingException e) {
+			assertTrue(e.getMessage().startsWith("Timed out waiting for a pooled connection"));
+		}
+		assertTrue(this.pool.getMaxBorrowWaitTime() < 100);
+		connection.close();
+		assertEquals(0, this.pool.getActiveCount());
+		assertEquals(1, this.pool.getIdleCount());
+		TcpConnection reused = this.pool.getConnection();
+		assertNotSame(connection, reused);
+		assertEquals(connection.getConnectionId(), reused.getConnectionId());
+		assertTrue(reused.isOpen());
+		// the closed, returned connection cannot be used any more
+		assertTrue(!connection.isOpen());
+		reused.close();
+		assertEquals(1, this.accepted.get());
+	}
+
+	@Test
+	public void testIdleConnectionsAreEvicted() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		this.pool.setMinSize(1);
+		this.pool.setIdleTimeout(100);
+		this.pool.start();
+		List<TcpConnection> connections = new ArrayList<TcpConnection>();
+		for (int i = 0; i < 3; i++) {
+			connections.add(this.pool.getConnection());
+		}
+		for (TcpConnection connection : connections) {
+			connection.close();
+		}
+		int n = 0;
+		while (this.pool.getIdleCount() > 1 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, this.pool.getIdleCount());
+		TcpConnection remaining = this.pool.getConnection();
+		assertEquals(connections.get(2).getConnectionId(), remaining.getConnectionId());
+		assertTrue(remaining.isOpen());
+		remaining.close();
+	}
+
+	@Test
+	public void testSocketTimeoutDisabledUnlessSet() throws Exception {
+		TcpNetClientConnectionFactory target = new TcpNetClientConnectionFactory("localhost", this.startServer());
+		this.pool = new PoolingClientConnectionFactory(target);
+		this.pool.start();
+		assertEquals(0, target.getSoTimeout());
+		TcpNetClientConnectionFactory timedOut = new TcpNetClientConnectionFactory("localhost", 0);
+		timedOut.setSoTimeout(120000);
+		PoolingClientConnectionFactory other = new PoolingClientConnectionFactory(timedOut);
+		other.start();
+		other.stop();
+		assertEquals(120000, timedOut.getSoTimeout());
+	}
+
+	@Test
+	public void testMaxSizeNotExceededWhileRestoringMinSize() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		this.pool.setMinSize(3);
+		this.pool.setMaxSize(3);
+		final TcpOutboundGateway gateway = new TcpOutboundGateway();
+		gateway.setConnectionFactory(this.pool);
+		this.pool.start();
+		ExecutorService executor = Executors.newFixedThreadPool(10);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int i = 0; i < 50; i++) {
+			final int j = i;
+			results.add(executor.submit(new Callable<Object>() {
+				public Object call() throws Exception {
+					QueueChannel replyChannel = new QueueChannel();
+					gateway.handleMessage(MessageBuilder.withPayload("Test" + j).setReplyChannel(replyChannel).build());
+					return replyChannel.receive(0);
+				}
+			}));
+		}
+		for (int i = 0; i < 50; i++) {
+			assertTrue(results.get(i).get(20, TimeUnit.SECONDS) != null);
+		}
+		executor.shutdown();
+		assertTrue(this.pool.getIdleCount() <= 3);
+		// no connection was closed, so every connection ever opened is still open
+		assertTrue("Opened " + this.accepted.get() + " connections", this.accepted.get() <= 3);
+	}
+
+	@Test
+	public void testIdleConnectionClosedByPeerIsReplaced() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		this.pool.setMinSize(1);
+		this.pool.start();
+		Socket first = this.sockets.poll(10, TimeUnit.SECONDS);
+		assertTrue(first != null);
+		int n = 0;
+		while (this.pool.getIdleCount() < 1 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		first.close();
+		Socket second = this.sockets.poll(10, TimeUnit.SECONDS);
+		assertTrue("The closed connection was not replaced", second != null);
+		n = 0;
+		while (this.pool.getIdleCount() != 1 && n++ < 100) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, this.pool.getIdleCount());
+		TcpConnection connection = this.pool.getConnection();
+		assertTrue(connection.isOpen());
+		connection.close();
+		assertEquals(2, this.accepted.get());
+	}
+
+	@Test
+	public void testInvalidConnectionIsDiscardedOnBorrow() throws Exception {
+		this.pool = this.createPool(this.startServer());
+		final AtomicInteger validations = new AtomicInteger();
+		this.pool.setValidator(new TcpConnectionValidator() {
+			public boolean isValid(TcpConnection connection) {
+				return validations.incrementAndGet() > 1;
+			}
+		});
+		this.pool.start();
+		TcpConnection connection = this.pool.getConnection();
+		String firstId = connection.getConnectionId();
+		connection.close();
+		assertEquals(1, this.pool.getIdleCount());
+		// rejected by the validator, so a new connection is opened
+		connection = this.pool.getConnection();
+		assertFalse(firstId.equals(connection.getConnectionId()));
+		connection.close();
+		// accepted by the validator
+		TcpConnection reused = this.pool.getConnection();
+		assertEquals(connection.getConnectionId(), reused.getConnectionId());
+		reused.close();
+		assertEquals(2, validations.get());
+		assertTrue(this.sockets.poll(10, TimeUnit.SECONDS) != null);
+		assertTrue(this.sockets.poll(10, TimeUnit.SECONDS) != null);
+		assertTrue(this.sockets.isEmpty());
+	}
+
+	private PoolingClientConnectionFactory createPool(int port) {
+		TcpNetClientConnectionFactory target = new TcpNetClientConnectionFactory("localhost", port);
+		target.setSoTimeout(0);
+		return new PoolingClientConnectionFactory(target);
+	}
+
+	/**
+	 * Starts a server that replies to each line it receives, on any number of connections.
+	 */
+	private int startServer() throws Exception {
+		// an ephemeral port, so that no client left over from another test can connect to it
+		this.server = ServerSocketFactory.getDefault().createServerSocket(0);
+		final ExecutorService executor = Executors.newCachedThreadPool();
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						final Socket socket = server.accept();
+						accepted.incrementAndGet();
+						sockets.add(socket);
+						executor.execute(new Runnable() {
+							public void run() {
+								try {
+									BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+									OutputStream os = socket.getOutputStream();
+									String line;
+									while ((line = reader.readLine()) != null) {
+										os.write(("Reply:" + line + "\r\n").getBytes());
+									}
+								}
+								catch (Exception e) {
+									// connection closed
+								}
+							}
+						});
+					}
+				}
+				catch (Exception e) {
+					// server closed
+				}
+			}
+		});
+		return this.server.getLocalPort();
+	}
+
+}
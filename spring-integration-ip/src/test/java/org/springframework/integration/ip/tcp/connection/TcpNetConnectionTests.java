@@ -0,0 +1,145 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import javax.net.ServerSocketFactory;
+import javax.net.SocketFactory;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
+import org.springframework.integration.ip.tcp.serializer.SoftEndOfStreamException;
+
+/**
+ * @since 2.1
+ */
+public class TcpNetConnectionTests {
+
+	private ServerSocket server;
+
+	private Socket client;
+
+	private TcpNetConnection connection;
+
+	@Before
+	public void setUp() throws Exception {
+		this.server = ServerSocketFactory.getDefault().createServerSocket(0);
+		this.client = SocketFactory.getDefault().createSocket("localhost", this.server.getLocalPort());
+		this.connection = new TcpNetConnection(this.server.accept(), true, false);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.connection.close();
+		this.client.close();
+		this.server.close();
+	}
+
+	@Test
+	public void testCrLfFramesAreDecodedFromTheReadBuffer() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		serializer.setMaxMessageSize(20000);
+		this.connection.setDeserializer(serializer);
+		byte[] large = new byte[10000];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = (byte) ('a' + i % 26);
+		}
+		OutputStream os = this.client.getOutputStream();
+		// several frames in one write, a frame split across writes, and a
+		// frame larger than the initial read buffer
+		os.write("Test1\r\nTest2\r\nTe".getBytes());
+		os.flush();
+		assertEquals("Test1", new String((byte[]) this.connection.getPayload()));
+		assertEquals("Test2", new String((byte[]) this.connection.getPayload()));
+		os.write("st3\r".getBytes());
+		os.flush();
+		os.write("\n".getBytes());
+		os.write(large);
+		os.write("\r\n".getBytes());
+		os.close();
+		assertEquals("Test3", new String((byte[]) this.connection.getPayload()));
+		assertEquals(new String(large), new String((byte[]) this.connection.getPayload()));
+		try {
+			this.connection.getPayload();
+			fail("Expected SoftEndOfStreamException");
+		}
+		catch (SoftEndOfStreamException e) {
+		}
+	}
+
+	@Test
+	public void testCrLfSubclassReadsTheStream() throws Exception {
+		this.connection.setDeserializer(new ByteArrayCrLfSerializer() {
+			@Override
+			public byte[] deserialize(InputStream inputStream) throws IOException {
+				return ("sub:" + new String(super.deserialize(inputStream))).getBytes();
+			}
+		});
+		assertNull(this.connection.getByteBufferDeserializer());
+		OutputStream os = this.client.getOutputStream();
+		os.write("Test1\r\nTest2\r\n".getBytes());
+		os.flush();
+		assertEquals("sub:Test1", new String((byte[]) this.connection.getPayload()));
+		assertEquals("sub:Test2", new String((byte[]) this.connection.getPayload()));
+		this.connection.setDeserializer(new ByteArrayCrLfSerializer());
+		assertNotNull(this.connection.getByteBufferDeserializer());
+		// a subclass that only changes a setting is still decoded from the buffer
+		ByteArrayCrLfSerializer configured = new ByteArrayCrLfSerializer() {
+			{
+				this.maxMessageSize = 4096;
+			}
+		};
+		this.connection.setDeserializer(configured);
+		assertSame(configured, this.connection.getByteBufferDeserializer());
+	}
+
+	@Test
+	public void testStxEtxFramesAreDecodedFromTheReadBuffer() throws Exception {
+		this.connection.setDeserializer(new ByteArrayStxEtxSerializer());
+		OutputStream os = this.client.getOutputStream();
+		os.write("\u0002Test1\u0003\u0002Test2\u0003\u0002Te".getBytes());
+		os.flush();
+		assertEquals("Test1", new String((byte[]) this.connection.getPayload()));
+		assertEquals("Test2", new String((byte[]) this.connection.getPayload()));
+		os.write("st3".getBytes());
+		os.close();
+		try {
+			this.connection.getPayload();
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			// not a SoftEndOfStreamException; the stream ended in the middle of a frame
+			assertEquals("Socket closed during message assembly", e.getMessage());
+		}
+	}
+
+}
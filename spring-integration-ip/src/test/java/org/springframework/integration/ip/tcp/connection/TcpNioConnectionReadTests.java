@@ -21,6 +21,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
@@ -107,6 +108,40 @@ public class TcpNioConnectionReadTests {
 
 
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadLengthDirectBuffers() throws Exception {
+		int port = SocketTestUtils.findAvailableServerSocket();
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		TcpNioServerConnectionFactory scf = new TcpNioServerConnectionFactory(port);
+		scf.setUsingDirectBuffers(true);
+		scf.setSerializer(serializer);
+		scf.setDeserializer(serializer);
+		scf.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				responses.add(message);
+				semaphore.release();
+				return false;
+			}
+		});
+		scf.start();
+		int n = 0;
+		while (!scf.isListening()) {
+			Thread.sleep(100);
+			if (n++ > 200) {
+				fail("Failed to listen");
+			}
+		}
+		SocketTestUtils.testSendLength(port, latch);
+		latch.countDown();
+		assertTrue(semaphore.tryAcquire(2, 10000, TimeUnit.MILLISECONDS));
+		assertEquals("Data", SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING, 
+		         new String(((Message<byte[]>) responses.get(1)).getPayload()));
+		scf.close();
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void testFragmented() throws Exception {
@@ -202,6 +237,34 @@ public class TcpNioConnectionReadTests {
 		scf.close();
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testReadCrLfSubclassReadsStream() throws Exception {
+		int port = SocketTestUtils.findAvailableServerSocket();
+		// a subclass overriding the stream variant is not decoded from the buffer
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer() {
+			@Override
+			public byte[] deserialize(InputStream inputStream) throws IOException {
+				return ("sub:" + new String(super.deserialize(inputStream))).getBytes();
+			}
+		};
+		final List<Message<?>> responses = new ArrayList<Message<?>>();
+		final Semaphore semaphore = new Semaphore(0);
+		AbstractServerConnectionFactory scf = getConnectionFactory(port, serializer, new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				responses.add(message);
+				semaphore.release();
+				return false;
+			}
+		});
+		SocketTestUtils.testSendCrLf(port, latch);
+		latch.countDown();
+		assertTrue(semaphore.tryAcquire(2, 10000, TimeUnit.MILLISECONDS));
+		assertEquals("Data", "sub:" + SocketTestUtils.TEST_STRING + SocketTestUtils.TEST_STRING,
+				new String(((Message<byte[]>) responses.get(0)).getPayload()));
+		scf.close();
+	}
+
 	/**
 	 * Test method for {@link org.springframework.integration.ip.tcp.NioSocketReader}.
 	 */
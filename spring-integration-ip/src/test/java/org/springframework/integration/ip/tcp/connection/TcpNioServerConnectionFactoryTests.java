@@ -0,0 +1,155 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.ip.tcp.connection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.net.SocketFactory;
+
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.integration.Message;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.ip.util.SocketTestUtils;
+
+/**
+ * @since 2.1
+ */
+public class TcpNioServerConnectionFactoryTests {
+
+	private final List<Socket> sockets = new ArrayList<Socket>();
+
+	private volatile TcpNioServerConnectionFactory factory;
+
+	@After
+	public void tearDown() throws Exception {
+		for (Socket socket : this.sockets) {
+			socket.close();
+		}
+		if (this.factory != null) {
+			this.factory.stop();
+		}
+	}
+
+	@Test
+	public void testConnectionsAreDistributedAcrossSelectors() throws Exception {
+		QueueChannel channel = this.startFactory(3, -1);
+		for (int i = 0; i < 6; i++) {
+			this.connect().getOutputStream().write(("Test" + i + "\r\n").getBytes());
+		}
+		for (int i = 0; i < 6; i++) {
+			Message<?> message = channel.receive(10000);
+			assertNotNull(message);
+			assertTrue(new String((byte[]) message.getPayload()).startsWith("Test"));
+		}
+		assertEquals(6, this.factory.getConnectionCount());
+		Object[] readSelectors = (Object[]) new DirectFieldAccessor(this.factory).getPropertyValue("readSelectors");
+		assertEquals(3, readSelectors.length);
+		for (Object readSelector : readSelectors) {
+			assertEquals(2, ((Map<?, ?>) new DirectFieldAccessor(readSelector).getPropertyValue("connections")).size());
+		}
+		assertTrue(this.factory.getSelectorLoopCount() > 0);
+		assertTrue(this.factory.getMaxSelectorLoopTime() >= this.factory.getMeanSelectorLoopTime());
+	}
+
+	@Test
+	public void testIdleConnectionsTimeOut() throws Exception {
+		QueueChannel channel = this.startFactory(2, 300);
+		Socket idle = this.connect();
+		Socket busy = this.connect();
+		idle.setSoTimeout(10000);
+		busy.setSoTimeout(100);
+		for (int i = 0; i < 10; i++) {
+			busy.getOutputStream().write(("Test" + i + "\r\n").getBytes());
+			assertNotNull(channel.receive(10000));
+			Thread.sleep(100);
+		}
+		// the server closed the idle connection
+		assertEquals(-1, idle.getInputStream().read());
+		try {
+			busy.getInputStream().read();
+		}
+		catch (SocketTimeoutException e) {
+			// still open
+		}
+		assertEquals(1, this.factory.getConnectionCount());
+	}
+
+	@Test
+	public void testTimeoutWheel() throws Exception {
+		SocketChannel first = SocketChannel.open();
+		SocketChannel second = SocketChannel.open();
+		try {
+			ConnectionTimeoutWheel wheel = new ConnectionTimeoutWheel(3200, 100000);
+			wheel.add(first, 100000);
+			wheel.add(second, 101000);
+			assertNull(wheel.expire(103199));
+			List<SocketChannel> due = wheel.expire(103200);
+			assertEquals(1, due.size());
+			assertEquals(first, due.get(0));
+			assertNull(wheel.expire(104100));
+			// a long pause visits every slot once
+			due = wheel.expire(1000000);
+			assertEquals(1, due.size());
+			assertEquals(second, due.get(0));
+		}
+		finally {
+			first.close();
+			second.close();
+		}
+	}
+
+	private QueueChannel startFactory(int selectorCount, int soTimeout) throws Exception {
+		final int port = SocketTestUtils.findAvailableServerSocket(8000);
+		this.factory = new TcpNioServerConnectionFactory(port);
+		this.factory.setSelectorCount(selectorCount);
+		this.factory.setSoTimeout(soTimeout);
+		this.factory.setPoolSize(selectorCount + 3);
+		final QueueChannel channel = new QueueChannel();
+		this.factory.registerListener(new TcpListener() {
+			public boolean onMessage(Message<?> message) {
+				return channel.send(message);
+			}
+		});
+		this.factory.start();
+		int n = 0;
+		while (!this.factory.isListening()) {
+			Thread.sleep(100);
+			assertTrue(n++ < 100);
+		}
+		return channel;
+	}
+
+	private Socket connect() throws Exception {
+		Socket socket = SocketFactory.getDefault().createSocket("localhost", this.factory.getPort());
+		this.sockets.add(socket);
+		return socket;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,11 +17,16 @@
 package org.springframework.integration.ip.tcp.serializer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 import javax.net.ServerSocketFactory;
 
@@ -228,4 +233,115 @@ public class DeserializationTests {
 		server.close();
 	}
 
+	@Test
+	public void testDecodeLengthFromBuffer() throws Exception {
+		ByteArrayLengthHeaderSerializer serializer = new ByteArrayLengthHeaderSerializer();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64);
+		buffer.put(new byte[] {0, 0, 0, 3, 'f', 'o'});
+		buffer.flip();
+		assertNull(serializer.deserialize(buffer, 0, false));
+		assertEquals(0, buffer.position());
+		buffer.compact();
+		buffer.put(new byte[] {'o', 0, 0, 0, 3, 'b', 'a', 'r', 0});
+		buffer.flip();
+		assertEquals("foo", new String(serializer.deserialize(buffer, 0, false)));
+		assertEquals("bar", new String(serializer.deserialize(buffer, 0, false)));
+		assertNull(serializer.deserialize(buffer, 0, false));
+		assertEquals(1, buffer.remaining());
+		try {
+			serializer.deserialize(buffer, 0, true);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("Socket closed during message assembly", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDecodeCrLfFromBuffer() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("foo\r\nbar\r\nba".getBytes());
+		assertEquals("foo", new String(serializer.deserialize(buffer, 0, false)));
+		assertEquals("bar", new String(serializer.deserialize(buffer, 0, false)));
+		assertNull(serializer.deserialize(buffer, 0, false));
+		assertEquals(2, buffer.remaining());
+		serializer.setMaxMessageSize(2);
+		try {
+			serializer.deserialize(buffer, 0, false);
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertEquals("CRLF not found before max message length: 2", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDecodeCrLfResumesAfterExaminedBytes() throws Exception {
+		ByteArrayCrLfSerializer serializer = new ByteArrayCrLfSerializer();
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		buffer.put("foo\r".getBytes());
+		buffer.flip();
+		assertNull(serializer.deserialize(buffer, 0, false));
+		int examined = buffer.remaining();
+		buffer.compact();
+		buffer.put("\nbar".getBytes());
+		buffer.flip();
+		// the CR was examined by the previous call, the LF was not
+		assertEquals("foo", new String(serializer.deserialize(buffer, examined, false)));
+		// bytes reported as examined are not searched again
+		buffer = ByteBuffer.wrap("a\r\nb\r\n".getBytes());
+		assertEquals("a\r\nb", new String(serializer.deserialize(buffer, 3, false)));
+	}
+
+	@Test
+	public void testDecodeStxEtxFromBuffer() throws Exception {
+		ByteArrayStxEtxSerializer serializer = new ByteArrayStxEtxSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x02, 'f', 'o', 'o', 0x03, 0x02, 'b'});
+		assertEquals("foo", new String(serializer.deserialize(buffer, 0, false)));
+		assertNull(serializer.deserialize(buffer, 0, false));
+		assertEquals(5, buffer.position());
+	}
+
+	@Test
+	public void testDecodeRawFromBuffer() throws Exception {
+		ByteArrayRawSerializer serializer = new ByteArrayRawSerializer();
+		ByteBuffer buffer = ByteBuffer.wrap("foo".getBytes());
+		assertNull(serializer.deserialize(buffer, 0, false));
+		assertEquals("foo", new String(serializer.deserialize(buffer, 0, true)));
+		assertNull(serializer.deserialize(buffer, 0, true));
+	}
+
+	@Test
+	public void testSubclassesSupportByteBufferDecodingUnlessTheyReadTheStream() throws Exception {
+		assertTrue(new ByteArrayCrLfSerializer().supportsByteBufferDecoding());
+		// only changes a setting
+		assertTrue(new ByteArrayCrLfSerializer() {
+			{
+				this.maxMessageSize = 4096;
+			}
+		}.supportsByteBufferDecoding());
+		assertFalse(new ByteArrayStxEtxSerializer() {
+			@Override
+			public byte[] deserialize(InputStream inputStream) throws IOException {
+				return super.deserialize(inputStream);
+			}
+		}.supportsByteBufferDecoding());
+		assertFalse(new ByteArrayLengthHeaderSerializer() {
+			@Override
+			protected int readHeader(InputStream inputStream) throws IOException {
+				return super.readHeader(inputStream);
+			}
+		}.supportsByteBufferDecoding());
+		assertTrue(new ByteArrayLengthHeaderSerializer() {
+			@Override
+			protected int readHeader(InputStream inputStream) throws IOException {
+				return super.readHeader(inputStream);
+			}
+			@Override
+			protected int readHeader(ByteBuffer buffer) {
+				return super.readHeader(buffer);
+			}
+		}.supportsByteBufferDecoding());
+	}
+
 }
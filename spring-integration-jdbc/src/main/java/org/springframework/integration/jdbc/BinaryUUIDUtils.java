@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import java.util.UUID;
+
+import org.springframework.util.Assert;
+
+/**
+ * Conversions between {@link UUID}s and the 16 byte binary form in which the version 2 schema of the
+ * {@link JdbcMessageStore} keeps message ids and group keys.
+ * <p/>
+ * The methods taking or returning Strings are also meant to be declared as database functions where a database has
+ * no built-in way to turn the textual form of a UUID into bytes (e.g. by the Derby migration script).
+ * 
+ * @since 2.1
+ */
+public abstract class BinaryUUIDUtils {
+
+	/**
+	 * Return the 16 bytes of the given UUID, most significant byte first.
+	 */
+	public static byte[] toBytes(UUID uuid) {
+		Assert.notNull(uuid, "uuid must not be null");
+		byte[] bytes = new byte[16];
+		long mostSignificantBits = uuid.getMostSignificantBits();
+		long leastSignificantBits = uuid.getLeastSignificantBits();
+		for (int i = 0; i < 8; i++) {
+			bytes[i] = (byte) (mostSignificantBits >>> (8 * (7 - i)));
+			bytes[8 + i] = (byte) (leastSignificantBits >>> (8 * (7 - i)));
+		}
+		return bytes;
+	}
+
+	/**
+	 * Return the 16 bytes of the UUID with the given textual representation, or null if the String is null.
+	 */
+	public static byte[] toBytes(String uuid) {
+		return (uuid != null) ? toBytes(UUID.fromString(uuid.trim())) : null;
+	}
+
+	/**
+	 * Return the UUID made of the given 16 bytes, most significant byte first.
+	 */
+	public static UUID toUUID(byte[] bytes) {
+		Assert.isTrue(bytes != null && bytes.length == 16, "a UUID must be made of 16 bytes");
+		long mostSignificantBits = 0;
+		long leastSignificantBits = 0;
+		for (int i = 0; i < 8; i++) {
+			mostSignificantBits = (mostSignificantBits << 8) | (bytes[i] & 0xff);
+			leastSignificantBits = (leastSignificantBits << 8) | (bytes[8 + i] & 0xff);
+		}
+		return new UUID(mostSignificantBits, leastSignificantBits);
+	}
+
+}
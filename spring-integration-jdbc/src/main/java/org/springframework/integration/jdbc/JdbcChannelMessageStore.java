@@ -0,0 +1,484 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.Message;
+import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.ChannelMessageStore;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.lob.DefaultLobHandler;
+import org.springframework.jdbc.support.lob.LobHandler;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * A message group store dedicated to backing {@link org.springframework.integration.store.MessageGroupQueue}s, and
+ * thus persistent {@link org.springframework.integration.channel.QueueChannel}s, with a relational database. Each
+ * message is a single row of the <code>%PREFIX%CHANNEL_MESSAGE</code> table (created by the
+ * <code>org/springframework/integration/jdbc/schema-channel-*.sql</code> scripts) keyed by its group and a monotonically
+ * increasing sequence number drawn from a {@link DataFieldMaxValueIncrementer}, so messages are polled in the order
+ * they were added.
+ * <p/>
+ * Unlike with the {@link JdbcMessageStore}, polling does not depend on the number of messages in the group: the
+ * oldest rows are selected with an index range scan limited to the number of messages requested, and each of them is
+ * then claimed by deleting it by primary key. A row that another poller has deleted in the meantime is skipped, so a
+ * message is only delivered once even when several processes poll the same group without locking. Where the database
+ * supports it, a {@link #setLockingClause(String) locking clause} such as <code>FOR UPDATE SKIP LOCKED</code> keeps
+ * concurrent pollers from selecting the same rows in the first place. As with any store, the removal is only final
+ * when the surrounding transaction (if any) commits.
+ * <p/>
+ * The state of a group is limited to its messages: completing a group or setting its last released sequence number
+ * is not supported, so this store is not meant to back aggregators or resequencers, which reject it as a
+ * {@link ChannelMessageStore}.
+ *
+ * @since 2.1
+ */
+@ManagedResource
+public class JdbcChannelMessageStore extends AbstractMessageGroupStore implements ChannelMessageStore, InitializingBean {
+
+	private static final Log logger = LogFactory.getLog(JdbcChannelMessageStore.class);
+
+	/**
+	 * Default value for the table prefix property.
+	 */
+	public static final String DEFAULT_TABLE_PREFIX = JdbcMessageStore.DEFAULT_TABLE_PREFIX;
+
+	private static final String CREATE_MESSAGE = "INSERT into %PREFIX%CHANNEL_MESSAGE(MESSAGE_ID, GROUP_KEY, REGION, CREATED_DATE, MESSAGE_SEQUENCE, MESSAGE_BYTES)"
+			+ " values (?, ?, ?, ?, ?, ?)";
+
+	private static final String POLL_MESSAGES = "SELECT MESSAGE_SEQUENCE, MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE"
+			+ " where GROUP_KEY=? and REGION=? order by MESSAGE_SEQUENCE";
+
+	private static final String CLAIM_MESSAGE = "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=? and MESSAGE_SEQUENCE=?";
+
+	private static final String LIST_MESSAGES_BY_GROUP_KEY = "SELECT CREATED_DATE, MESSAGE_BYTES from %PREFIX%CHANNEL_MESSAGE"
+			+ " where GROUP_KEY=? and REGION=? order by MESSAGE_SEQUENCE";
+
+	private static final String COUNT_MESSAGES_IN_GROUP = "SELECT COUNT(MESSAGE_ID) from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
+
+	private static final String COUNT_ALL_MESSAGES_IN_GROUPS = "SELECT COUNT(MESSAGE_ID) from %PREFIX%CHANNEL_MESSAGE where REGION=?";
+
+	private static final String COUNT_ALL_GROUPS = "SELECT COUNT(DISTINCT GROUP_KEY) from %PREFIX%CHANNEL_MESSAGE where REGION=?";
+
+	private static final String LIST_GROUP_KEYS = "SELECT DISTINCT GROUP_KEY from %PREFIX%CHANNEL_MESSAGE where REGION=?";
+
+	private static final String REMOVE_MESSAGE_FROM_GROUP = "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=? and MESSAGE_ID=?";
+
+	private static final String DELETE_MESSAGE_GROUP = "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
+
+	private volatile String region = "DEFAULT";
+
+	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private volatile String lockingClause;
+
+	private volatile JdbcOperations jdbcTemplate;
+
+	private volatile DataFieldMaxValueIncrementer incrementer;
+
+	private volatile DeserializingConverter deserializer = new DeserializingConverter();
+
+	private volatile SerializingConverter serializer = new SerializingConverter();
+
+	private volatile LobHandler lobHandler = new DefaultLobHandler();
+
+	/**
+	 * Convenient constructor for configuration use.
+	 */
+	public JdbcChannelMessageStore() {
+	}
+
+	/**
+	 * Create a store with all mandatory properties.
+	 *
+	 * @param dataSource a {@link DataSource}
+	 * @param incrementer the source of the message sequence numbers
+	 */
+	public JdbcChannelMessageStore(DataSource dataSource, DataFieldMaxValueIncrementer incrementer) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.incrementer = incrementer;
+	}
+
+	/**
+	 * Replace patterns in the input to produce a valid SQL query. This implementation replaces the table prefix.
+	 *
+	 * @param base the SQL query to be transformed
+	 * @return a transformed query with replacements
+	 */
+	protected String getQuery(String base) {
+		return StringUtils.replace(base, "%PREFIX%", tablePrefix);
+	}
+
+	/**
+	 * Public setter for the table prefix property. This will be prefixed to all the table names before queries are
+	 * executed. Defaults to {@link #DEFAULT_TABLE_PREFIX}.
+	 *
+	 * @param tablePrefix the tablePrefix to set
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * A unique grouping identifier for all messages persisted with this store. Using multiple regions allows the store
+	 * to be partitioned (if necessary) for different purposes. Defaults to <code>DEFAULT</code>.
+	 *
+	 * @param region the region name to set
+	 */
+	public void setRegion(String region) {
+		this.region = region;
+	}
+
+	/**
+	 * A clause appended to the query selecting the messages to poll, to lock the selected rows without waiting for
+	 * (and without returning) the rows already locked by other pollers, e.g. <code>FOR UPDATE SKIP LOCKED</code> with
+	 * Oracle, PostgreSQL 9.5+ or MySQL 8. Only useful when polling within a transaction. By default no clause is
+	 * appended and concurrent pollers are only kept from receiving the same message by the claiming delete.
+	 *
+	 * @param lockingClause the clause to append
+	 */
+	public void setLockingClause(String lockingClause) {
+		this.lockingClause = lockingClause;
+	}
+
+	/**
+	 * The JDBC {@link DataSource} to use when interacting with the database. Either this property can be set or the
+	 * {@link #setJdbcTemplate(JdbcOperations) jdbcTemplate}.
+	 *
+	 * @param dataSource a {@link DataSource}
+	 */
+	public void setDataSource(DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	/**
+	 * The {@link JdbcOperations} to use when interacting with the database. Either this property can be set or the
+	 * {@link #setDataSource(DataSource) dataSource}.
+	 *
+	 * @param jdbcTemplate a {@link JdbcOperations}
+	 */
+	public void setJdbcTemplate(JdbcOperations jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	/**
+	 * The source of the monotonically increasing sequence numbers that order the messages of a group, typically a
+	 * database specific incrementer over the <code>%PREFIX%CHANNEL_MESSAGE_SEQ</code> sequence (or table) created by
+	 * the schema scripts, e.g. a {@link org.springframework.jdbc.support.incrementer.DerbyMaxValueIncrementer}.
+	 *
+	 * @param incrementer the incrementer to set
+	 */
+	public void setIncrementer(DataFieldMaxValueIncrementer incrementer) {
+		this.incrementer = incrementer;
+	}
+
+	/**
+	 * Override the {@link LobHandler} that is used to create and unpack large objects in SQL queries. The default is
+	 * fine for almost all platforms, but some Oracle drivers require a native implementation.
+	 *
+	 * @param lobHandler a {@link LobHandler}
+	 */
+	public void setLobHandler(LobHandler lobHandler) {
+		this.lobHandler = lobHandler;
+	}
+
+	/**
+	 * A converter for serializing messages to byte arrays for storage.
+	 *
+	 * @param serializer the serializer to set
+	 */
+	@SuppressWarnings("unchecked")
+	public void setSerializer(Serializer<? super Message<?>> serializer) {
+		this.serializer = new SerializingConverter((Serializer<Object>) serializer);
+	}
+
+	/**
+	 * A converter for deserializing byte arrays to messages.
+	 *
+	 * @param deserializer the deserializer to set
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
+		this.deserializer = new DeserializingConverter((Deserializer) deserializer);
+	}
+
+	/**
+	 * Check mandatory properties (data source and incrementer).
+	 */
+	public void afterPropertiesSet() throws Exception {
+		Assert.state(jdbcTemplate != null, "A DataSource or JdbcTemplate must be provided");
+		Assert.state(incrementer != null, "An incrementer must be provided");
+	}
+
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		messages.add(message);
+		return this.addMessagesToGroup(groupId, messages);
+	}
+
+	@Override
+	public MessageGroup addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+		final String groupKey = getKey(groupId);
+		final List<Message<?>> messagesToAdd = new ArrayList<Message<?>>(messages);
+		final long[] sequences = new long[messagesToAdd.size()];
+		for (int i = 0; i < sequences.length; i++) {
+			sequences[i] = incrementer.nextLongValue();
+		}
+		final Timestamp createdDate = new Timestamp(System.currentTimeMillis());
+		if (logger.isDebugEnabled()) {
+			logger.debug("Inserting " + messagesToAdd.size() + " messages in group with group key=" + groupKey);
+		}
+		jdbcTemplate.batchUpdate(getQuery(CREATE_MESSAGE), new BatchPreparedStatementSetter() {
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				Message<?> message = messagesToAdd.get(i);
+				byte[] messageBytes = serializer.convert(message);
+				ps.setString(1, getKey(message.getHeaders().getId()));
+				ps.setString(2, groupKey);
+				ps.setString(3, region);
+				ps.setTimestamp(4, createdDate);
+				ps.setLong(5, sequences[i]);
+				lobHandler.getLobCreator().setBlobAsBytes(ps, 6, messageBytes);
+			}
+			public int getBatchSize() {
+				return messagesToAdd.size();
+			}
+		});
+		return new LazyMessageGroup(this, groupId);
+	}
+
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		List<Message<?>> messages = this.pollMessagesFromGroup(groupId, 1);
+		return messages.isEmpty() ? null : messages.get(0);
+	}
+
+	/**
+	 * Select the oldest messages of the group and claim them by deleting their rows. Candidates deleted by another
+	 * poller in the meantime are skipped and replaced by the next oldest messages. Nothing is polled when
+	 * <code>maxMessages</code> is not positive.
+	 */
+	@Override
+	public List<Message<?>> pollMessagesFromGroup(Object groupId, int maxMessages) {
+		final String groupKey = getKey(groupId);
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		while (messages.size() < maxMessages) {
+			int requested = maxMessages - messages.size();
+			List<PolledRow> candidates = selectCandidates(groupKey, requested);
+			if (candidates.isEmpty()) {
+				break;
+			}
+			int claimed = claim(groupKey, candidates, messages);
+			if (claimed == candidates.size() && candidates.size() < requested) {
+				// the group has been drained
+				break;
+			}
+		}
+		return messages;
+	}
+
+	private List<PolledRow> selectCandidates(final String groupKey, final int maxRows) {
+		String query = getQuery(POLL_MESSAGES);
+		if (StringUtils.hasText(lockingClause)) {
+			query = query + " " + lockingClause.trim();
+		}
+		final String pollQuery = query;
+		return jdbcTemplate.query(new PreparedStatementCreator() {
+			public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
+				PreparedStatement ps = connection.prepareStatement(pollQuery);
+				ps.setMaxRows(maxRows);
+				ps.setString(1, groupKey);
+				ps.setString(2, region);
+				return ps;
+			}
+		}, new RowMapper<PolledRow>() {
+			public PolledRow mapRow(ResultSet rs, int rowNum) throws SQLException {
+				return new PolledRow(rs.getLong("MESSAGE_SEQUENCE"), lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES"));
+			}
+		});
+	}
+
+	/**
+	 * Delete the rows of the candidates and add the messages of those actually deleted. Drivers that do not report
+	 * the update counts of a batch ({@link Statement#SUCCESS_NO_INFO}) are trusted to have deleted every row; a row
+	 * whose delete failed ({@link Statement#EXECUTE_FAILED}) is not claimed.
+	 */
+	private int claim(final String groupKey, final List<PolledRow> candidates, List<Message<?>> messages) {
+		int[] updateCounts = null;
+		if (candidates.size() == 1) {
+			updateCounts = new int[] { jdbcTemplate.update(getQuery(CLAIM_MESSAGE), new Object[] { groupKey, region,
+					candidates.get(0).sequence }, new int[] { Types.VARCHAR, Types.VARCHAR, Types.BIGINT }) };
+		}
+		else {
+			updateCounts = jdbcTemplate.batchUpdate(getQuery(CLAIM_MESSAGE), new BatchPreparedStatementSetter() {
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					ps.setString(1, groupKey);
+					ps.setString(2, region);
+					ps.setLong(3, candidates.get(i).sequence);
+				}
+				public int getBatchSize() {
+					return candidates.size();
+				}
+			});
+		}
+		int claimed = 0;
+		for (int i = 0; i < candidates.size(); i++) {
+			if (updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO) {
+				messages.add((Message<?>) deserializer.convert(candidates.get(i).messageBytes));
+				claimed++;
+			}
+		}
+		return claimed;
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		return jdbcTemplate.queryForInt(getQuery(COUNT_MESSAGES_IN_GROUP), getKey(groupId), region);
+	}
+
+	public MessageGroup getMessageGroup(Object groupId) {
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		final List<Timestamp> createdDates = new ArrayList<Timestamp>();
+		jdbcTemplate.query(getQuery(LIST_MESSAGES_BY_GROUP_KEY), new Object[] { getKey(groupId), region },
+				new RowMapper<Object>() {
+					public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+						if (createdDates.isEmpty()) {
+							createdDates.add(rs.getTimestamp("CREATED_DATE"));
+						}
+						messages.add((Message<?>) deserializer.convert(lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES")));
+						return null;
+					}
+				});
+		if (messages.isEmpty()) {
+			return new SimpleMessageGroup(groupId);
+		}
+		return new SimpleMessageGroup(messages, groupId, createdDates.get(0).getTime(), false);
+	}
+
+	public MessageGroup removeMessageFromGroup(Object groupId, Message<?> messageToRemove) {
+		jdbcTemplate.update(getQuery(REMOVE_MESSAGE_FROM_GROUP), getKey(groupId), region,
+				getKey(messageToRemove.getHeaders().getId()));
+		return new LazyMessageGroup(this, groupId);
+	}
+
+	public void removeMessageGroup(Object groupId) {
+		final String groupKey = getKey(groupId);
+		jdbcTemplate.update(getQuery(DELETE_MESSAGE_GROUP), new PreparedStatementSetter() {
+			public void setValues(PreparedStatement ps) throws SQLException {
+				logger.debug("Removing group with group key=" + groupKey);
+				ps.setString(1, groupKey);
+				ps.setString(2, region);
+			}
+		});
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_GROUPS), region);
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_MESSAGES_IN_GROUPS), region);
+	}
+
+	public Iterator<MessageGroup> iterator() {
+		final Iterator<String> iterator = jdbcTemplate.query(getQuery(LIST_GROUP_KEYS), new Object[] { region },
+				new SingleColumnRowMapper<String>()).iterator();
+		return new Iterator<MessageGroup>() {
+
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			public MessageGroup next() {
+				return getMessageGroup(iterator.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException("Cannot remove MessageGroup from this iterator.");
+			}
+
+		};
+	}
+
+	/**
+	 * Not supported: the groups of this store have no state besides their messages.
+	 */
+	public void completeGroup(Object groupId) {
+		throw new UnsupportedOperationException("JdbcChannelMessageStore does not support completing a group");
+	}
+
+	/**
+	 * Not supported: the groups of this store have no state besides their messages.
+	 */
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		throw new UnsupportedOperationException(
+				"JdbcChannelMessageStore does not support setting the last released sequence number of a group");
+	}
+
+	private String getKey(Object input) {
+		return input == null ? null : UUIDConverter.getUUID(input).toString();
+	}
+
+
+	/**
+	 * A row selected by a poll, before it is claimed.
+	 */
+	private static class PolledRow {
+
+		private final long sequence;
+
+		private final byte[] messageBytes;
+
+		PolledRow(long sequence, byte[] messageBytes) {
+			this.sequence = sequence;
+			this.messageBytes = messageBytes;
+		}
+	}
+
+}
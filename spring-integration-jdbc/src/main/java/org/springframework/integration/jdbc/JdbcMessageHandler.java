@@ -23,6 +23,7 @@ import org.springframework.integration.Message;
 import org.springframework.integration.MessageDeliveryException;
 import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.core.BatchMessageHandler;
 import org.springframework.integration.handler.AbstractMessageHandler;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
@@ -45,11 +46,15 @@ import org.springframework.util.LinkedCaseInsensitiveMap;
  * 
  * N.B. do not use quotes to escape the header keys. The default SQL parameter source (from Spring JDBC) can also handle
  * headers with dotted names (e.g. <code>business.id</code>)
+ * <p>
+ * When used with a batching poller, the Messages of each batch are written with a single JDBC batch update (unless
+ * keys are generated, in which case the statements are executed one at a time). Messages of a batch are validated and
+ * tracked as single Messages are.
  * 
  * @author Dave Syer
  * @since 2.0
  */
-public class JdbcMessageHandler extends AbstractMessageHandler {
+public class JdbcMessageHandler extends AbstractMessageHandler implements BatchMessageHandler {
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
@@ -110,6 +115,27 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		}
 	}
 
+	/**
+	 * Executes the update for all messages as a single batch.
+	 */
+	@Override
+	protected void handleMessagesInternal(List<Message<?>> messages) throws Exception {
+		if (this.keysGenerated) {
+			super.handleMessagesInternal(messages);
+			return;
+		}
+		SqlParameterSource[] parameterSources = new SqlParameterSource[messages.size()];
+		for (int i = 0; i < parameterSources.length; i++) {
+			parameterSources[i] = (this.sqlParameterSourceFactory != null)
+					? this.sqlParameterSourceFactory.createParameterSource(messages.get(i))
+					: new MapSqlParameterSource();
+		}
+		int[] updated = this.jdbcOperations.batchUpdate(this.updateSql, parameterSources);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Batch update of " + updated.length + " messages");
+		}
+	}
+
 	protected List<? extends Map<String, Object>> executeUpdateQuery(Object obj, boolean keysGenerated) {
 		SqlParameterSource updateParameterSource = new MapSqlParameterSource();
 		if (this.sqlParameterSourceFactory != null) {
@@ -19,12 +19,14 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sql.DataSource;
@@ -37,6 +39,7 @@ import org.springframework.core.serializer.Serializer;
 import org.springframework.core.serializer.support.DeserializingConverter;
 import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageHeaders;
 import org.springframework.integration.store.AbstractMessageGroupStore;
@@ -45,6 +48,7 @@ import org.springframework.integration.store.MessageStore;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementSetter;
@@ -63,6 +67,12 @@ import org.springframework.util.StringUtils;
  * Implementation of {@link MessageStore} using a relational database via JDBC. SQL scripts to create the necessary
  * tables are packaged as <code>org/springframework/integration/jdbc/schema-*.sql</code>, where <code>*</code> is the
  * target database type.
+ * <p/>
+ * A message group is loaded with a single query joining the group rows with the messages they refer to. The groups
+ * returned by the operations that modify a group ({@link #addMessageToGroup(Object, Message)},
+ * {@link #removeMessageFromGroup(Object, Message)} and the mark operations) are only loaded from the database if
+ * their state is actually accessed, so callers that ignore the returned group (as when removing the messages of a
+ * released group one by one) do not pay for reading the group after each modification.
  * 
  * @author Dave Syer
  * @author Oleg Zhurakousky
@@ -87,9 +97,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	private static final String CREATE_MESSAGE = "INSERT into %PREFIX%MESSAGE(MESSAGE_ID, REGION, CREATED_DATE, MESSAGE_BYTES)"
 			+ " values (?, ?, ?, ?)";
 
-	private static final String LIST_MESSAGES_BY_GROUP_KEY = "SELECT MESSAGE_ID, CREATED_DATE, GROUP_KEY, MESSAGE_BYTES, MARKED, COMPLETE, LAST_RELEASED_SEQUENCE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=? order by CREATED_DATE";
-
-	private static final String LIST_MESSAGEIDS_BY_GROUP_KEY = "SELECT MESSAGE_ID, CREATED_DATE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=? order by CREATED_DATE";
+	private static final String LIST_MESSAGES_BY_GROUP_KEY = "SELECT g.MESSAGE_ID, g.CREATED_DATE, g.COMPLETE, g.LAST_RELEASED_SEQUENCE, m.MESSAGE_BYTES"
+			+ " from %PREFIX%MESSAGE_GROUP g left outer join %PREFIX%MESSAGE m on m.MESSAGE_ID=g.MESSAGE_ID and m.REGION=g.REGION"
+			+ " where g.GROUP_KEY=? and g.REGION=? order by g.CREATED_DATE";
 
 	private static final String COUNT_ALL_GROUPS = "SELECT COUNT(GROUP_KEY) from %PREFIX%MESSAGE_GROUP where REGION=?";
 
@@ -97,6 +107,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private static final String COUNT_ALL_MESSAGES_IN_GROUPS = "SELECT COUNT(MESSAGE_ID) from %PREFIX%MESSAGE_GROUP where REGION=?";
 
+	private static final String COUNT_MESSAGES_IN_GROUP = "SELECT COUNT(MESSAGE_ID) from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?";
+
 	private static final String MARK_MESSAGES_IN_GROUP = "UPDATE %PREFIX%MESSAGE_GROUP set UPDATED_DATE=?, MARKED=1 where MARKED=0 and GROUP_KEY=? and REGION=?";
 
 	private static final String MARK_MESSAGE_IN_GROUP = "UPDATE %PREFIX%MESSAGE_GROUP set UPDATED_DATE=?, MARKED=1 where MESSAGE_ID=? and MARKED=0 and GROUP_KEY=? and REGION=?";
@@ -107,6 +119,9 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private static final String REMOVE_MESSAGE_FROM_GROUP = "DELETE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=? and MESSAGE_ID=?";
 
+	private static final String DELETE_MESSAGES_IN_GROUP = "DELETE from %PREFIX%MESSAGE where MESSAGE_ID in"
+			+ " (SELECT MESSAGE_ID from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?) and REGION=?";
+
 	private static final String DELETE_MESSAGE_GROUP = "DELETE from %PREFIX%MESSAGE_GROUP where GROUP_KEY=? and REGION=?";
 
 	private static final String CREATE_MESSAGE_IN_GROUP = "INSERT into %PREFIX%MESSAGE_GROUP(MESSAGE_ID, REGION, CREATED_DATE, GROUP_KEY, MARKED, COMPLETE, LAST_RELEASED_SEQUENCE)"
@@ -114,6 +129,62 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	private static final String LIST_GROUP_KEYS = "SELECT distinct GROUP_KEY as CREATED from %PREFIX%MESSAGE_GROUP where REGION=?";
 
+	private static final String LIST_GROUP_KEYS_OLDER_THAN = "SELECT GROUP_KEY from %PREFIX%MESSAGE_GROUP where REGION=?"
+			+ " group by GROUP_KEY having max(CREATED_DATE)<=?";
+
+	// Queries for the version 2 schema, with a row per group in %PREFIX%GROUP_V2 and binary keys
+
+	private static final String GET_MESSAGE_V2 = "SELECT MESSAGE_ID, CREATED_DATE, MESSAGE_BYTES from %PREFIX%MESSAGE_V2 where MESSAGE_ID=? and REGION=?";
+
+	private static final String GET_MESSAGE_COUNT_V2 = "SELECT COUNT(MESSAGE_ID) from %PREFIX%MESSAGE_V2 where REGION=?";
+
+	private static final String DELETE_MESSAGE_V2 = "DELETE from %PREFIX%MESSAGE_V2 where MESSAGE_ID=? and REGION=?";
+
+	private static final String CREATE_MESSAGE_V2 = "INSERT into %PREFIX%MESSAGE_V2(MESSAGE_ID, REGION, CREATED_DATE, MESSAGE_BYTES)"
+			+ " values (?, ?, ?, ?)";
+
+	private static final String LIST_MESSAGES_BY_GROUP_KEY_V2 = "SELECT g.CREATED_DATE, g.COMPLETE, g.LAST_RELEASED_SEQUENCE, gm.MESSAGE_ID, m.MESSAGE_BYTES"
+			+ " from %PREFIX%GROUP_V2 g left outer join %PREFIX%GROUP_MESSAGE_V2 gm on gm.GROUP_KEY=g.GROUP_KEY and gm.REGION=g.REGION"
+			+ " left outer join %PREFIX%MESSAGE_V2 m on m.MESSAGE_ID=gm.MESSAGE_ID and m.REGION=gm.REGION"
+			+ " where g.GROUP_KEY=? and g.REGION=? order by gm.CREATED_DATE";
+
+	private static final String COUNT_ALL_GROUPS_V2 = "SELECT COUNT(GROUP_KEY) from %PREFIX%GROUP_V2 where REGION=?";
+
+	private static final String COUNT_ALL_MARKED_MESSAGES_IN_GROUPS_V2 = "SELECT COUNT(MESSAGE_ID) from %PREFIX%GROUP_MESSAGE_V2 where MARKED=1 AND REGION=?";
+
+	private static final String COUNT_ALL_MESSAGES_IN_GROUPS_V2 = "SELECT COUNT(MESSAGE_ID) from %PREFIX%GROUP_MESSAGE_V2 where REGION=?";
+
+	private static final String COUNT_MESSAGES_IN_GROUP_V2 = "SELECT COUNT(MESSAGE_ID) from %PREFIX%GROUP_MESSAGE_V2 where GROUP_KEY=? and REGION=?";
+
+	private static final String MARK_MESSAGES_IN_GROUP_V2 = "UPDATE %PREFIX%GROUP_MESSAGE_V2 set UPDATED_DATE=?, MARKED=1 where MARKED=0 and GROUP_KEY=? and REGION=?";
+
+	private static final String MARK_MESSAGE_IN_GROUP_V2 = "UPDATE %PREFIX%GROUP_MESSAGE_V2 set UPDATED_DATE=?, MARKED=1 where MESSAGE_ID=? and MARKED=0 and GROUP_KEY=? and REGION=?";
+
+	private static final String COMPLETE_GROUP_V2 = "UPDATE %PREFIX%GROUP_V2 set UPDATED_DATE=?, COMPLETE=1 where GROUP_KEY=? and REGION=?";
+
+	private static final String UPDATE_LAST_RELEASED_SEQUENCE_V2 = "UPDATE %PREFIX%GROUP_V2 set UPDATED_DATE=?, LAST_RELEASED_SEQUENCE=? where GROUP_KEY=? and REGION=?";
+
+	private static final String REMOVE_MESSAGE_FROM_GROUP_V2 = "DELETE from %PREFIX%GROUP_MESSAGE_V2 where GROUP_KEY=? and REGION=? and MESSAGE_ID=?";
+
+	private static final String DELETE_MESSAGES_IN_GROUP_V2 = "DELETE from %PREFIX%MESSAGE_V2 where MESSAGE_ID in"
+			+ " (SELECT MESSAGE_ID from %PREFIX%GROUP_MESSAGE_V2 where GROUP_KEY=? and REGION=?) and REGION=?";
+
+	private static final String DELETE_MESSAGE_GROUP_V2 = "DELETE from %PREFIX%GROUP_MESSAGE_V2 where GROUP_KEY=? and REGION=?";
+
+	private static final String DELETE_GROUP_V2 = "DELETE from %PREFIX%GROUP_V2 where GROUP_KEY=? and REGION=?";
+
+	private static final String CREATE_MESSAGE_IN_GROUP_V2 = "INSERT into %PREFIX%GROUP_MESSAGE_V2(MESSAGE_ID, REGION, CREATED_DATE, GROUP_KEY, MARKED)"
+			+ " values (?, ?, ?, ?, 0)";
+
+	private static final String UPDATE_GROUP_V2 = "UPDATE %PREFIX%GROUP_V2 set CREATED_DATE=?, UPDATED_DATE=? where GROUP_KEY=? and REGION=?";
+
+	private static final String CREATE_GROUP_V2 = "INSERT into %PREFIX%GROUP_V2(GROUP_KEY, REGION, COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE)"
+			+ " values (?, ?, 0, 0, ?)";
+
+	private static final String LIST_GROUP_KEYS_V2 = "SELECT GROUP_KEY from %PREFIX%GROUP_V2 where REGION=?";
+
+	private static final String LIST_GROUP_KEYS_OLDER_THAN_V2 = "SELECT GROUP_KEY from %PREFIX%GROUP_V2 where REGION=? and CREATED_DATE<=?";
+
 	public static final int DEFAULT_LONG_STRING_LENGTH = 2500;
 
 	/**
@@ -127,10 +198,17 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	 */
 	public static final String CREATED_DATE_KEY = JdbcMessageStore.class.getSimpleName() + ".CREATED_DATE";
 
+	/**
+	 * The created date, in microseconds, of the last message added to a group by any store in this JVM.
+	 */
+	private static final AtomicLong lastGroupMessageCreatedMicros = new AtomicLong();
+
 	private volatile String region = "DEFAULT";
 
 	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
 
+	private volatile int schemaVersion = 1;
+
 	private volatile JdbcOperations jdbcTemplate;
 
 	private volatile DeserializingConverter deserializer;
@@ -169,6 +247,13 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		return StringUtils.replace(base, "%PREFIX%", tablePrefix);
 	}
 
+	/**
+	 * Return the query for the configured schema version, transformed by {@link #getQuery(String)}.
+	 */
+	private String getQuery(String version1, String version2) {
+		return getQuery(this.schemaVersion == 2 ? version2 : version1);
+	}
+
 	/**
 	 * Public setter for the table prefix property. This will be prefixed to all the table names before queries are
 	 * executed. Defaults to {@link #DEFAULT_TABLE_PREFIX}.
@@ -189,6 +274,25 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		this.region = region;
 	}
 
+	/**
+	 * The version of the schema the tables of this store conform to. Version 1 (the default) is created by the
+	 * <code>schema-*.sql</code> scripts. Version 2 is created by the <code>schema-v2-*.sql</code> scripts (and existing
+	 * version 1 data can be copied over with the <code>migrate-v1-to-v2-*.sql</code> scripts): it keeps the state of
+	 * a group (complete flag and last released sequence number) in a single row of a separate group table, so that
+	 * changing it is a one-row update, stores ids and group keys as 16 bytes instead of 36 characters, and indexes
+	 * the group rows by their timestamp. As with version 1, the timestamp of a group (used to expire it) is the
+	 * created date of its most recent message: the created date of the group row is moved forward each time a
+	 * message is added to the group. Note that, unlike with version 1, a group remains in a version 2 store
+	 * (like in a {@link org.springframework.integration.store.SimpleMessageStore}) when its last message is removed,
+	 * until the group itself is removed.
+	 * 
+	 * @param schemaVersion 1 or 2
+	 */
+	public void setSchemaVersion(int schemaVersion) {
+		Assert.isTrue(schemaVersion == 1 || schemaVersion == 2, "schemaVersion must be 1 or 2");
+		this.schemaVersion = schemaVersion;
+	}
+
 	/**
 	 * The JDBC {@link DataSource} to use when interacting with the database. Either this property can be set or the
 	 * {@link #setJdbcTemplate(JdbcOperations) jdbcTemplate}.
@@ -253,8 +357,8 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		if (message == null) {
 			return null;
 		}
-		int updated = jdbcTemplate.update(getQuery(DELETE_MESSAGE), new Object[] { getKey(id), region }, new int[] {
-				Types.VARCHAR, Types.VARCHAR });
+		int updated = jdbcTemplate.update(getQuery(DELETE_MESSAGE, DELETE_MESSAGE_V2),
+				new Object[] { getKeyParameter(getKey(id)), region }, new int[] { getKeyType(), Types.VARCHAR });
 		if (updated != 0) {
 			return message;
 		}
@@ -263,43 +367,33 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	@ManagedAttribute
 	public long getMessageCount() {
-		return jdbcTemplate.queryForInt(getQuery(GET_MESSAGE_COUNT), region);
+		return jdbcTemplate.queryForInt(getQuery(GET_MESSAGE_COUNT, GET_MESSAGE_COUNT_V2), region);
 	}
 
 	public Message<?> getMessage(UUID id) {
-		List<Message<?>> list = jdbcTemplate.query(getQuery(GET_MESSAGE), new Object[] { getKey(id), region }, mapper);
+		List<Message<?>> list = jdbcTemplate.query(getQuery(GET_MESSAGE, GET_MESSAGE_V2),
+				new Object[] { getKeyParameter(getKey(id)), region }, new int[] { getKeyType(), Types.VARCHAR }, mapper);
 		if (list.isEmpty()) {
 			return null;
 		}
 		return list.get(0);
 	}
 
-	@SuppressWarnings({ "rawtypes", "unchecked" })
 	public <T> Message<T> addMessage(final Message<T> message) {
-		if (message.getHeaders().containsKey(SAVED_KEY)) {
-			Message<T> saved = (Message<T>) getMessage(message.getHeaders().getId());
-			if (saved != null) {
-				if (saved.equals(message)) {
-					return message;
-				} // We need to save it under its own id
-			}
+		if (isAlreadySaved(message)) {
+			return message;
 		}
 
 		final long createdDate = System.currentTimeMillis();
-		Message<T> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
-				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
-		
-		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
-		// using reflection to set ID since it is immutable through MessageHeaders
-		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		Message<T> result = prepareForSaving(message, createdDate);
 		
 		final String messageId = getKey(result.getHeaders().getId());
 		final byte[] messageBytes = serializer.convert(result);
 
-		jdbcTemplate.update(getQuery(CREATE_MESSAGE), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(CREATE_MESSAGE, CREATE_MESSAGE_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Inserting message with id key=" + messageId);
-				ps.setString(1, messageId);
+				setKey(ps, 1, messageId);
 				ps.setString(2, region);
 				ps.setTimestamp(3, new Timestamp(createdDate));
 				lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes);
@@ -311,36 +405,152 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
 
 		final long createdDate = System.currentTimeMillis();
+		final long createdMicros = reserveGroupMessageCreatedMicros(createdDate, 1);
 		final String messageId = getKey(message.getHeaders().getId());
 		final String groupKey = getKey(groupId);
 
-		jdbcTemplate.update(getQuery(CREATE_MESSAGE_IN_GROUP), new PreparedStatementSetter() {
+		ensureGroupExists(groupKey, createdDate);
+		jdbcTemplate.update(getQuery(CREATE_MESSAGE_IN_GROUP, CREATE_MESSAGE_IN_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Inserting message with id key=" + messageId + " and created date=" + createdDate);
-				ps.setString(1, messageId);
+				setKey(ps, 1, messageId);
 				ps.setString(2, region);
-				ps.setTimestamp(3, new Timestamp(createdDate));
-				ps.setString(4, groupKey);
+				ps.setTimestamp(3, timestampOfMicros(createdMicros));
+				setKey(ps, 4, groupKey);
 			}
 		});
 		this.addMessage(message);
-		return getMessageGroup(groupId);
+		return new LazyMessageGroup(this, groupId);
+
+	}
+
+	/**
+	 * Store the messages and their association with the group with one batch of inserts per table. The group rows
+	 * get increasing created dates (one microsecond apart), as with {@link #addMessageToGroup(Object, Message)}, so
+	 * that the order of the messages is kept on databases whose timestamps are precise enough.
+	 */
+	@Override
+	public MessageGroup addMessagesToGroup(Object groupId, Collection<? extends Message<?>> messages) {
+
+		final long createdDate = System.currentTimeMillis();
+		final String groupKey = getKey(groupId);
+		final List<String> groupMessageIds = new ArrayList<String>(messages.size());
+		final List<String> messageIds = new ArrayList<String>(messages.size());
+		final List<byte[]> messageBytes = new ArrayList<byte[]>(messages.size());
+
+		for (Message<?> message : messages) {
+			groupMessageIds.add(getKey(message.getHeaders().getId()));
+			if (!isAlreadySaved(message)) {
+				Message<?> result = prepareForSaving(message, createdDate);
+				messageIds.add(getKey(result.getHeaders().getId()));
+				messageBytes.add(serializer.convert(result));
+			}
+		}
+		if (groupMessageIds.isEmpty()) {
+			return getMessageGroup(groupId);
+		}
+
+		logger.debug("Inserting " + groupMessageIds.size() + " messages in group with group key=" + groupKey);
+		final long createdMicros = reserveGroupMessageCreatedMicros(createdDate, groupMessageIds.size());
+		ensureGroupExists(groupKey, createdDate);
+		jdbcTemplate.batchUpdate(getQuery(CREATE_MESSAGE_IN_GROUP, CREATE_MESSAGE_IN_GROUP_V2), new BatchPreparedStatementSetter() {
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				setKey(ps, 1, groupMessageIds.get(i));
+				ps.setString(2, region);
+				ps.setTimestamp(3, timestampOfMicros(createdMicros + i));
+				setKey(ps, 4, groupKey);
+			}
+			public int getBatchSize() {
+				return groupMessageIds.size();
+			}
+		});
+		if (!messageIds.isEmpty()) {
+			jdbcTemplate.batchUpdate(getQuery(CREATE_MESSAGE, CREATE_MESSAGE_V2), new BatchPreparedStatementSetter() {
+				public void setValues(PreparedStatement ps, int i) throws SQLException {
+					setKey(ps, 1, messageIds.get(i));
+					ps.setString(2, region);
+					ps.setTimestamp(3, new Timestamp(createdDate));
+					lobHandler.getLobCreator().setBlobAsBytes(ps, 4, messageBytes.get(i));
+				}
+				public int getBatchSize() {
+					return messageIds.size();
+				}
+			});
+		}
+		return new LazyMessageGroup(this, groupId);
+	}
+
+	/**
+	 * Whether the message has already been saved by this store, unchanged, under its own id.
+	 */
+	private boolean isAlreadySaved(Message<?> message) {
+		if (message.getHeaders().containsKey(SAVED_KEY)) {
+			Message<?> saved = getMessage(message.getHeaders().getId());
+			if (saved != null) {
+				if (saved.equals(message)) {
+					return true;
+				} // We need to save it under its own id
+			}
+		}
+		return false;
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private <T> Message<T> prepareForSaving(Message<T> message, long createdDate) {
+		Message<T> result = MessageBuilder.fromMessage(message).setHeader(SAVED_KEY, Boolean.TRUE)
+				.setHeader(CREATED_DATE_KEY, new Long(createdDate)).build();
+		
+		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
+		// using reflection to set ID since it is immutable through MessageHeaders
+		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		return result;
+	}
+
+	/**
+	 * Reserve consecutive created dates, in microseconds, for the given number of messages added to a group at the
+	 * given time, later than those of the messages added before. The messages of a group are ordered by their created
+	 * date, which would otherwise be the same for the messages added in the same millisecond.
+	 * @return the first reserved created date
+	 */
+	private static long reserveGroupMessageCreatedMicros(long createdDate, int count) {
+		while (true) {
+			long last = lastGroupMessageCreatedMicros.get();
+			long first = Math.max(createdDate * 1000, last + 1);
+			if (lastGroupMessageCreatedMicros.compareAndSet(last, first + count - 1)) {
+				return first;
+			}
+		}
+	}
 
+	/**
+	 * The timestamp of the given time in microseconds.
+	 */
+	private static Timestamp timestampOfMicros(long totalMicros) {
+		Timestamp timestamp = new Timestamp((totalMicros / 1000000) * 1000);
+		timestamp.setNanos((int) (totalMicros % 1000000) * 1000);
+		return timestamp;
 	}
 
 	@ManagedAttribute
 	public int getMessageGroupCount() {
-		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_GROUPS), region);
+		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_GROUPS, COUNT_ALL_GROUPS_V2), region);
 	}
 
 	@ManagedAttribute
 	public int getMessageCountForAllMessageGroups() {
-		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_MESSAGES_IN_GROUPS), region);
+		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_MESSAGES_IN_GROUPS, COUNT_ALL_MESSAGES_IN_GROUPS_V2), region);
 	}
 
 	@ManagedAttribute
 	public int getMarkedMessageCountForAllMessageGroups() {
-		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_MARKED_MESSAGES_IN_GROUPS), region);
+		return jdbcTemplate.queryForInt(getQuery(COUNT_ALL_MARKED_MESSAGES_IN_GROUPS, COUNT_ALL_MARKED_MESSAGES_IN_GROUPS_V2), region);
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		String key = getKey(groupId);
+		return jdbcTemplate.queryForInt(getQuery(COUNT_MESSAGES_IN_GROUP, COUNT_MESSAGES_IN_GROUP_V2),
+				new Object[] { getKeyParameter(key), region }, new int[] { getKeyType(), Types.VARCHAR });
 	}
 
 	public MessageGroup getMessageGroup(Object groupId) {
@@ -351,13 +561,17 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final AtomicReference<Integer> lastReleasedSequenceRef = new AtomicReference<Integer>();
 		
 		final AtomicInteger size = new AtomicInteger();
-		jdbcTemplate.query(getQuery(LIST_MESSAGES_BY_GROUP_KEY), new Object[] { key, region },
+		jdbcTemplate.query(getQuery(LIST_MESSAGES_BY_GROUP_KEY, LIST_MESSAGES_BY_GROUP_KEY_V2),
+				new Object[] { getKeyParameter(key), region }, new int[] { getKeyType(), Types.VARCHAR },
 				
 				new RowCallbackHandler() {
 					public void processRow(ResultSet rs) throws SQLException {
 						size.incrementAndGet();
 						
-						messages.add(getMessage(UUID.fromString(rs.getString("MESSAGE_ID"))));
+						Message<?> message = mapper.mapRow(rs, size.get());
+						if (message != null) {
+							messages.add(message);
+						}
 
 						date.set(rs.getTimestamp("CREATED_DATE"));
 						
@@ -387,16 +601,16 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final long updatedDate = System.currentTimeMillis();
 		final String groupKey = getKey(group.getGroupId());
 
-		jdbcTemplate.update(getQuery(MARK_MESSAGES_IN_GROUP), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(MARK_MESSAGES_IN_GROUP, MARK_MESSAGES_IN_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Marking messages with group key=" + groupKey);
 				ps.setTimestamp(1, new Timestamp(updatedDate));
-				ps.setString(2, groupKey);
+				setKey(ps, 2, groupKey);
 				ps.setString(3, region);
 			}
 		});
 
-		return getMessageGroup(group.getGroupId());
+		return new LazyMessageGroup(this, group.getGroupId());
 
 	}
 
@@ -404,16 +618,54 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final String groupKey = getKey(groupId);
 		final String messageId = getKey(messageToRemove.getHeaders().getId());
 
-		jdbcTemplate.update(getQuery(REMOVE_MESSAGE_FROM_GROUP), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(REMOVE_MESSAGE_FROM_GROUP, REMOVE_MESSAGE_FROM_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Removing message from group with group key=" + groupKey);
-				ps.setString(1, groupKey);
+				setKey(ps, 1, groupKey);
+				ps.setString(2, region);
+				setKey(ps, 3, messageId);
+			}
+		});
+		jdbcTemplate.update(getQuery(DELETE_MESSAGE, DELETE_MESSAGE_V2), new Object[] { getKeyParameter(messageId), region },
+				new int[] { getKeyType(), Types.VARCHAR });
+		return new LazyMessageGroup(this, groupId);
+	}
+
+	/**
+	 * Remove the messages and their association with the group with one batch of deletes per table.
+	 */
+	@Override
+	public MessageGroup removeMessagesFromGroup(Object groupId, Collection<? extends Message<?>> messagesToRemove) {
+		final String groupKey = getKey(groupId);
+		final List<String> messageIds = new ArrayList<String>(messagesToRemove.size());
+		for (Message<?> message : messagesToRemove) {
+			messageIds.add(getKey(message.getHeaders().getId()));
+		}
+		if (messageIds.isEmpty()) {
+			return getMessageGroup(groupId);
+		}
+
+		logger.debug("Removing " + messageIds.size() + " messages from group with group key=" + groupKey);
+		jdbcTemplate.batchUpdate(getQuery(REMOVE_MESSAGE_FROM_GROUP, REMOVE_MESSAGE_FROM_GROUP_V2), new BatchPreparedStatementSetter() {
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				setKey(ps, 1, groupKey);
+				ps.setString(2, region);
+				setKey(ps, 3, messageIds.get(i));
+			}
+			public int getBatchSize() {
+				return messageIds.size();
+			}
+		});
+		jdbcTemplate.batchUpdate(getQuery(DELETE_MESSAGE, DELETE_MESSAGE_V2), new BatchPreparedStatementSetter() {
+			public void setValues(PreparedStatement ps, int i) throws SQLException {
+				setKey(ps, 1, messageIds.get(i));
 				ps.setString(2, region);
-				ps.setString(3, messageId);
+			}
+			public int getBatchSize() {
+				return messageIds.size();
 			}
 		});
-		this.removeMessage(messageToRemove.getHeaders().getId());
-		return getMessageGroup(groupId);
+		return new LazyMessageGroup(this, groupId);
 	}
 
 	/**
@@ -425,33 +677,47 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final String groupKey = getKey(groupId);
 		final String messageId = getKey(messageToMark.getHeaders().getId());
 
-		jdbcTemplate.update(getQuery(MARK_MESSAGE_IN_GROUP), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(MARK_MESSAGE_IN_GROUP, MARK_MESSAGE_IN_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Marking message " + messageId + " in group with group key=" + groupKey);
 				ps.setTimestamp(1, new Timestamp(updatedDate));
-				ps.setString(2, messageId);
-				ps.setString(3, groupKey);
+				setKey(ps, 2, messageId);
+				setKey(ps, 3, groupKey);
 				ps.setString(4, region);
 			}
 		});
-		return getMessageGroup(groupId);
+		return new LazyMessageGroup(this, groupId);
 	}
 
 	public void removeMessageGroup(Object groupId) {
 
 		final String groupKey = getKey(groupId);
 		
-		for (UUID messageIds : this.getMessageIdsForGroup(groupId)) {
-			this.removeMessage(messageIds);
-		}
+		jdbcTemplate.update(getQuery(DELETE_MESSAGES_IN_GROUP, DELETE_MESSAGES_IN_GROUP_V2), new PreparedStatementSetter() {
+			public void setValues(PreparedStatement ps) throws SQLException {
+				logger.debug("Removing messages of group with group key=" + groupKey);
+				setKey(ps, 1, groupKey);
+				ps.setString(2, region);
+				ps.setString(3, region);
+			}
+		});
 
-		jdbcTemplate.update(getQuery(DELETE_MESSAGE_GROUP), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(DELETE_MESSAGE_GROUP, DELETE_MESSAGE_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
-				logger.debug("Marking messages with group key=" + groupKey);
-				ps.setString(1, groupKey);
+				logger.debug("Removing group with group key=" + groupKey);
+				setKey(ps, 1, groupKey);
 				ps.setString(2, region);
 			}
 		});
+
+		if (this.schemaVersion == 2) {
+			jdbcTemplate.update(getQuery(DELETE_GROUP_V2), new PreparedStatementSetter() {
+				public void setValues(PreparedStatement ps) throws SQLException {
+					setKey(ps, 1, groupKey);
+					ps.setString(2, region);
+				}
+			});
+		}
 		
 	}
 	
@@ -459,11 +725,11 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final long updatedDate = System.currentTimeMillis();
 		final String groupKey = getKey(groupId);
 		
-		jdbcTemplate.update(getQuery(COMPLETE_GROUP), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(COMPLETE_GROUP, COMPLETE_GROUP_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Completing MessageGroup: " + groupKey);
 				ps.setTimestamp(1, new Timestamp(updatedDate));
-				ps.setString(2, groupKey);
+				setKey(ps, 2, groupKey);
 				ps.setString(3, region);
 			}
 		});
@@ -474,12 +740,12 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		final long updatedDate = System.currentTimeMillis();
 		final String groupKey = getKey(groupId);
 		
-		jdbcTemplate.update(getQuery(UPDATE_LAST_RELEASED_SEQUENCE), new PreparedStatementSetter() {
+		jdbcTemplate.update(getQuery(UPDATE_LAST_RELEASED_SEQUENCE, UPDATE_LAST_RELEASED_SEQUENCE_V2), new PreparedStatementSetter() {
 			public void setValues(PreparedStatement ps) throws SQLException {
 				logger.debug("Updating  the sequence number of the last released Message in the MessageGroup: " + groupKey);
 				ps.setTimestamp(1, new Timestamp(updatedDate));
 				ps.setInt(2, sequenceNumber);
-				ps.setString(3, groupKey);
+				setKey(ps, 3, groupKey);
 				ps.setString(4, region);
 			}
 		});
@@ -488,46 +754,30 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	public Message<?> pollMessageFromGroup(final Object groupId) {
 		String key = getKey(groupId);
 		
-		return jdbcTemplate.query(getQuery(LIST_MESSAGEIDS_BY_GROUP_KEY), new Object[] { key, region },
+		Message<?> message = jdbcTemplate.query(getQuery(LIST_MESSAGES_BY_GROUP_KEY, LIST_MESSAGES_BY_GROUP_KEY_V2),
+				new Object[] { getKeyParameter(key), region }, new int[] { getKeyType(), Types.VARCHAR },
 				new ResultSetExtractor<Message<?>>() {
 			public Message<?> extractData(ResultSet rs)
 					throws SQLException, DataAccessException {
 				while (rs.next()) {
-					UUID uuid = UUID.fromString(rs.getString(1));
-					if (uuid != null){
-						Message<?> message = getMessage(uuid);
-						if (message != null){
-							removeMessageFromGroup(groupId, message);
-							return message;
-						}
+					Message<?> message = mapper.mapRow(rs, 0);
+					if (message != null){
+						return message;
 					}
 				}
 				return null;
 			}
 		});
-	}
-
-	private List<UUID> getMessageIdsForGroup(Object groupId){
-		String key = getKey(groupId);
-		
-		final List<UUID> messageIds = new ArrayList<UUID>();
-		
-		jdbcTemplate.query(getQuery(LIST_MESSAGEIDS_BY_GROUP_KEY), new Object[] { key, region },
-				new RowCallbackHandler() {
-
-					public void processRow(ResultSet rs) throws SQLException {
-						messageIds.add(UUID.fromString(rs.getString(1)));
-					}
-					
-				}
-		);
-		return messageIds;
+		if (message != null){
+			removeMessageFromGroup(groupId, message);
+		}
+		return message;
 	}
 
 	public Iterator<MessageGroup> iterator() {
 
-		final Iterator<String> iterator = jdbcTemplate.query(getQuery(LIST_GROUP_KEYS), new Object[] { region },
-				new SingleColumnRowMapper<String>()).iterator();
+		final Iterator<String> iterator = jdbcTemplate.query(getQuery(LIST_GROUP_KEYS, LIST_GROUP_KEYS_V2), new Object[] { region },
+				getGroupKeyMapper()).iterator();
 
 		return new Iterator<MessageGroup>() {
 
@@ -547,10 +797,95 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	}
 
+	/**
+	 * Select the keys of the expired groups with a single query, which uses the index on the created date of the
+	 * groups with the version 2 schema. With either schema the timestamp of a group is the created date of its most
+	 * recent message, as in {@link #getMessageGroup(Object)}.
+	 */
+	@Override
+	protected Collection<MessageGroup> findGroupsOlderThan(long threshold) {
+		List<String> keys = jdbcTemplate.query(getQuery(LIST_GROUP_KEYS_OLDER_THAN, LIST_GROUP_KEYS_OLDER_THAN_V2),
+				new Object[] { region, new Timestamp(threshold) }, getGroupKeyMapper());
+		List<MessageGroup> groups = new ArrayList<MessageGroup>(keys.size());
+		for (String key : keys) {
+			groups.add(new LazyMessageGroup(this, key));
+		}
+		return groups;
+	}
+
+	private RowMapper<String> getGroupKeyMapper() {
+		if (this.schemaVersion == 2) {
+			return new RowMapper<String>() {
+				public String mapRow(ResultSet rs, int rowNum) throws SQLException {
+					return BinaryUUIDUtils.toUUID(rs.getBytes(1)).toString();
+				}
+			};
+		}
+		return new SingleColumnRowMapper<String>();
+	}
+
 	private String getKey(Object input) {
 		return input == null ? null : UUIDConverter.getUUID(input).toString();
 	}
 
+	/**
+	 * Return the value of the given key to be bound to a statement: the key itself with the version 1 schema, or
+	 * its 16 bytes with the version 2 schema.
+	 */
+	private Object getKeyParameter(String key) {
+		if (this.schemaVersion == 2 && key != null) {
+			return BinaryUUIDUtils.toBytes(key);
+		}
+		return key;
+	}
+
+	private int getKeyType() {
+		return (this.schemaVersion == 2) ? Types.BINARY : Types.VARCHAR;
+	}
+
+	private void setKey(PreparedStatement ps, int index, String key) throws SQLException {
+		if (this.schemaVersion == 2) {
+			ps.setBytes(index, BinaryUUIDUtils.toBytes(key));
+		}
+		else {
+			ps.setString(index, key);
+		}
+	}
+
+	/**
+	 * With the version 2 schema, make sure the group has a row in the group table, whose created date is that of
+	 * the message being added.
+	 */
+	private void ensureGroupExists(final String groupKey, final long createdDate) {
+		if (this.schemaVersion != 2) {
+			return;
+		}
+		int updated = jdbcTemplate.update(getQuery(UPDATE_GROUP_V2), new PreparedStatementSetter() {
+			public void setValues(PreparedStatement ps) throws SQLException {
+				ps.setTimestamp(1, new Timestamp(createdDate));
+				ps.setTimestamp(2, new Timestamp(createdDate));
+				setKey(ps, 3, groupKey);
+				ps.setString(4, region);
+			}
+		});
+		if (updated == 0) {
+			try {
+				jdbcTemplate.update(getQuery(CREATE_GROUP_V2), new PreparedStatementSetter() {
+					public void setValues(PreparedStatement ps) throws SQLException {
+						logger.debug("Creating group with group key=" + groupKey);
+						setKey(ps, 1, groupKey);
+						ps.setString(2, region);
+						ps.setTimestamp(3, new Timestamp(createdDate));
+					}
+				});
+			}
+			catch (DataIntegrityViolationException e) {
+				// created concurrently by another store sharing the tables
+				logger.debug("Group with group key=" + groupKey + " has been created concurrently");
+			}
+		}
+	}
+
 	/**
 	 * Convenience class to be used to unpack a message from a result set row. Uses column named in the result set to
 	 * extract the required data, so that select clause ordering is unimportant.
@@ -560,8 +895,14 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 	private class MessageMapper implements RowMapper<Message<?>> {
 
 		public Message<?> mapRow(ResultSet rs, int rowNum) throws SQLException {
-			Message<?> message = (Message<?>) deserializer.convert(lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES"));
+			byte[] messageBytes = lobHandler.getBlobAsBytes(rs, "MESSAGE_BYTES");
+			if (messageBytes == null) {
+				// a group row whose message has already been removed
+				return null;
+			}
+			Message<?> message = (Message<?>) deserializer.convert(messageBytes);
 			return message;
 		}
 	}
+
 }
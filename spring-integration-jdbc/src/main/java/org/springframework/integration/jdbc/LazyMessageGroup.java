@@ -0,0 +1,99 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import java.util.Collection;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.store.AbstractMessageGroupStore;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupStore;
+
+/**
+ * A {@link MessageGroup} that is read from a {@link MessageGroupStore} the first time its state is accessed. Returned
+ * by the operations of the JDBC stores that modify a group, so that callers ignoring the returned group do not pay for
+ * reading it from the database. Until the group has been read, its size is counted by the store rather than read
+ * with the group, so that a release strategy checking the size after each added message does not read the group.
+ * 
+ * @since 2.1
+ */
+class LazyMessageGroup implements MessageGroup {
+
+	private final MessageGroupStore messageGroupStore;
+
+	private final Object groupId;
+
+	private volatile MessageGroup group;
+
+	public LazyMessageGroup(MessageGroupStore messageGroupStore, Object groupId) {
+		this.messageGroupStore = messageGroupStore;
+		this.groupId = groupId;
+	}
+
+	private MessageGroup getGroup() {
+		if (this.group == null) {
+			this.group = this.messageGroupStore.getMessageGroup(this.groupId);
+		}
+		return this.group;
+	}
+
+	public boolean canAdd(Message<?> message) {
+		return this.getGroup().canAdd(message);
+	}
+
+	public Collection<Message<?>> getMessages() {
+		return this.getGroup().getMessages();
+	}
+
+	public Object getGroupId() {
+		return this.groupId;
+	}
+
+	public int getLastReleasedMessageSequenceNumber() {
+		return this.getGroup().getLastReleasedMessageSequenceNumber();
+	}
+
+	public boolean isComplete() {
+		return this.getGroup().isComplete();
+	}
+
+	public void complete() {
+		this.getGroup().complete();
+	}
+
+	public int getSequenceSize() {
+		return this.getGroup().getSequenceSize();
+	}
+
+	public int size() {
+		if (this.group == null && this.messageGroupStore instanceof AbstractMessageGroupStore) {
+			return ((AbstractMessageGroupStore) this.messageGroupStore).messageGroupSize(this.groupId);
+		}
+		return this.getGroup().size();
+	}
+
+	public Message<?> getOne() {
+		return this.getGroup().getOne();
+	}
+
+	public long getTimestamp() {
+		return this.getGroup().getTimestamp();
+	}
+
+	@Override
+	public String toString() {
+		return this.getGroup().toString();
+	}
+
+}
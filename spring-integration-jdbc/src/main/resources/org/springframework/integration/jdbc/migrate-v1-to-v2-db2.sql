@@ -0,0 +1,16 @@
+-- Autogenerated: do not edit this file
+
+-- Copies the content of the version 1 message store tables into the (empty) version 2 tables.
+-- The version 1 tables are left in place: drop them once the migration has been checked.
+
+INSERT INTO INT_MESSAGE_V2 (MESSAGE_ID, REGION, CREATED_DATE, MESSAGE_BYTES)
+	SELECT CAST(VARCHAR_BIT_FORMAT(REPLACE(MESSAGE_ID, '-', '')) AS CHAR(16) FOR BIT DATA), COALESCE(REGION, 'DEFAULT'), CREATED_DATE, MESSAGE_BYTES
+	FROM INT_MESSAGE;
+
+INSERT INTO INT_GROUP_V2 (GROUP_KEY, REGION, COMPLETE, LAST_RELEASED_SEQUENCE, CREATED_DATE, UPDATED_DATE)
+	SELECT CAST(VARCHAR_BIT_FORMAT(REPLACE(GROUP_KEY, '-', '')) AS CHAR(16) FOR BIT DATA), COALESCE(REGION, 'DEFAULT'), MAX(COMPLETE), MAX(LAST_RELEASED_SEQUENCE), MAX(CREATED_DATE), MAX(UPDATED_DATE)
+	FROM INT_MESSAGE_GROUP GROUP BY GROUP_KEY, REGION;
+
+INSERT INTO INT_GROUP_MESSAGE_V2 (GROUP_KEY, REGION, MESSAGE_ID, MARKED, CREATED_DATE, UPDATED_DATE)
+	SELECT CAST(VARCHAR_BIT_FORMAT(REPLACE(GROUP_KEY, '-', '')) AS CHAR(16) FOR BIT DATA), COALESCE(REGION, 'DEFAULT'), CAST(VARCHAR_BIT_FORMAT(REPLACE(MESSAGE_ID, '-', '')) AS CHAR(16) FOR BIT DATA), MARKED, CREATED_DATE, UPDATED_DATE
+	FROM INT_MESSAGE_GROUP;
@@ -0,0 +1,13 @@
+-- Autogenerated: do not edit this file
+
+CREATE TABLE INT_CHANNEL_MESSAGE  (
+	MESSAGE_ID CHAR(36) NOT NULL,
+	GROUP_KEY CHAR(36) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	CREATED_DATE TIMESTAMP NOT NULL,
+	MESSAGE_SEQUENCE BIGINT NOT NULL,
+	MESSAGE_BYTES BLOB,
+	constraint CHANNEL_MESSAGE_PK primary key (GROUP_KEY, REGION, MESSAGE_SEQUENCE)
+);
+
+CREATE SEQUENCE INT_CHANNEL_MESSAGE_SEQ AS BIGINT MAXVALUE 9223372036854775807 NO CYCLE;
@@ -0,0 +1,14 @@
+-- Autogenerated: do not edit this file
+
+CREATE TABLE INT_CHANNEL_MESSAGE  (
+	MESSAGE_ID CHAR(36) NOT NULL,
+	GROUP_KEY CHAR(36) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	CREATED_DATE DATETIME NOT NULL,
+	MESSAGE_SEQUENCE BIGINT NOT NULL,
+	MESSAGE_BYTES BLOB,
+	constraint CHANNEL_MESSAGE_PK primary key (GROUP_KEY, REGION, MESSAGE_SEQUENCE)
+) ENGINE=InnoDB;
+
+CREATE TABLE INT_CHANNEL_MESSAGE_SEQ (ID BIGINT NOT NULL) ENGINE=MYISAM;
+INSERT INTO INT_CHANNEL_MESSAGE_SEQ values(0);
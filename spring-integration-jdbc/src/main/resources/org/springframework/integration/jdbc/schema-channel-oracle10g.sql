@@ -0,0 +1,13 @@
+-- Autogenerated: do not edit this file
+
+CREATE TABLE INT_CHANNEL_MESSAGE  (
+	MESSAGE_ID CHAR(36) NOT NULL,
+	GROUP_KEY CHAR(36) NOT NULL,
+	REGION VARCHAR2(100) NOT NULL,
+	CREATED_DATE TIMESTAMP NOT NULL,
+	MESSAGE_SEQUENCE NUMBER(19,0) NOT NULL,
+	MESSAGE_BYTES BLOB,
+	constraint CHANNEL_MESSAGE_PK primary key (GROUP_KEY, REGION, MESSAGE_SEQUENCE)
+);
+
+CREATE SEQUENCE INT_CHANNEL_MESSAGE_SEQ START WITH 0 MINVALUE 0 MAXVALUE 9223372036854775807 NOCYCLE;
@@ -0,0 +1,4 @@
+-- Autogenerated: do not edit this file
+
+DROP TABLE  INT_CHANNEL_MESSAGE IF EXISTS;
+DROP TABLE  INT_CHANNEL_MESSAGE_SEQ IF EXISTS;
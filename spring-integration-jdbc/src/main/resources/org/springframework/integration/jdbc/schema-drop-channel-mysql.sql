@@ -0,0 +1,4 @@
+-- Autogenerated: do not edit this file
+
+DROP TABLE IF EXISTS INT_CHANNEL_MESSAGE ;
+DROP TABLE IF EXISTS INT_CHANNEL_MESSAGE_SEQ ;
@@ -0,0 +1,5 @@
+-- Autogenerated: do not edit this file
+
+DROP TABLE  INT_GROUP_MESSAGE_V2 IF EXISTS;
+DROP TABLE  INT_GROUP_V2 IF EXISTS;
+DROP TABLE  INT_MESSAGE_V2 IF EXISTS;
@@ -0,0 +1,5 @@
+-- Autogenerated: do not edit this file
+
+DROP TABLE IF EXISTS INT_GROUP_MESSAGE_V2 ;
+DROP TABLE IF EXISTS INT_GROUP_V2 ;
+DROP TABLE IF EXISTS INT_MESSAGE_V2 ;
@@ -0,0 +1,33 @@
+-- Autogenerated: do not edit this file
+
+CREATE TABLE INT_MESSAGE_V2  (
+	MESSAGE_ID BINARY(16) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	CREATED_DATE TIMESTAMP NOT NULL,
+	MESSAGE_BYTES LONGVARBINARY,
+	constraint MESSAGE_V2_PK primary key (MESSAGE_ID, REGION)
+);
+
+CREATE TABLE INT_GROUP_V2  (
+	GROUP_KEY BINARY(16) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	COMPLETE BIGINT,
+	LAST_RELEASED_SEQUENCE BIGINT,
+	CREATED_DATE TIMESTAMP NOT NULL,
+	UPDATED_DATE TIMESTAMP DEFAULT NULL,
+	constraint GROUP_V2_PK primary key (GROUP_KEY, REGION)
+);
+
+CREATE INDEX GROUP_V2_IX1 ON INT_GROUP_V2 (REGION, CREATED_DATE);
+
+CREATE TABLE INT_GROUP_MESSAGE_V2  (
+	GROUP_KEY BINARY(16) NOT NULL,
+	REGION VARCHAR(100) NOT NULL,
+	MESSAGE_ID BINARY(16) NOT NULL,
+	MARKED BIGINT,
+	CREATED_DATE TIMESTAMP NOT NULL,
+	UPDATED_DATE TIMESTAMP DEFAULT NULL,
+	constraint GROUP_MESSAGE_V2_PK primary key (GROUP_KEY, REGION, MESSAGE_ID)
+);
+
+CREATE INDEX GROUP_MESSAGE_V2_IX1 ON INT_GROUP_MESSAGE_V2 (GROUP_KEY, REGION, CREATED_DATE, MESSAGE_ID);
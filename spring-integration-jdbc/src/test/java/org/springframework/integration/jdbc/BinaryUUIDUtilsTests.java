@@ -0,0 +1,58 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * @since 2.1
+ */
+public class BinaryUUIDUtilsTests {
+
+	@Test
+	public void roundTrip() {
+		UUID uuid = UUID.randomUUID();
+		byte[] bytes = BinaryUUIDUtils.toBytes(uuid);
+		assertEquals(16, bytes.length);
+		assertEquals(uuid, BinaryUUIDUtils.toUUID(bytes));
+	}
+
+	@Test
+	public void mostSignificantByteFirst() {
+		byte[] bytes = BinaryUUIDUtils.toBytes("01020304-0506-0708-090a-0b0c0d0e0f10 ");
+		for (int i = 0; i < 16; i++) {
+			assertEquals(i + 1, bytes[i]);
+		}
+		assertEquals("01020304-0506-0708-090a-0b0c0d0e0f10", BinaryUUIDUtils.toUUID(bytes).toString());
+	}
+
+	@Test
+	public void nullString() {
+		assertNull(BinaryUUIDUtils.toBytes((String) null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void wrongLength() {
+		BinaryUUIDUtils.toUUID(new byte[8]);
+	}
+
+}
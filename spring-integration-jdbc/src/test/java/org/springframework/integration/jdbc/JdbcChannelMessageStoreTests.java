@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import org.springframework.integration.Message;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupQueue;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.incrementer.DataFieldMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.DerbyMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.H2SequenceMaxValueIncrementer;
+import org.springframework.jdbc.support.incrementer.HsqlMaxValueIncrementer;
+
+/**
+ * @since 2.1
+ */
+@RunWith(Parameterized.class)
+public class JdbcChannelMessageStoreTests {
+
+	private static final AtomicInteger databaseCount = new AtomicInteger();
+
+	private final EmbeddedDatabaseType databaseType;
+
+	private EmbeddedDatabase embeddedDatabase;
+
+	private JdbcChannelMessageStore messageStore;
+
+	public JdbcChannelMessageStoreTests(EmbeddedDatabaseType databaseType) {
+		this.databaseType = databaseType;
+	}
+
+	@Parameters
+	public static Collection<Object[]> databaseTypes() {
+		return Arrays.asList(new Object[][] { { EmbeddedDatabaseType.DERBY }, { EmbeddedDatabaseType.H2 },
+				{ EmbeddedDatabaseType.HSQL } });
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		String platform = (databaseType == EmbeddedDatabaseType.HSQL) ? "hsqldb" : databaseType.name().toLowerCase();
+		this.embeddedDatabase = new EmbeddedDatabaseBuilder().setType(databaseType)
+				.setName("channelMessageStore" + databaseCount.incrementAndGet())
+				.addScript("classpath:org/springframework/integration/jdbc/schema-channel-" + platform + ".sql").build();
+		this.messageStore = createMessageStore();
+	}
+
+	private JdbcChannelMessageStore createMessageStore() throws Exception {
+		DataFieldMaxValueIncrementer incrementer = null;
+		switch (databaseType) {
+			case DERBY:
+				incrementer = new DerbyMaxValueIncrementer(embeddedDatabase, "INT_CHANNEL_MESSAGE_SEQ", "ID");
+				break;
+			case H2:
+				incrementer = new H2SequenceMaxValueIncrementer(embeddedDatabase, "INT_CHANNEL_MESSAGE_SEQ");
+				break;
+			default:
+				incrementer = new HsqlMaxValueIncrementer(embeddedDatabase, "INT_CHANNEL_MESSAGE_SEQ", "ID");
+		}
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(embeddedDatabase, incrementer);
+		store.afterPropertiesSet();
+		return store;
+	}
+
+	@After
+	public void tearDown() {
+		this.embeddedDatabase.shutdown();
+	}
+
+	@Test
+	public void testPollInOrder() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			messageStore.addMessageToGroup("channel", MessageBuilder.withPayload("foo" + i).build());
+		}
+		assertEquals(3, messageStore.messageGroupSize("channel"));
+		assertEquals("foo0", messageStore.pollMessageFromGroup("channel").getPayload());
+		assertEquals("foo1", messageStore.pollMessageFromGroup("channel").getPayload());
+		assertEquals("foo2", messageStore.pollMessageFromGroup("channel").getPayload());
+		assertNull(messageStore.pollMessageFromGroup("channel"));
+		assertEquals(0, messageStore.messageGroupSize("channel"));
+	}
+
+	@Test
+	public void testBatchPoll() throws Exception {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 5; i++) {
+			messages.add(MessageBuilder.withPayload("foo" + i).build());
+		}
+		messageStore.addMessagesToGroup("channel", messages);
+		messageStore.addMessageToGroup("other", MessageBuilder.withPayload("bar").build());
+		List<Message<?>> polled = messageStore.pollMessagesFromGroup("channel", 3);
+		assertEquals(3, polled.size());
+		for (int i = 0; i < 3; i++) {
+			assertEquals("foo" + i, polled.get(i).getPayload());
+		}
+		polled = messageStore.pollMessagesFromGroup("channel", 3);
+		assertEquals(2, polled.size());
+		assertEquals("foo4", polled.get(1).getPayload());
+		assertTrue(messageStore.pollMessagesFromGroup("channel", 3).isEmpty());
+		assertEquals(1, messageStore.getMessageCountForAllMessageGroups());
+	}
+
+	@Test
+	public void testDrainNothing() throws Exception {
+		messageStore.addMessageToGroup("channel", MessageBuilder.withPayload("foo").build());
+		assertTrue(messageStore.pollMessagesFromGroup("channel", 0).isEmpty());
+		MessageGroupQueue queue = new MessageGroupQueue(messageStore, "channel");
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(0, queue.drainTo(drained, 0));
+		assertTrue(drained.isEmpty());
+		assertEquals(1, messageStore.messageGroupSize("channel"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectedByAggregator() throws Exception {
+		new AggregatingMessageHandler(new DefaultAggregatingMessageGroupProcessor(), messageStore);
+	}
+
+	@Test
+	public void testGroups() throws Exception {
+		messageStore.addMessageToGroup("foo", MessageBuilder.withPayload("foo1").build());
+		messageStore.addMessageToGroup("foo", MessageBuilder.withPayload("foo2").build());
+		Message<String> message = MessageBuilder.withPayload("bar").build();
+		messageStore.addMessageToGroup("bar", message);
+		assertEquals(2, messageStore.getMessageGroupCount());
+		assertEquals(3, messageStore.getMessageCountForAllMessageGroups());
+		MessageGroup group = messageStore.getMessageGroup("foo");
+		assertEquals(2, group.size());
+		assertEquals("foo1", group.getOne().getPayload());
+		int count = 0;
+		for (MessageGroup each : messageStore) {
+			count += each.size();
+		}
+		assertEquals(3, count);
+		assertEquals(0, messageStore.removeMessageFromGroup("bar", message).size());
+		messageStore.removeMessageGroup("foo");
+		assertEquals(0, messageStore.getMessageGroupCount());
+	}
+
+	@Test
+	public void testMessageGroupQueue() throws Exception {
+		MessageGroupQueue queue = new MessageGroupQueue(messageStore, "queue", 2);
+		assertTrue(queue.offer(MessageBuilder.withPayload("foo").build()));
+		assertTrue(queue.offer(MessageBuilder.withPayload("bar").build()));
+		assertFalse(queue.offer(MessageBuilder.withPayload("baz").build()));
+		assertEquals(2, queue.size());
+		assertEquals("foo", queue.peek().getPayload());
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(2, queue.drainTo(drained));
+		assertEquals("bar", drained.get(1).getPayload());
+		assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testConcurrentPollersReceiveEachMessageOnce() throws Exception {
+		final int messageCount = 100;
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < messageCount; i++) {
+			messages.add(MessageBuilder.withPayload(i).build());
+		}
+		messageStore.addMessagesToGroup("channel", messages);
+		final Set<Object> received = Collections.synchronizedSet(new HashSet<Object>());
+		final AtomicInteger receivedCount = new AtomicInteger();
+		final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+		int pollerCount = 4;
+		final CountDownLatch latch = new CountDownLatch(pollerCount);
+		ExecutorService executor = Executors.newFixedThreadPool(pollerCount);
+		for (int i = 0; i < pollerCount; i++) {
+			// each poller has its own store, as separate processes would
+			final JdbcChannelMessageStore store = createMessageStore();
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						List<Message<?>> polled = null;
+						while (!(polled = store.pollMessagesFromGroup("channel", 3)).isEmpty()) {
+							for (Message<?> message : polled) {
+								received.add(message.getPayload());
+								receivedCount.incrementAndGet();
+							}
+						}
+					}
+					catch (Exception e) {
+						errors.add(e);
+					}
+					finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		executor.shutdown();
+		assertTrue(errors.toString(), errors.isEmpty());
+		assertEquals(messageCount, receivedCount.get());
+		assertEquals(messageCount, received.size());
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testCompleteGroupNotSupported() throws Exception {
+		messageStore.completeGroup("channel");
+	}
+
+}
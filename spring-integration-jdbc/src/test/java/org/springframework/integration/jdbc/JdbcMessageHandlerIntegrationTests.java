@@ -17,13 +17,20 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.dao.DataAccessException;
 import org.springframework.integration.Message;
+import org.springframework.integration.MessageHandlingException;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -65,6 +72,35 @@ public class JdbcMessageHandlerIntegrationTests {
 		assertEquals("Wrong name", "foo", map.get("NAME"));
 	}
 
+	@Test
+	public void testBatchInsert() {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], 0, :payload)");
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 3; i++) {
+			messages.add(MessageBuilder.withPayload("foo" + i).setHeader("business.id", "" + i).build());
+		}
+		handler.handleMessages(messages);
+		assertEquals(3, jdbcTemplate.queryForInt("SELECT COUNT(*) FROM FOOS"));
+		Map<String, Object> map = jdbcTemplate.queryForMap("SELECT * FROM FOOS WHERE ID=?", "2");
+		assertEquals("Wrong name", "foo2", map.get("NAME"));
+	}
+
+	@Test
+	public void testBatchInsertFailure() {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (:headers[business.id], :payload, 'foo')");
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		messages.add(MessageBuilder.withPayload(0).setHeader("business.id", "1").build());
+		messages.add(MessageBuilder.withPayload("not a status").setHeader("business.id", "2").build());
+		try {
+			handler.handleMessages(messages);
+			fail("Expected MessageHandlingException");
+		}
+		catch (MessageHandlingException e) {
+			assertSame(messages.get(0), e.getFailedMessage());
+			assertTrue(e.getCause() instanceof DataAccessException);
+		}
+	}
+
 	@Test
 	public void testSimpleDynamicInsert() {
 		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate, "insert into foos (id, status, name) values (1, 0, :payload)");
@@ -21,7 +21,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.sql.DataSource;
 
@@ -31,12 +37,22 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.serializer.Deserializer;
 import org.springframework.core.serializer.Serializer;
+import org.springframework.dao.DataAccessException;
 import org.springframework.integration.Message;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.aggregator.SequenceSizeReleaseStrategy;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupCallback;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.transaction.annotation.Transactional;
@@ -283,4 +299,191 @@ public class JdbcMessageStoreTests {
 		assertEquals(0, group.size());
 	}
 
+
+	@Test
+	@Transactional
+	public void testExpireOnlyOlderMessageGroups() throws Exception {
+		final List<Object> expired = new ArrayList<Object>();
+		messageStore.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.add(group.getGroupId());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+		});
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo").build());
+		long timestamp = messageStore.getMessageGroup("X").getTimestamp();
+		Thread.sleep(50);
+		messageStore.addMessageToGroup("Y", MessageBuilder.withPayload("bar").build());
+		assertEquals(1, messageStore.expireMessageGroups(System.currentTimeMillis() - timestamp));
+		assertEquals(1, expired.size());
+		assertEquals(1, messageStore.getMessageGroupCount());
+		assertEquals(1, messageStore.getMessageGroup("Y").size());
+	}
+
+	@Test
+	@Transactional
+	public void testMessageGroupLoadedWithSingleQuery() throws Exception {
+		String groupId = "X";
+		for (int i = 0; i < 10; i++) {
+			messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo" + i).build());
+		}
+		QueryCountingJdbcTemplate jdbcTemplate = new QueryCountingJdbcTemplate(dataSource);
+		messageStore.setJdbcTemplate(jdbcTemplate);
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertEquals(10, group.size());
+		Set<Object> payloads = new HashSet<Object>();
+		for (Message<?> message : group.getMessages()) {
+			payloads.add(message.getPayload());
+		}
+		assertEquals(10, payloads.size());
+		assertEquals(1, jdbcTemplate.queryCount.get());
+	}
+
+	@Test
+	@Transactional
+	public void testOrderOfMessagesAddedInTheSameMillisecond() throws Exception {
+		String groupId = "X";
+		for (int i = 0; i < 20; i++) {
+			messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo" + i).build());
+		}
+		List<Message<?>> batch = new ArrayList<Message<?>>();
+		for (int i = 20; i < 30; i++) {
+			batch.add(MessageBuilder.withPayload("foo" + i).build());
+		}
+		messageStore.addMessagesToGroup(groupId, batch);
+		int i = 0;
+		for (Message<?> message : messageStore.getMessageGroup(groupId).getMessages()) {
+			assertEquals("foo" + i++, message.getPayload());
+		}
+		assertEquals(30, i);
+		for (i = 0; i < 30; i++) {
+			assertEquals("foo" + i, messageStore.pollMessageFromGroup(groupId).getPayload());
+		}
+	}
+
+	@Test
+	@Transactional
+	public void testModifiedMessageGroupLoadedOnlyWhenAccessed() throws Exception {
+		String groupId = "X";
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("bar").build());
+		QueryCountingJdbcTemplate jdbcTemplate = new QueryCountingJdbcTemplate(dataSource);
+		messageStore.setJdbcTemplate(jdbcTemplate);
+		MessageGroup group = messageStore.addMessageToGroup(groupId, message);
+		assertEquals(0, jdbcTemplate.queryCount.get());
+		// counted without reading the group
+		assertEquals(2, group.size());
+		assertEquals(1, jdbcTemplate.queryCount.get());
+		assertEquals(0, jdbcTemplate.groupLoadCount.get());
+		assertEquals(2, group.getMessages().size());
+		assertEquals(2, jdbcTemplate.queryCount.get());
+		assertEquals(2, group.size());
+		assertEquals(2, jdbcTemplate.queryCount.get());
+		group = messageStore.removeMessageFromGroup(groupId, message);
+		int queryCount = jdbcTemplate.queryCount.get();
+		assertEquals(groupId, group.getGroupId());
+		assertEquals(queryCount, jdbcTemplate.queryCount.get());
+		assertEquals(1, group.size());
+	}
+
+	@Test
+	@Transactional
+	public void testAggregatorDoesNotReloadGroupPerAddedMessage() throws Exception {
+		QueryCountingJdbcTemplate jdbcTemplate = new QueryCountingJdbcTemplate(dataSource);
+		messageStore.setJdbcTemplate(jdbcTemplate);
+		AggregatingMessageHandler handler = new AggregatingMessageHandler(
+				new DefaultAggregatingMessageGroupProcessor(), messageStore);
+		handler.setReleaseStrategy(new SequenceSizeReleaseStrategy());
+		QueueChannel output = new QueueChannel();
+		handler.setOutputChannel(output);
+		for (int i = 1; i < 5; i++) {
+			handler.handleMessage(MessageBuilder.withPayload("foo" + i).setCorrelationId("X")
+					.setSequenceNumber(i).setSequenceSize(5).build());
+			// only the group read by the handler before adding the message
+			assertEquals(i, jdbcTemplate.groupLoadCount.get());
+		}
+		assertNull(output.receive(0));
+		handler.handleMessage(MessageBuilder.withPayload("foo5").setCorrelationId("X")
+				.setSequenceNumber(5).setSequenceSize(5).build());
+		Message<?> result = output.receive(0);
+		assertNotNull(result);
+		assertEquals(5, ((List<?>) result.getPayload()).size());
+	}
+
+	@Test
+	@Transactional
+	public void testMessageGroupWithMissingMessage() throws Exception {
+		String groupId = "X";
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		messageStore.addMessageToGroup(groupId, message);
+		messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("bar").build());
+		messageStore.removeMessage(message.getHeaders().getId());
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertEquals(1, group.size());
+		assertEquals("bar", group.getOne().getPayload());
+		assertEquals("bar", messageStore.pollMessageFromGroup(groupId).getPayload());
+	}
+
+	@Test
+	@Transactional
+	public void testAddAndRemoveMessagesInMessageGroup() throws Exception {
+		String groupId = "X";
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 20; i++) {
+			messages.add(MessageBuilder.withPayload("foo" + i).setCorrelationId(groupId).build());
+		}
+		MessageGroup group = messageStore.addMessagesToGroup(groupId, messages);
+		assertEquals(20, group.size());
+		Iterator<Message<?>> iterator = group.getMessages().iterator();
+		for (int i = 0; i < 20; i++) {
+			Message<?> message = iterator.next();
+			assertEquals("foo" + i, message.getPayload());
+			assertNotNull(messageStore.getMessage(message.getHeaders().getId()));
+		}
+		group = messageStore.removeMessagesFromGroup(groupId, messages.subList(0, 15));
+		assertEquals(5, group.size());
+		assertEquals("foo15", group.getOne().getPayload());
+		assertNull(messageStore.getMessage(messages.get(0).getHeaders().getId()));
+		assertEquals(5, messageStore.getMessageCount());
+	}
+
+	@Test
+	@Transactional
+	public void testRemoveMessageGroupRemovesMessages() throws Exception {
+		Message<String> other = messageStore.addMessage(MessageBuilder.withPayload("bar").build());
+		for (int i = 0; i < 5; i++) {
+			messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo" + i).build());
+		}
+		messageStore.addMessageToGroup("Y", MessageBuilder.withPayload("baz").build());
+		assertEquals(7, messageStore.getMessageCount());
+		messageStore.removeMessageGroup("X");
+		assertEquals(0, messageStore.getMessageGroup("X").size());
+		assertEquals(1, messageStore.getMessageGroup("Y").size());
+		assertEquals(2, messageStore.getMessageCount());
+		assertNotNull(messageStore.getMessage(other.getHeaders().getId()));
+	}
+
+
+	private static class QueryCountingJdbcTemplate extends JdbcTemplate {
+
+		private final AtomicInteger queryCount = new AtomicInteger();
+
+		private final AtomicInteger groupLoadCount = new AtomicInteger();
+
+		public QueryCountingJdbcTemplate(DataSource dataSource) {
+			super(dataSource);
+		}
+
+		@Override
+		public <T> T query(PreparedStatementCreator psc, PreparedStatementSetter pss, ResultSetExtractor<T> rse)
+				throws DataAccessException {
+			this.queryCount.incrementAndGet();
+			// the group is read by joining its rows with the messages
+			if (psc instanceof SqlProvider && ((SqlProvider) psc).getSql().contains(" join ")) {
+				this.groupLoadCount.incrementAndGet();
+			}
+			return super.query(psc, pss, rse);
+		}
+	}
+
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2002-2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.integration.Message;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupCallback;
+import org.springframework.integration.store.MessageGroupStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * @since 2.1
+ */
+@ContextConfiguration
+@RunWith(SpringJUnit4ClassRunner.class)
+public class JdbcMessageStoreV2Tests {
+
+	@Autowired
+	private DataSource dataSource;
+
+	private JdbcMessageStore messageStore;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void init() {
+		messageStore = new JdbcMessageStore(dataSource);
+		messageStore.setSchemaVersion(2);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+	@Test
+	@Transactional
+	public void testAddAndGet() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		messageStore.addMessage(message);
+		Message<?> result = messageStore.getMessage(message.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals("foo", result.getPayload());
+		assertEquals(1, messageStore.getMessageCount());
+		assertNotNull(messageStore.removeMessage(message.getHeaders().getId()));
+		assertNull(messageStore.getMessage(message.getHeaders().getId()));
+	}
+
+	@Test
+	@Transactional
+	public void testAddAndGetMessageGroup() throws Exception {
+		String groupId = "X";
+		long start = System.currentTimeMillis();
+		messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo").setSequenceNumber(1).build());
+		messageStore.addMessagesToGroup(groupId, Arrays.asList(
+				MessageBuilder.withPayload("bar").setSequenceNumber(2).build(),
+				MessageBuilder.withPayload("baz").setSequenceNumber(3).build()));
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertEquals(3, group.size());
+		assertTrue(group.getTimestamp() >= start - 1000);
+		Iterator<Message<?>> iterator = group.getMessages().iterator();
+		assertEquals("foo", iterator.next().getPayload());
+		assertEquals("bar", iterator.next().getPayload());
+		assertEquals("baz", iterator.next().getPayload());
+		assertEquals(1, messageStore.getMessageGroupCount());
+		assertEquals(3, messageStore.getMessageCountForAllMessageGroups());
+		assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) from INT_GROUP_V2"));
+		assertEquals(16, ((byte[]) jdbcTemplate.queryForObject("SELECT GROUP_KEY from INT_GROUP_V2", byte[].class)).length);
+	}
+
+	@Test
+	@Transactional
+	public void testCompleteMessageGroupUpdatesOneRow() throws Exception {
+		String groupId = "X";
+		for (int i = 1; i <= 3; i++) {
+			messageStore.addMessageToGroup(groupId, MessageBuilder.withPayload("foo" + i).setSequenceNumber(i).build());
+		}
+		messageStore.completeGroup(groupId);
+		messageStore.setLastReleasedSequenceNumberForGroup(groupId, 2);
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertTrue(group.isComplete());
+		assertEquals(2, group.getLastReleasedMessageSequenceNumber());
+		assertEquals(3, group.size());
+		// the group state is in its header row only
+		assertEquals(1, jdbcTemplate.queryForInt("SELECT COUNT(*) from INT_GROUP_V2 where COMPLETE=1"));
+	}
+
+	@Test
+	@Transactional
+	public void testMarkAndRemoveMessagesFromGroup() throws Exception {
+		String groupId = "X";
+		Message<String> message1 = MessageBuilder.withPayload("foo").build();
+		Message<String> message2 = MessageBuilder.withPayload("bar").build();
+		messageStore.addMessagesToGroup(groupId, Arrays.asList(message1, message2));
+		messageStore.markMessageFromGroup(groupId, message1);
+		assertEquals(1, messageStore.getMarkedMessageCountForAllMessageGroups());
+		assertEquals("foo", messageStore.pollMessageFromGroup(groupId).getPayload());
+		messageStore.removeMessageFromGroup(groupId, message2);
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertEquals(0, group.size());
+		// unlike with the version 1 schema, an empty group remains until it is removed
+		assertEquals(1, messageStore.getMessageGroupCount());
+		messageStore.removeMessageGroup(groupId);
+		assertEquals(0, messageStore.getMessageGroupCount());
+		assertEquals(0, messageStore.getMessageCount());
+	}
+
+	@Test
+	@Transactional
+	public void testIterator() throws Exception {
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo").build());
+		messageStore.addMessageToGroup("Y", MessageBuilder.withPayload("bar").build());
+		int count = 0;
+		for (MessageGroup group : messageStore) {
+			assertEquals(1, group.size());
+			count++;
+		}
+		assertEquals(2, count);
+	}
+
+	@Test
+	@Transactional
+	public void testExpireOnlyOlderMessageGroups() throws Exception {
+		final List<Object> expired = new ArrayList<Object>();
+		messageStore.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.add(group.getGroupId());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+		});
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo").build());
+		long timestamp = messageStore.getMessageGroup("X").getTimestamp();
+		Thread.sleep(50);
+		messageStore.addMessageToGroup("Y", MessageBuilder.withPayload("bar").build());
+		assertEquals(1, messageStore.expireMessageGroups(System.currentTimeMillis() - timestamp));
+		assertEquals(1, expired.size());
+		assertEquals(1, messageStore.getMessageGroupCount());
+		assertEquals(1, messageStore.getMessageGroup("Y").size());
+	}
+
+	@Test
+	@Transactional
+	public void testGroupTimestampIsThatOfItsLatestMessage() throws Exception {
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("foo").build());
+		long timestamp = messageStore.getMessageGroup("X").getTimestamp();
+		Thread.sleep(50);
+		messageStore.addMessageToGroup("X", MessageBuilder.withPayload("bar").build());
+		assertTrue(messageStore.getMessageGroup("X").getTimestamp() > timestamp);
+		assertEquals(0, messageStore.expireMessageGroups(System.currentTimeMillis() - timestamp));
+		assertEquals(2, messageStore.getMessageGroup("X").size());
+	}
+
+	@Test
+	@Transactional
+	public void testMigrateFromVersion1() throws Exception {
+		JdbcMessageStore version1Store = new JdbcMessageStore(dataSource);
+		String groupId = "X";
+		Message<String> message1 = MessageBuilder.withPayload("foo").setSequenceNumber(1).build();
+		Message<String> message2 = MessageBuilder.withPayload("bar").setSequenceNumber(2).build();
+		version1Store.addMessagesToGroup(groupId, Arrays.asList(message1, message2));
+		version1Store.markMessageFromGroup(groupId, message1);
+		version1Store.completeGroup(groupId);
+		version1Store.setLastReleasedSequenceNumberForGroup(groupId, 1);
+		Message<String> message3 = MessageBuilder.withPayload("baz").build();
+		version1Store.addMessage(message3);
+
+		ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+		populator.addScript(new ClassPathResource("org/springframework/integration/jdbc/migrate-v1-to-v2-derby.sql"));
+		populator.populate(DataSourceUtils.getConnection(dataSource));
+
+		assertEquals(3, messageStore.getMessageCount());
+		assertEquals("baz", messageStore.getMessage(message3.getHeaders().getId()).getPayload());
+		MessageGroup group = messageStore.getMessageGroup(groupId);
+		assertTrue(group.isComplete());
+		assertEquals(1, group.getLastReleasedMessageSequenceNumber());
+		List<Message<?>> messages = Arrays.asList(group.getMessages().toArray(new Message<?>[0]));
+		assertEquals(2, messages.size());
+		assertEquals(message1.getHeaders().getId(), messages.get(0).getHeaders().getId());
+		assertEquals(message2.getHeaders().getId(), messages.get(1).getHeaders().getId());
+		assertEquals(1, messageStore.getMarkedMessageCountForAllMessageGroups());
+		Iterator<MessageGroup> iterator = messageStore.iterator();
+		assertEquals(UUID.nameUUIDFromBytes(groupId.getBytes()), UUID.fromString(iterator.next().getGroupId().toString()));
+		assertFalse(iterator.hasNext());
+	}
+
+}
@@ -56,6 +56,7 @@ public class JdbcMessageStoreParserTests {
 		MessageStore store = context.getBean("messageStore", MessageStore.class);
 		assertEquals("FOO", ReflectionTestUtils.getField(store, "region"));
 		assertEquals("BAR_", ReflectionTestUtils.getField(store, "tablePrefix"));
+		assertEquals(2, ReflectionTestUtils.getField(store, "schemaVersion"));
 		assertEquals(context.getBean(LobHandler.class), ReflectionTestUtils.getField(store, "lobHandler"));
 	}
 
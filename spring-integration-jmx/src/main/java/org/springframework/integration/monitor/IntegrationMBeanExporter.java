@@ -24,6 +24,7 @@ import java.util.concurrent.locks.ReentrantLock;
 
 import javax.management.DynamicMBean;
 import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 import javax.management.modelmbean.ModelMBean;
 
@@ -52,6 +53,7 @@ import org.springframework.integration.core.MessageHandler;
 import org.springframework.integration.core.MessageSource;
 import org.springframework.integration.core.PollableChannel;
 import org.springframework.integration.endpoint.AbstractEndpoint;
+import org.springframework.integration.expression.ExpressionCacheStatistics;
 import org.springframework.jmx.export.MBeanExporter;
 import org.springframework.jmx.export.UnableToRegisterMBeanException;
 import org.springframework.jmx.export.annotation.AnnotationJmxAttributeSource;
@@ -62,6 +64,7 @@ import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.jmx.export.assembler.MetadataMBeanInfoAssembler;
 import org.springframework.jmx.export.naming.MetadataNamingStrategy;
 import org.springframework.jmx.support.MetricType;
+import org.springframework.jmx.support.ObjectNameManager;
 import org.springframework.util.Assert;
 import org.springframework.util.PatternMatchUtils;
 import org.springframework.util.ReflectionUtils;
@@ -384,6 +387,7 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 		registerHandlers();
 		registerSources();
 		registerEndpoints();
+		registerExpressionCacheStatistics();
 	}
 
 	/**
@@ -604,10 +608,28 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 		}
 	}
 
+	/**
+	 * Expose the expression cache statistics. They are JVM-wide, so they are only registered
+	 * if no other exporter has done so already.
+	 */
+	private void registerExpressionCacheStatistics() {
+		String beanKey = domain + ":type=ExpressionCache,name=statistics" + getStaticNames();
+		try {
+			if (!this.server.isRegistered(ObjectNameManager.getInstance(beanKey))) {
+				registerBeanInstance(ExpressionCacheStatistics.getInstance(), beanKey);
+			}
+			ExpressionCacheStatistics.getInstance().setEnabled(true);
+		}
+		catch (MalformedObjectNameException e) {
+			logger.error("Could not register the ExpressionCacheStatistics", e);
+		}
+	}
+
 	private Object applyChannelInterceptor(Object bean, DirectChannelMetrics interceptor, ClassLoader beanClassLoader) {
 		NameMatchMethodPointcutAdvisor channelsAdvice = new NameMatchMethodPointcutAdvisor(interceptor);
 		channelsAdvice.addMethodName("send");
 		channelsAdvice.addMethodName("receive");
+		channelsAdvice.addMethodName("receiveBatch");
 		return applyAdvice(bean, channelsAdvice, beanClassLoader);
 	}
 
@@ -615,6 +637,7 @@ public class IntegrationMBeanExporter extends MBeanExporter implements BeanPostP
 			ClassLoader beanClassLoader) {
 		NameMatchMethodPointcutAdvisor handlerAdvice = new NameMatchMethodPointcutAdvisor(interceptor);
 		handlerAdvice.addMethodName("handleMessage");
+		handlerAdvice.addMethodName("handleMessages");
 		return applyAdvice(bean, handlerAdvice, beanClassLoader);
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.monitor;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aopalliance.intercept.MethodInvocation;
@@ -44,6 +45,9 @@ public class PollableChannelMetrics extends DirectChannelMetrics {
 		if ("receive".equals(method)) {
 			return monitorReceive(invocation, channel);
 		}
+		if ("receiveBatch".equals(method)) {
+			return monitorReceiveBatch(invocation, channel);
+		}
 		return super.doInvoke(invocation, method, channel);
 	}
 
@@ -64,6 +68,23 @@ public class PollableChannelMetrics extends DirectChannelMetrics {
 		}
 	}
 
+	private Object monitorReceiveBatch(MethodInvocation invocation, MessageChannel channel) throws Throwable {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Recording batch receive on channel(" + channel + ") ");
+		}
+		try {
+			Object object = invocation.proceed();
+			if (object instanceof List) {
+				this.receiveCount.addAndGet(((List<?>) object).size());
+			}
+			return object;
+		}
+		catch (Throwable e) {
+			this.receiveErrorCount.incrementAndGet();
+			throw e;
+		}
+	}
+
 	@ManagedOperation
 	public synchronized void reset() {
 		super.reset();
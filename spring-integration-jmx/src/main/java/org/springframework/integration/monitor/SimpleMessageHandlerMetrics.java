@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2011 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,7 @@
 
 package org.springframework.integration.monitor;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.aopalliance.intercept.MethodInterceptor;
@@ -86,6 +87,11 @@ public class SimpleMessageHandlerMetrics implements MethodInterceptor, MessageHa
 			handleMessage(invocation, message);
 			return null;
 		}
+		if ("handleMessages".equals(method)) {
+			List<?> messages = (List<?>) invocation.getArguments()[0];
+			handleMessages(invocation, messages);
+			return null;
+		}
 		return invocation.proceed();
 	}
 
@@ -93,6 +99,20 @@ public class SimpleMessageHandlerMetrics implements MethodInterceptor, MessageHa
 		if (logger.isTraceEnabled()) {
 			logger.trace("messageHandler(" + this.handler + ") message(" + message + ") :");
 		}
+		this.monitorHandle(invocation, 1);
+	}
+
+	private void handleMessages(MethodInvocation invocation, List<?> messages) throws Throwable {
+		if (logger.isTraceEnabled()) {
+			logger.trace("messageHandler(" + this.handler + ") messages(" + messages.size() + ") :");
+		}
+		this.monitorHandle(invocation, messages.size());
+	}
+
+	/**
+	 * Record a call handling the given number of messages; its duration is recorded as one sample.
+	 */
+	private void monitorHandle(MethodInvocation invocation, int count) throws Throwable {
 		String name = this.name;
 		if (name == null) {
 			name = this.handler.toString();
@@ -100,7 +120,7 @@ public class SimpleMessageHandlerMetrics implements MethodInterceptor, MessageHa
 		StopWatch timer = new StopWatch(name + ".handle:execution");
 		try {
 			timer.start();
-			this.handleCount.incrementAndGet();
+			this.handleCount.addAndGet(count);
 			this.activeCount.incrementAndGet();
 
 			invocation.proceed();
@@ -12,6 +12,7 @@
  */
 package org.springframework.integration.monitor;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -19,6 +20,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.integration.MessageChannel;
+import org.springframework.integration.core.BatchPollableChannel;
 import org.springframework.integration.core.PollableChannel;
 import org.springframework.integration.message.GenericMessage;
 import org.springframework.test.context.ContextConfiguration;
@@ -54,4 +56,13 @@ public class ChannelIntegrationTests {
 		
 	}
 
+	@Test
+	public void testBatchReceiveCountsEachMessage() throws Exception {
+		int before = messageChannelsMonitor.getChannelReceiveCount("" + intermediate);
+		requests.send(new GenericMessage<String>("foo"));
+		requests.send(new GenericMessage<String>("bar"));
+		assertEquals(2, ((BatchPollableChannel) intermediate).receiveBatch(10, 100L).size());
+		assertEquals(before + 2, messageChannelsMonitor.getChannelReceiveCount("" + intermediate));
+	}
+
 }
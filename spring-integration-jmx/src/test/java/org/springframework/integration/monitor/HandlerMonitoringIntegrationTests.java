@@ -1,5 +1,5 @@
 /*
- * Copyright 2009-2010 the original author or authors.
+ * Copyright 2009-2011 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -16,6 +16,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -74,6 +78,20 @@ public class HandlerMonitoringIntegrationTests {
 
 	}
 
+	@Test
+	public void testCorrelationLockContentionCountExported() throws Exception {
+		ClassPathXmlApplicationContext context = createContext("aggregator-handler.xml", "input");
+		try {
+			MBeanServer server = context.getBean(MBeanServer.class);
+			Set<ObjectName> names = server.queryNames(new ObjectName("*:type=AggregatingMessageHandler,*"), null);
+			assertEquals(1, names.size());
+			assertEquals(0L, server.getAttribute(names.iterator().next(), "LockContentionCount"));
+		}
+		finally {
+			context.close();
+		}
+	}
+
 	private void doTest(String config, String channelName, String monitor) throws Exception {
 
 		ClassPathXmlApplicationContext context = createContext(config, channelName);
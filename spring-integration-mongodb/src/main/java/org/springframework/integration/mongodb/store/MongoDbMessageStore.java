@@ -17,7 +17,7 @@
 package org.springframework.integration.mongodb.store;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +25,7 @@ import java.util.UUID;
 
 import org.springframework.beans.DirectFieldAccessor;
 import org.springframework.beans.factory.BeanClassLoaderAware;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.mapping.context.MappingContext;
 import org.springframework.data.mongodb.MongoDbFactory;
@@ -51,6 +52,8 @@ import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
 import com.mongodb.DBObject;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
@@ -58,12 +61,19 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
 /**
  * An implementation of both the {@link MessageStore} and {@link MessageGroupStore}
  * strategies that relies upon MongoDB for persistence.
+ * <p>
+ * When initialized as a bean, the store ensures the indexes its queries rely upon: one on the message id and one on
+ * the group id and creation date of grouped messages, and one on the group timestamp, which is used to find the
+ * expired groups. Groups are enumerated with a <code>distinct</code> query, and
+ * the groups returned by the iterator only read their state and size; their messages are read the first time they
+ * are requested, so expiring groups does not transfer the messages of groups that are not expired.
  * 
  * @author Mark Fisher
  * @author Oleg Zhurakousky
  * @since 2.1
  */
-public class MongoDbMessageStore extends AbstractMessageGroupStore implements MessageStore, BeanClassLoaderAware {
+public class MongoDbMessageStore extends AbstractMessageGroupStore implements MessageStore, BeanClassLoaderAware,
+		InitializingBean {
 
 	private final static String DEFAULT_COLLECTION_NAME = "messages";
 
@@ -111,6 +121,16 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 		this.classLoader = classLoader;
 	}
 
+	/**
+	 * Ensure the indexes used by the queries of this store.
+	 */
+	public void afterPropertiesSet() {
+		DBCollection collection = this.getCollection();
+		collection.ensureIndex(new BasicDBObject("headers.id", 1));
+		collection.ensureIndex(new BasicDBObject(GROUP_ID_KEY, 1).append(CREATED_DATE, 1));
+		collection.ensureIndex(new BasicDBObject(GROUP_TIMESTAMP_KEY, 1));
+	}
+
 	public <T> Message<T> addMessage(Message<T> message) {
 		Assert.notNull(message, "'message' must not be null");
 		this.template.insert(new MessageWrapper(message), this.collectionName);
@@ -137,6 +157,10 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 	public MessageGroup getMessageGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
 		List<MessageWrapper> messageWrappers = this.template.find(whereGroupIdIs(groupId), MessageWrapper.class, this.collectionName);
+		if (messageWrappers.isEmpty()) {
+			// a new group is timestamped now, not at the epoch, so that it does not expire immediately
+			return new SimpleMessageGroup(groupId);
+		}
 		List<Message<?>> messages = new ArrayList<Message<?>>();
 		long timestamp = 0;
 		int lastReleasedSequenceNumber = 0;
@@ -182,22 +206,44 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 	}
 
 	public void removeMessageGroup(Object groupId) {
-		List<MessageWrapper> messageWrappers = this.template.find(whereGroupIdIs(groupId), MessageWrapper.class, this.collectionName);
-		for (MessageWrapper messageWrapper : messageWrappers) {
-			this.removeMessageFromGroup(groupId, messageWrapper.getMessage());
-		}
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.getCollection().remove(whereGroupIdIs(groupId).getQueryObject());
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		return (int) this.getCollection().count(whereGroupIdIs(groupId).getQueryObject());
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		return (int) this.getCollection().count(whereGroupIdExists().getQueryObject());
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		return this.getGroupIds().size();
 	}
 
 	public Iterator<MessageGroup> iterator() {
-		List<MessageWrapper> groupedMessages = this.template.find(whereGroupIdExists(), MessageWrapper.class, this.collectionName);
-		Map<Object, MessageGroup> messageGroups = new HashMap<Object, MessageGroup>();
-		for (MessageWrapper groupedMessage : groupedMessages) {
-			Object groupId = groupedMessage.getGroupId();
-			if (!messageGroups.containsKey(groupId)) {
-				messageGroups.put(groupId, this.getMessageGroup(groupId));
+		final Iterator<?> groupIds = this.getGroupIds().iterator();
+		return new Iterator<MessageGroup>() {
+
+			public boolean hasNext() {
+				return groupIds.hasNext();
 			}
-		}
-		return messageGroups.values().iterator();
+
+			public MessageGroup next() {
+				return new MetadataMessageGroup(groupIds.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 	
 	public void completeGroup(Object groupId) {
@@ -225,6 +271,24 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 		return message;
 	}
 
+	@Override
+	protected Collection<MessageGroup> findGroupsOlderThan(long threshold) {
+		Query query = new Query(where(GROUP_TIMESTAMP_KEY).lte(threshold));
+		List<MessageGroup> groups = new ArrayList<MessageGroup>();
+		for (Object groupId : this.getCollection().distinct(GROUP_ID_KEY, query.getQueryObject())) {
+			groups.add(new MetadataMessageGroup(groupId));
+		}
+		return groups;
+	}
+
+	private DBCollection getCollection() {
+		return this.template.getCollection(this.collectionName);
+	}
+
+	private Collection<?> getGroupIds() {
+		return this.getCollection().distinct(GROUP_ID_KEY, whereGroupIdExists().getQueryObject());
+	}
+
 	/*
 	 * Common Queries
 	 */
@@ -248,6 +312,89 @@ public class MongoDbMessageStore extends AbstractMessageGroupStore implements Me
 	}
 
 
+	/**
+	 * A {@link MessageGroup} returned by the iterator. Its state and size are read with a projection of the group
+	 * fields and a count; its messages are only read, as a whole group, when they are requested.
+	 */
+	private class MetadataMessageGroup implements MessageGroup {
+
+		private final Object groupId;
+
+		private final long timestamp;
+
+		private final int lastReleasedMessageSequenceNumber;
+
+		private final int size;
+
+		private volatile boolean complete;
+
+		private volatile MessageGroup group;
+
+		private MetadataMessageGroup(Object groupId) {
+			this.groupId = groupId;
+			DBObject query = whereGroupIdIs(groupId).getQueryObject();
+			DBObject fields = new BasicDBObject(GROUP_TIMESTAMP_KEY, 1).append(GROUP_COMPLETE_KEY, 1)
+					.append(LAST_RELEASED_SEQUENCE_NUMBER, 1);
+			DBObject groupFields = getCollection().findOne(query, fields);
+			Object timestamp = (groupFields != null) ? groupFields.get(GROUP_TIMESTAMP_KEY) : null;
+			Object complete = (groupFields != null) ? groupFields.get(GROUP_COMPLETE_KEY) : null;
+			Object lastReleasedMessageSequenceNumber = (groupFields != null) ? groupFields.get(LAST_RELEASED_SEQUENCE_NUMBER) : null;
+			this.timestamp = (timestamp instanceof Number) ? ((Number) timestamp).longValue() : 0;
+			this.complete = Boolean.TRUE.equals(complete);
+			this.lastReleasedMessageSequenceNumber = (lastReleasedMessageSequenceNumber instanceof Number)
+					? ((Number) lastReleasedMessageSequenceNumber).intValue() : 0;
+			this.size = (int) getCollection().count(query);
+		}
+
+		private MessageGroup getGroup() {
+			if (this.group == null) {
+				this.group = getMessageGroup(this.groupId);
+			}
+			return this.group;
+		}
+
+		public boolean canAdd(Message<?> message) {
+			return this.getGroup().canAdd(message);
+		}
+
+		public Collection<Message<?>> getMessages() {
+			return this.getGroup().getMessages();
+		}
+
+		public Object getGroupId() {
+			return this.groupId;
+		}
+
+		public int getLastReleasedMessageSequenceNumber() {
+			return this.lastReleasedMessageSequenceNumber;
+		}
+
+		public boolean isComplete() {
+			return this.complete;
+		}
+
+		public void complete() {
+			this.complete = true;
+		}
+
+		public int getSequenceSize() {
+			return this.getGroup().getSequenceSize();
+		}
+
+		public int size() {
+			return this.size;
+		}
+
+		public Message<?> getOne() {
+			return this.getGroup().getOne();
+		}
+
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+	}
+
+
 	/**
 	 * Custom implementation of the {@link MappingMongoConverter} strategy.
 	 */
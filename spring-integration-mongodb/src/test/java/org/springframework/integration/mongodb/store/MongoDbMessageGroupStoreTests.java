@@ -221,6 +221,41 @@ public class MongoDbMessageGroupStoreTests extends MongoDbAvailableTests {
 		assertEquals(2, counter);
 	}
 	
+	@Test
+	@MongoDbAvailable
+	public void testGroupCountsAndIteratedGroupState() throws Exception{	
+		MongoDbFactory mongoDbFactory = this.prepareMongoFactory();
+		MongoDbMessageStore store = new MongoDbMessageStore(mongoDbFactory);
+		store.afterPropertiesSet();
+		
+		long start = System.currentTimeMillis();
+		store.addMessageToGroup(1, new GenericMessage<String>("1"));
+		store.addMessageToGroup(1, new GenericMessage<String>("2"));
+		store.addMessageToGroup(2, new GenericMessage<String>("3"));
+		store.completeGroup(1);
+		store.setLastReleasedSequenceNumberForGroup(1, 2);
+		assertEquals(2, store.getMessageGroupCount());
+		assertEquals(3, store.getMessageCountForAllMessageGroups());
+		assertEquals(2, store.messageGroupSize(1));
+		
+		Iterator<MessageGroup> iterator = store.iterator();
+		while (iterator.hasNext()) {
+			MessageGroup messageGroup = iterator.next();
+			assertTrue(messageGroup.getTimestamp() >= start - 1000);
+			if (messageGroup.getGroupId().equals(1)) {
+				assertEquals(2, messageGroup.size());
+				assertTrue(messageGroup.isComplete());
+				assertEquals(2, messageGroup.getLastReleasedMessageSequenceNumber());
+				assertEquals(2, messageGroup.getMessages().size());
+			}
+		}
+		
+		store.removeMessageGroup(1);
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.getMessageCountForAllMessageGroups());
+		assertEquals(0, store.getMessageGroup(1).size());
+	}
+	
 //	@Test
 //	@MongoDbAvailable
 //	public void testConcurrentModifications() throws Exception{	
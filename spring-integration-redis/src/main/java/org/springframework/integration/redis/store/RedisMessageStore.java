@@ -16,43 +16,168 @@
 
 package org.springframework.integration.redis.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.BoundValueOperations;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.integration.Message;
 import org.springframework.integration.store.AbstractKeyValueMessageStore;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupMetadata;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 
 /**
  * Redis implementation of the key/value style {@link MessageStore} and {@link MessageGroupStore}
+ * <p>
+ * Messages are stored as values. Each group is kept in native Redis structures, so that adding a message to a
+ * group, removing or polling one is a constant number of commands whatever the size of the group:
+ * <ul>
+ * <li>a sorted set of the ids of its messages, scored by the order they were added</li>
+ * <li>a hash holding the state of the group and the sequence number of each message</li>
+ * </ul>
+ * The members of a group and their sequence numbers are added and removed together in a MULTI/EXEC transaction.
+ * A new message is stored and counted in one MULTI/EXEC transaction too.
+ * The messages of a group are read with a single MGET. The message and group member counts are kept in counters
+ * and the group ids in a sorted set scored by the group timestamps, so the JMX attributes never scan the keyspace
+ * and expiring groups only reads the expired ones. The counters only cover messages stored through this version of
+ * the store.
+ * <p>
+ * A group stored by earlier versions, as a serialized value under its {@code MESSAGE_GROUP_} key, is moved to
+ * the native structures when it is first accessed by id; such groups are not listed by {@link #iterator()} or
+ * expired until then. Earlier versions of the store must not be used with the same database once it is upgraded.
  * 
  * @author Oleg Zhurakousky
  * @since 2.1
  */
 public class RedisMessageStore extends AbstractKeyValueMessageStore {
 
+	private static final String GROUP_STATE_KEY_PREFIX = "GROUP_STATE_";
+
+	private static final String GROUP_MESSAGES_KEY_PREFIX = "GROUP_MESSAGES_";
+
+	private static final String GROUP_IDS_KEY = "GROUP_IDS";
+
+	private static final String MESSAGE_COUNT_KEY = "COUNT_MESSAGES";
+
+	private static final String GROUP_MESSAGE_COUNT_KEY = "COUNT_GROUP_MESSAGES";
+
+	private static final String TIMESTAMP_FIELD = "timestamp";
+
+	private static final String COMPLETE_FIELD = "complete";
+
+	private static final String LAST_RELEASED_SEQUENCE_NUMBER_FIELD = "lastReleasedSequenceNumber";
+
+	private static final String ORDER_FIELD = "order";
+
+	private static final String SEQUENCE_NUMBER_FIELD_PREFIX = "sequenceNumber_";
+
 	private final RedisTemplate<Object, Object> redisTemplate;
 
+	private final StringRedisTemplate stringRedisTemplate;
+
 	public RedisMessageStore(RedisConnectionFactory connectionFactory) {
 		this.redisTemplate = new RedisTemplate<Object, Object>();
 		this.redisTemplate.setConnectionFactory(connectionFactory);
 		this.redisTemplate.setKeySerializer(new StringRedisSerializer());
 		this.redisTemplate.setValueSerializer(new JdkSerializationRedisSerializer());
+		this.stringRedisTemplate = new StringRedisTemplate(connectionFactory);
 	}
 
 	public void setValueSerializer(RedisSerializer<?> valueSerializer) {
 		Assert.notNull(valueSerializer, "'valueSerializer' must not be null");
 		this.redisTemplate.setValueSerializer(valueSerializer);
 	}
-	
+
+	@Override
+	@ManagedAttribute
+	public long getMessageCount() {
+		return this.getCount(MESSAGE_COUNT_KEY);
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageCountForAllMessageGroups() {
+		return (int) this.getCount(GROUP_MESSAGE_COUNT_KEY);
+	}
+
+	@Override
+	@ManagedAttribute
+	public int getMessageGroupCount() {
+		Long count = this.zSetOps().size(GROUP_IDS_KEY);
+		return (count != null) ? count.intValue() : 0;
+	}
+
+	@Override
+	public Iterator<MessageGroup> iterator() {
+		final Iterator<String> groupIds = this.zSetOps().range(GROUP_IDS_KEY, 0, -1).iterator();
+		return new Iterator<MessageGroup>() {
+
+			public boolean hasNext() {
+				return groupIds.hasNext();
+			}
+
+			public MessageGroup next() {
+				return getMessageGroup(groupIds.next());
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public void completeGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.createGroupIfNecessary(groupId);
+		this.hashOps().put(this.groupKey(groupId), COMPLETE_FIELD, Boolean.TRUE.toString());
+	}
+
+	@Override
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		this.createGroupIfNecessary(groupId);
+		this.hashOps().put(this.groupKey(groupId), LAST_RELEASED_SEQUENCE_NUMBER_FIELD, String.valueOf(sequenceNumber));
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata messageGroupMetadata = this.doRemoveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
+			List<String> messageKeys = new ArrayList<String>();
+			for (UUID messageId : messageGroupMetadata.getMessageIds()) {
+				messageKeys.add(MESSAGE_KEY_PREFIX + messageId);
+			}
+			this.delete(messageKeys, MESSAGE_COUNT_KEY);
+		}
+	}
+
 	@Override
 	protected Object doRetrieve(Object id){
 		Assert.notNull(id, "'id' must not be null");
@@ -60,14 +185,21 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore {
 		return ops.get();
 	}
 
+	@Override
+	protected List<?> doRetrieveAll(List<?> ids) {
+		Assert.notNull(ids, "'ids' must not be null");
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return this.redisTemplate.opsForValue().multiGet(new ArrayList<Object>(ids));
+	}
 
 	@Override
 	protected void doStore(Object id, Object objectToStore) {
 		Assert.notNull(id, "'id' must not be null");
 		Assert.notNull(objectToStore, "'objectToStore' must not be null");
-		BoundValueOperations<Object, Object> ops = redisTemplate.boundValueOps(id);
 		try {
-			ops.set(objectToStore);
+			this.storeAndCount(id, objectToStore);
 		}
 		catch (SerializationException e) {
 			throw new IllegalArgumentException("If relying on the default RedisSerializer (JdkSerializationRedisSerializer) " +
@@ -76,22 +208,320 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore {
 		}
 	}
 
-
 	@Override
 	protected Object doRemove(Object id) {
 		Assert.notNull(id, "'id' must not be null");
 		Object removedObject = this.doRetrieve(id);
 		if (removedObject != null){
-			redisTemplate.delete(id);
+			this.delete(Collections.singletonList(id.toString()), MESSAGE_COUNT_KEY);
 		}	
 		return removedObject;
 	}
 
-
 	@Override
 	protected Collection<?> doListKeys(String keyPattern) {
 		Assert.hasText(keyPattern, "'keyPattern' must not be empty");
 		Set<Object> keys = redisTemplate.keys(keyPattern);
 		return keys;
 	}
+
+	@Override
+	protected MessageGroupMetadata doRetrieveGroupMetadata(Object groupId) {
+		Map<String, String> fields = this.hashOps().entries(this.groupKey(groupId));
+		if ((fields == null || !fields.containsKey(TIMESTAMP_FIELD))
+				&& Boolean.TRUE.equals(this.redisTemplate.hasKey(this.legacyGroupKey(groupId)))) {
+			this.createGroupIfNecessary(groupId);
+			fields = this.hashOps().entries(this.groupKey(groupId));
+		}
+		if (fields == null || !fields.containsKey(TIMESTAMP_FIELD)) {
+			return null;
+		}
+		MessageGroupMetadata messageGroupMetadata = new MessageGroupMetadata(groupId,
+				Long.parseLong(fields.get(TIMESTAMP_FIELD)));
+		if (Boolean.valueOf(fields.get(COMPLETE_FIELD))) {
+			messageGroupMetadata.complete();
+		}
+		String lastReleasedSequenceNumber = fields.get(LAST_RELEASED_SEQUENCE_NUMBER_FIELD);
+		if (StringUtils.hasText(lastReleasedSequenceNumber)) {
+			messageGroupMetadata.setLastReleasedMessageSequenceNumber(Integer.parseInt(lastReleasedSequenceNumber));
+		}
+		for (String messageId : this.zSetOps().range(this.groupMessagesKey(groupId), 0, -1)) {
+			String sequenceNumber = fields.get(SEQUENCE_NUMBER_FIELD_PREFIX + messageId);
+			messageGroupMetadata.add(UUID.fromString(messageId),
+					StringUtils.hasText(sequenceNumber) ? Integer.parseInt(sequenceNumber) : 0);
+		}
+		return messageGroupMetadata;
+	}
+
+	@Override
+	protected void doStoreGroupMetadata(Object groupId, MessageGroupMetadata messageGroupMetadata) {
+		this.doRemoveGroupMetadata(groupId);
+		this.writeGroupMetadata(groupId, messageGroupMetadata);
+	}
+
+	@Override
+	protected MessageGroupMetadata doRemoveGroupMetadata(Object groupId) {
+		MessageGroupMetadata messageGroupMetadata = this.doRetrieveGroupMetadata(groupId);
+		if (messageGroupMetadata != null) {
+			this.zSetOps().remove(GROUP_IDS_KEY, groupId.toString());
+			this.stringRedisTemplate.delete(this.groupKey(groupId));
+			this.stringRedisTemplate.delete(this.groupMessagesKey(groupId));
+			this.stringRedisTemplate.opsForValue().increment(GROUP_MESSAGE_COUNT_KEY, -messageGroupMetadata.size());
+		}
+		return messageGroupMetadata;
+	}
+
+	@Override
+	protected void doAddToGroupMetadata(Object groupId, Collection<? extends Message<?>> messages) {
+		this.createGroupIfNecessary(groupId);
+		List<UUID> messageIds = new ArrayList<UUID>(messages.size());
+		List<Integer> sequenceNumbers = new ArrayList<Integer>(messages.size());
+		for (Message<?> message : messages) {
+			Integer sequenceNumber = message.getHeaders().getSequenceNumber();
+			messageIds.add(message.getHeaders().getId());
+			sequenceNumbers.add((sequenceNumber != null) ? sequenceNumber : 0);
+		}
+		this.addToGroup(groupId, messageIds, sequenceNumbers);
+	}
+
+	@Override
+	protected void doRemoveFromGroupMetadata(Object groupId, Collection<UUID> messageIds) {
+		List<String> ids = new ArrayList<String>(messageIds.size());
+		for (UUID messageId : messageIds) {
+			ids.add(messageId.toString());
+		}
+		this.removeFromGroup(groupId, ids);
+	}
+
+	@Override
+	protected UUID doPollFromGroupMetadata(Object groupId) {
+		String groupMessagesKey = this.groupMessagesKey(groupId);
+		Set<String> first = null;
+		while (!(first = this.zSetOps().range(groupMessagesKey, 0, 0)).isEmpty()) {
+			String messageId = first.iterator().next();
+			// another store may have polled the same id since the range was read
+			if (this.removeFromGroup(groupId, Collections.singletonList(messageId)) > 0) {
+				return UUID.fromString(messageId);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	protected int doGetMessageGroupSize(Object groupId) {
+		Long size = this.zSetOps().size(this.groupMessagesKey(groupId));
+		return (size != null) ? size.intValue() : 0;
+	}
+
+	@Override
+	protected Collection<MessageGroup> findGroupsOlderThan(long threshold) {
+		List<MessageGroup> groups = new ArrayList<MessageGroup>();
+		for (String groupId : this.zSetOps().rangeByScore(GROUP_IDS_KEY, Double.NEGATIVE_INFINITY, threshold)) {
+			MessageGroup group = this.getMessageGroup(groupId);
+			// the group may have been removed since its id was read
+			if (group.getTimestamp() <= threshold) {
+				groups.add(group);
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * Create the group unless it exists, moving it from the key used by earlier versions if it is stored there.
+	 */
+	private void createGroupIfNecessary(Object groupId) {
+		long timestamp = System.currentTimeMillis();
+		if (this.hashOps().putIfAbsent(this.groupKey(groupId), TIMESTAMP_FIELD, String.valueOf(timestamp))) {
+			String legacyGroupKey = this.legacyGroupKey(groupId);
+			Object legacyMetadata = this.doRetrieve(legacyGroupKey);
+			if (legacyMetadata instanceof MessageGroupMetadata) {
+				this.writeGroupMetadata(groupId, (MessageGroupMetadata) legacyMetadata);
+				this.redisTemplate.delete(legacyGroupKey);
+			}
+			else {
+				this.zSetOps().add(GROUP_IDS_KEY, groupId.toString(), timestamp);
+			}
+		}
+	}
+
+	private void writeGroupMetadata(Object groupId, MessageGroupMetadata messageGroupMetadata) {
+		Map<String, String> fields = new HashMap<String, String>();
+		fields.put(TIMESTAMP_FIELD, String.valueOf(messageGroupMetadata.getTimestamp()));
+		fields.put(COMPLETE_FIELD, String.valueOf(messageGroupMetadata.isComplete()));
+		fields.put(LAST_RELEASED_SEQUENCE_NUMBER_FIELD,
+				String.valueOf(messageGroupMetadata.getLastReleasedMessageSequenceNumber()));
+		this.hashOps().putAll(this.groupKey(groupId), fields);
+		this.zSetOps().add(GROUP_IDS_KEY, groupId.toString(), messageGroupMetadata.getTimestamp());
+		List<UUID> messageIds = messageGroupMetadata.getMessageIds();
+		List<Integer> sequenceNumbers = new ArrayList<Integer>(messageIds.size());
+		for (UUID messageId : messageIds) {
+			sequenceNumbers.add(messageGroupMetadata.getSequenceNumber(messageId));
+		}
+		this.addToGroup(groupId, messageIds, sequenceNumbers);
+	}
+
+	/**
+	 * Add the ids, in order, and their sequence numbers to the group in one transaction, after reserving their
+	 * order in the group; a reserved order that is not used only leaves a gap.
+	 */
+	private void addToGroup(Object groupId, final List<UUID> messageIds, final List<Integer> sequenceNumbers) {
+		if (messageIds.isEmpty()) {
+			return;
+		}
+		final String groupKey = this.groupKey(groupId);
+		final String groupMessagesKey = this.groupMessagesKey(groupId);
+		final long firstOrder = this.hashOps().increment(groupKey, ORDER_FIELD, messageIds.size())
+				- messageIds.size() + 1;
+		List<Object> results = this.stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+			@SuppressWarnings("unchecked")
+			public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+				RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+				ops.multi();
+				// the results of the ZADDs come first
+				for (int i = 0; i < messageIds.size(); i++) {
+					ops.opsForZSet().add(groupMessagesKey, messageIds.get(i).toString(), firstOrder + i);
+				}
+				for (int i = 0; i < messageIds.size(); i++) {
+					if (sequenceNumbers.get(i) != 0) {
+						ops.opsForHash().put(groupKey, SEQUENCE_NUMBER_FIELD_PREFIX + messageIds.get(i),
+								String.valueOf(sequenceNumbers.get(i)));
+					}
+				}
+				return ops.exec();
+			}
+		});
+		int added = countSuccesses(results, messageIds.size());
+		if (added > 0) {
+			this.stringRedisTemplate.opsForValue().increment(GROUP_MESSAGE_COUNT_KEY, added);
+		}
+	}
+
+	/**
+	 * Remove the ids and their sequence numbers from the group in one transaction.
+	 * @return the number of ids that were in the group
+	 */
+	private int removeFromGroup(Object groupId, final List<String> messageIds) {
+		if (messageIds.isEmpty()) {
+			return 0;
+		}
+		final String groupKey = this.groupKey(groupId);
+		final String groupMessagesKey = this.groupMessagesKey(groupId);
+		List<Object> results = this.stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+			@SuppressWarnings("unchecked")
+			public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+				RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+				ops.multi();
+				// the results of the ZREMs come first
+				for (String messageId : messageIds) {
+					ops.opsForZSet().remove(groupMessagesKey, messageId);
+				}
+				for (String messageId : messageIds) {
+					ops.opsForHash().delete(groupKey, SEQUENCE_NUMBER_FIELD_PREFIX + messageId);
+				}
+				return ops.exec();
+			}
+		});
+		int removed = countSuccesses(results, messageIds.size());
+		if (removed > 0) {
+			this.stringRedisTemplate.opsForValue().increment(GROUP_MESSAGE_COUNT_KEY, -removed);
+		}
+		return removed;
+	}
+
+	/**
+	 * Count the first results of a transaction that report a change, i.e. the integer replies of ZADD or ZREM
+	 * that are not 0 (or true, depending on the driver).
+	 */
+	private static int countSuccesses(List<Object> results, int count) {
+		int successes = 0;
+		for (int i = 0; results != null && i < count && i < results.size(); i++) {
+			Object result = results.get(i);
+			if (Boolean.TRUE.equals(result) || (result instanceof Number && ((Number) result).longValue() > 0)) {
+				successes++;
+			}
+		}
+		return successes;
+	}
+
+	/**
+	 * Store the value and, if the key did not exist, increment the message count in the same transaction; the key
+	 * is watched so that the transaction is retried if the key is created concurrently.
+	 */
+	@SuppressWarnings("unchecked")
+	private void storeAndCount(Object id, Object value) {
+		final byte[] rawKey = ((RedisSerializer<Object>) this.redisTemplate.getKeySerializer()).serialize(id);
+		final byte[] rawValue = ((RedisSerializer<Object>) this.redisTemplate.getValueSerializer()).serialize(value);
+		final byte[] rawCounterKey = new StringRedisSerializer().serialize(MESSAGE_COUNT_KEY);
+		this.redisTemplate.execute(new RedisCallback<Object>() {
+			public Object doInRedis(RedisConnection connection) throws DataAccessException {
+				while (true) {
+					connection.watch(rawKey);
+					if (Boolean.TRUE.equals(connection.exists(rawKey))) {
+						connection.unwatch();
+						connection.set(rawKey, rawValue);
+						return null;
+					}
+					connection.multi();
+					connection.set(rawKey, rawValue);
+					connection.incr(rawCounterKey);
+					List<Object> results = connection.exec();
+					if (results != null && !results.isEmpty()) {
+						return null;
+					}
+					// the key was created since it was watched
+				}
+			}
+		});
+	}
+
+	/**
+	 * Delete the keys and decrement the counter by the number of keys that existed.
+	 */
+	private void delete(final List<String> keys, String counterKey) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		final StringRedisSerializer serializer = new StringRedisSerializer();
+		Long deleted = this.stringRedisTemplate.execute(new RedisCallback<Long>() {
+			public Long doInRedis(RedisConnection connection) throws DataAccessException {
+				byte[][] rawKeys = new byte[keys.size()][];
+				for (int i = 0; i < rawKeys.length; i++) {
+					rawKeys[i] = serializer.serialize(keys.get(i));
+				}
+				return connection.del(rawKeys);
+			}
+		});
+		if (deleted != null && deleted > 0) {
+			this.stringRedisTemplate.opsForValue().increment(counterKey, -deleted);
+		}
+	}
+
+	private long getCount(String counterKey) {
+		String count = this.stringRedisTemplate.opsForValue().get(counterKey);
+		return StringUtils.hasText(count) ? Long.parseLong(count) : 0;
+	}
+
+	private String groupKey(Object groupId) {
+		return GROUP_STATE_KEY_PREFIX + groupId;
+	}
+
+	/**
+	 * The key of a group stored by earlier versions, as a serialized {@link MessageGroupMetadata}.
+	 */
+	private String legacyGroupKey(Object groupId) {
+		return MESSAGE_GROUP_KEY_PREFIX + groupId;
+	}
+
+	private String groupMessagesKey(Object groupId) {
+		return GROUP_MESSAGES_KEY_PREFIX + groupId;
+	}
+
+	private HashOperations<String, String, String> hashOps() {
+		return this.stringRedisTemplate.opsForHash();
+	}
+
+	private ZSetOperations<String, String> zSetOps() {
+		return this.stringRedisTemplate.opsForZSet();
+	}
+
 }
@@ -28,6 +28,9 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.integration.Message;
 import org.springframework.integration.MessageChannel;
 import org.springframework.integration.channel.QueueChannel;
@@ -35,10 +38,12 @@ import org.springframework.integration.message.GenericMessage;
 import org.springframework.integration.redis.rules.RedisAvailable;
 import org.springframework.integration.redis.rules.RedisAvailableTests;
 import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.MessageGroupMetadata;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
@@ -231,6 +236,83 @@ public class RedisMessageGroupStoreTests extends RedisAvailableTests {
 		assertEquals(2, counter);
 	}
 	
+	@Test
+	@RedisAvailable
+	public void testPollMessagesInOrder() throws Exception{	
+		JedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		for (int i = 0; i < 10; i++) {
+			store.addMessageToGroup(1, new GenericMessage<Integer>(i));
+		}
+		assertEquals(10, store.messageGroupSize(1));
+		for (int i = 0; i < 10; i++) {
+			assertEquals(i, store.pollMessageFromGroup(1).getPayload());
+		}
+		assertNull(store.pollMessageFromGroup(1));
+		assertEquals(0, store.getMessageCount());
+		assertEquals(0, store.getMessageCountForAllMessageGroups());
+	}
+	
+	@Test
+	@RedisAvailable
+	public void testCounters() throws Exception{	
+		JedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		Message<?> message = MessageBuilder.withPayload("1").setSequenceNumber(1).setSequenceSize(2).build();
+		store.addMessageToGroup(1, message);
+		store.addMessageToGroup(2, new GenericMessage<String>("2"));
+		store.addMessageToGroup(2, new GenericMessage<String>("3"));
+		assertEquals(2, store.getMessageGroupCount());
+		assertEquals(3, store.getMessageCountForAllMessageGroups());
+		assertEquals(3, store.getMessageCount());
+		
+		MessageGroup messageGroup = store.getMessageGroup(1);
+		assertFalse(messageGroup.canAdd(message));
+		assertTrue(messageGroup.canAdd(MessageBuilder.withPayload("2").setSequenceNumber(2).setSequenceSize(2).build()));
+		
+		store.removeMessageGroup(2);
+		assertEquals(1, store.getMessageGroupCount());
+		assertEquals(1, store.getMessageCountForAllMessageGroups());
+		assertEquals(1, store.getMessageCount());
+	}
+	
+	@Test
+	@RedisAvailable
+	public void testMessageGroupsOfEarlierVersionsAreMigrated() throws Exception{	
+		JedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		Message<?> first = store.addMessage(MessageBuilder.withPayload("1").setSequenceNumber(1).setSequenceSize(2).build());
+		Message<?> second = store.addMessage(new GenericMessage<String>("2"));
+		MessageGroupMetadata legacy = new MessageGroupMetadata(1);
+		legacy.add(first);
+		legacy.add(second);
+		legacy.complete();
+		// the way earlier versions stored the groups
+		RedisTemplate<Object, Object> template = new RedisTemplate<Object, Object>();
+		template.setConnectionFactory(jcf);
+		template.setKeySerializer(new StringRedisSerializer());
+		template.setValueSerializer(new JdkSerializationRedisSerializer());
+		template.afterPropertiesSet();
+		template.opsForValue().set("MESSAGE_GROUP_1", legacy);
+		template.opsForValue().set("MESSAGE_GROUP_2", new MessageGroupMetadata(2));
+
+		MessageGroup messageGroup = store.getMessageGroup(1);
+		assertEquals(2, messageGroup.size());
+		assertTrue(messageGroup.isComplete());
+		Iterator<Message<?>> messages = messageGroup.getMessages().iterator();
+		assertEquals("1", messages.next().getPayload());
+		assertEquals("2", messages.next().getPayload());
+		assertFalse(messageGroup.canAdd(MessageBuilder.withPayload("3").setSequenceNumber(1).setSequenceSize(2).build()));
+		assertFalse(template.hasKey("MESSAGE_GROUP_1"));
+
+		// migrated when a message is added
+		messageGroup = store.addMessageToGroup(2, new GenericMessage<String>("3"));
+		assertEquals(1, messageGroup.size());
+		assertFalse(template.hasKey("MESSAGE_GROUP_2"));
+		assertEquals(2, store.getMessageGroupCount());
+		assertEquals(3, store.getMessageCountForAllMessageGroups());
+	}
+	
 	@Test
 	@RedisAvailable @Ignore
 	public void testConcurrentModifications() throws Exception{	